@@ -25,7 +25,7 @@ public class InitKolokvijumDB {
 		System.out.println("Table SMER created.");
 		
 		
-		createTableSQL = "create table PREDMET(pid int, predNaziv varchar(25), predSmerId int, predGod int)";
+		createTableSQL = "create table PREDMET(pid int, predNaziv varchar(60), predSmerId int, predGod int)";
 		MainQueryRunner.executeSQLUpdate(createTableSQL);
 		System.out.println("Table PREDMET created.");
 		
@@ -44,10 +44,33 @@ public class InitKolokvijumDB {
 		MainQueryRunner.executeSQLUpdate(createTableSQL);
 		System.out.println("Table POLAGANJE created.");
 		
+		// Indeksi za spajanja ispid=ispitid i pid=predmetid; popunjavaju se pri ucitavanju podataka
+		MainQueryRunner.executeSQLUpdate("create index polagIspitIdx on POLAGANJE(ispitId)");
+		MainQueryRunner.executeSQLUpdate("create index ispitPredIdx on ISPIT(predmetId)");
+		
 				
 	}
 	
 	public static void genericInsertDBData() {
+		// Podaci se ucitavaju COPY naredbom, koja upisuje cele blokove odjednom
+		copyTableData("studenti.csv", "STUDENT", "sid, studname, smerId, godStud, godUpis, godDipl");
+		copyTableData("smer.csv", "SMER", "smid, smername");
+		copyTableData("raf_predmeti.csv", "PREDMET", "pid, predNaziv, predSmerId, predGod");
+		copyTableData("ispitni_rok.csv", "ISPITNIROK", "rokId, ispRokNaziv");
+		copyTableData("ispiti.csv", "ISPIT", "ispid, predmetid, ispitniRokId, ispUGod, ispDatum");
+		copyTableData("polaganja.csv", "POLAGANJE", "polagStudId, ispitId, ocena");
+	}
+	
+	private static void copyTableData(String fileName, String tableName, String fields) {
+		MainQueryRunner.executeSQLUpdate("copy " + tableName + "(" + fields + ") from 'data/" + fileName + "' with header");
+		System.out.println("Records for table "+tableName+" has been inserted.");
+	}
+	
+	/*
+	 Ucitavanje podataka slog po slog, preko SQL INSERT naredbi.
+	 Zadrzano radi poredjenja sa COPY naredbom (BulkLoadBenchmark).
+	 */
+	public static void rowByRowInsertDBData() {
 		
 		try {
 			
@@ -78,9 +78,10 @@ public class MainQueryRunner {
       2. Redosled join-ova - manje tabele prvo
       3. Koriscenje Block Nested Loop Join za efikasnije spajanje
      */
-    private static void executeQuery3() {
+    public static void executeQuery3() {
 
-        Transaction tx = new Transaction();
+        //Transakcija samo za citanje: plan ne koristi indekse, a tabele cita bez zakljucavanja
+        Transaction tx = new Transaction(true);
 
         //1.Kreiranje TablePlan za sve tabele
         Plan pSmer = new TablePlan("smer", tx);
@@ -177,12 +178,13 @@ public class MainQueryRunner {
       DEO 2:Demonstracija rada Block Nested Loop Join operatora
       Prikazuje kako Block Nested Loop Join radi na jednostavnom primeru
      */
-    private static void demonstrateBlockNestedLoopJoin() {
+    public static void demonstrateBlockNestedLoopJoin() {
 
         System.out.println("\nPrimer: Join SMER i PREDMET po polju smid=predsmerid");
         System.out.println("Filtriramo samo Softversko inzenjerstvo i predmete prve godine\n");
 
-        Transaction tx = new Transaction();
+        //Transakcija samo za citanje: plan ne koristi indekse, a tabele cita bez zakljucavanja
+        Transaction tx = new Transaction(true);
 
         //Kreiranje tabela
         Plan pSmer = new TablePlan("smer", tx);
@@ -2,13 +2,10 @@ package rs.raf.simpledb;
 
 
 import rs.raf.simpledb.tx.Transaction;
-import rs.raf.simpledb.utils.BufferMgr;
-import rs.raf.simpledb.utils.FileMgr;
-import rs.raf.simpledb.utils.LogMgr;
+import rs.raf.simpledb.tx.recovery.RecoveryMgr;
+import rs.raf.simpledb.utils.*;
 import rs.raf.simpledb.metadata.CatalogMgr;
 import rs.raf.simpledb.planner.*;
-//import simpledb.opt.HeuristicQueryPlanner;
-//import simpledb.index.planner.IndexUpdatePlanner;
 
 /**
  * The class that provides system-wide static global values.
@@ -26,22 +23,81 @@ import rs.raf.simpledb.planner.*;
 
 public class SimpleDBEngine {
    public static int BUFFER_SIZE = 8;
+   /**
+    * The block size, in bytes, of a newly created database.
+    * An existing database keeps the block size stored in its header.
+    */
+   public static int PAGE_SIZE = Page.DEFAULT_BLOCK_SIZE;
+   /**
+    * The total off-heap memory, in bytes, for the pages of the
+    * buffer pool and the log manager. If it is positive, it
+    * determines the number of buffers instead of {@link #BUFFER_SIZE}.
+    * See {@link #bufferCount()}.
+    */
+   public static long BUFFER_MEMORY = 0;
+   /**
+    * The buffer replacement policy: "lru", "clock", "lru2" or "2q".
+    * See {@link #replacementPolicy()}.
+    */
+   public static String BUFFER_POLICY = "2q";
+   /**
+    * The maximum number of pages per second written by the
+    * background writer; 0 disables the writer.
+    */
+   public static int WRITER_PAGES_PER_SECOND = 2000;
+   public static long WRITER_INTERVAL_MS = 50;
+   public static long CHECKPOINT_INTERVAL_MS = 30000;
+   /**
+    * Whether table files are read through memory mappings.
+    * See {@link FileMgr}.
+    */
+   public static boolean FILE_MAPPED_IO = false;
+   /**
+    * The number of blocks mapped at once in memory-mapped mode.
+    */
+   public static int MAP_CHUNK_BLOCKS = 64;
+   /**
+    * The number of index records sorted in memory at a time
+    * when an index is built; larger inputs are sorted in runs
+    * of this size, which are then merged.
+    */
+   public static int SORT_RUN_RECORDS = 100000;
+   /**
+    * The number of bits per key of a Bloom filter, which
+    * gives a false positive rate of about one percent.
+    * See {@link rs.raf.simpledb.index.BloomFilter}.
+    */
+   public static int BLOOM_BITS_PER_KEY = 10;
+   /**
+    * The number of pages holding the most recent log blocks.
+    * Log records are appended to these pages, which are written
+    * to the log file when they are all full or when the log is flushed.
+    * See {@link LogMgr}.
+    */
+   public static int LOG_BUFFER_PAGES = 8;
    public static String LOG_FILE = "raf_simpledb.log";
    
    private static FileMgr     fm;
    private static BufferMgr   bm;
    private static LogMgr      logm;
+   private static PageArena   arena;
+   private static BackgroundWriter writer;
    private static CatalogMgr ctlg;
    
    /**
     * Initializes the system.
     * This method is called during system startup.
+    * The background writer is started once the database
+    * is recovered and the catalog is initialized.
     * @param dirname the name of the database directory
     */
    public static boolean init(String dirname) {
       initFileLogAndBufferMgr(dirname);
-      Transaction tx = new Transaction();
       boolean isnew = fm.isNew();
+      // number the recovery transaction after those in the log
+      if (!isnew)
+         RecoveryMgr.analyze();
+      Transaction tx = new Transaction();
       if (isnew)
          System.out.println("creating new database");
       else {
@@ -50,7 +106,7 @@ public class SimpleDBEngine {
       }
       initCatalogMgr(isnew, tx);
       tx.commit();
-      
+      startBackgroundWriter();
       return isnew;
    }
    
@@ -63,7 +119,7 @@ public class SimpleDBEngine {
     * @param dirname the name of the database directory
     */
    public static void initFileMgr(String dirname) {
-      fm = new FileMgr(dirname);
+      fm = new FileMgr(dirname, PAGE_SIZE, FILE_MAPPED_IO, MAP_CHUNK_BLOCKS);
    }
    
    /**
@@ -72,7 +128,11 @@ public class SimpleDBEngine {
     */
    public static void initFileAndLogMgr(String dirname) {
       initFileMgr(dirname);
-      logm = new LogMgr(LOG_FILE);
+      arena = new PageArena(bufferCount() + LOG_BUFFER_PAGES, fm.blockSize());
+      Page[] logpages = new Page[LOG_BUFFER_PAGES];
+      for (int i=0; i<logpages.length; i++)
+         logpages[i] = arena.newPage();
+      logm = new LogMgr(LOG_FILE, logpages);
    }
    
    /**
@@ -80,8 +140,27 @@ public class SimpleDBEngine {
     * @param dirname the name of the database directory
     */
    public static void initFileLogAndBufferMgr(String dirname) {
+      // stop the previous writer first: it flushes through the log manager,
+      // and must not be interrupted while using the new one
+      if (writer != null)
+         writer.stop();
+      writer = null;
       initFileAndLogMgr(dirname);
-      bm = new BufferMgr(BUFFER_SIZE);
+      bm = new BufferMgr(bufferCount(), replacementPolicy(), arena);
+   }
+   
+   /**
+    * Starts the background writer, unless it is disabled
+    * or already running.
+    * Its checkpoints must not begin before recovery is done,
+    * so it is not started together with the buffer manager.
+    */
+   public static void startBackgroundWriter() {
+      if (writer != null || WRITER_PAGES_PER_SECOND <= 0)
+         return;
+      writer = new BackgroundWriter(bm, WRITER_PAGES_PER_SECOND,
+                                    WRITER_INTERVAL_MS, CHECKPOINT_INTERVAL_MS);
+      writer.start();
    }
    
    /**
@@ -97,16 +176,47 @@ public class SimpleDBEngine {
    public static FileMgr     fileMgr()   { return fm; }
    public static BufferMgr   bufferMgr() { return bm; }
    public static LogMgr      logMgr()    { return logm; }
+   public static BackgroundWriter backgroundWriter() { return writer; }
+   public static PageArena   pageArena() { return arena; }
+   
+   /**
+    * Returns the number of buffers in the buffer pool.
+    * If {@link #BUFFER_MEMORY} is positive, it is the number of
+    * page frames that fit into it, less {@link #LOG_BUFFER_PAGES}
+    * for the log manager;
+    * otherwise it is {@link #BUFFER_SIZE}.
+    * @return the number of buffers
+    */
+   public static int bufferCount() {
+      if (BUFFER_MEMORY <= 0)
+         return BUFFER_SIZE;
+      return Math.max(1, PageArena.framesFor(BUFFER_MEMORY, fm.blockSize()) - LOG_BUFFER_PAGES);
+   }
    public static CatalogMgr catalogMgr()     { return ctlg; }
    
+   /**
+    * Creates the buffer replacement policy named by
+    * {@link #BUFFER_POLICY}.
+    * @return the policy used by the buffer manager
+    */
+   public static ReplacementPolicy replacementPolicy() {
+      switch (BUFFER_POLICY) {
+         case "lru":   return new LRUPolicy();
+         case "clock": return new ClockPolicy();
+         case "lru2":  return new LRUKPolicy(2, bufferCount());
+         case "2q":    return new TwoQueuePolicy(bufferCount());
+         default: throw new IllegalArgumentException("unknown buffer policy " + BUFFER_POLICY);
+      }
+   }
+   
    /**
     * Creates a planner for SQL commands.
     * To change how the planner works, modify this method.
     * @return the system's planner for SQL commands
     */
    public static Planner planner() {
-      QueryPlanner  qplanner = new BasicQueryPlanner();
-      UpdatePlanner uplanner = new BasicUpdatePlanner();
+      QueryPlanner  qplanner = new HeuristicQueryPlanner();
+      UpdatePlanner uplanner = new IndexUpdatePlanner();
       return new Planner(qplanner, uplanner);
    }
 }
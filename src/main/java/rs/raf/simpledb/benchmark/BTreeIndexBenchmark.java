@@ -0,0 +1,110 @@
+package rs.raf.simpledb.benchmark;
+
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.console;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.createDB;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.deleteDB;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.mute;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.planText;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.unmute;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Random;
+
+import rs.raf.simpledb.MainQueryRunner;
+import rs.raf.simpledb.SimpleDBEngine;
+import rs.raf.simpledb.planner.BasicQueryPlanner;
+import rs.raf.simpledb.planner.HeuristicQueryPlanner;
+import rs.raf.simpledb.planner.Planner;
+import rs.raf.simpledb.planner.QueryPlanner;
+import rs.raf.simpledb.query.Plan;
+import rs.raf.simpledb.query.operators.Scan;
+import rs.raf.simpledb.tx.Transaction;
+import rs.raf.simpledb.utils.Page;
+
+/*
+  Poredjenje upita sa opsegom (>=, between) bez indeksa i sa B+ stablom.
+
+  Tabela ISPIT se puni generisanim ispitima (podrazumevano 200000, ili broj
+  zadat kao prvi argument) COPY naredbom; B+ stabla na ispUGod i ispDatum se
+  grade pri ucitavanju. Ispiti se generisu hronoloski (ispid raste sa godinom),
+  pa su slogovi jedne godine u susednim blokovima, dok su predmetid i ispitniRokId nasumicni.
+  Za svaki upit se ispisuju plan koji je izabrao HeuristicQueryPlanner,
+  procenjen broj pristupa blokovima, broj citanja blokova sa diska, broj redova
+  i vreme. Za sirok opseg planer bira TableScan.
+ */
+public class BTreeIndexBenchmark {
+    private static final String DB_NAME = "simpledb_btreebench";
+    private static final int DEFAULT_ROWS = 200_000;
+    private static final String[] QUERIES = {
+        "select ispid, ispdatum from ispit where ispugod >= 2023",
+        "select ispid, ispugod from ispit where ispdatum between '2024-01-01' and '2024-01-07'",
+        "select ispid from ispit where ispugod > 2000 and ispugod < 2003",
+        "select ispid from ispit where ispugod >= 2005",
+        "select ispid from ispit where ispitnirokid >= 6",
+    };
+
+    public static void main(String[] args) throws IOException {
+        int rows = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_ROWS;
+        File csv = File.createTempFile("ispiti", ".csv");
+        csv.deleteOnExit();
+        Random random = new Random(42);
+        try (PrintWriter out = new PrintWriter(csv)) {
+            out.println("ispid,predmetid,ispitniRokId,ispUGod,ispDatum");
+            for (int i = 1; i <= rows; i++) {
+                int god = 2000 + (int) ((long) (i - 1) * 26 / rows);
+                out.printf("%d,%d,%d,%d,%d-%02d-%02d%n", i, 1 + random.nextInt(60), 1 + random.nextInt(6),
+                        god, god, 1 + random.nextInt(12), 1 + random.nextInt(28));
+            }
+        }
+
+        SimpleDBEngine.PAGE_SIZE = 4096;
+        SimpleDBEngine.BUFFER_SIZE = 64;
+        createDB(DB_NAME);
+        mute();
+        MainQueryRunner.executeSQLUpdate("create index ispGodIdx on ISPIT(ispUGod) using btree");
+        MainQueryRunner.executeSQLUpdate("create index ispDatumIdx on ISPIT(ispDatum) using btree");
+        MainQueryRunner.executeSQLUpdate("create index ispRokIdx on ISPIT(ispitniRokId) using btree");
+        long start = System.nanoTime();
+        MainQueryRunner.executeSQLUpdate("copy ispit from '" + csv.getPath() + "' with header");
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        unmute();
+        console.printf("copy of %d rows with three B+ tree indexes: %d ms%n", rows, millis);
+
+        for (String query : QUERIES) {
+            console.println(query);
+            run(false, query);
+            run(true, query);
+        }
+        SimpleDBEngine.PAGE_SIZE = Page.DEFAULT_BLOCK_SIZE;
+        SimpleDBEngine.BUFFER_SIZE = 8;
+        deleteDB(DB_NAME);
+    }
+
+    private static void run(boolean indexed, String query) {
+        mute();
+        Transaction tx = new Transaction();
+        QueryPlanner qplanner = indexed ? new HeuristicQueryPlanner() : new BasicQueryPlanner();
+        Plan plan = new Planner(qplanner, null).createQueryPlan(query, tx);
+        long misses = SimpleDBEngine.bufferMgr().misses();
+        long start = System.nanoTime();
+        Scan s = plan.open();
+        int rows = 0;
+        while (s.next())
+            rows++;
+        s.close();
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        misses = SimpleDBEngine.bufferMgr().misses() - misses;
+        tx.commit();
+        unmute();
+        String kind = !indexed ? "basic" : usesRange(plan) ? "range scan" : "table scan";
+        console.printf("  %-11s estimate %8d blocks, %8d disk reads, %8d rows, %6d ms%n",
+                kind, plan.blocksAccessed(), misses, rows, millis);
+    }
+
+    // Plan je projekcija nad selekcijom; proverava se da li je ispod neki IndexRangeSelectPlan
+    private static boolean usesRange(Plan plan) {
+        return planText(plan).contains("INDEX RANGE SELECTION");
+    }
+}
@@ -0,0 +1,61 @@
+package rs.raf.simpledb.benchmark;
+
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.console;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.deleteDB;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.mute;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.unmute;
+
+import rs.raf.simpledb.InitKolokvijumDB;
+import rs.raf.simpledb.MainQueryRunner;
+import rs.raf.simpledb.SimpleDBEngine;
+import rs.raf.simpledb.utils.BackgroundWriter;
+import rs.raf.simpledb.utils.BufferMgr;
+
+/*
+  Merenje efekta pozadinskog pisaca prljavih bafera (BackgroundWriter).
+
+  Za svaku brzinu pisanja (stranica u sekundi, 0 = pisac iskljucen)
+  ucitavaju se CSV podaci i izvrsavaju upiti iz MainQueryRunner-a, a zatim se ispisuju:
+  broj stranica koje je upisao pisac, prosecno i maksimalno kasnjenje upisa,
+  broj upisa koje je morala da uradi nit koja trazi bafer (foreground)
+  i broj takvih upisa koji su izbegnuti.
+  Pokretati iz korenskog direktorijuma projekta (zbog data/*.csv).
+ */
+public class BackgroundWriterBenchmark {
+    private static final String DB_NAME = "simpledb_writerbench";
+    private static final int[] RATES = {0, 200, 2000, 20000};
+    private static final int POOL_SIZE = 32;
+
+    public static void main(String[] args) {
+        console.printf("%-8s %10s %10s %12s %12s %10s %10s%n", "rate", "time ms", "written",
+                "avg lag ms", "max lag ms", "fg flush", "avoided");
+        for (int rate : RATES) {
+            deleteDB(DB_NAME);
+            SimpleDBEngine.BUFFER_SIZE = POOL_SIZE;
+            SimpleDBEngine.WRITER_PAGES_PER_SECOND = rate;
+
+            mute();
+            long start = System.nanoTime();
+            InitKolokvijumDB.initDB(DB_NAME);
+            InitKolokvijumDB.createDBTables();
+            InitKolokvijumDB.genericInsertDBData();
+            MainQueryRunner.executeQuery3();
+            MainQueryRunner.demonstrateBlockNestedLoopJoin();
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            unmute();
+
+            BufferMgr bm = SimpleDBEngine.bufferMgr();
+            BackgroundWriter writer = SimpleDBEngine.backgroundWriter();
+            if (writer != null) {
+                writer.stop();
+                console.printf("%-8d %10d %10d %12.1f %12d %10d %10d%n", rate, millis,
+                        writer.pagesWritten(), writer.averageWriteLag(), writer.maxWriteLag(),
+                        bm.foregroundFlushes(), bm.flushesAvoided());
+            }
+            else
+                console.printf("%-8s %10d %10s %12s %12s %10d %10d%n", "off", millis, "-", "-", "-",
+                        bm.foregroundFlushes(), bm.flushesAvoided());
+        }
+        deleteDB(DB_NAME);
+    }
+}
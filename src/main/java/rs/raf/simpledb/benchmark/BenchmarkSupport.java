@@ -0,0 +1,63 @@
+package rs.raf.simpledb.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+import rs.raf.simpledb.InitKolokvijumDB;
+import rs.raf.simpledb.query.Plan;
+
+/*
+  Zajednicki delovi benchmark-ova.
+
+  Baza benchmark-a je direktorijum u home direktorijumu, koji se brise pre
+  i posle merenja. Baza ispisuje poruke o svakoj transakciji, pa se
+  standardni izlaz utisava dok se meri, a rezultati se ispisuju na console,
+  izlaz sacuvan pre prvog utisavanja.
+ */
+final class BenchmarkSupport {
+    static final PrintStream console = System.out;
+    private static final PrintStream quiet = new PrintStream(OutputStream.nullOutputStream());
+
+    private BenchmarkSupport() {
+    }
+
+    // ispis baze se odbacuje do poziva unmute()
+    static void mute() {
+        System.setOut(quiet);
+    }
+
+    static void unmute() {
+        System.setOut(console);
+    }
+
+    // brise staru bazu i pravi novu sa (praznim) tabelama kolokvijuma
+    static void createDB(String dbName) {
+        deleteDB(dbName);
+        mute();
+        InitKolokvijumDB.initDB(dbName);
+        InitKolokvijumDB.createDBTables();
+        unmute();
+    }
+
+    static void deleteDB(String dbName) {
+        File dbDir = new File(System.getProperty("user.home"), dbName);
+        String[] files = dbDir.list();
+        if (files == null)
+            return;
+        for (String name : files)
+            new File(dbDir, name).delete();
+        dbDir.delete();
+    }
+
+    // plan se ispisuje u string, npr. da bi se proverilo koje operatore je planer izabrao
+    static String planText(Plan plan) {
+        PrintStream out = System.out;
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(buf));
+        plan.printPlan(0);
+        System.setOut(out);
+        return buf.toString();
+    }
+}
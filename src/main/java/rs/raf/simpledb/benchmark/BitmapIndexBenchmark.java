@@ -0,0 +1,114 @@
+package rs.raf.simpledb.benchmark;
+
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.console;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.createDB;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.deleteDB;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.mute;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.unmute;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Random;
+
+import rs.raf.simpledb.MainQueryRunner;
+import rs.raf.simpledb.SimpleDBEngine;
+import rs.raf.simpledb.metadata.IndexInfo;
+import rs.raf.simpledb.planner.IndexBuilder;
+import rs.raf.simpledb.query.BitmapSelectPlan;
+import rs.raf.simpledb.query.IndexSelectPlan;
+import rs.raf.simpledb.query.IndexedPlan;
+import rs.raf.simpledb.query.IntConstant;
+import rs.raf.simpledb.query.Plan;
+import rs.raf.simpledb.query.TablePlan;
+import rs.raf.simpledb.query.operators.Scan;
+import rs.raf.simpledb.record.TableInfo;
+import rs.raf.simpledb.tx.Transaction;
+
+/*
+  Poredjenje prosirivog hes indeksa i bitmap indeksa na kolonama sa malo
+  razlicitih vrednosti.
+
+  Tabela POLAGANJE se puni COPY naredbom (podrazumevano 200000 redova, ili broj
+  zadat kao prvi argument), sa 40 ispita i ocenama 5-10. Za svaki tip se grade
+  indeksi na ocena i na ispitId (bez upisa u katalog) i meri se velicina
+  indeksa u blokovima, pa za upit ocena = 10 and ispitId = x (20 nasumicnih
+  ispita) prosecan broj citanja blokova sa diska: samo za presek RID-ova iz
+  oba indeksa, i za ceo upit sa citanjem slogova tabele.
+ */
+public class BitmapIndexBenchmark {
+    private static final String DB_NAME = "simpledb_bitmapidxbench";
+    private static final int DEFAULT_ROWS = 200_000;
+    private static final int STUDENTS = 20_000;
+    private static final int ISPITI = 40;
+    private static final int PROBES = 20;
+
+    public static void main(String[] args) throws IOException {
+        int rows = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_ROWS;
+        File csv = File.createTempFile("polaganja", ".csv");
+        csv.deleteOnExit();
+        Random random = new Random(42);
+        try (PrintWriter out = new PrintWriter(csv)) {
+            for (int i = 0; i < rows; i++)
+                out.println((1 + random.nextInt(STUDENTS)) + "," + (1 + random.nextInt(ISPITI)) + "," + (5 + random.nextInt(6)));
+        }
+
+        createDB(DB_NAME);
+        mute();
+        MainQueryRunner.executeSQLUpdate("copy polaganje(polagStudId, ispitId, ocena) from '" + csv.getPath() + "'");
+        unmute();
+        console.printf("%d rows%n", rows);
+
+        run("xt", IndexInfo.EXTHASH);
+        run("bm", IndexInfo.BITMAP);
+        deleteDB(DB_NAME);
+    }
+
+    private static void run(String suffix, String idxtype) {
+        mute();
+        Transaction tx = new Transaction();
+        TableInfo ti = SimpleDBEngine.catalogMgr().getTableInfo("polaganje", tx);
+        IndexInfo ocena = new IndexInfo("polagoc" + suffix, "polaganje", "ocena", idxtype, tx);
+        IndexInfo ispit = new IndexInfo("polagis" + suffix, "polaganje", "ispitid", idxtype, tx);
+        long start = System.nanoTime();
+        new IndexBuilder(ti, ocena, tx).build(0);
+        new IndexBuilder(ti, ispit, tx).build(0);
+        long build = (System.nanoTime() - start) / 1_000_000;
+        tx.commit();
+
+        tx = new Transaction();
+        Plan table = new TablePlan("polaganje", tx);
+        IndexedPlan ocena10 = new IndexSelectPlan(table, ocena, new IntConstant(10), tx);
+        Random random = new Random(7);
+        long intersect = 0, query = 0, found = 0;
+        for (int i = 0; i < PROBES; i++) {
+            IndexedPlan eq = new IndexSelectPlan(table, ispit, new IntConstant(1 + random.nextInt(ISPITI)), tx);
+            long before = SimpleDBEngine.bufferMgr().misses();
+            ocena10.rids().intersect(eq.rids());
+            intersect += SimpleDBEngine.bufferMgr().misses() - before;
+
+            before = SimpleDBEngine.bufferMgr().misses();
+            Scan s = new BitmapSelectPlan(table, Arrays.asList(ocena10, eq), tx).open();
+            while (s.next())
+                found++;
+            s.close();
+            query += SimpleDBEngine.bufferMgr().misses() - before;
+        }
+        tx.commit();
+        unmute();
+        console.printf("  %-8s build %6d ms, %6d index blocks, %8.2f disk reads per intersection, %8.2f per query, %d rows%n",
+                idxtype, build, indexBlocks("polagoc" + suffix) + indexBlocks("polagis" + suffix),
+                (double) intersect / PROBES, (double) query / PROBES, found);
+    }
+
+    // broj blokova svih fajlova indeksa
+    private static long indexBlocks(String idxname) {
+        File dbDir = new File(System.getProperty("user.home"), DB_NAME);
+        long bytes = 0;
+        for (File f : dbDir.listFiles())
+            if (f.getName().startsWith(idxname))
+                bytes += f.length();
+        return bytes / SimpleDBEngine.fileMgr().blockSize();
+    }
+}
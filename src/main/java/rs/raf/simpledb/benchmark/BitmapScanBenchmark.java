@@ -0,0 +1,119 @@
+package rs.raf.simpledb.benchmark;
+
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.console;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.createDB;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.deleteDB;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.mute;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.unmute;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import rs.raf.simpledb.MainQueryRunner;
+import rs.raf.simpledb.SimpleDBEngine;
+import rs.raf.simpledb.metadata.IndexInfo;
+import rs.raf.simpledb.query.BitmapSelectPlan;
+import rs.raf.simpledb.query.Constant;
+import rs.raf.simpledb.query.IndexRangeSelectPlan;
+import rs.raf.simpledb.query.IndexSelectPlan;
+import rs.raf.simpledb.query.IndexedPlan;
+import rs.raf.simpledb.query.IntConstant;
+import rs.raf.simpledb.query.Plan;
+import rs.raf.simpledb.query.TablePlan;
+import rs.raf.simpledb.query.operators.Scan;
+import rs.raf.simpledb.tx.Transaction;
+
+/*
+  Citanje slogova redom iz indeksa i citanje po sortiranim RID-ovima (bitmap).
+
+  Tabela POLAGANJE se puni COPY naredbom (podrazumevano 200000 redova, ili broj
+  zadat kao prvi argument); pored polagIspitIdx iz seme prave se B+ stabla na
+  ocena i na polagStudId. Redovi su u nasumicnom redosledu, pa susedni slogovi u indeksu leze u
+  razlicitim blokovima tabele. Mere se:
+    - opseg ocena >= 9: slogovi redom iz indeksa, pa isti slogovi po blokovima,
+    - ispitId = x and polagStudId <= 400: samo indeks na ispitId, pa presek
+      RID-ova oba indeksa pre citanja tabele.
+  Ispisuje se broj citanja blokova sa diska po upitu.
+ */
+public class BitmapScanBenchmark {
+    private static final String DB_NAME = "simpledb_bitmapbench";
+    private static final int DEFAULT_ROWS = 200_000;
+    private static final int STUDENTS = 20_000;
+    private static final int ISPITI = 200;
+    private static final int PROBES = 20;
+
+    public static void main(String[] args) throws IOException {
+        int rows = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_ROWS;
+        File csv = File.createTempFile("polaganja", ".csv");
+        csv.deleteOnExit();
+        Random random = new Random(42);
+        try (PrintWriter out = new PrintWriter(csv)) {
+            for (int i = 0; i < rows; i++)
+                out.println((1 + random.nextInt(STUDENTS)) + "," + (1 + random.nextInt(ISPITI)) + "," + (5 + random.nextInt(6)));
+        }
+
+        createDB(DB_NAME);
+        mute();
+        MainQueryRunner.executeSQLUpdate("create index polagOcenaIdx on polaganje(ocena) using btree");
+        MainQueryRunner.executeSQLUpdate("create index polagStudIdx on polaganje(polagStudId) using btree");
+        MainQueryRunner.executeSQLUpdate("copy polaganje(polagStudId, ispitId, ocena) from '" + csv.getPath() + "'");
+        unmute();
+        console.printf("%d rows%n", rows);
+
+        mute();
+        Transaction tx = new Transaction();
+        Plan table = new TablePlan("polaganje", tx);
+        Map<String, IndexInfo> indexes = SimpleDBEngine.catalogMgr().getIndexInfo("polaganje", tx);
+        IndexInfo ocenaIdx = indexes.get("polagocenaidx");
+        IndexInfo ispitIdx = indexes.get("polagispitidx");
+        IndexInfo studIdx = indexes.get("polagstudidx");
+        unmute();
+
+        // ocena >= 9
+        IndexedPlan range = new IndexRangeSelectPlan(table, ocenaIdx, new IntConstant(9), null, tx);
+        console.println("ocena >= 9");
+        run("index order", range);
+        run("bitmap", new BitmapSelectPlan(table, List.of(range), tx));
+
+        // ispitId = x and polagStudId <= 400, za nekoliko ispita
+        IndexedPlan students = new IndexRangeSelectPlan(table, studIdx, null, new IntConstant(400), tx);
+        console.println("ispitId = x and polagStudId <= 400");
+        long single = 0, bitmap = 0;
+        Random probes = new Random(7);
+        for (int i = 0; i < PROBES; i++) {
+            Constant ispit = new IntConstant(1 + probes.nextInt(ISPITI));
+            IndexedPlan eq = new IndexSelectPlan(table, ispitIdx, ispit, tx);
+            single += reads(eq);
+            bitmap += reads(new BitmapSelectPlan(table, Arrays.asList(eq, students), tx));
+        }
+        console.printf("  %-12s %8.2f disk reads per query%n", "ispitId idx", (double) single / PROBES);
+        console.printf("  %-12s %8.2f disk reads per query%n", "intersection", (double) bitmap / PROBES);
+
+        tx.commit();
+        deleteDB(DB_NAME);
+    }
+
+    private static void run(String label, Plan plan) {
+        long start = System.nanoTime();
+        long misses = reads(plan);
+        long micros = (System.nanoTime() - start) / 1000;
+        console.printf("  %-12s %8d disk reads and %8d us%n", label, misses, micros);
+    }
+
+    // broj citanja sa diska za jedno izvrsavanje plana
+    private static long reads(Plan plan) {
+        mute();
+        long before = SimpleDBEngine.bufferMgr().misses();
+        Scan s = plan.open();
+        while (s.next())
+            s.getInt("polagstudid");
+        s.close();
+        unmute();
+        return SimpleDBEngine.bufferMgr().misses() - before;
+    }
+}
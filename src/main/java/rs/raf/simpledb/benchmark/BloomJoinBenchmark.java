@@ -0,0 +1,122 @@
+package rs.raf.simpledb.benchmark;
+
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.console;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.createDB;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.deleteDB;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.mute;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.unmute;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Map;
+import java.util.Random;
+
+import rs.raf.simpledb.MainQueryRunner;
+import rs.raf.simpledb.SimpleDBEngine;
+import rs.raf.simpledb.index.BloomFilter;
+import rs.raf.simpledb.metadata.FilterInfo;
+import rs.raf.simpledb.metadata.IndexInfo;
+import rs.raf.simpledb.query.BlockNestedLoopJoinPlan;
+import rs.raf.simpledb.query.ConstantExpression;
+import rs.raf.simpledb.query.FieldNameExpression;
+import rs.raf.simpledb.query.IndexJoinPlan;
+import rs.raf.simpledb.query.IntConstant;
+import rs.raf.simpledb.query.MultiBufferProductPlan;
+import rs.raf.simpledb.query.Plan;
+import rs.raf.simpledb.query.Predicate;
+import rs.raf.simpledb.query.SelectionPlan;
+import rs.raf.simpledb.query.TablePlan;
+import rs.raf.simpledb.query.Term;
+import rs.raf.simpledb.query.operators.Scan;
+import rs.raf.simpledb.tx.Transaction;
+
+/*
+  Bloom filteri u spojevima ISPIT i POLAGANJE.
+
+  ISPIT ima 4000 ispita, a POLAGANJE (podrazumevano 200000 redova, ili broj
+  zadat kao prvi argument) samo polaganja prvih 2000, pri cemu desetke ima
+  samo prvih 200 ispita. Mere se:
+    - ispid = ispitId and ocena = 10: proizvod sa selekcijom, pa block nested
+      loop join koji za svaki chunk unutrasnje strane pravi Bloom filter,
+    - ispid = ispitId: index join preko polagIspitIdx, bez i sa trajnim
+      Bloom filterom na POLAGANJE(ispitId).
+  Ispisuje se broj citanja blokova sa diska, vreme i broj preskocenih probi.
+ */
+public class BloomJoinBenchmark {
+    private static final String DB_NAME = "simpledb_bloombench";
+    private static final int DEFAULT_ROWS = 200_000;
+    private static final int ISPITI = 4000;
+    private static final int POLAGANI = 2000;
+    private static final int SA_DESETKOM = 200;
+
+    public static void main(String[] args) throws IOException {
+        int rows = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_ROWS;
+        File ispiti = File.createTempFile("ispiti", ".csv");
+        ispiti.deleteOnExit();
+        try (PrintWriter out = new PrintWriter(ispiti)) {
+            for (int i = 1; i <= ISPITI; i++)
+                out.println(i + "," + (1 + i % 50) + "," + (1 + i % 6) + "," + (2015 + i % 10) + ",jun");
+        }
+        File polaganja = File.createTempFile("polaganja", ".csv");
+        polaganja.deleteOnExit();
+        Random random = new Random(42);
+        try (PrintWriter out = new PrintWriter(polaganja)) {
+            for (int i = 0; i < rows; i++) {
+                int ispit = 1 + random.nextInt(POLAGANI);
+                int ocena = 5 + random.nextInt(ispit <= SA_DESETKOM ? 6 : 5);
+                out.println((1 + random.nextInt(20_000)) + "," + ispit + "," + ocena);
+            }
+        }
+
+        createDB(DB_NAME);
+        mute();
+        MainQueryRunner.executeSQLUpdate("copy ispit(ispid, predmetid, ispitniRokId, ispUGod, ispDatum) from '" + ispiti.getPath() + "'");
+        MainQueryRunner.executeSQLUpdate("copy polaganje(polagStudId, ispitId, ocena) from '" + polaganja.getPath() + "'");
+        MainQueryRunner.executeSQLUpdate("create index polagIspitBf on polaganje(ispitId) using bloom");
+        unmute();
+        console.printf("%d rows%n", rows);
+
+        mute();
+        Transaction tx = new Transaction();
+        Plan ispit = new TablePlan("ispit", tx);
+        Plan polaganje = new TablePlan("polaganje", tx);
+        Predicate join = new Predicate(new Term(new FieldNameExpression("ispid"), new FieldNameExpression("ispitid")));
+        Predicate desetke = new Predicate(new Term(new FieldNameExpression("ocena"), new ConstantExpression(new IntConstant(10))));
+        Plan inner = new SelectionPlan(polaganje, desetke);
+        Map<String, IndexInfo> indexes = SimpleDBEngine.catalogMgr().getIndexInfo("polaganje", tx);
+        IndexInfo idx = indexes.get("polagispitidx");
+        FilterInfo bloom = SimpleDBEngine.catalogMgr().getFilterInfo("polaganje", tx).get("polagispitbf");
+        unmute();
+
+        console.println("ispid = ispitId and ocena = 10");
+        run("product", new SelectionPlan(new MultiBufferProductPlan(ispit, inner, tx), join));
+        run("block nl", new SelectionPlan(new BlockNestedLoopJoinPlan(ispit, inner, "ispid", "ispitid", tx), join));
+
+        console.println("ispid = ispitId");
+        run("index", new IndexJoinPlan(ispit, polaganje, idx, "ispid", tx));
+        run("index+bf", new IndexJoinPlan(ispit, polaganje, idx, bloom, "ispid", tx));
+
+        mute();
+        tx.commit();
+        unmute();
+        deleteDB(DB_NAME);
+    }
+
+    private static void run(String label, Plan plan) {
+        mute();
+        long misses = SimpleDBEngine.bufferMgr().misses();
+        long probes = BloomFilter.probes(), skipped = BloomFilter.skippedProbes();
+        long start = System.nanoTime();
+        Scan s = plan.open();
+        int found = 0;
+        while (s.next())
+            found++;
+        s.close();
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        unmute();
+        console.printf("  %-8s %8d disk reads, %6d ms, %8d of %8d probes skipped, %d rows%n",
+                label, SimpleDBEngine.bufferMgr().misses() - misses, millis,
+                BloomFilter.skippedProbes() - skipped, BloomFilter.probes() - probes, found);
+    }
+}
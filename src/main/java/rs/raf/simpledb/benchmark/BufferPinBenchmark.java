@@ -0,0 +1,69 @@
+package rs.raf.simpledb.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+import rs.raf.simpledb.SimpleDBEngine;
+import rs.raf.simpledb.utils.Block;
+import rs.raf.simpledb.utils.Buffer;
+import rs.raf.simpledb.utils.BufferMgr;
+
+/*
+  Mikro-benchmark za BufferMgr.pin/unpin.
+
+  Za svaku velicinu bafer pula meri se prosecno vreme:
+  - pogotka (blok je vec u pulu),
+  - promasaja (blok se ucitava umesto nekog nepinovanog bloka).
+  Sa page tabelom vreme treba da ostane priblizno isto
+  bez obzira na velicinu pula.
+ */
+public class BufferPinBenchmark {
+    private static final String DB_NAME = "simpledb_pinbench";
+    private static final String FILE_NAME = "pinbench.dat";
+    private static final int[] POOL_SIZES = {8, 64, 512, 4096, 32768};
+    private static final int OPS = 1_000_000;
+
+    public static void main(String[] args) throws IOException {
+        int maxPool = POOL_SIZES[POOL_SIZES.length - 1];
+        File dbDir = new File(System.getProperty("user.home"), DB_NAME);
+        SimpleDBEngine.initFileMgr(DB_NAME);
+
+        //Fajl sa 2 * maxPool praznih blokova, da bi promasaji imali sta da citaju
+        try (RandomAccessFile f = new RandomAccessFile(new File(dbDir, FILE_NAME), "rw")) {
+            f.setLength(2L * maxPool * SimpleDBEngine.fileMgr().blockSize());
+        }
+
+        System.out.printf("%-10s %15s %15s%n", "pool", "hit ns/pin", "miss ns/pin");
+        for (int poolSize : POOL_SIZES) {
+            BufferMgr bm = new BufferMgr(poolSize);
+            //Popunjavanje pula
+            for (int i = 0; i < poolSize; i++)
+                bm.unpin(bm.pin(new Block(FILE_NAME, i)));
+
+            Random rnd = new Random(42);
+            long hitNs = measure(bm, rnd, poolSize, OPS);
+            //Opseg dvostruko veci od pula - otprilike polovina pinova su promasaji
+            long missNs = measure(bm, rnd, 2 * poolSize, OPS / 10);
+            System.out.printf("%-10d %15.1f %15.1f%n", poolSize,
+                    (double) hitNs / OPS, (double) missNs / (OPS / 10));
+        }
+
+        for (String name : dbDir.list())
+            new File(dbDir, name).delete();
+        dbDir.delete();
+    }
+
+    private static long measure(BufferMgr bm, Random rnd, int range, int ops) {
+        Block[] blocks = new Block[ops];
+        for (int i = 0; i < ops; i++)
+            blocks[i] = new Block(FILE_NAME, rnd.nextInt(range));
+        long start = System.nanoTime();
+        for (Block blk : blocks) {
+            Buffer buff = bm.pin(blk);
+            bm.unpin(buff);
+        }
+        return System.nanoTime() - start;
+    }
+}
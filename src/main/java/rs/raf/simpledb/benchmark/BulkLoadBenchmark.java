@@ -0,0 +1,62 @@
+package rs.raf.simpledb.benchmark;
+
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.console;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.createDB;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.deleteDB;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.mute;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.unmute;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Random;
+
+import rs.raf.simpledb.InitKolokvijumDB;
+import rs.raf.simpledb.MainQueryRunner;
+
+/*
+  Poredjenje ucitavanja podataka slog po slog (INSERT naredbe) i COPY naredbom.
+
+  1. CSV podaci iz data/ se ucitavaju na oba nacina i meri se vreme.
+  2. Generise se CSV fajl sa milion polaganja i ucitava se COPY naredbom.
+  Pokretati iz korenskog direktorijuma projekta (zbog data/*.csv).
+ */
+public class BulkLoadBenchmark {
+    private static final String DB_NAME = "simpledb_bulkbench";
+    private static final int GENERATED_ROWS = 1_000_000;
+
+    public static void main(String[] args) throws IOException {
+        for (int round = 0; round < 2; round++) {
+            createDB(DB_NAME);
+            mute();
+            long start = System.nanoTime();
+            InitKolokvijumDB.rowByRowInsertDBData();
+            long rowByRow = (System.nanoTime() - start) / 1_000_000;
+
+            createDB(DB_NAME);
+            mute();
+            start = System.nanoTime();
+            InitKolokvijumDB.genericInsertDBData();
+            long copy = (System.nanoTime() - start) / 1_000_000;
+            unmute();
+            if (round > 0)
+                console.printf("data/*.csv: insert %d ms, copy %d ms%n", rowByRow, copy);
+        }
+
+        File csv = File.createTempFile("polaganja", ".csv");
+        csv.deleteOnExit();
+        Random random = new Random(42);
+        try (PrintWriter out = new PrintWriter(csv)) {
+            out.println("polagStudId,ispitId,ocena");
+            for (int i = 0; i < GENERATED_ROWS; i++)
+                out.println((1 + random.nextInt(150)) + "," + (1 + random.nextInt(2004)) + "," + (5 + random.nextInt(6)));
+        }
+        mute();
+        long start = System.nanoTime();
+        int rows = MainQueryRunner.executeSQLUpdate("copy polaganje from '" + csv.getPath() + "' with header");
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        unmute();
+        console.printf("copy of %d generated rows: %d ms (%.0f rows/s)%n", rows, millis, rows * 1000.0 / millis);
+        deleteDB(DB_NAME);
+    }
+}
@@ -0,0 +1,89 @@
+package rs.raf.simpledb.benchmark;
+
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.console;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.createDB;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.deleteDB;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.mute;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.unmute;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Random;
+
+import rs.raf.simpledb.MainQueryRunner;
+import rs.raf.simpledb.SimpleDBEngine;
+import rs.raf.simpledb.planner.HeuristicQueryPlanner;
+import rs.raf.simpledb.planner.Planner;
+import rs.raf.simpledb.query.Plan;
+import rs.raf.simpledb.query.operators.Scan;
+import rs.raf.simpledb.tx.Transaction;
+
+/*
+  Pretraga tabele POLAGANJE po paru (polagStudId, ispitId).
+
+  Tabela se puni COPY naredbom (podrazumevano 300000 redova, ili broj zadat
+  kao prvi argument). Isti niz od 1000 upita se izvrsava dva puta: sa indeksima
+  na polagStudId i na ispitId (polagIspitIdx iz seme), od kojih planer koristi
+  jedan, a drugi uslov proverava selekcijom, pa posle pravljenja kompozitnog
+  indeksa na (polagStudId, ispitId), koji planer tada bira.
+  Za svaki slucaj se ispisuje procena planera i prosecan broj citanja blokova
+  sa diska po upitu.
+ */
+public class CompositeIndexBenchmark {
+    private static final String DB_NAME = "simpledb_compositebench";
+    private static final int DEFAULT_ROWS = 300_000;
+    private static final int STUDENTS = 20_000;
+    private static final int ISPITI = 2004;
+    private static final int PROBES = 1000;
+
+    public static void main(String[] args) throws IOException {
+        int rows = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_ROWS;
+        File csv = File.createTempFile("polaganja", ".csv");
+        csv.deleteOnExit();
+        Random random = new Random(42);
+        try (PrintWriter out = new PrintWriter(csv)) {
+            for (int i = 0; i < rows; i++)
+                out.println((1 + random.nextInt(STUDENTS)) + "," + (1 + random.nextInt(ISPITI)) + "," + (5 + random.nextInt(6)));
+        }
+
+        createDB(DB_NAME);
+        mute();
+        MainQueryRunner.executeSQLUpdate("create index polagStudIdx on polaganje(polagStudId)");
+        MainQueryRunner.executeSQLUpdate("copy polaganje(polagStudId, ispitId, ocena) from '" + csv.getPath() + "'");
+        unmute();
+        console.printf("%d rows%n", rows);
+
+        run("single-field indexes");
+        mute();
+        MainQueryRunner.executeSQLUpdate("create index polagStIspIdx on polaganje(polagStudId, ispitId)");
+        unmute();
+        run("index on the pair");
+        deleteDB(DB_NAME);
+    }
+
+    private static void run(String label) {
+        Random random = new Random(7);
+        long estimate = 0, misses = 0, found = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < PROBES; i++) {
+            String query = "select ocena from polaganje where polagStudId = " + (1 + random.nextInt(STUDENTS))
+                    + " and ispitId = " + (1 + random.nextInt(ISPITI));
+            mute();
+            Transaction tx = new Transaction();
+            Plan plan = new Planner(new HeuristicQueryPlanner(), null).createQueryPlan(query, tx);
+            estimate += plan.blocksAccessed();
+            long before = SimpleDBEngine.bufferMgr().misses();
+            Scan s = plan.open();
+            while (s.next())
+                found++;
+            s.close();
+            misses += SimpleDBEngine.bufferMgr().misses() - before;
+            tx.commit();
+            unmute();
+        }
+        long micros = (System.nanoTime() - start) / 1000 / PROBES;
+        console.printf("  %-22s estimate %6.1f blocks, %6.2f disk reads and %5d us per query, %d rows%n",
+                label, (double) estimate / PROBES, (double) misses / PROBES, micros, found);
+    }
+}
@@ -0,0 +1,73 @@
+package rs.raf.simpledb.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import rs.raf.simpledb.SimpleDBEngine;
+import rs.raf.simpledb.utils.Block;
+import rs.raf.simpledb.utils.Buffer;
+import rs.raf.simpledb.utils.BufferMgr;
+
+/*
+  Merenje ukupne propusnosti pin/unpin operacija sa vise niti.
+
+  Svaka nit u petlji pinuje i odmah otpinuje slucajan blok.
+  U prvom scenariju su svi blokovi u pulu (samo pogoci),
+  u drugom je opseg blokova dvostruko veci od pula (oko pola promasaja).
+  Propusnost bi trebalo da raste sa brojem jezgara.
+ */
+public class ConcurrentPinBenchmark {
+    private static final String DB_NAME = "simpledb_concurrentpinbench";
+    private static final String FILE_NAME = "pinbench.dat";
+    private static final int POOL_SIZE = 4096;
+    private static final int[] THREADS = {1, 2, 4, 8};
+    private static final long DURATION_MS = 1000;
+
+    public static void main(String[] args) throws Exception {
+        File dbDir = new File(System.getProperty("user.home"), DB_NAME);
+        SimpleDBEngine.initFileMgr(DB_NAME);
+        try (RandomAccessFile f = new RandomAccessFile(new File(dbDir, FILE_NAME), "rw")) {
+            f.setLength(2L * POOL_SIZE * SimpleDBEngine.fileMgr().blockSize());
+        }
+
+        System.out.println("Dostupno jezgara: " + Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-8s %18s %18s%n", "threads", "hits pins/s", "mixed pins/s");
+        for (int n : THREADS) {
+            BufferMgr bm = new BufferMgr(POOL_SIZE);
+            for (int i = 0; i < POOL_SIZE; i++)
+                bm.unpin(bm.pin(new Block(FILE_NAME, i)));
+            long hitRate = run(bm, n, POOL_SIZE);
+            long mixedRate = run(bm, n, 2 * POOL_SIZE);
+            System.out.printf("%-8d %18d %18d%n", n, hitRate, mixedRate);
+        }
+
+        for (String name : dbDir.list())
+            new File(dbDir, name).delete();
+        dbDir.delete();
+    }
+
+    private static long run(BufferMgr bm, int numThreads, int range) throws InterruptedException {
+        LongAdder ops = new LongAdder();
+        long end = System.currentTimeMillis() + DURATION_MS;
+        Thread[] threads = new Thread[numThreads];
+        for (int t = 0; t < numThreads; t++) {
+            threads[t] = new Thread(() -> {
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                long count = 0;
+                while ((count & 1023) != 0 || System.currentTimeMillis() < end) {
+                    Buffer buff = bm.pin(new Block(FILE_NAME, rnd.nextInt(range)));
+                    bm.unpin(buff);
+                    count++;
+                }
+                ops.add(count);
+            });
+            threads[t].start();
+        }
+        for (Thread t : threads)
+            t.join();
+        return ops.sum() * 1000 / DURATION_MS;
+    }
+}
@@ -0,0 +1,93 @@
+package rs.raf.simpledb.benchmark;
+
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.console;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.createDB;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.deleteDB;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.mute;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.unmute;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Random;
+
+import rs.raf.simpledb.MainQueryRunner;
+import rs.raf.simpledb.SimpleDBEngine;
+import rs.raf.simpledb.index.Index;
+import rs.raf.simpledb.metadata.IndexInfo;
+import rs.raf.simpledb.planner.IndexBuilder;
+import rs.raf.simpledb.query.IntConstant;
+import rs.raf.simpledb.record.TableInfo;
+import rs.raf.simpledb.tx.Transaction;
+
+/*
+  Poredjenje staticnog hes indeksa (100 korpi) i prosirivog hes indeksa
+  dok tabela POLAGANJE raste.
+
+  Tabela se puni COPY naredbom u koracima (podrazumevano do milion redova,
+  ili do broja zadatog kao prvi argument). Posle svakog koraka se oba indeksa
+  na polagStudId grade iznova nad celom tabelom i za 1000 nasumicnih kljuceva
+  meri se prosecan broj citanja blokova sa diska po pretrazi i vreme.
+  Indeksi se ne upisuju u katalog, pa ih planer ne koristi.
+ */
+public class ExtHashIndexBenchmark {
+    private static final String DB_NAME = "simpledb_exthashbench";
+    private static final int DEFAULT_ROWS = 1_000_000;
+    private static final int STUDENTS = 200_000;
+    private static final int PROBES = 1000;
+
+    public static void main(String[] args) throws IOException {
+        int rows = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_ROWS;
+        createDB(DB_NAME);
+
+        Random random = new Random(42);
+        int loaded = 0, round = 0;
+        for (int step = rows / 20; loaded < rows; step *= 2) {
+            int n = Math.min(step, rows - loaded);
+            File csv = File.createTempFile("polaganja", ".csv");
+            try (PrintWriter out = new PrintWriter(csv)) {
+                for (int i = 0; i < n; i++)
+                    out.println((1 + random.nextInt(STUDENTS)) + "," + (1 + random.nextInt(2004)) + "," + (5 + random.nextInt(6)));
+            }
+            mute();
+            MainQueryRunner.executeSQLUpdate("copy polaganje(polagStudId, ispitId, ocena) from '" + csv.getPath() + "'");
+            unmute();
+            csv.delete();
+            loaded += n;
+            round++;
+
+            console.printf("%d rows%n", loaded);
+            run("polagSt" + round, IndexInfo.HASH);
+            run("polagXt" + round, IndexInfo.EXTHASH);
+        }
+        deleteDB(DB_NAME);
+    }
+
+    private static void run(String idxname, String idxtype) {
+        mute();
+        Transaction tx = new Transaction();
+        TableInfo ti = SimpleDBEngine.catalogMgr().getTableInfo("polaganje", tx);
+        IndexInfo ii = new IndexInfo(idxname, "polaganje", "polagstudid", idxtype, tx);
+        long start = System.nanoTime();
+        new IndexBuilder(ti, ii, tx).build(0);
+        long build = (System.nanoTime() - start) / 1_000_000;
+
+        Random random = new Random(7);
+        Index idx = ii.open();
+        long misses = SimpleDBEngine.bufferMgr().misses();
+        start = System.nanoTime();
+        int found = 0;
+        for (int i = 0; i < PROBES; i++) {
+            idx.beforeFirst(new IntConstant(1 + random.nextInt(STUDENTS)));
+            while (idx.next())
+                found++;
+        }
+        long micros = (System.nanoTime() - start) / 1000 / PROBES;
+        misses = SimpleDBEngine.bufferMgr().misses() - misses;
+        idx.close();
+        tx.commit();
+        unmute();
+        console.printf("  %-8s build %6d ms, estimate %4d blocks, %6.2f disk reads and %5d us per probe, %d matches%n",
+                idxtype, build, ii.blocksAccessed(), (double) misses / PROBES, micros, found);
+    }
+}
@@ -0,0 +1,80 @@
+package rs.raf.simpledb.benchmark;
+
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.console;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.deleteDB;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.mute;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.unmute;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import rs.raf.simpledb.SimpleDBEngine;
+import rs.raf.simpledb.tx.Transaction;
+import rs.raf.simpledb.utils.Block;
+import rs.raf.simpledb.utils.LogMgr;
+
+/*
+  Propusna moc commit-a uz write-ahead log i grupni commit.
+
+  Svaka nit u petlji izvrsava kratke transakcije: upis jednog int-a u svoj
+  blok (svaka nit ima svoj fajl, pa niti ne dele podatke) i commit, koji ceka
+  da commit zapis bude na disku. Za 1 do 32 niti (ili do broja zadatog kao
+  prvi argument) meri se broj commit-a u sekundi i broj commit-a po jednom
+  forsiranju loga; bez grupnog commit-a bi svaki commit imao svoje
+  forsiranje, pa propusna moc ne bi rasla sa brojem niti.
+ */
+public class GroupCommitBenchmark {
+    private static final String DB_NAME = "simpledb_groupcommitbench";
+    private static final long MILLIS = 2000;
+
+    public static void main(String[] args) throws InterruptedException {
+        int maxThreads = (args.length > 0) ? Integer.parseInt(args[0]) : 32;
+        deleteDB(DB_NAME);
+        SimpleDBEngine.BUFFER_SIZE = Math.max(SimpleDBEngine.BUFFER_SIZE, 2 * maxThreads);
+        mute();
+        SimpleDBEngine.init(DB_NAME);
+        Transaction tx = new Transaction();
+        for (int t = 0; t < maxThreads; t++)
+            tx.append("gcbench" + t + ".tbl", p -> {});
+        tx.commit();
+        unmute();
+
+        for (int threads = 1; threads <= maxThreads; threads *= 2)
+            run(threads);
+        deleteDB(DB_NAME);
+    }
+
+    private static void run(int threads) throws InterruptedException {
+        LogMgr log = SimpleDBEngine.logMgr();
+        long forces = log.forces(), commits = log.commits();
+        AtomicLong done = new AtomicLong();
+        long end = System.currentTimeMillis() + MILLIS;
+        mute();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Block blk = new Block("gcbench" + t + ".tbl", 0);
+            Thread worker = new Thread(() -> {
+                int i = 0;
+                while (System.currentTimeMillis() < end) {
+                    Transaction tx = new Transaction();
+                    tx.pin(blk);
+                    tx.setInt(blk, (i % 100) * 4, i);
+                    tx.unpin(blk);
+                    tx.commit();
+                    i++;
+                    done.incrementAndGet();
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers)
+            worker.join();
+        unmute();
+        long n = log.commits() - commits;
+        long f = Math.max(1, log.forces() - forces);
+        console.printf("  %2d threads %8.0f commits/s, %6.2f commits per log force%n",
+                threads, done.get() * 1000.0 / MILLIS, (double) n / f);
+    }
+}
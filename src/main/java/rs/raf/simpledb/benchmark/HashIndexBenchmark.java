@@ -0,0 +1,78 @@
+package rs.raf.simpledb.benchmark;
+
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.console;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.createDB;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.deleteDB;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.mute;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.unmute;
+
+import rs.raf.simpledb.InitKolokvijumDB;
+import rs.raf.simpledb.SimpleDBEngine;
+import rs.raf.simpledb.planner.BasicQueryPlanner;
+import rs.raf.simpledb.planner.HeuristicQueryPlanner;
+import rs.raf.simpledb.planner.Planner;
+import rs.raf.simpledb.planner.QueryPlanner;
+import rs.raf.simpledb.query.Plan;
+import rs.raf.simpledb.query.operators.Scan;
+import rs.raf.simpledb.tx.Transaction;
+
+/*
+  Poredjenje upita bez indeksa (BasicQueryPlanner) i sa hes indeksima
+  (HeuristicQueryPlanner) na polaganje.ispitid i ispit.predmetid.
+
+  Za svaki upit se ispisuju procenjen broj pristupa blokovima, broj citanja
+  blokova sa diska (promasaji u bafer pulu), broj redova i vreme izvrsavanja.
+  Pokretati iz korenskog direktorijuma projekta (zbog data/*.csv).
+ */
+public class HashIndexBenchmark {
+    private static final String DB_NAME = "simpledb_hashbench";
+    private static final String[] QUERIES = {
+        "select polagstudid, ocena from polaganje where ispitid = 17",
+        "select ispid, ispdatum from ispit where predmetid = 42",
+    };
+    // Spajanje se izvrsava samo sa indeksima: bez njih BasicQueryPlanner pravi proizvod sve tri tabele
+    private static final String JOIN_QUERY =
+        "select prednaziv, ocena from predmet, ispit, polaganje where pid = predmetid and ispid = ispitid and pid = 42";
+    private static final int ROUNDS = 20;
+
+    public static void main(String[] args) {
+        createDB(DB_NAME);
+        mute();
+        InitKolokvijumDB.genericInsertDBData();
+        unmute();
+
+        for (String query : QUERIES) {
+            console.println(query);
+            run(false, query);
+            run(true, query);
+        }
+        console.println(JOIN_QUERY);
+        run(true, JOIN_QUERY);
+        deleteDB(DB_NAME);
+    }
+
+    private static void run(boolean indexed, String query) {
+        mute();
+        Transaction tx = new Transaction();
+        int estimate = 0, rows = 0;
+        long misses = SimpleDBEngine.bufferMgr().misses();
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            // HeuristicQueryPlanner nije ponovo upotrebljiv, pa se za svaki krug pravi novi
+            QueryPlanner qplanner = indexed ? new HeuristicQueryPlanner() : new BasicQueryPlanner();
+            Plan plan = new Planner(qplanner, null).createQueryPlan(query, tx);
+            estimate = plan.blocksAccessed();
+            Scan s = plan.open();
+            rows = 0;
+            while (s.next())
+                rows++;
+            s.close();
+        }
+        long micros = (System.nanoTime() - start) / 1000 / ROUNDS;
+        misses = (SimpleDBEngine.bufferMgr().misses() - misses) / ROUNDS;
+        tx.commit();
+        unmute();
+        console.printf("  %-11s estimate %6d blocks, %6d disk reads, %5d rows, %8d us%n",
+                indexed ? "hash index" : "table scan", estimate, misses, rows, micros);
+    }
+}
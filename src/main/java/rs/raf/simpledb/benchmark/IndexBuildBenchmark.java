@@ -0,0 +1,117 @@
+package rs.raf.simpledb.benchmark;
+
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.console;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.createDB;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.deleteDB;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.mute;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.unmute;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Random;
+
+import rs.raf.simpledb.MainQueryRunner;
+import rs.raf.simpledb.SimpleDBEngine;
+import rs.raf.simpledb.index.Index;
+import rs.raf.simpledb.metadata.IndexInfo;
+import rs.raf.simpledb.planner.BasicQueryPlanner;
+import rs.raf.simpledb.planner.HeuristicQueryPlanner;
+import rs.raf.simpledb.planner.Planner;
+import rs.raf.simpledb.planner.QueryPlanner;
+import rs.raf.simpledb.query.IntConstant;
+import rs.raf.simpledb.query.operators.Scan;
+import rs.raf.simpledb.query.operators.TableScan;
+import rs.raf.simpledb.tx.Transaction;
+
+/*
+  Merenje izgradnje indeksa nad vec ucitanom tabelom POLAGANJE.
+
+  1. COPY ucitava generisana polaganja (podrazumevano milion, ili broj zadat
+     kao prvi argument); prosirivi hes indeks polagIspitIdx se gradi
+     nakon sortiranja po hes vrednostima.
+  2. CREATE INDEX za staticni hes indeks (jedan prolaz kroz tabelu, slogovi se
+     dodaju u korpe blok po blok) i za B+ stablo (spoljasnje sortiranje
+     i popunjavanje listova odozdo navise).
+  3. Poredjenja radi, isti indeksi se grade umetanjem slog po slog
+     za prvih 100000 slogova.
+  Na kraju se rezultati upita preko indeksa porede sa punim prolazom.
+ */
+public class IndexBuildBenchmark {
+    private static final String DB_NAME = "simpledb_indexbuildbench";
+    private static final int DEFAULT_ROWS = 1_000_000;
+    private static final int ROW_BY_ROW = 100_000;
+
+    public static void main(String[] args) throws IOException {
+        int rows = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_ROWS;
+        File csv = File.createTempFile("polaganja", ".csv");
+        csv.deleteOnExit();
+        Random random = new Random(42);
+        try (PrintWriter out = new PrintWriter(csv)) {
+            out.println("polagStudId,ispitId,ocena");
+            for (int i = 0; i < rows; i++)
+                out.println((1 + random.nextInt(5000)) + "," + (1 + random.nextInt(2004)) + "," + (5 + random.nextInt(6)));
+        }
+
+        createDB(DB_NAME);
+        mute();
+        long copy = time("copy polaganje from '" + csv.getPath() + "' with header");
+        long hash = time("create index polagOcenaIdx on POLAGANJE(ocena) using hash");
+        long btree = time("create index polagStudBt on POLAGANJE(polagStudId) using btree");
+        unmute();
+        console.printf("%d rows: copy with hash index build %d ms%n", rows, copy);
+        console.printf("  create hash index  %6d ms%n", hash);
+        console.printf("  create btree index %6d ms%n", btree);
+
+        mute();
+        long hashRows = rowByRow("ocena", "polagOcenaTst", IndexInfo.HASH);
+        long btreeRows = rowByRow("polagstudid", "polagStudTst", IndexInfo.BTREE);
+        unmute();
+        console.printf("  row by row, first %d rows: hash %d ms, btree %d ms%n", ROW_BY_ROW, hashRows, btreeRows);
+
+        check("select polagstudid from polaganje where ispitid = 17");
+        check("select ispitid from polaganje where polagstudid between 100 and 104");
+        deleteDB(DB_NAME);
+    }
+
+    private static long time(String sql) {
+        long start = System.nanoTime();
+        MainQueryRunner.executeSQLUpdate(sql);
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    // Indeks se ne upisuje u katalog (ne koristi ga planer); slogovi se umecu jedan po jedan
+    private static long rowByRow(String fldname, String idxname, String idxtype) {
+        Transaction tx = new Transaction();
+        Index idx = new IndexInfo(idxname, "polaganje", fldname, idxtype, tx).open();
+        TableScan ts = new TableScan(SimpleDBEngine.catalogMgr().getTableInfo("polaganje", tx), tx);
+        long start = System.nanoTime();
+        for (int i = 0; i < ROW_BY_ROW && ts.next(); i++)
+            idx.insert(new IntConstant(ts.getInt(fldname)), ts.getRid());
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        ts.close();
+        idx.close();
+        tx.commit();
+        return millis;
+    }
+
+    private static void check(String query) {
+        int scanned = count(new BasicQueryPlanner(), query);
+        int indexed = count(new HeuristicQueryPlanner(), query);
+        console.printf("%s: %d rows by scan, %d rows by index %s%n", query, scanned, indexed,
+                scanned == indexed ? "OK" : "MISMATCH");
+    }
+
+    private static int count(QueryPlanner qplanner, String query) {
+        mute();
+        Transaction tx = new Transaction();
+        Scan s = new Planner(qplanner, null).createQueryPlan(query, tx).open();
+        int rows = 0;
+        while (s.next())
+            rows++;
+        s.close();
+        tx.commit();
+        unmute();
+        return rows;
+    }
+}
@@ -0,0 +1,102 @@
+package rs.raf.simpledb.benchmark;
+
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.console;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.createDB;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.deleteDB;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.mute;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.planText;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.unmute;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Random;
+
+import rs.raf.simpledb.MainQueryRunner;
+import rs.raf.simpledb.SimpleDBEngine;
+import rs.raf.simpledb.planner.HeuristicQueryPlanner;
+import rs.raf.simpledb.planner.Planner;
+import rs.raf.simpledb.query.Plan;
+import rs.raf.simpledb.query.operators.Scan;
+import rs.raf.simpledb.tx.Transaction;
+
+/*
+  Upiti koje indeks pokriva (index-only) i upiti koji citaju i slogove tabele.
+
+  Tabela POLAGANJE se puni COPY naredbom (podrazumevano 200000 redova, ili broj
+  zadat kao prvi argument); indeks polagIspitIdx iz seme je na ispitId, a pravi
+  se i B+ stablo na (polagStudId, ocena). Za svaki par upita isti niz kljuceva
+  se pretrazuje 200 puta: prvi upit trazi samo indeksirane kolone, pa ga planer
+  izvrsava bez citanja tabele, a drugi trazi i kolonu koje nema u indeksu.
+  Ispisuje se prosecan broj citanja blokova sa diska po upitu.
+ */
+public class IndexOnlyScanBenchmark {
+    private static final String DB_NAME = "simpledb_indexonlybench";
+    private static final int DEFAULT_ROWS = 200_000;
+    private static final int STUDENTS = 20_000;
+    private static final int ISPITI = 2004;
+    private static final int PROBES = 200;
+    private static final String[][] QUERIES = {
+        {"select ispitId from polaganje where ispitId = %d",
+         "select ispitId, ocena from polaganje where ispitId = %d"},
+        {"select ocena from polaganje where polagStudId = %d and ocena >= 8",
+         "select ocena, ispitId from polaganje where polagStudId = %d and ocena >= 8"},
+    };
+
+    public static void main(String[] args) throws IOException {
+        int rows = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_ROWS;
+        File csv = File.createTempFile("polaganja", ".csv");
+        csv.deleteOnExit();
+        Random random = new Random(42);
+        try (PrintWriter out = new PrintWriter(csv)) {
+            for (int i = 0; i < rows; i++)
+                out.println((1 + random.nextInt(STUDENTS)) + "," + (1 + random.nextInt(ISPITI)) + "," + (5 + random.nextInt(6)));
+        }
+
+        createDB(DB_NAME);
+        mute();
+        MainQueryRunner.executeSQLUpdate("create index polagStOcIdx on polaganje(polagStudId, ocena) using btree");
+        MainQueryRunner.executeSQLUpdate("copy polaganje(polagStudId, ispitId, ocena) from '" + csv.getPath() + "'");
+        unmute();
+        console.printf("%d rows%n", rows);
+
+        for (String[] pair : QUERIES) {
+            int max = pair[0].contains("ispitId =") ? ISPITI : STUDENTS;
+            for (String query : pair) {
+                console.println(query);
+                run(query, max);
+            }
+        }
+        deleteDB(DB_NAME);
+    }
+
+    private static void run(String query, int max) {
+        Random random = new Random(7);
+        long misses = 0, found = 0;
+        boolean indexOnly = false;
+        long start = System.nanoTime();
+        for (int i = 0; i < PROBES; i++) {
+            mute();
+            Transaction tx = new Transaction();
+            Plan plan = new Planner(new HeuristicQueryPlanner(), null)
+                    .createQueryPlan(String.format(query, 1 + random.nextInt(max)), tx);
+            indexOnly = usesIndexOnly(plan);
+            long before = SimpleDBEngine.bufferMgr().misses();
+            Scan s = plan.open();
+            while (s.next())
+                found++;
+            s.close();
+            misses += SimpleDBEngine.bufferMgr().misses() - before;
+            tx.commit();
+            unmute();
+        }
+        long micros = (System.nanoTime() - start) / 1000 / PROBES;
+        console.printf("  %-10s %8.2f disk reads and %6d us per query, %d rows%n",
+                indexOnly ? "index-only" : "index", (double) misses / PROBES, micros, found);
+    }
+
+    // plan se ispisuje u bafer i proverava se da li sadrzi index-only selekciju
+    private static boolean usesIndexOnly(Plan plan) {
+        return planText(plan).contains("(INDEX ONLY)");
+    }
+}
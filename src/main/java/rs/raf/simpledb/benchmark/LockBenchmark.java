@@ -0,0 +1,120 @@
+package rs.raf.simpledb.benchmark;
+
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.console;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.deleteDB;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.mute;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.unmute;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import rs.raf.simpledb.SimpleDBEngine;
+import rs.raf.simpledb.tx.Transaction;
+import rs.raf.simpledb.tx.concurrency.ConcurrencyMgr;
+import rs.raf.simpledb.tx.concurrency.LockAbortException;
+import rs.raf.simpledb.utils.Block;
+
+/*
+  Zakljucavanje blokova pri istovremenom radu vise niti.
+
+  Svaka transakcija procita 10 int-ova iz blokova fajla od 64 bloka, pa upise
+  jedan int i uradi commit. Mere se broj commit-a u sekundi, broj cekanja na
+  katanac i broj otkrivenih deadlock-ova (transakcija tada radi rollback i
+  ponavlja se) za 4 niti (ili broj zadat kao prvi argument):
+    - disjoint: svaka nit cita i pise samo svoj blok, pa niti ne cekaju,
+    - hot: sve niti pisu isti blok, pa se upisi redom cekaju,
+    - deadlock: parovi niti citaju ista dva bloka, pa pisu u suprotnom
+      redosledu; ciklus u grafu cekanja se otkriva odmah, bez isteka vremena.
+ */
+public class LockBenchmark {
+    private static final String DB_NAME = "simpledb_lockbench";
+    private static final String FILE = "lockbench.tbl";
+    private static final int BLOCKS = 64;
+    private static final long MILLIS = 2000;
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = (args.length > 0) ? Integer.parseInt(args[0]) : 4;
+        deleteDB(DB_NAME);
+        SimpleDBEngine.BUFFER_SIZE = Math.max(SimpleDBEngine.BUFFER_SIZE, 2 * BLOCKS);
+        mute();
+        SimpleDBEngine.init(DB_NAME);
+        Transaction tx = new Transaction();
+        for (int b = 0; b < BLOCKS; b++)
+            tx.append(FILE, p -> {});
+        tx.commit();
+        unmute();
+
+        for (String scenario : new String[] {"disjoint", "hot", "deadlock"})
+            run(scenario, threads);
+        deleteDB(DB_NAME);
+    }
+
+    private static void run(String scenario, int threads) throws InterruptedException {
+        long waits = ConcurrencyMgr.lockWaits(), deadlocks = ConcurrencyMgr.deadlocks();
+        AtomicLong commits = new AtomicLong();
+        long end = System.currentTimeMillis() + MILLIS;
+        mute();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            Thread worker = new Thread(() -> {
+                Random random = new Random(id);
+                while (System.currentTimeMillis() < end) {
+                    Transaction tx = new Transaction();
+                    try {
+                        work(tx, scenario, id, random);
+                        tx.commit();
+                        commits.incrementAndGet();
+                    }
+                    catch (LockAbortException e) {
+                        tx.rollback();
+                    }
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers)
+            worker.join();
+        unmute();
+        console.printf("  %-9s %8.0f commits/s, %7d lock waits, %6d deadlocks%n", scenario,
+                commits.get() * 1000.0 / MILLIS, ConcurrencyMgr.lockWaits() - waits,
+                ConcurrencyMgr.deadlocks() - deadlocks);
+    }
+
+    private static void work(Transaction tx, String scenario, int id, Random random) {
+        Block own = new Block(FILE, id % BLOCKS);
+        switch (scenario) {
+            case "disjoint":
+                read(tx, own, 10);
+                write(tx, own, random);
+                break;
+            case "hot":
+                read(tx, own, 10);
+                write(tx, new Block(FILE, 0), random);
+                break;
+            default:
+                // niti 2k i 2k+1 dele blokove a i b i pisu ih u suprotnom redosledu
+                Block a = new Block(FILE, (id / 2) * 2 % BLOCKS), b = new Block(FILE, ((id / 2) * 2 + 1) % BLOCKS);
+                read(tx, a, 5);
+                read(tx, b, 5);
+                write(tx, id % 2 == 0 ? a : b, random);
+                write(tx, id % 2 == 0 ? b : a, random);
+        }
+    }
+
+    private static void read(Transaction tx, Block blk, int n) {
+        tx.pin(blk);
+        for (int i = 0; i < n; i++)
+            tx.getInt(blk, i * 4);
+        tx.unpin(blk);
+    }
+
+    private static void write(Transaction tx, Block blk, Random random) {
+        tx.pin(blk);
+        tx.setInt(blk, random.nextInt(100) * 4, random.nextInt());
+        tx.unpin(blk);
+    }
+}
@@ -0,0 +1,102 @@
+package rs.raf.simpledb.benchmark;
+
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.console;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.createDB;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.deleteDB;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.mute;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.unmute;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import rs.raf.simpledb.InitKolokvijumDB;
+import rs.raf.simpledb.SimpleDBEngine;
+import rs.raf.simpledb.query.operators.TableScan;
+import rs.raf.simpledb.record.RID;
+import rs.raf.simpledb.record.RecordFile;
+import rs.raf.simpledb.record.TableInfo;
+import rs.raf.simpledb.tx.Transaction;
+
+/*
+  Poredjenje citanja blokova preko FileChannel-a i preko memorijski mapiranih fajlova
+  (SimpleDBEngine.FILE_MAPPED_IO).
+
+  Baza se kreira i puni jednom, a zatim se za oba nacina citanja baza ponovo otvara
+  i mere se:
+  1. sekvencijalni prolazi (TableScan) kroz tabele ISPIT i POLAGANJE,
+  2. nasumican pristup slogovima tabele POLAGANJE preko moveToRid.
+  Bafer pul je mali, tako da skoro svaki pristup bloku ide do FileMgr-a.
+  Pokretati iz korenskog direktorijuma projekta (zbog data/*.csv).
+ */
+public class MappedIOBenchmark {
+    private static final String DB_NAME = "simpledb_mmapbench";
+    private static final int SCAN_ROUNDS = 200;
+    private static final int RANDOM_READS = 500_000;
+
+    public static void main(String[] args) {
+        SimpleDBEngine.FILE_MAPPED_IO = false;
+        createDB(DB_NAME);
+        mute();
+        InitKolokvijumDB.genericInsertDBData();
+        unmute();
+
+        console.printf("%-8s %18s %18s%n", "mode", "scan ns/record", "random ns/record");
+        for (int round = 0; round < 2; round++) {
+            for (boolean mapped : new boolean[] {false, true}) {
+                mute();
+                SimpleDBEngine.BUFFER_SIZE = 8;
+                SimpleDBEngine.FILE_MAPPED_IO = mapped;
+                SimpleDBEngine.init(DB_NAME);
+                Transaction tx = new Transaction();
+                TableInfo ispit = SimpleDBEngine.catalogMgr().getTableInfo("ispit", tx);
+                TableInfo polaganje = SimpleDBEngine.catalogMgr().getTableInfo("polaganje", tx);
+
+                long start = System.nanoTime();
+                long records = 0;
+                for (int i = 0; i < SCAN_ROUNDS; i++)
+                    records += scan(ispit, tx) + scan(polaganje, tx);
+                double scanNs = (double) (System.nanoTime() - start) / records;
+
+                List<RID> rids = collectRids(polaganje, tx);
+                Random random = new Random(42);
+                RecordFile rf = new RecordFile(polaganje, tx);
+                start = System.nanoTime();
+                long sum = 0;
+                for (int i = 0; i < RANDOM_READS; i++) {
+                    rf.moveToRid(rids.get(random.nextInt(rids.size())));
+                    sum += rf.getInt("ocena");
+                }
+                double randomNs = (double) (System.nanoTime() - start) / RANDOM_READS;
+                rf.close();
+                tx.commit();
+                unmute();
+
+                if (round > 0)
+                    console.printf("%-8s %18.1f %18.1f%n", mapped ? "mmap" : "channel", scanNs, randomNs);
+                else if (sum < 0)
+                    console.println(sum);
+            }
+        }
+        SimpleDBEngine.FILE_MAPPED_IO = false;
+        deleteDB(DB_NAME);
+    }
+
+    private static int scan(TableInfo ti, Transaction tx) {
+        TableScan ts = new TableScan(ti, tx);
+        int count = 0;
+        while (ts.next())
+            count++;
+        ts.close();
+        return count;
+    }
+
+    private static List<RID> collectRids(TableInfo ti, Transaction tx) {
+        List<RID> rids = new ArrayList<RID>();
+        RecordFile rf = new RecordFile(ti, tx);
+        while (rf.next())
+            rids.add(rf.currentRid());
+        rf.close();
+        return rids;
+    }
+}
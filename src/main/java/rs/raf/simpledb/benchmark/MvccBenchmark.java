@@ -0,0 +1,122 @@
+package rs.raf.simpledb.benchmark;
+
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.console;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.createDB;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.deleteDB;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.mute;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.unmute;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import rs.raf.simpledb.MainQueryRunner;
+import rs.raf.simpledb.SimpleDBEngine;
+import rs.raf.simpledb.query.Plan;
+import rs.raf.simpledb.query.operators.Scan;
+import rs.raf.simpledb.tx.Transaction;
+import rs.raf.simpledb.tx.concurrency.ConcurrencyMgr;
+import rs.raf.simpledb.tx.concurrency.LockAbortException;
+
+/*
+  Upiti koji samo citaju, uz istovremene upise.
+
+  POLAGANJE se napuni COPY naredbom (podrazumevano 20000 redova, ili broj zadat
+  kao prvi argument). Zatim jedna nit u petlji unosi po 5 polaganja i radi commit,
+  dok jedna nit ponavlja upit koji prebroji desetke u celoj tabeli. Upit se
+  izvrsava na dva nacina:
+    - locking: obicna transakcija, koja zakljucava procitane blokove, pa ceka
+      na upise i oni cekaju na nju (a ciklus se prekida rollback-om),
+    - snapshot: transakcija samo za citanje, koja cita bez katanaca verzije
+      zapisa koje su vazile kada je pocela.
+  Mere se broj upita i commit-a u sekundi, prosecno i najduze trajanje upita
+  i broj cekanja na katanac.
+ */
+public class MvccBenchmark {
+    private static final String DB_NAME = "simpledb_mvccbench";
+    private static final int DEFAULT_ROWS = 20_000;
+    private static final int WRITERS = 1;
+    private static final long MILLIS = 3000;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int rows = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_ROWS;
+        File csv = File.createTempFile("polaganja", ".csv");
+        csv.deleteOnExit();
+        Random random = new Random(42);
+        try (PrintWriter out = new PrintWriter(csv)) {
+            for (int i = 0; i < rows; i++)
+                out.println((1 + random.nextInt(20_000)) + "," + (1 + random.nextInt(2000)) + "," + (5 + random.nextInt(6)));
+        }
+        createDB(DB_NAME);
+        mute();
+        MainQueryRunner.executeSQLUpdate("copy polaganje(polagStudId, ispitId, ocena) from '" + csv.getPath() + "'");
+        unmute();
+
+        for (boolean readonly : new boolean[] {false, true})
+            run(readonly);
+        deleteDB(DB_NAME);
+    }
+
+    private static void run(boolean readonly) throws InterruptedException {
+        long waits = ConcurrencyMgr.lockWaits();
+        AtomicLong commits = new AtomicLong(), aborts = new AtomicLong();
+        long end = System.currentTimeMillis() + MILLIS;
+        mute();
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < WRITERS; t++) {
+            Random random = new Random(t);
+            Thread writer = new Thread(() -> {
+                while (System.currentTimeMillis() < end) {
+                    Transaction tx = new Transaction();
+                    try {
+                        for (int i = 0; i < 5; i++)
+                            SimpleDBEngine.planner().executeUpdate("insert into polaganje(polagStudId, ispitId, ocena) values ("
+                                    + (1 + random.nextInt(20_000)) + ", " + (1 + random.nextInt(2000)) + ", " + (5 + random.nextInt(6)) + ")", tx);
+                        tx.commit();
+                        commits.incrementAndGet();
+                    }
+                    catch (LockAbortException e) {
+                        tx.rollback();
+                        aborts.incrementAndGet();
+                    }
+                }
+            });
+            writers.add(writer);
+            writer.start();
+        }
+
+        long queries = 0, totalNanos = 0, maxNanos = 0;
+        while (System.currentTimeMillis() < end) {
+            long start = System.nanoTime();
+            Transaction tx = new Transaction(readonly);
+            try {
+                Plan p = SimpleDBEngine.planner().createQueryPlan("select ocena from polaganje where ocena = 10", tx);
+                Scan s = p.open();
+                while (s.next())
+                    ;
+                s.close();
+                tx.commit();
+            }
+            catch (LockAbortException e) {
+                tx.rollback();
+                aborts.incrementAndGet();
+                continue;
+            }
+            long nanos = System.nanoTime() - start;
+            queries++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+        }
+        for (Thread writer : writers)
+            writer.join();
+        unmute();
+        console.printf("  %-8s %6.1f queries/s (avg %5d ms, max %5d ms), %7.0f commits/s, %6d lock waits, %5d aborts%n",
+                readonly ? "snapshot" : "locking", queries * 1000.0 / MILLIS,
+                queries == 0 ? 0 : totalNanos / queries / 1_000_000, maxNanos / 1_000_000,
+                commits.get() * 1000.0 / MILLIS, ConcurrencyMgr.lockWaits() - waits, aborts.get());
+    }
+}
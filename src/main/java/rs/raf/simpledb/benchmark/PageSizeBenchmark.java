@@ -0,0 +1,72 @@
+package rs.raf.simpledb.benchmark;
+
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.console;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.createDB;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.deleteDB;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.mute;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.unmute;
+
+import rs.raf.simpledb.InitKolokvijumDB;
+import rs.raf.simpledb.SimpleDBEngine;
+import rs.raf.simpledb.query.operators.TableScan;
+import rs.raf.simpledb.record.TableInfo;
+import rs.raf.simpledb.tx.Transaction;
+import rs.raf.simpledb.utils.Page;
+
+/*
+  Merenje propusnosti sekvencijalnog citanja tabela za razlicite velicine stranice
+  (SimpleDBEngine.PAGE_SIZE).
+
+  Za svaku velicinu stranice kreira se nova baza, ucitavaju se CSV podaci,
+  a zatim se vise puta prolazi kroz sve tabele (TableScan).
+  Ispisuju se broj blokova, broj citanja blokova sa diska (promasaji u bafer pulu)
+  i vreme po slogu.
+  Pokretati iz korenskog direktorijuma projekta (zbog data/*.csv).
+ */
+public class PageSizeBenchmark {
+    private static final String DB_NAME = "simpledb_pagesizebench";
+    private static final int[] PAGE_SIZES = {400, 1024, 4096, 16384};
+    private static final String[] TABLES = {"student", "smer", "predmet", "ispitnirok", "ispit", "polaganje"};
+    private static final int SCAN_ROUNDS = 100;
+
+    public static void main(String[] args) {
+        console.printf("%-10s %10s %10s %14s %16s%n", "page size", "blocks", "records", "disk reads", "scan ns/record");
+        for (int pageSize : PAGE_SIZES) {
+            SimpleDBEngine.PAGE_SIZE = pageSize;
+            SimpleDBEngine.BUFFER_SIZE = 8;
+
+            createDB(DB_NAME);
+            mute();
+            InitKolokvijumDB.genericInsertDBData();
+
+            Transaction tx = new Transaction();
+            long blocks = 0;
+            for (String table : TABLES)
+                blocks += tx.size(table + ".tbl");
+            long misses = SimpleDBEngine.bufferMgr().misses();
+            long start = System.nanoTime();
+            long records = 0;
+            for (int i = 0; i < SCAN_ROUNDS; i++)
+                for (String table : TABLES)
+                    records += scan(SimpleDBEngine.catalogMgr().getTableInfo(table, tx), tx);
+            long elapsed = System.nanoTime() - start;
+            misses = SimpleDBEngine.bufferMgr().misses() - misses;
+            tx.commit();
+            unmute();
+
+            console.printf("%-10d %10d %10d %14d %16.1f%n", pageSize, blocks, records / SCAN_ROUNDS,
+                    misses / SCAN_ROUNDS, (double) elapsed / records);
+        }
+        SimpleDBEngine.PAGE_SIZE = Page.DEFAULT_BLOCK_SIZE;
+        deleteDB(DB_NAME);
+    }
+
+    private static int scan(TableInfo ti, Transaction tx) {
+        TableScan ts = new TableScan(ti, tx);
+        int count = 0;
+        while (ts.next())
+            count++;
+        ts.close();
+        return count;
+    }
+}
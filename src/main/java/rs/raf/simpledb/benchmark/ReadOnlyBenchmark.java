@@ -0,0 +1,88 @@
+package rs.raf.simpledb.benchmark;
+
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.console;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.deleteDB;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.mute;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.unmute;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import rs.raf.simpledb.SimpleDBEngine;
+import rs.raf.simpledb.query.Plan;
+import rs.raf.simpledb.query.operators.Scan;
+import rs.raf.simpledb.tx.Transaction;
+
+/*
+  Propusna moc kratkih upita koji samo citaju.
+
+  Tabela od 200 predmeta staje u nekoliko blokova. Svaka nit u petlji pokrece
+  transakciju, izvrsava upit koji trazi jedan predmet po sifri i radi commit.
+  Za 1 do 8 niti (ili do broja zadatog kao prvi argument) meri se broj upita
+  u sekundi kada je transakcija obicna i kada je samo za citanje, posle jednog
+  nemerenog prolaza za zagrevanje. Transakcija samo za citanje ne zakljucava
+  blokove kataloga i tabele vec cita njihove kopije, ne pise u log, ne ispisuje
+  nista na konzolu i broj dobija bez zakljucavanja.
+ */
+public class ReadOnlyBenchmark {
+    private static final String DB_NAME = "simpledb_readonlybench";
+    private static final int ROWS = 200;
+    private static final long MILLIS = 4000;
+
+    public static void main(String[] args) throws InterruptedException {
+        int maxThreads = (args.length > 0) ? Integer.parseInt(args[0]) : 8;
+        deleteDB(DB_NAME);
+        SimpleDBEngine.BUFFER_SIZE = Math.max(SimpleDBEngine.BUFFER_SIZE, 16 * maxThreads);
+        mute();
+        SimpleDBEngine.init(DB_NAME);
+        Transaction tx = new Transaction();
+        SimpleDBEngine.planner().executeUpdate("create table predmet(pid int, predNaziv varchar(25), predGod int)", tx);
+        for (int i = 0; i < ROWS; i++)
+            SimpleDBEngine.planner().executeUpdate("insert into predmet(pid, predNaziv, predGod) values ("
+                    + i + ", 'predmet" + i + "', " + (1 + i % 4) + ")", tx);
+        tx.commit();
+        unmute();
+
+        // zagrevanje, da JIT prevede oba puta pre merenja
+        run(1, false);
+        run(1, true);
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            double readWrite = run(threads, false);
+            double readOnly = run(threads, true);
+            console.printf("  %2d threads %8.0f queries/s read-write, %8.0f queries/s read-only (%.2fx)%n",
+                    threads, readWrite, readOnly, readOnly / readWrite);
+        }
+        deleteDB(DB_NAME);
+    }
+
+    private static double run(int threads, boolean readonly) throws InterruptedException {
+        AtomicLong done = new AtomicLong();
+        long end = System.currentTimeMillis() + MILLIS;
+        mute();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Random random = new Random(t);
+            Thread worker = new Thread(() -> {
+                while (System.currentTimeMillis() < end) {
+                    Transaction tx = new Transaction(readonly);
+                    Plan p = SimpleDBEngine.planner().createQueryPlan(
+                            "select predNaziv from predmet where pid = " + random.nextInt(ROWS), tx);
+                    Scan s = p.open();
+                    while (s.next())
+                        s.getString("prednaziv");
+                    s.close();
+                    tx.commit();
+                    done.incrementAndGet();
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers)
+            worker.join();
+        unmute();
+        return done.get() * 1000.0 / MILLIS;
+    }
+}
@@ -0,0 +1,111 @@
+package rs.raf.simpledb.benchmark;
+
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.console;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.deleteDB;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.mute;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.unmute;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.util.Random;
+
+import rs.raf.simpledb.InitKolokvijumDB;
+import rs.raf.simpledb.MainQueryRunner;
+import rs.raf.simpledb.SimpleDBEngine;
+import rs.raf.simpledb.query.Plan;
+import rs.raf.simpledb.query.operators.Scan;
+import rs.raf.simpledb.tx.Transaction;
+import rs.raf.simpledb.tx.recovery.RecoveryMgr;
+
+/*
+  Vreme ponovnog pokretanja posle pada.
+
+  Zaseban JVM proces napravi bazu, ucita POLAGANJE COPY naredbom (podrazumevano
+  100000 redova, ili broj zadat kao prvi argument, i cetvrtina toga), pa izvrsava
+  kratke transakcije (unos i izmena ocena) dok ga ovaj proces ne ubije posle
+  dve sekunde, usred rada. Zatim se meri vreme od pokretanja baze (oporavak)
+  do odgovora na prvi upit i broj procitanih zapisa loga, bez kontrolnih
+  tacaka i sa kontrolnom tackom svake sekunde. Bez kontrolnih tacaka oporavak
+  cita ceo log od pravljenja baze, pa vreme raste sa velicinom baze; sa njima
+  zavisi samo od posla posle poslednje kontrolne tacke.
+ */
+public class RecoveryBenchmark {
+    private static final String DB_NAME = "simpledb_recoverybench";
+    private static final int DEFAULT_ROWS = 100_000;
+    private static final long RUN_MILLIS = 2000;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("workload")) {
+            workload(Integer.parseInt(args[1]), Long.parseLong(args[2]));
+            return;
+        }
+        int rows = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_ROWS;
+        for (int n : new int[] {rows / 4, rows})
+            for (long checkpointMillis : new long[] {0, 1000}) {
+                deleteDB(DB_NAME);
+                crashWorkload(n, checkpointMillis);
+                mute();
+                long start = System.nanoTime();
+                SimpleDBEngine.init(DB_NAME);
+                long recovered = System.nanoTime();
+                Transaction tx = new Transaction();
+                Plan p = SimpleDBEngine.planner().createQueryPlan("select ocena from polaganje where ispitId = 7", tx);
+                Scan s = p.open();
+                int found = 0;
+                while (s.next())
+                    found++;
+                s.close();
+                tx.commit();
+                long answered = System.nanoTime();
+                unmute();
+                console.printf("  %6d rows, %-16s recovery %6d ms, first query after %6d ms, %7d log records read, %d rows found%n",
+                        n, checkpointMillis > 0 ? "checkpoint 1 s" : "no checkpoints",
+                        (recovered - start) / 1_000_000, (answered - start) / 1_000_000,
+                        RecoveryMgr.recordsRead(), found);
+            }
+        deleteDB(DB_NAME);
+    }
+
+    // pokrece radni proces i ubija ga usred rada
+    private static void crashWorkload(int rows, long checkpointMillis) throws IOException, InterruptedException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        Process child = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                RecoveryBenchmark.class.getName(), "workload", String.valueOf(rows), String.valueOf(checkpointMillis))
+                .redirectErrorStream(true).start();
+        BufferedReader in = new BufferedReader(new InputStreamReader(child.getInputStream()));
+        String line;
+        while ((line = in.readLine()) != null && !line.equals("loaded"))
+            ;
+        Thread.sleep(RUN_MILLIS);
+        child.destroyForcibly();
+        child.waitFor();
+    }
+
+    private static void workload(int rows, long checkpointMillis) throws IOException {
+        mute();
+        File csv = File.createTempFile("polaganja", ".csv");
+        csv.deleteOnExit();
+        Random random = new Random(42);
+        try (PrintWriter out = new PrintWriter(csv)) {
+            for (int i = 0; i < rows; i++)
+                out.println((1 + random.nextInt(20_000)) + "," + (1 + random.nextInt(2000)) + "," + (5 + random.nextInt(6)));
+        }
+        SimpleDBEngine.CHECKPOINT_INTERVAL_MS = checkpointMillis;
+        InitKolokvijumDB.initDB(DB_NAME);
+        InitKolokvijumDB.createDBTables();
+        MainQueryRunner.executeSQLUpdate("copy polaganje(polagStudId, ispitId, ocena) from '" + csv.getPath() + "'");
+        console.println("loaded");
+        console.flush();
+        while (true) {
+            Transaction tx = new Transaction();
+            for (int i = 0; i < 5; i++)
+                SimpleDBEngine.planner().executeUpdate("insert into polaganje(polagStudId, ispitId, ocena) values ("
+                        + (1 + random.nextInt(20_000)) + ", " + (1 + random.nextInt(2000)) + ", " + (5 + random.nextInt(6)) + ")", tx);
+            SimpleDBEngine.planner().executeUpdate("update polaganje set ocena = 10 where ispitId = " + (1 + random.nextInt(2000)), tx);
+            tx.commit();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package rs.raf.simpledb.benchmark;
+
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.console;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.createDB;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.deleteDB;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.mute;
+import static rs.raf.simpledb.benchmark.BenchmarkSupport.unmute;
+
+import rs.raf.simpledb.InitKolokvijumDB;
+import rs.raf.simpledb.MainQueryRunner;
+import rs.raf.simpledb.SimpleDBEngine;
+import rs.raf.simpledb.utils.BufferMgr;
+
+/*
+  Poredjenje politika zamene bafera na studentskom opterecenju iz MainQueryRunner-a.
+
+  Za svaku velicinu pula i svaku politiku:
+  1. kreira se nova baza i ucitavaju se CSV podaci (faza "load"),
+  2. izvrsavaju se upit 3 i demonstracija Block Nested Loop Join-a (faza "query").
+  Za obe faze se ispisuje procenat pogodaka (hit ratio) u bafer pulu.
+  Pokretati iz korenskog direktorijuma projekta (zbog data/*.csv).
+ */
+public class ReplacementPolicyBenchmark {
+    private static final String DB_NAME = "simpledb_policybench";
+    private static final String[] POLICIES = {"lru", "clock", "lru2", "2q"};
+    private static final int[] POOL_SIZES = {8, 32, 128};
+
+    public static void main(String[] args) {
+        console.printf("%-6s %-7s %12s %12s %12s%n", "pool", "policy", "load hit%", "query hit%", "query misses");
+        for (int poolSize : POOL_SIZES) {
+            for (String policy : POLICIES) {
+                SimpleDBEngine.BUFFER_SIZE = poolSize;
+                SimpleDBEngine.BUFFER_POLICY = policy;
+
+                createDB(DB_NAME);
+                mute();
+                InitKolokvijumDB.genericInsertDBData();
+                BufferMgr bm = SimpleDBEngine.bufferMgr();
+                long loadHits = bm.hits(), loadMisses = bm.misses();
+
+                MainQueryRunner.executeQuery3();
+                MainQueryRunner.demonstrateBlockNestedLoopJoin();
+                long queryHits = bm.hits() - loadHits, queryMisses = bm.misses() - loadMisses;
+                unmute();
+
+                console.printf("%-6d %-7s %11.2f%% %11.2f%% %12d%n", poolSize, policy,
+                        ratio(loadHits, loadMisses), ratio(queryHits, queryMisses), queryMisses);
+            }
+        }
+        deleteDB(DB_NAME);
+    }
+
+    private static double ratio(long hits, long misses) {
+        return 100.0 * hits / Math.max(1, hits + misses);
+    }
+}
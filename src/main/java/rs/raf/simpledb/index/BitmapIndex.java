@@ -0,0 +1,338 @@
+package rs.raf.simpledb.index;
+
+import rs.raf.simpledb.SimpleDBEngine;
+import rs.raf.simpledb.query.Constant;
+import rs.raf.simpledb.query.operators.TableScan;
+import rs.raf.simpledb.record.RID;
+import rs.raf.simpledb.record.Schema;
+import rs.raf.simpledb.record.TableInfo;
+import rs.raf.simpledb.tx.Transaction;
+import rs.raf.simpledb.utils.Block;
+import rs.raf.simpledb.utils.Page;
+
+/**
+ * A bitmap implementation of the Index interface,
+ * meant for fields having few distinct values.
+ * <p>
+ * Each record of the indexed table has a position,
+ * block*slots+id, where slots is the number of records
+ * per block of the table. Each search key has a bitmap
+ * with one bit per position, which is set if the record
+ * at that position has the key.
+ * <p>
+ * The keys are kept in the table idxname+"val", each with
+ * the number n of its bitmap. A bitmap is divided into chunks
+ * of one block each, kept in the file idxname+"bits".
+ * The file idxname+"map"+n holds one integer per chunk of
+ * bitmap n: the block of the chunk plus one, or 0 if none of
+ * the chunk's bits is set, in which case the chunk is not
+ * stored at all.
+ * <p>
+ * A search reads the key table, the chunk map and the
+ * stored chunks of the key, and finds the records in
+ * RID order, so that the records of several keys or of
+ * several indexes can be intersected without sorting.
+ * @author Edward Sciore
+ */
+public class BitmapIndex implements Index {
+   private String idxname;
+   private Schema valsch = new Schema();
+   private TableInfo valTi;
+   private String bitsfile;
+   private int slots, perblock, chunkbits;
+   private Transaction tx;
+   private Constant searchkey = null;
+   private String mapfile = null;
+   private int chunks, chunk, word, bits, currentpos;
+   private Block chunkblk = null;
+
+   /**
+    * Opens a bitmap index for the specified index.
+    * @param idxname the name of the index
+    * @param sch the schema of the index records
+    * @param slots the number of records per block of the indexed table
+    * @param tx the calling transaction
+    */
+   public BitmapIndex(String idxname, Schema sch, int slots, Transaction tx) {
+      this.idxname = idxname;
+      this.slots = slots;
+      this.tx = tx;
+      IndexKey.addFields(valsch, sch);
+      valsch.addIntField("bitmap");
+      valTi = new TableInfo(idxname + "val", valsch);
+      bitsfile = idxname + "bits.tbl";
+      perblock = SimpleDBEngine.fileMgr().blockSize() / Page.INT_SIZE;
+      chunkbits = perblock * Integer.SIZE;
+   }
+
+   /**
+    * Positions the index before the first record
+    * having the specified search key, i.e. before
+    * the first chunk of the key's bitmap.
+    * @see rs.raf.simpledb.index.Index#beforeFirst(rs.raf.simpledb.query.Constant)
+    */
+   public void beforeFirst(Constant searchkey) {
+      close();
+      this.searchkey = searchkey;
+      int n = bitmapOf(searchkey, false);
+      mapfile = (n < 0) ? null : mapFile(n);
+      chunks = (n < 0) ? 0 : tx.size(mapfile) * perblock;
+      chunk = -1;
+      bits = 0;
+   }
+
+   /**
+    * Bitmap indexes do not keep their keys in order,
+    * so range scans are not supported.
+    * @see rs.raf.simpledb.index.Index#beforeRange(rs.raf.simpledb.query.Constant, rs.raf.simpledb.query.Constant)
+    */
+   public void beforeRange(Constant lo, Constant hi) {
+      throw new UnsupportedOperationException("bitmap index " + idxname + " does not support range scans");
+   }
+
+   /**
+    * Moves to the position of the next set bit of the
+    * bitmap, reading the next stored chunk when the
+    * current one has no more set bits.
+    * @see rs.raf.simpledb.index.Index#next()
+    */
+   public boolean next() {
+      while (true) {
+         if (bits != 0) {
+            currentpos = chunk * chunkbits + word * Integer.SIZE + Integer.numberOfTrailingZeros(bits);
+            bits &= bits - 1;
+            return true;
+         }
+         if (chunkblk != null && word + 1 < perblock) {
+            word++;
+            bits = tx.getInt(chunkblk, word * Page.INT_SIZE);
+         }
+         else if (!nextChunk())
+            return false;
+      }
+   }
+
+   /**
+    * Returns the RID of the record at the current position.
+    * @see rs.raf.simpledb.index.Index#getDataRid()
+    */
+   public RID getDataRid() {
+      return new RID(currentpos / slots, currentpos % slots);
+   }
+
+   /**
+    * Returns the search key, which is the dataval
+    * of every record found.
+    * @see rs.raf.simpledb.index.Index#getDataVal()
+    */
+   public Constant getDataVal() {
+      return searchkey;
+   }
+
+   /**
+    * Sets the bit of the record in the bitmap of the key,
+    * adding the key and the chunk of the bit if necessary.
+    * @see rs.raf.simpledb.index.Index#insert(rs.raf.simpledb.query.Constant, rs.raf.simpledb.record.RID)
+    */
+   public void insert(Constant dataval, RID datarid) {
+      close();
+      int n = bitmapOf(dataval, true);
+      int pos = position(datarid);
+      int[] words = new int[perblock];
+      words[(pos % chunkbits) / Integer.SIZE] = 1 << (pos % Integer.SIZE);
+      orChunk(n, pos / chunkbits, words);
+   }
+
+   /**
+    * Clears the bit of the record in the bitmap of the key.
+    * Chunks whose bits are all cleared are kept.
+    * @see rs.raf.simpledb.index.Index#delete(rs.raf.simpledb.query.Constant, rs.raf.simpledb.record.RID)
+    */
+   public void delete(Constant dataval, RID datarid) {
+      close();
+      int n = bitmapOf(dataval, false);
+      if (n < 0)
+         return;
+      int pos = position(datarid);
+      int blknum = getEntry(mapFile(n), pos / chunkbits);
+      if (blknum < 0)
+         return;
+      Block blk = new Block(bitsfile, blknum);
+      int offset = (pos % chunkbits) / Integer.SIZE * Page.INT_SIZE;
+      tx.pin(blk);
+      tx.setInt(blk, offset, tx.getInt(blk, offset) & ~(1 << (pos % Integer.SIZE)));
+      tx.unpin(blk);
+   }
+
+   /**
+    * Closes the index by unpinning the current chunk.
+    * @see rs.raf.simpledb.index.Index#close()
+    */
+   public void close() {
+      if (chunkblk != null) {
+         tx.unpin(chunkblk);
+         chunkblk = null;
+      }
+   }
+
+   /**
+    * Returns the number of distinct search keys in the index.
+    * @return the number of keys
+    */
+   public int keyCount() {
+      TableScan ts = new TableScan(valTi, tx);
+      int count = 0;
+      while (ts.next())
+         count++;
+      ts.close();
+      return count;
+   }
+
+   /**
+    * Returns a loader that adds many records
+    * to the bitmaps of this index, writing each
+    * chunk once when the records come in RID order.
+    * @return a loader for the index
+    */
+   public BitmapLoader loader() {
+      return new BitmapLoader(this);
+   }
+
+   /**
+    * Estimates the number of block accesses required
+    * to find all index records having a particular
+    * search key: the block of the keys, the chunk map,
+    * and one chunk for every chunkbits positions of the table.
+    * @param datablocks the number of blocks of the indexed table
+    * @param slots the number of records per block of the indexed table
+    * @return the estimated traversal cost
+    */
+   public static int searchCost(int datablocks, int slots) {
+      int perblock = SimpleDBEngine.fileMgr().blockSize() / Page.INT_SIZE;
+      long positions = (long) datablocks * slots;
+      int chunks = (int) ((positions + perblock * Integer.SIZE - 1) / (perblock * Integer.SIZE));
+      return 2 + chunks / perblock + chunks;
+   }
+
+   /**
+    * Returns the position of the record in the bitmaps.
+    */
+   int position(RID rid) {
+      return rid.blockNumber() * slots + rid.id();
+   }
+
+   /**
+    * Returns the number of positions in a chunk.
+    */
+   int chunkBits() {
+      return chunkbits;
+   }
+
+   /**
+    * Returns the number of the bitmap of the key,
+    * adding the key to the table of keys if it is not
+    * there and create is true; otherwise returns -1.
+    */
+   int bitmapOf(Constant key, boolean create) {
+      TableScan ts = new TableScan(valTi, tx);
+      int count = 0;
+      while (ts.next()) {
+         if (IndexKey.read(valsch, ts::getVal).equals(key)) {
+            int n = ts.getInt("bitmap");
+            ts.close();
+            return n;
+         }
+         count++;
+      }
+      if (create) {
+         ts.insert();
+         ts.setInt("bitmap", count);
+         IndexKey.write(valsch, key, ts::setVal);
+      }
+      ts.close();
+      return create ? count : -1;
+   }
+
+   /**
+    * Sets the specified bits of a chunk of bitmap n.
+    * A chunk that is not stored yet is appended with its bits.
+    * @param n the bitmap
+    * @param k the chunk
+    * @param words the bits to set, one integer per word of the chunk
+    */
+   void orChunk(int n, int k, int[] words) {
+      String mapfile = mapFile(n);
+      int blknum = getEntry(mapfile, k);
+      if (blknum < 0) {
+         Block blk = tx.append(bitsfile, new WordFormatter(words));
+         setEntry(mapfile, k, blk.number());
+         return;
+      }
+      Block blk = new Block(bitsfile, blknum);
+      tx.pin(blk);
+      for (int w=0; w<perblock; w++)
+         if (words[w] != 0) {
+         int old = tx.getInt(blk, w * Page.INT_SIZE);
+         if ((old | words[w]) != old)
+            tx.setInt(blk, w * Page.INT_SIZE, old | words[w]);
+      }
+      tx.unpin(blk);
+   }
+
+   /**
+    * Pins the next stored chunk of the bitmap.
+    * @return false if there are no more chunks
+    */
+   private boolean nextChunk() {
+      close();
+      while (++chunk < chunks) {
+         int blknum = getEntry(mapfile, chunk);
+         if (blknum >= 0) {
+            chunkblk = new Block(bitsfile, blknum);
+            tx.pin(chunkblk);
+            word = -1;
+            return true;
+         }
+      }
+      return false;
+   }
+
+   private String mapFile(int n) {
+      return idxname + "map" + n + ".tbl";
+   }
+
+   private int getEntry(String mapfile, int k) {
+      if (k / perblock >= tx.size(mapfile))
+         return -1;
+      Block blk = new Block(mapfile, k / perblock);
+      tx.pin(blk);
+      int blknum = tx.getInt(blk, k % perblock * Page.INT_SIZE) - 1;
+      tx.unpin(blk);
+      return blknum;
+   }
+
+   private void setEntry(String mapfile, int k, int blknum) {
+      while (tx.size(mapfile) <= k / perblock)
+         tx.append(mapfile, new WordFormatter(new int[perblock]));
+      Block blk = new Block(mapfile, k / perblock);
+      tx.pin(blk);
+      tx.setInt(blk, k % perblock * Page.INT_SIZE, blknum + 1);
+      tx.unpin(blk);
+   }
+
+   /**
+    * Formats a new block with the specified integers.
+    */
+   static class WordFormatter implements Page.PageFormatter {
+      private int[] words;
+
+      WordFormatter(int[] words) {
+         this.words = words;
+      }
+
+      public void format(Page p) {
+         for (int w=0; w<words.length; w++)
+            p.setInt(w * Page.INT_SIZE, words[w]);
+      }
+   }
+}
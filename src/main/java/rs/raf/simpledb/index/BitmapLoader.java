@@ -0,0 +1,85 @@
+package rs.raf.simpledb.index;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import rs.raf.simpledb.query.Constant;
+import rs.raf.simpledb.record.RID;
+
+/**
+ * Adds many records to a bitmap index in a single pass.
+ * Each key keeps the chunk of its bitmap that it is
+ * currently filling in memory; the chunk is written when a
+ * record of the key falls into another chunk, so that records
+ * given in RID order write each chunk once.
+ * Existing bits of the bitmaps are kept.
+ * @author Edward Sciore
+ */
+public class BitmapLoader implements IndexLoader {
+   /**
+    * The number of chunks kept in memory,
+    * beyond which all of them are written.
+    */
+   private static final int MAX_PENDING = 1000;
+
+   private BitmapIndex idx;
+   private Map<Constant,Integer> bitmaps = new HashMap<Constant,Integer>();
+   private Map<Constant,Integer> chunks = new HashMap<Constant,Integer>();
+   private Map<Constant,int[]> pending = new HashMap<Constant,int[]>();
+   private int count = 0;
+
+   /**
+    * Creates a loader for the specified bitmap index.
+    * @param idx the index
+    */
+   BitmapLoader(BitmapIndex idx) {
+      this.idx = idx;
+   }
+
+   /**
+    * Sets the bit of the record in the pending chunk of its key.
+    * @param dataval the dataval of the record
+    * @param datarid the dataRID of the record
+    */
+   public void add(Constant dataval, RID datarid) {
+      int pos = idx.position(datarid);
+      int chunkbits = idx.chunkBits();
+      int k = pos / chunkbits;
+      Integer current = chunks.get(dataval);
+      if (current != null && current != k)
+         write(dataval);
+      int[] words = pending.get(dataval);
+      if (words == null) {
+         if (pending.size() >= MAX_PENDING)
+            writeAll();
+         words = new int[chunkbits / Integer.SIZE];
+         pending.put(dataval, words);
+         chunks.put(dataval, k);
+      }
+      words[(pos % chunkbits) / Integer.SIZE] |= 1 << (pos % Integer.SIZE);
+      count++;
+   }
+
+   /**
+    * Writes the pending chunks.
+    * @return the number of records added
+    */
+   public int finish() {
+      writeAll();
+      return count;
+   }
+
+   private void writeAll() {
+      for (Constant key : pending.keySet().toArray(new Constant[0]))
+         write(key);
+   }
+
+   private void write(Constant key) {
+      Integer n = bitmaps.get(key);
+      if (n == null) {
+         n = idx.bitmapOf(key, true);
+         bitmaps.put(key, n);
+      }
+      idx.orChunk(n, chunks.remove(key), pending.remove(key));
+   }
+}
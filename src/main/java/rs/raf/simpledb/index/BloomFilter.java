@@ -0,0 +1,156 @@
+package rs.raf.simpledb.index;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import rs.raf.simpledb.SimpleDBEngine;
+import rs.raf.simpledb.query.Constant;
+
+/**
+ * An in-memory Bloom filter of search keys.
+ * A key is added by setting {@link #HASHES} bits, whose positions
+ * are derived from the hash of the key; a key none of whose
+ * bits is clear may have been added, and a key having a clear
+ * bit certainly was not.
+ * A join uses a filter of the keys of its inner side to skip
+ * the outer records that cannot match; the filters count the
+ * keys checked and the keys found absent, over all filters.
+ * @author Edward Sciore
+ */
+public class BloomFilter {
+   /**
+    * The number of bits set per key.
+    */
+   public static final int HASHES = 7;
+
+   private static LongAdder probes = new LongAdder(), skipped = new LongAdder();
+
+   private int[] words;
+   private int numbits;
+
+   /**
+    * Creates an empty filter of the specified size.
+    * @param numbits the number of bits, a multiple of 32
+    */
+   public BloomFilter(int numbits) {
+      this.numbits = numbits;
+      words = new int[numbits / Integer.SIZE];
+   }
+
+   /**
+    * Returns the number of bits of a filter meant for the
+    * specified number of keys, rounded up to whole words
+    * (see {@link SimpleDBEngine#BLOOM_BITS_PER_KEY}).
+    * @param keys the expected number of distinct keys
+    * @return the number of bits
+    */
+   public static int bitsFor(int keys) {
+      long bits = Math.max(1, (long) keys * SimpleDBEngine.BLOOM_BITS_PER_KEY);
+      bits = (bits + Integer.SIZE - 1) / Integer.SIZE * Integer.SIZE;
+      return (int) Math.min(bits, Integer.MAX_VALUE / 2);
+   }
+
+   /**
+    * Adds the key to the filter.
+    * @param key the key
+    */
+   public void add(Constant key) {
+      for (int i=0; i<HASHES; i++) {
+         int pos = position(key, i, numbits);
+         words[pos / Integer.SIZE] |= 1 << (pos % Integer.SIZE);
+      }
+   }
+
+   /**
+    * Returns false if the key was certainly not added to the filter.
+    * The check is counted, as is its result if it is false.
+    * @param key the key
+    * @return true if the key may have been added
+    */
+   public boolean mightContain(Constant key) {
+      probes.increment();
+      for (int i=0; i<HASHES; i++) {
+         int pos = position(key, i, numbits);
+         if ((words[pos / Integer.SIZE] & (1 << (pos % Integer.SIZE))) == 0) {
+            skipped.increment();
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Returns the number of bits of the filter.
+    * @return the number of bits
+    */
+   public int numBits() {
+      return numbits;
+   }
+
+   /**
+    * Estimates the number of distinct keys added to the filter
+    * from the fraction of its bits that are set.
+    * A filter whose bits are all set is estimated to hold
+    * one key per bit.
+    * @return the estimated number of keys
+    */
+   public int estimatedKeys() {
+      int set = 0;
+      for (int w : words)
+         set += Integer.bitCount(w);
+      if (set == numbits)
+         return numbits;
+      double keys = -(double) numbits / HASHES * Math.log(1 - (double) set / numbits);
+      return (int) Math.round(keys);
+   }
+
+   /**
+    * Returns the specified word of the filter.
+    * @param w the word
+    * @return its 32 bits
+    */
+   public int word(int w) {
+      return words[w];
+   }
+
+   /**
+    * Sets the specified word of the filter.
+    * @param w the word
+    * @param bits its 32 bits
+    */
+   public void setWord(int w, int bits) {
+      words[w] = bits;
+   }
+
+   /**
+    * Returns the number of keys checked by all filters
+    * since the system started.
+    * @return the number of checks
+    */
+   public static long probes() {
+      return probes.sum();
+   }
+
+   /**
+    * Returns the number of keys that all filters found absent
+    * since the system started, each of which saved its join
+    * the search for its matches.
+    * @return the number of skipped probes
+    */
+   public static long skippedProbes() {
+      return skipped.sum();
+   }
+
+   /**
+    * Returns the position of the i-th bit of the key,
+    * by double hashing.
+    * @param key the key
+    * @param i the number of the bit, less than {@link #HASHES}
+    * @param numbits the number of bits of the filter
+    * @return the position of the bit
+    */
+   static int position(Constant key, int i, int numbits) {
+      int h1 = ExtHashIndex.hash(key);
+      int h2 = Integer.reverse(h1) | 1;
+      return Integer.remainderUnsigned(h1 + i * h2, numbits);
+   }
+}
@@ -0,0 +1,170 @@
+package rs.raf.simpledb.index;
+
+import rs.raf.simpledb.SimpleDBEngine;
+import rs.raf.simpledb.query.Constant;
+import rs.raf.simpledb.tx.Transaction;
+import rs.raf.simpledb.utils.Block;
+import rs.raf.simpledb.utils.Page;
+
+/**
+ * A persistent Bloom filter of the keys of a table.
+ * It cannot find records, so it is not an {@link Index}:
+ * it only tells that no record has a key, so that a join
+ * can skip the search for it (see {@link BloomFilter}).
+ * The keys of new records are added to it as they are inserted.
+ * <p>
+ * The filter is kept in the file filtername+"bloom".
+ * Block 0 holds the number of bits of the filter;
+ * the bits follow, from block 1 on.
+ * The number of keys is not kept, so that the inserters into
+ * a table do not all modify, and lock, block 0; it is estimated
+ * from the bits when the filter is built.
+ * A filter is sized for the keys of its table when the
+ * filter is built; a build that would overload the filter
+ * recreates it, larger. Deletions do not clear bits,
+ * since other keys may share them.
+ * @author Edward Sciore
+ */
+public class BloomFilterFile {
+   private String filename;
+   private Transaction tx;
+   private int perblock;
+
+   /**
+    * Opens the specified Bloom filter.
+    * @param filtername the name of the filter
+    * @param tx the calling transaction
+    */
+   public BloomFilterFile(String filtername, Transaction tx) {
+      this.tx = tx;
+      filename = filtername + "bloom.tbl";
+      perblock = SimpleDBEngine.fileMgr().blockSize() / Page.INT_SIZE;
+   }
+
+   /**
+    * Sets the bits of the key, creating the filter
+    * with its smallest size if it does not exist.
+    * Keys are never removed, since their bits
+    * may be shared by other keys.
+    * @param dataval the key
+    */
+   public void add(Constant dataval) {
+      if (numBits() == 0)
+         reset(0);
+      int numbits = numBits();
+      for (int i=0; i<BloomFilter.HASHES; i++) {
+         int pos = BloomFilter.position(dataval, i, numbits);
+         int w = pos / Integer.SIZE;
+         int mask = 1 << (pos % Integer.SIZE);
+         Block blk = wordBlock(w);
+         tx.pin(blk);
+         // lock the block before reading it, instead of upgrading an SLock
+         tx.xLock(blk);
+         int bits = tx.getInt(blk, wordOffset(w));
+         if ((bits & mask) == 0)
+            tx.setInt(blk, wordOffset(w), bits | mask);
+         tx.unpin(blk);
+      }
+   }
+
+   /**
+    * Returns the number of bits of the filter,
+    * or 0 if it does not exist yet.
+    * @return the number of bits
+    */
+   public int numBits() {
+      return (tx.size(filename) == 0) ? 0 : getHeader(0);
+   }
+
+   /**
+    * Estimates the number of keys added to the filter
+    * (see {@link BloomFilter#estimatedKeys()}).
+    * It reads the whole filter.
+    * @return the estimated number of keys
+    */
+   public int keyCount() {
+      return filter().estimatedKeys();
+   }
+
+   /**
+    * Reads the whole filter into memory.
+    * @return the filter
+    */
+   public BloomFilter filter() {
+      BloomFilter filter = new BloomFilter(numBits());
+      int words = filter.numBits() / Integer.SIZE;
+      for (int first=0; first<words; first+=perblock) {
+         Block blk = wordBlock(first);
+         tx.pin(blk);
+         for (int w=first; w<Math.min(words, first+perblock); w++)
+            filter.setWord(w, tx.getInt(blk, wordOffset(w)));
+         tx.unpin(blk);
+      }
+      return filter;
+   }
+
+   /**
+    * Sets the bits of the specified in-memory filter,
+    * which must have as many bits as this one.
+    * @param filter the filter whose bits are added
+    */
+   public void load(BloomFilter filter) {
+      int words = filter.numBits() / Integer.SIZE;
+      for (int first=0; first<words; first+=perblock) {
+         Block blk = wordBlock(first);
+         tx.pin(blk);
+         for (int w=first; w<Math.min(words, first+perblock); w++) {
+            int old = tx.getInt(blk, wordOffset(w));
+            if ((old | filter.word(w)) != old)
+               tx.setInt(blk, wordOffset(w), old | filter.word(w));
+         }
+         tx.unpin(blk);
+      }
+   }
+
+   /**
+    * Recreates the filter, empty, with room for the specified
+    * number of keys, but at least one block of bits.
+    * @param keys the expected number of keys
+    */
+   public void reset(int keys) {
+      int numbits = Math.max(BloomFilter.bitsFor(keys), perblock * Integer.SIZE);
+      numbits = (numbits + perblock * Integer.SIZE - 1) / (perblock * Integer.SIZE) * (perblock * Integer.SIZE);
+      int blocks = 1 + numbits / (perblock * Integer.SIZE);
+      int existing = tx.size(filename);
+      for (int b=1; b<Math.min(existing, blocks); b++) {
+         Block blk = new Block(filename, b);
+         tx.pin(blk);
+         for (int w=0; w<perblock; w++)
+            if (tx.getInt(blk, w * Page.INT_SIZE) != 0)
+            tx.setInt(blk, w * Page.INT_SIZE, 0);
+         tx.unpin(blk);
+      }
+      for (int b=existing; b<blocks; b++)
+         tx.append(filename, new BitmapIndex.WordFormatter(new int[perblock]));
+      setHeader(0, numbits);
+   }
+
+   private Block wordBlock(int w) {
+      return new Block(filename, 1 + w / perblock);
+   }
+
+   private int wordOffset(int w) {
+      return w % perblock * Page.INT_SIZE;
+   }
+
+   private int getHeader(int i) {
+      Block blk = new Block(filename, 0);
+      tx.pin(blk);
+      int val = tx.getInt(blk, i * Page.INT_SIZE);
+      tx.unpin(blk);
+      return val;
+   }
+
+   private void setHeader(int i, int val) {
+      Block blk = new Block(filename, 0);
+      tx.pin(blk);
+      tx.setInt(blk, i * Page.INT_SIZE, val);
+      tx.unpin(blk);
+   }
+}
@@ -0,0 +1,474 @@
+package rs.raf.simpledb.index;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import rs.raf.simpledb.SimpleDBEngine;
+import rs.raf.simpledb.index.btree.BTPageFormatter;
+import rs.raf.simpledb.index.btree.BTreePage;
+import rs.raf.simpledb.query.Constant;
+import rs.raf.simpledb.record.RID;
+import rs.raf.simpledb.record.Schema;
+import rs.raf.simpledb.record.TableInfo;
+import rs.raf.simpledb.tx.Transaction;
+import rs.raf.simpledb.utils.Block;
+import rs.raf.simpledb.utils.Page;
+
+/**
+ * An extendible hash implementation of the Index interface.
+ * <p>
+ * The directory is kept in the file idxname+"dir":
+ * its first integer is the global depth d, followed by
+ * the 2<sup>d</sup> block numbers of the buckets.
+ * A search key whose hash ends in the bits i belongs to
+ * the bucket of directory entry i.
+ * <p>
+ * The buckets are blocks of the file idxname+"bkt", in the
+ * format of B-tree leaves (see {@link BTreePage}): each keeps
+ * its records sorted by dataval, and its flag is the local
+ * depth of the bucket, i.e. the number of hash bits shared by
+ * its keys. A full bucket is split in two on the next hash bit,
+ * doubling the directory if the local depth reaches the global one.
+ * <p>
+ * Splitting cannot separate the records of one key, so a key
+ * that fills a large part of a full bucket is moved off the
+ * bucket instead: its records go to a chain of duplicate blocks
+ * in the same file, and the bucket keeps a single record for
+ * the key whose dataRID block is -1 and whose id is the first
+ * block of the chain. A bucket that reached {@link #MAX_DEPTH}
+ * continues in a chain of overflow blocks.
+ * Buckets are not merged on deletion.
+ * <p>
+ * A search thus reads one directory block and one bucket
+ * block, plus the duplicate blocks of a frequent key,
+ * however large the index grows.
+ * @author Edward Sciore
+ */
+public class ExtHashIndex implements Index {
+   /**
+    * The largest global depth of the directory.
+    */
+   public static int MAX_DEPTH = 20;
+
+   private Transaction tx;
+   private String dirfile;
+   private TableInfo bucketTi;
+   private int perblock;
+   private Constant searchkey = null;
+   private BTreePage page = null, dups = null;
+   private int currentslot, dupslot;
+
+   /**
+    * Opens an extendible hash index for the specified index,
+    * creating its directory and first bucket if they did not exist.
+    * @param idxname the name of the index
+    * @param sch the schema of the index records
+    * @param tx the calling transaction
+    */
+   public ExtHashIndex(String idxname, Schema sch, Transaction tx) {
+      this.tx = tx;
+      bucketTi = new TableInfo(idxname + "bkt", sch);
+      dirfile = idxname + "dir.tbl";
+      perblock = SimpleDBEngine.fileMgr().blockSize() / Page.INT_SIZE;
+      if (tx.size(dirfile) == 0) {
+         // global depth 0, and the only entry points to bucket 0
+         tx.append(dirfile, new ZeroFormatter());
+         tx.append(bucketTi.fileName(), new BTPageFormatter(bucketTi, 0));
+      }
+   }
+
+   /**
+    * Positions the index before the first index record
+    * having the specified search key, in the bucket
+    * that the directory assigns to the key.
+    * @see rs.raf.simpledb.index.Index#beforeFirst(rs.raf.simpledb.query.Constant)
+    */
+   public void beforeFirst(Constant searchkey) {
+      close();
+      this.searchkey = searchkey;
+      page = openBucket(findBucket(hash(searchkey)));
+      currentslot = page.findSlotBefore(searchkey);
+   }
+
+   /**
+    * Extendible hash indexes cannot be scanned in key order,
+    * so range scans are not supported.
+    * @see rs.raf.simpledb.index.Index#beforeRange(rs.raf.simpledb.query.Constant, rs.raf.simpledb.query.Constant)
+    */
+   public void beforeRange(Constant lo, Constant hi) {
+      throw new UnsupportedOperationException("extendible hash index does not support range scans");
+   }
+
+   /**
+    * Moves to the next record having the search key.
+    * The records are those of the bucket, or of the duplicate
+    * chain that the bucket points to, and of the bucket's
+    * overflow blocks, if any.
+    * @see rs.raf.simpledb.index.Index#next()
+    */
+   public boolean next() {
+      while (true) {
+         if (dups != null) {
+            dupslot++;
+            if (dupslot < dups.getNumRecs())
+               return true;
+            int nextblk = dups.getNext();
+            dups.close();
+            dups = (nextblk < 0) ? null : openBucket(nextblk);
+            dupslot = -1;
+            continue;
+         }
+         if (page == null)
+            return false;
+         currentslot++;
+         if (currentslot < page.getNumRecs()
+               && page.getDataVal(currentslot).equals(searchkey)) {
+            RID rid = page.getDataRid(currentslot);
+            if (rid.blockNumber() >= 0)
+               return true;
+            dups = openBucket(rid.id());
+            dupslot = -1;
+            continue;
+         }
+         int nextblk = page.getNext();
+         page.close();
+         page = null;
+         if (nextblk >= 0) {
+            page = openBucket(nextblk);
+            currentslot = page.findSlotBefore(searchkey);
+         }
+      }
+   }
+
+   /**
+    * Returns the dataRID of the current index record.
+    * @see rs.raf.simpledb.index.Index#getDataRid()
+    */
+   public RID getDataRid() {
+      if (dups != null)
+         return dups.getDataRid(dupslot);
+      return page.getDataRid(currentslot);
+   }
+
+   /**
+    * Returns the dataval of the current record.
+    * @see rs.raf.simpledb.index.Index#getDataVal()
+    */
+   public Constant getDataVal() {
+      if (dups != null)
+         return dups.getDataVal(dupslot);
+      return page.getDataVal(currentslot);
+   }
+
+   /**
+    * Inserts the specified record.
+    * If the key has a duplicate chain, the record goes there;
+    * otherwise it goes into the bucket. A full bucket first moves
+    * its most frequent key off the bucket, if that key fills at
+    * least a quarter of it, and is otherwise split;
+    * the insertion is then retried.
+    * @see rs.raf.simpledb.index.Index#insert(rs.raf.simpledb.query.Constant, rs.raf.simpledb.record.RID)
+    */
+   public void insert(Constant dataval, RID datarid) {
+      close();
+      int h = hash(dataval);
+      while (true) {
+         int depth = getDepth();
+         BTreePage bucket = openBucket(getEntry(h & mask(depth)));
+         int slot = bucket.findSlotBefore(dataval) + 1;
+         if (slot < bucket.getNumRecs() && bucket.getDataVal(slot).equals(dataval)
+               && bucket.getDataRid(slot).blockNumber() < 0) {
+            insertDuplicate(bucket.getDataRid(slot).id(), dataval, datarid);
+            bucket.close();
+            return;
+         }
+         if (!bucket.isFull()) {
+            bucket.insertLeaf(slot, dataval, datarid);
+            bucket.close();
+            return;
+         }
+         int local = bucket.getFlag();
+         if (!moveOffBucket(bucket)) {
+            if (local >= MAX_DEPTH) {
+               insertOverflow(bucket, dataval, datarid);
+               bucket.close();
+               return;
+            }
+            if (local == depth)
+               doubleDirectory(depth++);
+            split(bucket, local, depth);
+         }
+         bucket.close();
+      }
+   }
+
+   /**
+    * Deletes the specified index record.
+    * @see rs.raf.simpledb.index.Index#delete(rs.raf.simpledb.query.Constant, rs.raf.simpledb.record.RID)
+    */
+   public void delete(Constant dataval, RID datarid) {
+      beforeFirst(dataval);
+      while (next())
+         if (getDataRid().equals(datarid)) {
+         if (dups != null)
+            dups.delete(dupslot);
+         else
+            page.delete(currentslot);
+         break;
+      }
+      close();
+   }
+
+   /**
+    * Closes the index by closing the current bucket page.
+    * @see rs.raf.simpledb.index.Index#close()
+    */
+   public void close() {
+      if (dups != null) {
+         dups.close();
+         dups = null;
+      }
+      if (page != null) {
+         page.close();
+         page = null;
+      }
+   }
+
+   /**
+    * Returns true if the index has no records.
+    * @return true if the index is empty
+    */
+   public boolean isEmpty() {
+      if (getDepth() > 0 || tx.size(bucketTi.fileName()) > 1)
+         return false;
+      BTreePage bucket = openBucket(0);
+      boolean empty = (bucket.getNumRecs() == 0);
+      bucket.close();
+      return empty;
+   }
+
+   /**
+    * Returns a loader that builds this (empty) index
+    * from records given in hash order.
+    * @return a loader for the index
+    */
+   public ExtHashLoader loader() {
+      if (!isEmpty())
+         throw new IllegalStateException("only an empty extendible hash index can be bulk loaded");
+      return new ExtHashLoader(bucketTi, dirfile, tx);
+   }
+
+   /**
+    * Estimates the number of block accesses
+    * required to find all index records having a
+    * particular search key: one directory block and
+    * one bucket block, plus the duplicate blocks
+    * of a frequent key.
+    * @param matches the number of index records having the key
+    * @param rpb the number of index records per block
+    * @return the estimated traversal cost
+    */
+   public static int searchCost(int matches, int rpb) {
+      return 2 + matches / rpb;
+   }
+
+   /**
+    * Returns the hash value of the search key.
+    * The bits of the key's hash code are mixed, since
+    * the directory uses only the lowest bits.
+    * A bulk build adds its records in the order of
+    * these bits (see {@link ExtHashLoader}).
+    * @param key the search key
+    * @return the hash value
+    */
+   public static int hash(Constant key) {
+      int h = key.hashCode();
+      h ^= h >>> 16;
+      h *= 0x85ebca6b;
+      h ^= h >>> 13;
+      h *= 0xc2b2ae35;
+      return h ^ (h >>> 16);
+   }
+
+   private static int mask(int depth) {
+      return (1 << depth) - 1;
+   }
+
+   private int findBucket(int h) {
+      return getEntry(h & mask(getDepth()));
+   }
+
+   /**
+    * Moves the records of the most frequent key of the
+    * full bucket to a new duplicate block, if they fill at
+    * least a quarter of the bucket, leaving a pointer to
+    * that block in their place.
+    * @return true if records were moved
+    */
+   private boolean moveOffBucket(BTreePage bucket) {
+      int n = bucket.getNumRecs(), best = 0, bestlen = 0;
+      for (int slot=0, len=0; slot<n; slot++) {
+         len = (slot > 0 && bucket.getDataVal(slot).equals(bucket.getDataVal(slot-1))) ? len+1 : 1;
+         if (len > bestlen) {
+            best = slot - len + 1;
+            bestlen = len;
+         }
+      }
+      if (bestlen < 2 || bestlen < bucket.capacity() / 4)
+         return false;
+      Constant val = bucket.getDataVal(best);
+      Block head = bucket.appendNew(-1);
+      BTreePage dup = new BTreePage(head, bucketTi, tx);
+      for (int i=0; i<bestlen; i++)
+         dup.insertLeaf(i, val, bucket.getDataRid(best + i));
+      dup.close();
+      for (int i=0; i<bestlen; i++)
+         bucket.delete(best);
+      bucket.insertLeaf(best, val, new RID(-1, head.number()));
+      return true;
+   }
+
+   /**
+    * Inserts the record into the duplicate chain starting at
+    * the specified block.
+    */
+   private void insertDuplicate(int headblk, Constant val, RID rid) {
+      BTreePage head = openBucket(headblk);
+      if (!head.isFull())
+         head.insertLeaf(head.getNumRecs(), val, rid);
+      else
+         insertOverflow(head, val, rid);
+      head.close();
+   }
+
+   /**
+    * Splits the bucket on hash bit local.
+    * The records on one side of the bit move to a new bucket,
+    * as do the directory entries of that side.
+    * The new bucket takes the side having fewer records,
+    * to move as little as possible.
+    * Only a bucket below {@link #MAX_DEPTH} is split,
+    * so it has no overflow blocks.
+    */
+   private void split(BTreePage bucket, int local, int depth) {
+      int bit = 1 << local;
+      int ones = 0, n = bucket.getNumRecs();
+      for (int slot=0; slot<n; slot++)
+         if ((hash(bucket.getDataVal(slot)) & bit) != 0)
+         ones++;
+      int side = (ones * 2 <= n) ? bit : 0;
+      int low = hash(bucket.getDataVal(0)) & (bit - 1);
+
+      Block newblk = bucket.appendNew(local + 1);
+      bucket.setFlag(local + 1);
+      BTreePage newbucket = new BTreePage(newblk, bucketTi, tx);
+      List<Constant> keptvals = new ArrayList<Constant>();
+      List<RID> keptrids = new ArrayList<RID>();
+      int first = -1;
+      for (int slot=0; slot<n; slot++) {
+         Constant val = bucket.getDataVal(slot);
+         RID rid = bucket.getDataRid(slot);
+         if ((hash(val) & bit) == side) {
+            if (first < 0)
+               first = slot;
+            newbucket.insertLeaf(newbucket.getNumRecs(), val, rid);
+         }
+         else if (first >= 0) {
+            keptvals.add(val);
+            keptrids.add(rid);
+         }
+      }
+      newbucket.close();
+      if (first >= 0) {
+         // removing the last record shifts nothing
+         for (int slot=n-1; slot>=first; slot--)
+            bucket.delete(slot);
+         for (int i=0; i<keptvals.size(); i++)
+            bucket.insertLeaf(bucket.getNumRecs(), keptvals.get(i), keptrids.get(i));
+      }
+      for (int i = low | side; i <= mask(depth); i += 2 * bit)
+         setEntry(i, newblk.number());
+   }
+
+   /**
+    * Inserts the record into the block following the specified
+    * full one, linking a new block right after it if that one is
+    * full too, so an insertion never reads more than two blocks
+    * of an overflow or duplicate chain.
+    */
+   private void insertOverflow(BTreePage bucket, Constant val, RID rid) {
+      int nextblk = bucket.getNext();
+      if (nextblk >= 0) {
+         BTreePage overflow = openBucket(nextblk);
+         if (!overflow.isFull()) {
+            overflow.insertLeaf(overflow.findSlotBefore(val)+1, val, rid);
+            overflow.close();
+            return;
+         }
+         overflow.close();
+      }
+      Block newblk = bucket.appendNew(-1);
+      BTreePage overflow = new BTreePage(newblk, bucketTi, tx);
+      overflow.setNext(nextblk);
+      overflow.insertLeaf(0, val, rid);
+      overflow.close();
+      bucket.setNext(newblk.number());
+   }
+
+   /**
+    * Doubles the directory: the new entry i+2<sup>d</sup>
+    * points to the same bucket as entry i.
+    */
+   private void doubleDirectory(int depth) {
+      int size = 1 << depth;
+      int lastblk = (2*size) / perblock;
+      while (tx.size(dirfile) <= lastblk)
+         tx.append(dirfile, new ZeroFormatter());
+      for (int i=0; i<size; i++)
+         setEntry(i + size, getEntry(i));
+      Block hdr = new Block(dirfile, 0);
+      tx.pin(hdr);
+      tx.setInt(hdr, 0, depth + 1);
+      tx.unpin(hdr);
+   }
+
+   private BTreePage openBucket(int blknum) {
+      return new BTreePage(new Block(bucketTi.fileName(), blknum), bucketTi, tx);
+   }
+
+   private int getDepth() {
+      Block hdr = new Block(dirfile, 0);
+      tx.pin(hdr);
+      int depth = tx.getInt(hdr, 0);
+      tx.unpin(hdr);
+      return depth;
+   }
+
+   // entry i is the (i+1)-th integer of the file, after the depth
+
+   private int getEntry(int i) {
+      Block blk = new Block(dirfile, (i+1) / perblock);
+      tx.pin(blk);
+      int blknum = tx.getInt(blk, (i+1) % perblock * Page.INT_SIZE);
+      tx.unpin(blk);
+      return blknum;
+   }
+
+   private void setEntry(int i, int blknum) {
+      Block blk = new Block(dirfile, (i+1) / perblock);
+      tx.pin(blk);
+      tx.setInt(blk, (i+1) % perblock * Page.INT_SIZE, blknum);
+      tx.unpin(blk);
+   }
+
+   /**
+    * Formats a new directory block with zeros.
+    */
+   static class ZeroFormatter implements Page.PageFormatter {
+      public void format(Page p) {
+         int blocksize = SimpleDBEngine.fileMgr().blockSize();
+         for (int pos=0; pos+Page.INT_SIZE<=blocksize; pos += Page.INT_SIZE)
+            p.setInt(pos, 0);
+      }
+   }
+}
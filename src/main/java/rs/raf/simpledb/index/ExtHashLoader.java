@@ -0,0 +1,249 @@
+package rs.raf.simpledb.index;
+
+import java.util.*;
+
+import rs.raf.simpledb.SimpleDBEngine;
+import rs.raf.simpledb.index.btree.BTPageFormatter;
+import rs.raf.simpledb.index.btree.BTreeIndex;
+import rs.raf.simpledb.index.btree.BTreePage;
+import rs.raf.simpledb.query.Constant;
+import rs.raf.simpledb.record.RID;
+import rs.raf.simpledb.record.TableInfo;
+import rs.raf.simpledb.tx.Transaction;
+import rs.raf.simpledb.utils.Block;
+import rs.raf.simpledb.utils.Page;
+
+/**
+ * Builds an empty extendible hash index from index records
+ * that are given in the order of the directory entries,
+ * i.e. by the reversed bits of their hash values
+ * (see {@link #order(Constant)}).
+ * <p>
+ * In that order, the records of every bucket arrive together.
+ * The loader collects the records of the current bucket, starting
+ * with the largest bucket that the position allows; when they
+ * exceed {@link BTreeIndex#FILL_FACTOR} of a block, the bucket is
+ * halved on its next hash bit, and the completed lower half is
+ * written. Runs of one dataval are moved to duplicate chains as
+ * they arrive, as {@link ExtHashIndex} does when inserting.
+ * The directory is written last, when the global depth is known.
+ * @author Edward Sciore
+ */
+public class ExtHashLoader implements IndexLoader {
+   private static final long SPACE = 1L << 32;
+   private Transaction tx;
+   private TableInfo bucketTi;
+   private String dirfile;
+   private int capacity, target, dupmin;
+   // the current bucket holds the orders [start, start + 2^(32-depth))
+   private long start = 0;
+   private int depth = 0;
+   private List<Constant> vals = new ArrayList<Constant>();
+   private List<RID> rids = new ArrayList<RID>();
+   private int runstart = 0;
+   private Constant dupkey = null;
+   private BTreePage duppage = null;
+   private List<int[]> buckets = new ArrayList<int[]>();
+   private long lastorder = -1;
+   private int count = 0;
+
+   /**
+    * Creates a loader for the specified (empty) index.
+    * @param bucketTi the metadata of the bucket file
+    * @param dirfile the name of the directory file
+    * @param tx the calling transaction
+    */
+   ExtHashLoader(TableInfo bucketTi, String dirfile, Transaction tx) {
+      this.bucketTi = bucketTi;
+      this.dirfile = dirfile;
+      this.tx = tx;
+      BTreePage page = new BTreePage(new Block(bucketTi.fileName(), 0), bucketTi, tx);
+      capacity = page.capacity();
+      page.close();
+      target = Math.max(1, (int) (capacity * BTreeIndex.FILL_FACTOR));
+      dupmin = Math.max(2, capacity / 4);
+   }
+
+   /**
+    * Returns the position of the dataval in the order
+    * of the directory entries.
+    * @param dataval a search key
+    * @return its hash value with the bits reversed, as an unsigned number
+    */
+   public static long order(Constant dataval) {
+      return Integer.toUnsignedLong(Integer.reverse(ExtHashIndex.hash(dataval)));
+   }
+
+   /**
+    * Adds an index record.
+    * The records must be added in the order given by
+    * {@link #order(Constant)}, and equal datavals together.
+    * @see rs.raf.simpledb.index.IndexLoader#add(rs.raf.simpledb.query.Constant, rs.raf.simpledb.record.RID)
+    */
+   public void add(Constant dataval, RID datarid) {
+      long r = order(dataval);
+      if (r < lastorder)
+         throw new IllegalArgumentException("index records are not in hash order: " + dataval);
+      lastorder = r;
+      count++;
+      if (dupkey != null && dupkey.equals(dataval)) {
+         addDuplicate(dataval, datarid);
+         return;
+      }
+      closeDuplicates();
+      while (r >= start + size(depth)) {
+         writeBucket(vals.size());
+         advance();
+      }
+      if (vals.isEmpty() || !vals.get(vals.size()-1).equals(dataval))
+         runstart = vals.size();
+      vals.add(dataval);
+      rids.add(datarid);
+      if (vals.size() - runstart >= dupmin)
+         moveRun();
+      while (vals.size() > target && depth < ExtHashIndex.MAX_DEPTH)
+         halve();
+   }
+
+   /**
+    * Writes the remaining buckets and the directory.
+    * @see rs.raf.simpledb.index.IndexLoader#finish()
+    */
+   public int finish() {
+      closeDuplicates();
+      writeBucket(vals.size());
+      while (start + size(depth) < SPACE) {
+         advance();
+         writeBucket(0);
+      }
+      writeDirectory();
+      return count;
+   }
+
+   private static long size(int depth) {
+      return SPACE >>> depth;
+   }
+
+   /**
+    * Moves to the largest bucket that starts
+    * right after the current one.
+    */
+   private void advance() {
+      start += size(depth);
+      depth = 32 - Long.numberOfTrailingZeros(start);
+   }
+
+   /**
+    * Halves the current bucket. If the lower half has no
+    * records, or only some of them, it is complete,
+    * so it is written and the upper half becomes current;
+    * otherwise the lower half becomes current.
+    */
+   private void halve() {
+      long mid = start + size(depth + 1);
+      int n = 0;
+      while (n < vals.size() && order(vals.get(n)) < mid)
+         n++;
+      depth++;
+      if (n < vals.size()) {
+         writeBucket(n);
+         start = mid;
+      }
+   }
+
+   /**
+    * Moves the pending run of one dataval to a new
+    * duplicate block, leaving a pointer to it.
+    */
+   private void moveRun() {
+      Constant val = vals.get(runstart);
+      Block head = tx.append(bucketTi.fileName(), new BTPageFormatter(bucketTi, -1));
+      duppage = new BTreePage(head, bucketTi, tx);
+      for (int i=runstart; i<vals.size(); i++)
+         duppage.insertLeaf(i - runstart, val, rids.get(i));
+      while (vals.size() > runstart) {
+         vals.remove(vals.size()-1);
+         rids.remove(rids.size()-1);
+      }
+      vals.add(val);
+      rids.add(new RID(-1, head.number()));
+      dupkey = val;
+   }
+
+   private void addDuplicate(Constant val, RID rid) {
+      if (duppage.isFull()) {
+         Block newblk = duppage.appendNew(-1);
+         duppage.setNext(newblk.number());
+         duppage.close();
+         duppage = new BTreePage(newblk, bucketTi, tx);
+      }
+      duppage.insertLeaf(duppage.getNumRecs(), val, rid);
+   }
+
+   private void closeDuplicates() {
+      if (duppage != null)
+         duppage.close();
+      duppage = null;
+      dupkey = null;
+   }
+
+   /**
+    * Writes the first n pending records, sorted by dataval,
+    * as the current bucket; a bucket at the largest depth that
+    * does not fit into one block continues in overflow blocks.
+    * The first bucket is block 0, which the index already has.
+    */
+   private void writeBucket(int n) {
+      List<Integer> slots = new ArrayList<Integer>();
+      for (int i=0; i<n; i++)
+         slots.add(i);
+      slots.sort((i, j) -> vals.get(i).compareTo(vals.get(j)));
+      Block blk = buckets.isEmpty() ? new Block(bucketTi.fileName(), 0)
+                                    : tx.append(bucketTi.fileName(), new BTPageFormatter(bucketTi, depth));
+      BTreePage page = new BTreePage(blk, bucketTi, tx);
+      page.setFlag(depth);
+      for (int k=0; k<n; k++) {
+         if (page.isFull()) {
+            Block newblk = page.appendNew(-1);
+            BTreePage overflow = new BTreePage(newblk, bucketTi, tx);
+            overflow.setNext(page.getNext());
+            page.setNext(newblk.number());
+            page.close();
+            page = overflow;
+         }
+         int i = slots.get(k);
+         page.insertLeaf(page.getNumRecs(), vals.get(i), rids.get(i));
+      }
+      page.close();
+      int prefix = Integer.reverse((int) start) & ((1 << depth) - 1);
+      buckets.add(new int[] {prefix, depth, blk.number()});
+      vals.subList(0, n).clear();
+      rids.subList(0, n).clear();
+      runstart = Math.max(0, runstart - n);
+   }
+
+   /**
+    * Writes the global depth and every directory entry,
+    * block by block.
+    */
+   private void writeDirectory() {
+      int global = 0;
+      for (int[] b : buckets)
+         global = Math.max(global, b[1]);
+      int[] entries = new int[1 << global];
+      for (int[] b : buckets)
+         for (int i=b[0]; i<entries.length; i += 1 << b[1])
+            entries[i] = b[2];
+      int perblock = SimpleDBEngine.fileMgr().blockSize() / Page.INT_SIZE;
+      int lastblk = entries.length / perblock;
+      while (tx.size(dirfile) <= lastblk)
+         tx.append(dirfile, new ExtHashIndex.ZeroFormatter());
+      for (int b=0; b<=lastblk; b++) {
+         Block blk = new Block(dirfile, b);
+         tx.pin(blk);
+         for (int k=b*perblock; k<(b+1)*perblock && k<=entries.length; k++)
+            tx.setInt(blk, (k - b*perblock) * Page.INT_SIZE, k == 0 ? global : entries[k-1]);
+         tx.unpin(blk);
+      }
+   }
+}
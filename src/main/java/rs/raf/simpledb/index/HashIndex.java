@@ -1,44 +1,168 @@
 package rs.raf.simpledb.index;
 
 import rs.raf.simpledb.query.Constant;
+import rs.raf.simpledb.query.operators.TableScan;
 import rs.raf.simpledb.record.RID;
+import rs.raf.simpledb.record.Schema;
+import rs.raf.simpledb.record.TableInfo;
+import rs.raf.simpledb.tx.Transaction;
 
+/**
+ * A static hash implementation of the Index interface.
+ * A fixed number of buckets is allocated (currently, 100),
+ * and each bucket is implemented as a file of index records.
+ * The file of bucket i is the table named idxname+i.
+ * @author Edward Sciore
+ */
 public class HashIndex implements Index {
+   public static int NUM_BUCKETS = 100;
+   private String idxname;
+   private Schema sch;
+   private Transaction tx;
+   private Constant searchkey = null;
+   private TableScan ts = null;
 
-	@Override
-	public void beforeFirst(Constant searchkey) {
-		// TODO Auto-generated method stub
+   /**
+    * Opens a hash index for the specified index.
+    * @param idxname the name of the index
+    * @param sch the schema of the index records
+    * @param tx the calling transaction
+    */
+   public HashIndex(String idxname, Schema sch, Transaction tx) {
+      this.idxname = idxname;
+      this.sch = sch;
+      this.tx = tx;
+   }
 
-	}
+   /**
+    * Positions the index before the first index record
+    * having the specified search key.
+    * The method hashes the search key to determine the bucket,
+    * and then opens a table scan on the file
+    * corresponding to the bucket.
+    * The table scan for the previous bucket (if any) is closed.
+    * @see rs.raf.simpledb.index.Index#beforeFirst(rs.raf.simpledb.query.Constant)
+    */
+   public void beforeFirst(Constant searchkey) {
+      close();
+      this.searchkey = searchkey;
+      int bucket = bucket(searchkey);
+      String tblname = idxname + bucket;
+      TableInfo ti = new TableInfo(tblname, sch);
+      ts = new TableScan(ti, tx);
+   }
 
-	@Override
-	public boolean next() {
-		// TODO Auto-generated method stub
-		return false;
-	}
+   /**
+    * Hash indexes cannot be scanned in key order,
+    * so range scans are not supported.
+    * @see rs.raf.simpledb.index.Index#beforeRange(rs.raf.simpledb.query.Constant, rs.raf.simpledb.query.Constant)
+    */
+   public void beforeRange(Constant lo, Constant hi) {
+      throw new UnsupportedOperationException("hash index " + idxname + " does not support range scans");
+   }
 
-	@Override
-	public RID getDataRid() {
-		// TODO Auto-generated method stub
-		return null;
-	}
+   /**
+    * Moves to the next record having the search key.
+    * The method loops through the table scan for the bucket,
+    * looking for a matching record, and returning false
+    * if there are no more such records.
+    * @see rs.raf.simpledb.index.Index#next()
+    */
+   public boolean next() {
+      while (ts.next())
+         if (IndexKey.read(sch, ts::getVal).equals(searchkey))
+         return true;
+      return false;
+   }
 
-	@Override
-	public void insert(Constant dataval, RID datarid) {
-		// TODO Auto-generated method stub
+   /**
+    * Retrieves the dataRID from the current record
+    * in the table scan for the bucket.
+    * @see rs.raf.simpledb.index.Index#getDataRid()
+    */
+   public RID getDataRid() {
+      int blknum = ts.getInt("block");
+      int id = ts.getInt("id");
+      return new RID(blknum, id);
+   }
 
-	}
+   /**
+    * Retrieves the dataval from the current record
+    * in the table scan for the bucket.
+    * @see rs.raf.simpledb.index.Index#getDataVal()
+    */
+   public Constant getDataVal() {
+      return IndexKey.read(sch, ts::getVal);
+   }
 
-	@Override
-	public void delete(Constant dataval, RID datarid) {
-		// TODO Auto-generated method stub
+   /**
+    * Inserts a new record into the table scan for the bucket.
+    * @see rs.raf.simpledb.index.Index#insert(rs.raf.simpledb.query.Constant, rs.raf.simpledb.record.RID)
+    */
+   public void insert(Constant val, RID rid) {
+      beforeFirst(val);
+      ts.insert();
+      ts.setInt("block", rid.blockNumber());
+      ts.setInt("id", rid.id());
+      IndexKey.write(sch, val, ts::setVal);
+   }
 
-	}
+   /**
+    * Deletes the specified record from the table scan for
+    * the bucket.  The method starts at the beginning of the
+    * scan, and loops through the records until the
+    * specified record is found.
+    * @see rs.raf.simpledb.index.Index#delete(rs.raf.simpledb.query.Constant, rs.raf.simpledb.record.RID)
+    */
+   public void delete(Constant val, RID rid) {
+      beforeFirst(val);
+      while(next())
+         if (getDataRid().equals(rid)) {
+         ts.delete();
+         return;
+      }
+   }
 
-	@Override
-	public void close() {
-		// TODO Auto-generated method stub
+   /**
+    * Closes the index by closing the current table scan.
+    * @see rs.raf.simpledb.index.Index#close()
+    */
+   public void close() {
+      if (ts != null) {
+         ts.close();
+         ts = null;
+      }
+   }
 
-	}
+   /**
+    * Returns a loader that adds many records to the
+    * buckets of this index in a single pass.
+    * @return a loader for the index
+    */
+   public HashLoader loader() {
+      return new HashLoader(idxname, sch, tx);
+   }
 
+   /**
+    * Returns the cost of searching an index file having the
+    * specified number of blocks.
+    * The method assumes that all buckets are about the
+    * same size, and so the cost is simply the size of
+    * the bucket.
+    * @param numblocks the number of blocks of index records
+    * @param rpb the number of records per block (not used here)
+    * @return the cost of traversing the index
+    */
+   public static int searchCost(int numblocks, int rpb) {
+      return Math.max(1, numblocks / NUM_BUCKETS);
+   }
+
+   /**
+    * Returns the bucket of the specified search key.
+    * @param key the search key
+    * @return the bucket number, between 0 and NUM_BUCKETS-1
+    */
+   static int bucket(Constant key) {
+      return (key.hashCode() & 0x7fffffff) % NUM_BUCKETS;
+   }
 }
@@ -0,0 +1,70 @@
+package rs.raf.simpledb.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import rs.raf.simpledb.query.Constant;
+import rs.raf.simpledb.record.RID;
+import rs.raf.simpledb.record.RecordAppender;
+import rs.raf.simpledb.record.Schema;
+import rs.raf.simpledb.record.TableInfo;
+import rs.raf.simpledb.tx.Transaction;
+
+/**
+ * Adds many records to a hash index in a single pass.
+ * Each record is routed to its bucket, and each bucket
+ * collects its records until they fill a block, which is
+ * then appended to the bucket file (see {@link RecordAppender}).
+ * Existing records of the buckets are kept.
+ * @author Edward Sciore
+ */
+public class HashLoader implements IndexLoader {
+   private RecordAppender[] buckets = new RecordAppender[HashIndex.NUM_BUCKETS];
+   private String idxname;
+   private Schema sch;
+   private List<String> fields = new ArrayList<String>(Arrays.asList("block", "id"));
+   private Transaction tx;
+   private int count = 0;
+   
+   /**
+    * Creates a loader for the specified hash index.
+    * @param idxname the name of the index
+    * @param sch the schema of the index records
+    * @param tx the calling transaction
+    */
+   HashLoader(String idxname, Schema sch, Transaction tx) {
+      this.idxname = idxname;
+      this.sch = sch;
+      this.tx = tx;
+      for (int i=0; i<IndexKey.size(sch); i++)
+         fields.add(IndexKey.fieldName(i));
+   }
+   
+   /**
+    * Adds an index record to its bucket.
+    * @param dataval the dataval of the record
+    * @param datarid the dataRID of the record
+    */
+   public void add(Constant dataval, RID datarid) {
+      int bucket = HashIndex.bucket(dataval);
+      if (buckets[bucket] == null)
+         buckets[bucket] = new RecordAppender(new TableInfo(idxname + bucket, sch), fields, tx);
+      List<Object> vals = new ArrayList<Object>(Arrays.asList(datarid.blockNumber(), datarid.id()));
+      for (Constant c : IndexKey.values(dataval))
+         vals.add(c.asJavaVal());
+      buckets[bucket].append(vals.toArray());
+      count++;
+   }
+   
+   /**
+    * Writes the last block of each bucket.
+    * @return the number of records added
+    */
+   public int finish() {
+      for (RecordAppender appender : buckets)
+         if (appender != null)
+         appender.close();
+      return count;
+   }
+}
@@ -17,9 +17,22 @@ public interface Index {
     */
    public void    beforeFirst(Constant searchkey);
    
+   /**
+    * Positions the index before the first record
+    * whose search key lies between the specified bounds.
+    * Both bounds are inclusive, and either may be null,
+    * meaning that the range is unbounded on that side.
+    * Indexes that do not keep their records in key order
+    * throw an UnsupportedOperationException.
+    * @param lo the lower bound, or null
+    * @param hi the upper bound, or null
+    */
+   public void    beforeRange(Constant lo, Constant hi);
+   
    /**
     * Moves the index to the next record having the
-    * search key specified in the beforeFirst method. 
+    * search key specified in the beforeFirst method,
+    * or lying in the range specified in the beforeRange method.
     * Returns false if there are no more such index records.
     * @return false if no other index records have the search key.
     */
@@ -31,6 +44,13 @@ public interface Index {
     */
    public RID     getDataRid();
    
+   /**
+    * Returns the dataval stored in the current index record,
+    * which is the search key, or a key in the range.
+    * @return the dataval stored in the current index record.
+    */
+   public Constant getDataVal();
+   
    /**
     * Inserts an index record having the specified
     * dataval and dataRID values.
@@ -0,0 +1,152 @@
+package rs.raf.simpledb.index;
+
+import static java.sql.Types.INTEGER;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import rs.raf.simpledb.query.*;
+import rs.raf.simpledb.record.Schema;
+
+/**
+ * The layout of the search key in the records of an index.
+ * The key of an index on one field is kept in the field
+ * "dataval" of its records, and is a constant of that field.
+ * The key of an index on several fields is kept in the fields
+ * "dataval", "dataval1", "dataval2" and so on, one per indexed
+ * field, and is a {@link CompositeConstant} of their values.
+ * @author Edward Sciore
+ */
+public class IndexKey {
+
+   /**
+    * Returns the name of the index record field that
+    * holds the specified value of the key.
+    * @param i the position of the value in the key
+    * @return the name of the field
+    */
+   public static String fieldName(int i) {
+      return (i == 0) ? "dataval" : "dataval" + i;
+   }
+
+   /**
+    * Returns the number of values in the keys
+    * of the index records having the specified schema.
+    * @param sch the schema of the index records
+    * @return the number of key fields
+    */
+   public static int size(Schema sch) {
+      int n = 0;
+      while (sch.hasField(fieldName(n)))
+         n++;
+      return n;
+   }
+
+   /**
+    * Adds the key fields for the specified indexed fields
+    * to the schema of the index records.
+    * @param sch the schema of the index records
+    * @param tblsch the schema of the indexed table
+    * @param fldnames the indexed fields
+    */
+   public static void addFields(Schema sch, Schema tblsch, List<String> fldnames) {
+      for (int i=0; i<fldnames.size(); i++) {
+         String fldname = fldnames.get(i);
+         sch.addField(fieldName(i), tblsch.type(fldname), tblsch.length(fldname));
+      }
+   }
+
+   /**
+    * Adds the key fields of one schema of index records
+    * to another.
+    * @param sch the schema to be extended
+    * @param idxsch the schema of the index records
+    */
+   public static void addFields(Schema sch, Schema idxsch) {
+      for (int i=0; i<size(idxsch); i++)
+         sch.add(fieldName(i), idxsch);
+   }
+
+   /**
+    * Creates a key of the specified size from its values.
+    * A key of one value is that value itself; the values
+    * of a larger key are combined, even if there are
+    * fewer of them than fields (a prefix of the key).
+    * @param vals the values of the key
+    * @param size the number of fields in the key
+    * @return the key
+    */
+   public static Constant of(List<Constant> vals, int size) {
+      if (size == 1)
+         return vals.get(0);
+      return new CompositeConstant(vals);
+   }
+
+   /**
+    * Returns the values of the specified key.
+    * @param key the key
+    * @return its values, in the order of their fields
+    */
+   public static List<Constant> values(Constant key) {
+      if (key instanceof CompositeConstant) {
+         CompositeConstant cc = (CompositeConstant) key;
+         List<Constant> vals = new ArrayList<Constant>();
+         for (int i=0; i<cc.size(); i++)
+            vals.add(cc.get(i));
+         return vals;
+      }
+      return Collections.singletonList(key);
+   }
+
+   /**
+    * Returns true if the key has a value for each key field
+    * of the schema, rather than being a prefix of a key.
+    * @param sch the schema of the index records
+    * @param key the key
+    * @return true if the key is complete
+    */
+   public static boolean isComplete(Schema sch, Constant key) {
+      return values(key).size() == size(sch);
+   }
+
+   /**
+    * Reads a key from the current index record.
+    * @param sch the schema of the index records
+    * @param getter returns the value of a field of the record
+    * @return the key of the record
+    */
+   public static Constant read(Schema sch, Function<String,Constant> getter) {
+      if (!sch.hasField(fieldName(1)))
+         return getter.apply(fieldName(0));
+      int n = size(sch);
+      List<Constant> vals = new ArrayList<Constant>();
+      for (int i=0; i<n; i++)
+         vals.add(getter.apply(fieldName(i)));
+      return of(vals, n);
+   }
+
+   /**
+    * Writes a key into the current index record.
+    * @param sch the schema of the index records
+    * @param key the key
+    * @param setter sets the value of a field of the record
+    */
+   public static void write(Schema sch, Constant key, BiConsumer<String,Constant> setter) {
+      List<Constant> vals = values(key);
+      for (int i=0; i<vals.size(); i++)
+         setter.accept(fieldName(i), vals.get(i));
+   }
+
+   /**
+    * Returns the smallest key of the index records
+    * having the specified schema.
+    * @param sch the schema of the index records
+    * @return the smallest key
+    */
+   public static Constant minValue(Schema sch) {
+      return read(sch, fldname -> (sch.type(fldname) == INTEGER)
+                                  ? new IntConstant(Integer.MIN_VALUE)
+                                  : new StringConstant(""));
+   }
+}
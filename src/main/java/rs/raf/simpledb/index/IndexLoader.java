@@ -0,0 +1,27 @@
+package rs.raf.simpledb.index;
+
+import rs.raf.simpledb.query.Constant;
+import rs.raf.simpledb.record.RID;
+
+/**
+ * This interface contains methods to add many records
+ * to an index at once, faster than by inserting them
+ * one at a time.
+ * A loader may require the records in a particular order.
+ * @author Edward Sciore
+ */
+public interface IndexLoader {
+   /**
+    * Adds an index record.
+    * @param dataval the dataval of the record
+    * @param datarid the dataRID of the record
+    */
+   public void add(Constant dataval, RID datarid);
+
+   /**
+    * Writes the records that are still pending, and
+    * completes the index.
+    * @return the number of records added
+    */
+   public int finish();
+}
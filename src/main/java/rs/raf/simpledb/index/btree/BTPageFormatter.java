@@ -0,0 +1,59 @@
+package rs.raf.simpledb.index.btree;
+
+import static java.sql.Types.INTEGER;
+
+import rs.raf.simpledb.SimpleDBEngine;
+import rs.raf.simpledb.record.TableInfo;
+import rs.raf.simpledb.utils.Page;
+import rs.raf.simpledb.utils.Page.PageFormatter;
+
+/**
+ * An object that can format a page to look like an
+ * empty B-tree block.
+ * @author Edward Sciore
+ */
+public class BTPageFormatter implements PageFormatter {
+   private TableInfo ti;
+   private int flag;
+   
+   /**
+    * Creates a formatter for a new page of the
+    * specified B-tree index.
+    * @param ti the index's metadata
+    * @param flag the page's initial flag value
+    */
+   public BTPageFormatter(TableInfo ti, int flag) {
+      this.ti = ti;
+      this.flag = flag;
+   }
+   
+   /**
+    * Formats the page by initializing as many index-record slots
+    * as possible to have default values.
+    * Each integer field is given a value of 0, and
+    * each string field is given a value of "".
+    * The location that indicates the number of records
+    * in the page is also set to 0,
+    * and the page has no next sibling.
+    * @see rs.raf.simpledb.utils.Page.PageFormatter#format(rs.raf.simpledb.utils.Page)
+    */
+   public void format(Page page) {
+      page.setInt(BTreePage.FLAG_POS, flag);
+      page.setInt(BTreePage.NEXT_POS, -1);
+      page.setInt(BTreePage.NUMRECS_POS, 0);
+      int recsize = ti.recordLength();
+      int blocksize = SimpleDBEngine.fileMgr().blockSize();
+      for (int pos=BTreePage.HEADER_SIZE; pos+recsize<=blocksize; pos += recsize)
+         makeDefaultRecord(page, pos);
+   }
+   
+   private void makeDefaultRecord(Page page, int pos) {
+      for (String fldname : ti.schema().fields()) {
+         int offset = ti.offset(fldname);
+         if (ti.schema().type(fldname) == INTEGER)
+            page.setInt(pos + offset, 0);
+         else
+            page.setString(pos + offset, "");
+      }
+   }
+}
@@ -0,0 +1,270 @@
+package rs.raf.simpledb.index.btree;
+
+import rs.raf.simpledb.index.Index;
+import rs.raf.simpledb.index.IndexKey;
+import rs.raf.simpledb.query.Constant;
+import rs.raf.simpledb.record.RID;
+import rs.raf.simpledb.record.Schema;
+import rs.raf.simpledb.record.TableInfo;
+import rs.raf.simpledb.tx.Transaction;
+import rs.raf.simpledb.utils.Block;
+
+/**
+ * A B-tree implementation of the Index interface.
+ * The leaf records are kept in the file idxname+"leaf",
+ * and the directory records in the file idxname+"dir";
+ * the root of the directory is always block 0.
+ * Since the leaves are linked in key order, the index
+ * supports range scans as well as equality searches.
+ * @author Edward Sciore
+ */
+public class BTreeIndex implements Index {
+   /**
+    * The number of leaf records read to estimate
+    * how the data records of a range are clustered.
+    */
+   public static int SAMPLE_SIZE = 200;
+   
+   /**
+    * The fraction of each block filled by a bulk build,
+    * leaving room for later insertions.
+    */
+   public static double FILL_FACTOR = 0.9;
+   
+   private Transaction tx;
+   private TableInfo dirTi, leafTi;
+   private BTreeLeaf leaf = null;
+   private Block rootblk;
+   private Constant minval;
+   
+   /**
+    * Opens a B-tree index for the specified index.
+    * The method determines the appropriate files
+    * for the leaf and directory records,
+    * creating them if they did not exist.
+    * @param idxname the name of the index
+    * @param leafsch the schema of the leaf index records
+    * @param tx the calling transaction
+    */
+   public BTreeIndex(String idxname, Schema leafsch, Transaction tx) {
+      this.tx = tx;
+      // deal with the leaves
+      String leaftbl = idxname + "leaf";
+      leafTi = new TableInfo(leaftbl, leafsch);
+      if (tx.size(leafTi.fileName()) == 0)
+         tx.append(leafTi.fileName(), new BTPageFormatter(leafTi, -1));
+      
+      // deal with the directory
+      Schema dirsch = new Schema();
+      dirsch.add("block",   leafsch);
+      IndexKey.addFields(dirsch, leafsch);
+      String dirtbl = idxname + "dir";
+      dirTi = new TableInfo(dirtbl, dirsch);
+      rootblk = new Block(dirTi.fileName(), 0);
+      if (tx.size(dirTi.fileName()) == 0)
+         // create new root block
+         tx.append(dirTi.fileName(), new BTPageFormatter(dirTi, 0));
+      minval = IndexKey.minValue(dirsch);
+      BTreePage page = new BTreePage(rootblk, dirTi, tx);
+      if (page.getNumRecs() == 0)
+         // insert initial directory entry
+         page.insertDir(0, minval, 0);
+      page.close();
+   }
+   
+   /**
+    * Traverses the directory to find the leaf block corresponding
+    * to the specified search key.
+    * The method then opens a page for that leaf block, and
+    * positions the page before the first record (if any)
+    * having that search key.
+    * The leaf page is kept open, for use by the methods next
+    * and getDataRid.
+    * @see rs.raf.simpledb.index.Index#beforeFirst(rs.raf.simpledb.query.Constant)
+    */
+   public void beforeFirst(Constant searchkey) {
+      beforeRange(searchkey, searchkey);
+   }
+   
+   /**
+    * Traverses the directory to find the leaf block corresponding
+    * to the lower bound, and positions the leaf page before
+    * the first record whose dataval is not less than it.
+    * Subsequent calls to next follow the leaves until
+    * a dataval greater than the upper bound is found.
+    * @see rs.raf.simpledb.index.Index#beforeRange(rs.raf.simpledb.query.Constant, rs.raf.simpledb.query.Constant)
+    */
+   public void beforeRange(Constant lo, Constant hi) {
+      close();
+      if (lo == null)
+         lo = minval;
+      BTreeDir root = new BTreeDir(rootblk, dirTi, tx);
+      int blknum = root.search(lo);
+      root.close();
+      Block leafblk = new Block(leafTi.fileName(), blknum);
+      leaf = new BTreeLeaf(leafblk, leafTi, lo, hi, tx);
+   }
+   
+   /**
+    * Moves to the next leaf record having the
+    * previously-specified search key, or in the previously-specified range.
+    * Returns false if there are no more such leaf records.
+    * @see rs.raf.simpledb.index.Index#next()
+    */
+   public boolean next() {
+      return leaf.next();
+   }
+   
+   /**
+    * Returns the dataRID value from the current leaf record.
+    * @see rs.raf.simpledb.index.Index#getDataRid()
+    */
+   public RID getDataRid() {
+      return leaf.getDataRid();
+   }
+   
+   /**
+    * Returns the dataval from the current leaf record.
+    * @see rs.raf.simpledb.index.Index#getDataVal()
+    */
+   public Constant getDataVal() {
+      return leaf.getDataVal();
+   }
+   
+   /**
+    * Inserts the specified record into the index.
+    * The method first traverses the directory to find
+    * the appropriate leaf page; then it inserts
+    * the record into the leaf.
+    * If the insertion causes the leaf to split, then
+    * the method calls insert on the root,
+    * passing it the directory entry of the new leaf page.
+    * If the root node splits, then makeNewRoot is called.
+    * @see rs.raf.simpledb.index.Index#insert(rs.raf.simpledb.query.Constant, rs.raf.simpledb.record.RID)
+    */
+   public void insert(Constant dataval, RID datarid) {
+      beforeFirst(dataval);
+      DirEntry e = leaf.insert(datarid);
+      close();
+      if (e == null)
+         return;
+      BTreeDir root = new BTreeDir(rootblk, dirTi, tx);
+      DirEntry e2 = root.insert(e);
+      if (e2 != null)
+         root.makeNewRoot(e2);
+      root.close();
+   }
+   
+   /**
+    * Deletes the specified index record.
+    * The method first traverses the directory to find
+    * the leaf page containing that record; then it
+    * deletes the record from the page.
+    * @see rs.raf.simpledb.index.Index#delete(rs.raf.simpledb.query.Constant, rs.raf.simpledb.record.RID)
+    */
+   public void delete(Constant dataval, RID datarid) {
+      beforeFirst(dataval);
+      leaf.delete(datarid);
+      close();
+   }
+   
+   /**
+    * Closes the index by closing its open leaf page,
+    * if necessary.
+    * @see rs.raf.simpledb.index.Index#close()
+    */
+   public void close() {
+      if (leaf != null) {
+         leaf.close();
+         leaf = null;
+      }
+   }
+   
+   /**
+    * Returns true if the index has no records.
+    * @return true if the index is empty
+    */
+   public boolean isEmpty() {
+      if (tx.size(leafTi.fileName()) > 1)
+         return false;
+      BTreePage page = new BTreePage(new Block(leafTi.fileName(), 0), leafTi, tx);
+      boolean empty = (page.getNumRecs() == 0);
+      page.close();
+      return empty;
+   }
+   
+   /**
+    * Returns a loader that builds this index bottom-up
+    * from records given in sorted order.
+    * The index must be empty.
+    * @return a loader for the index
+    */
+   public BTreeLoader loader() {
+      if (!isEmpty())
+         throw new IllegalStateException("only an empty B-tree can be bulk loaded");
+      return new BTreeLoader(leafTi, dirTi, rootblk, minval, tx);
+   }
+   
+   /**
+    * Returns the number of blocks of the leaf file,
+    * including the overflow blocks.
+    * @return the number of leaf blocks
+    */
+   public int leafBlocks() {
+      return tx.size(leafTi.fileName());
+   }
+   
+   /**
+    * Estimates the fraction of the index records whose
+    * datavals lie between the specified bounds,
+    * by locating the bounds among the entries of the root.
+    * @param lo the lower bound, or null
+    * @param hi the upper bound, or null
+    * @return a fraction between 0 and 1
+    */
+   public double rangeFraction(Constant lo, Constant hi) {
+      BTreeDir root = new BTreeDir(rootblk, dirTi, tx);
+      double fraction = root.rangeFraction(lo, hi);
+      root.close();
+      return fraction;
+   }
+   
+   /**
+    * Estimates the number of data blocks that have to be read
+    * per index record, when the records of the specified range
+    * are fetched in index order.
+    * The method reads up to SAMPLE_SIZE records at the start of
+    * the range and counts how often consecutive records are in
+    * different data blocks; this is close to 1 for a table in
+    * random order, and close to 1/(records per block) for a table
+    * stored in the order of the indexed field.
+    * @param lo the lower bound, or null
+    * @param hi the upper bound, or null
+    * @return the estimated number of block reads per record
+    */
+   public double blocksPerRecord(Constant lo, Constant hi) {
+      beforeRange(lo, hi);
+      int n = 0, switches = 0, lastblk = -1;
+      while (n < SAMPLE_SIZE && next()) {
+         int blknum = getDataRid().blockNumber();
+         if (blknum != lastblk)
+            switches++;
+         lastblk = blknum;
+         n++;
+      }
+      close();
+      return (n == 0) ? 1.0 : (double) switches / n;
+   }
+   
+   /**
+    * Estimates the number of block accesses
+    * required to find all index records having
+    * a particular search key.
+    * @param numblocks the number of blocks in the B-tree directory
+    * @param rpb the number of index entries per block
+    * @return the estimated traversal cost
+    */
+   public static int searchCost(int numblocks, int rpb) {
+      return 1 + (int)(Math.log(Math.max(1, numblocks)) / Math.log(rpb));
+   }
+}
@@ -0,0 +1,224 @@
+package rs.raf.simpledb.index.btree;
+
+import rs.raf.simpledb.index.IndexKey;
+import rs.raf.simpledb.query.Constant;
+import rs.raf.simpledb.record.RID;
+import rs.raf.simpledb.record.TableInfo;
+import rs.raf.simpledb.tx.Transaction;
+import rs.raf.simpledb.utils.Block;
+
+/**
+ * An object that holds the contents of a B-tree leaf block.
+ * <p>
+ * Leaves are linked in key order through the next field of
+ * their header, so a leaf can iterate through all index records
+ * whose datavals lie in a range, moving from block to block.
+ * Records having the same dataval as the first record of a leaf
+ * may also be kept in a chain of overflow blocks, starting at
+ * the block given by the leaf's flag; that chain is visited
+ * before moving on to the next leaf.
+ * @author Edward Sciore
+ */
+public class BTreeLeaf {
+   private TableInfo ti;
+   private Transaction tx;
+   private Constant lo, hi;
+   private BTreePage contents;
+   private int currentslot;
+   private int nextleaf;
+   
+   /**
+    * Opens a page to hold the specified leaf block.
+    * The page is positioned immediately before the first record
+    * having the specified search key (if any).
+    * @param blk a reference to the disk block
+    * @param ti the metadata of the B-tree leaf file
+    * @param searchkey the search key value
+    * @param tx the calling transaction
+    */
+   public BTreeLeaf(Block blk, TableInfo ti, Constant searchkey, Transaction tx) {
+      this(blk, ti, searchkey, searchkey, tx);
+   }
+   
+   /**
+    * Opens a page to hold the specified leaf block.
+    * The page is positioned immediately before the first record
+    * whose dataval is not less than the lower bound.
+    * @param blk a reference to the disk block
+    * @param ti the metadata of the B-tree leaf file
+    * @param lo the lower bound of the datavals, inclusive
+    * @param hi the upper bound of the datavals, inclusive, or null for none
+    * @param tx the calling transaction
+    */
+   public BTreeLeaf(Block blk, TableInfo ti, Constant lo, Constant hi, Transaction tx) {
+      this.ti = ti;
+      this.tx = tx;
+      this.lo = lo;
+      this.hi = hi;
+      contents = new BTreePage(blk, ti, tx);
+      currentslot = contents.findSlotBefore(lo);
+      // all the records having a given dataval are in the same leaf,
+      // but those beginning with a prefix of a key may not be
+      boolean onekey = lo.equals(hi) && IndexKey.isComplete(ti.schema(), lo);
+      nextleaf = onekey ? -1 : contents.getNext();
+   }
+   
+   /**
+    * Closes the leaf page.
+    */
+   public void close() {
+      contents.close();
+   }
+   
+   /**
+    * Moves to the next leaf record whose dataval lies
+    * between the bounds, moving to the overflow blocks
+    * and the following leaves as needed.
+    * Returns false if there are no more such records.
+    * @return false if there are no more leaf records in the range
+    */
+   public boolean next() {
+      while (true) {
+         currentslot++;
+         if (currentslot < contents.getNumRecs()) {
+            Constant val = contents.getDataVal(currentslot);
+            if (hi == null || val.compareTo(hi) <= 0)
+               return true;
+            // past the upper bound; only the overflow chain may still match
+            nextleaf = -1;
+         }
+         if (!moveToNextPage())
+            return false;
+      }
+   }
+   
+   /**
+    * Returns the dataRID value of the current leaf record.
+    * @return the dataRID of the current record
+    */
+   public RID getDataRid() {
+      return contents.getDataRid(currentslot);
+   }
+   
+   /**
+    * Returns the dataval of the current leaf record.
+    * @return the dataval of the current record
+    */
+   public Constant getDataVal() {
+      return contents.getDataVal(currentslot);
+   }
+   
+   /**
+    * Deletes the leaf record having the specified dataRID
+    * @param datarid the dataRId whose record is to be deleted
+    */
+   public void delete(RID datarid) {
+      while(next())
+         if(getDataRid().equals(datarid)) {
+         contents.delete(currentslot);
+         return;
+      }
+   }
+   
+   /**
+    * Inserts a new leaf record having the specified dataRID
+    * and the previously-specified search key.
+    * If the record does not fit in the page, then 
+    * the page splits and the method returns the
+    * directory entry for the new page;
+    * otherwise, the method returns null.  
+    * If all of the records in the page have the same dataval,
+    * then the block does not split; instead, all but one of the
+    * records are placed into an overflow block.
+    * @param datarid the dataRID value of the new record
+    * @return the directory entry of the newly-split page, if one exists.
+    */
+   public DirEntry insert(RID datarid) {
+      // bug fix:  If the page has an overflow page 
+      // and the searchkey of the new record would be lowest in its page, 
+      // we need to first move the entire contents of that page to a new block
+      // and then insert the new record in the now-empty current page.
+      if (contents.getFlag() >= 0 && contents.getDataVal(0).compareTo(lo) > 0) {
+         Constant firstval = contents.getDataVal(0);
+         Block newblk = splitLeaf(0, contents.getFlag());
+         currentslot = 0;
+         contents.setFlag(-1);
+         contents.insertLeaf(currentslot, lo, datarid);
+         return new DirEntry(firstval, newblk.number());
+      }
+      
+      currentslot++;
+      contents.insertLeaf(currentslot, lo, datarid);
+      if (!contents.isFull())
+         return null;
+      // else page is full, so split it
+      Constant firstkey = contents.getDataVal(0);
+      Constant lastkey  = contents.getDataVal(contents.getNumRecs()-1);
+      if (lastkey.equals(firstkey)) {
+         // create an overflow block to hold all but the first record
+         Block newblk = contents.split(1, contents.getFlag());
+         contents.setFlag(newblk.number());
+         return null;
+      }
+      else {
+         int splitpos = contents.getNumRecs() / 2;
+         Constant splitkey = contents.getDataVal(splitpos);
+         if (splitkey.equals(firstkey)) {
+            // move right, looking for the next key
+            while (contents.getDataVal(splitpos).equals(splitkey))
+               splitpos++;
+            splitkey = contents.getDataVal(splitpos);
+         }
+         else {
+            // move left, looking for first entry having that key
+            while (contents.getDataVal(splitpos-1).equals(splitkey))
+               splitpos--;
+         }
+         Block newblk = splitLeaf(splitpos, -1);
+         return new DirEntry(splitkey, newblk.number());
+      }
+   }
+   
+   /**
+    * Splits the leaf and links the new block in after it,
+    * so that the leaves stay in key order.
+    */
+   private Block splitLeaf(int splitpos, int flag) {
+      Block newblk = contents.split(splitpos, flag);
+      BTreePage newpage = new BTreePage(newblk, ti, tx);
+      newpage.setNext(contents.getNext());
+      newpage.close();
+      contents.setNext(newblk.number());
+      return newblk;
+   }
+   
+   /**
+    * Moves to the next block of the overflow chain, if its records
+    * are in the range, or else to the next leaf.
+    * Returns false if there is no such block.
+    */
+   private boolean moveToNextPage() {
+      int overflow = contents.getFlag();
+      if (overflow >= 0) {
+         moveTo(overflow);
+         // every record of an overflow chain has the same dataval
+         if (contents.getNumRecs() == 0 || inRange(contents.getDataVal(0)))
+            return true;
+      }
+      if (nextleaf < 0)
+         return false;
+      moveTo(nextleaf);
+      nextleaf = contents.getNext();
+      return true;
+   }
+   
+   private void moveTo(int blknum) {
+      contents.close();
+      contents = new BTreePage(new Block(ti.fileName(), blknum), ti, tx);
+      currentslot = -1;
+   }
+   
+   private boolean inRange(Constant val) {
+      return val.compareTo(lo) >= 0 && (hi == null || val.compareTo(hi) <= 0);
+   }
+}
@@ -0,0 +1,202 @@
+package rs.raf.simpledb.index.btree;
+
+import java.util.*;
+
+import rs.raf.simpledb.index.IndexLoader;
+import rs.raf.simpledb.query.Constant;
+import rs.raf.simpledb.record.RID;
+import rs.raf.simpledb.record.TableInfo;
+import rs.raf.simpledb.tx.Transaction;
+import rs.raf.simpledb.utils.Block;
+
+/**
+ * Builds an empty B-tree bottom-up from index records
+ * that are given in sorted order.
+ * Leaves are filled one after the other, up to
+ * {@link BTreeIndex#FILL_FACTOR} of their capacity,
+ * and linked in key order;
+ * when all leaves are written, each directory level is built
+ * from the first keys of the level below, until one
+ * block (the root, block 0) holds the whole level.
+ * <p>
+ * As with insertions, all records having the same dataval
+ * end up in the same leaf: a leaf is cut before a run of equal
+ * datavals, and a run that does not fit into a leaf of its own
+ * continues in a chain of overflow blocks.
+ * @author Edward Sciore
+ */
+public class BTreeLoader implements IndexLoader {
+   private Transaction tx;
+   private TableInfo leafTi, dirTi;
+   private Block rootblk;
+   private int leafcap, leaftarget, dircap, dirtarget;
+   private List<Constant> vals = new ArrayList<Constant>();
+   private List<RID> rids = new ArrayList<RID>();
+   private List<DirEntry> entries = new ArrayList<DirEntry>();
+   private Constant lastval = null;
+   private int prevleaf = -1;
+   private int chainblk = -1;
+   private boolean overflowing = false;
+   private int count = 0;
+   
+   /**
+    * Creates a loader for the specified (empty) B-tree.
+    * @param leafTi the metadata of the leaf file
+    * @param dirTi the metadata of the directory file
+    * @param rootblk the root block of the directory
+    * @param minval the dataval of the root's initial entry
+    * @param tx the calling transaction
+    */
+   BTreeLoader(TableInfo leafTi, TableInfo dirTi, Block rootblk, Constant minval, Transaction tx) {
+      this.leafTi = leafTi;
+      this.dirTi = dirTi;
+      this.rootblk = rootblk;
+      this.tx = tx;
+      BTreePage leaf = new BTreePage(new Block(leafTi.fileName(), 0), leafTi, tx);
+      leafcap = leaf.capacity();
+      leaf.close();
+      BTreePage root = new BTreePage(rootblk, dirTi, tx);
+      dircap = root.capacity();
+      root.close();
+      leaftarget = Math.max(1, (int) (leafcap * BTreeIndex.FILL_FACTOR));
+      dirtarget  = Math.max(2, (int) (dircap * BTreeIndex.FILL_FACTOR));
+      // the first leaf is block 0, whose entry covers all datavals
+      entries.add(new DirEntry(minval, 0));
+   }
+   
+   /**
+    * Adds an index record.
+    * The records must be added in order of their datavals.
+    * @param dataval the dataval of the record
+    * @param datarid the dataRID of the record
+    */
+   public void add(Constant dataval, RID datarid) {
+      if (lastval != null && dataval.compareTo(lastval) < 0)
+         throw new IllegalArgumentException("index records are not sorted: " + dataval + " after " + lastval);
+      boolean same = dataval.equals(lastval);
+      lastval = dataval;
+      count++;
+      if (overflowing) {
+         if (same) {
+            addToOverflow(dataval, datarid);
+            return;
+         }
+         writeOverflow();
+         overflowing = false;
+      }
+      else if (vals.size() >= leaftarget) {
+         if (!same)
+            writeLeaf(vals.size());
+         else {
+            int runstart = vals.size() - 1;
+            while (runstart > 0 && vals.get(runstart-1).equals(dataval))
+               runstart--;
+            if (runstart > 0)
+               writeLeaf(runstart);
+            else if (vals.size() >= leafcap) {
+               // the leaf holds nothing but this dataval
+               writeLeaf(vals.size());
+               overflowing = true;
+               addToOverflow(dataval, datarid);
+               return;
+            }
+         }
+      }
+      vals.add(dataval);
+      rids.add(datarid);
+   }
+   
+   /**
+    * Writes the remaining records and builds the directory.
+    * @return the number of records added
+    */
+   public int finish() {
+      if (overflowing)
+         writeOverflow();
+      else if (!vals.isEmpty())
+         writeLeaf(vals.size());
+      int level = 0;
+      while (entries.size() > dircap) {
+         entries = writeDirLevel(entries, level);
+         level++;
+      }
+      BTreePage root = new BTreePage(rootblk, dirTi, tx);
+      root.clear();
+      for (int i=0; i<entries.size(); i++)
+         root.insertDir(i, entries.get(i).dataVal(), entries.get(i).blockNumber());
+      root.setFlag(level);
+      root.close();
+      return count;
+   }
+   
+   /**
+    * Writes the first n pending records into the next leaf,
+    * keeping the others pending.
+    */
+   private void writeLeaf(int n) {
+      Block blk;
+      if (prevleaf < 0)
+         blk = new Block(leafTi.fileName(), 0);
+      else {
+         BTreePage prev = new BTreePage(new Block(leafTi.fileName(), prevleaf), leafTi, tx);
+         blk = prev.appendNew(-1);
+         prev.setNext(blk.number());
+         prev.close();
+         entries.add(new DirEntry(vals.get(0), blk.number()));
+      }
+      BTreePage page = new BTreePage(blk, leafTi, tx);
+      fill(page, n);
+      page.close();
+      prevleaf = chainblk = blk.number();
+   }
+   
+   private void addToOverflow(Constant dataval, RID datarid) {
+      if (vals.size() >= leafcap)
+         writeOverflow();
+      vals.add(dataval);
+      rids.add(datarid);
+   }
+   
+   /**
+    * Writes the pending records into a new overflow block,
+    * at the end of the chain of the last leaf.
+    */
+   private void writeOverflow() {
+      BTreePage last = new BTreePage(new Block(leafTi.fileName(), chainblk), leafTi, tx);
+      Block blk = last.appendNew(-1);
+      last.setFlag(blk.number());
+      last.close();
+      BTreePage page = new BTreePage(blk, leafTi, tx);
+      fill(page, vals.size());
+      page.close();
+      chainblk = blk.number();
+   }
+   
+   private void fill(BTreePage page, int n) {
+      for (int i=0; i<n; i++)
+         page.insertLeaf(i, vals.get(i), rids.get(i));
+      vals.subList(0, n).clear();
+      rids.subList(0, n).clear();
+   }
+   
+   /**
+    * Writes the specified entries into new directory blocks
+    * of the specified level, and returns the entries
+    * of those blocks for the level above.
+    */
+   private List<DirEntry> writeDirLevel(List<DirEntry> level, int flag) {
+      List<DirEntry> parents = new ArrayList<DirEntry>();
+      BTreePage root = new BTreePage(rootblk, dirTi, tx);
+      for (int start=0; start<level.size(); start+=dirtarget) {
+         Block blk = root.appendNew(flag);
+         BTreePage page = new BTreePage(blk, dirTi, tx);
+         int end = Math.min(level.size(), start + dirtarget);
+         for (int i=start; i<end; i++)
+            page.insertDir(i-start, level.get(i).dataVal(), level.get(i).blockNumber());
+         page.close();
+         parents.add(new DirEntry(level.get(start).dataVal(), blk.number()));
+      }
+      root.close();
+      return parents;
+   }
+}
@@ -0,0 +1,314 @@
+package rs.raf.simpledb.index.btree;
+
+import static java.sql.Types.INTEGER;
+import static rs.raf.simpledb.utils.Page.INT_SIZE;
+
+import rs.raf.simpledb.SimpleDBEngine;
+import rs.raf.simpledb.index.IndexKey;
+import rs.raf.simpledb.query.Constant;
+import rs.raf.simpledb.query.IntConstant;
+import rs.raf.simpledb.query.StringConstant;
+import rs.raf.simpledb.record.RID;
+import rs.raf.simpledb.record.TableInfo;
+import rs.raf.simpledb.tx.Transaction;
+import rs.raf.simpledb.utils.Block;
+
+/**
+ * B-tree directory and leaf pages have many commonalities:
+ * in particular, their records are stored in sorted order, 
+ * and pages split when full.
+ * A BTreePage object contains this common functionality.
+ * <p>
+ * A page starts with a header of three integers:
+ * a flag (the level of a directory page, or the overflow block of a leaf),
+ * the number of the next page at the same level (or -1),
+ * and the number of records in the page.
+ * @author Edward Sciore
+ */
+public class BTreePage {
+   static final int FLAG_POS    = 0;
+   static final int NEXT_POS    = INT_SIZE;
+   static final int NUMRECS_POS = 2 * INT_SIZE;
+   static final int HEADER_SIZE = 3 * INT_SIZE;
+   
+   private Block currentblk;
+   private TableInfo ti;
+   private Transaction tx;
+   private int slotsize;
+   private int blocksize;
+   
+   /**
+    * Opens a page for the specified B-tree block.
+    * @param currentblk a reference to the B-tree block
+    * @param ti the metadata for the particular B-tree file
+    * @param tx the calling transaction
+    */
+   public BTreePage(Block currentblk, TableInfo ti, Transaction tx) {
+      this.currentblk = currentblk;
+      this.ti = ti;
+      this.tx = tx;
+      slotsize = ti.recordLength();
+      blocksize = SimpleDBEngine.fileMgr().blockSize();
+      tx.pin(currentblk);
+   }
+   
+   /**
+    * Calculates the position where the first record having
+    * the specified search key should be, then returns
+    * the position before it.
+    * @param searchkey the search key
+    * @return the position before where the search key goes
+    */
+   public int findSlotBefore(Constant searchkey) {
+      int lo = 0, hi = getNumRecs();
+      // binary search for the first slot whose dataval is not less than the key
+      while (lo < hi) {
+         int mid = (lo + hi) >>> 1;
+         if (getDataVal(mid).compareTo(searchkey) < 0)
+            lo = mid + 1;
+         else
+            hi = mid;
+      }
+      return lo - 1;
+   }
+   
+   /**
+    * Closes the page by unpinning its buffer.
+    */
+   public void close() {
+      if (currentblk != null)
+         tx.unpin(currentblk);
+      currentblk = null;
+   }
+   
+   /**
+    * Returns true if the block is full.
+    * @return true if the block is full
+    */
+   public boolean isFull() {
+      return slotpos(getNumRecs()+1) >= blocksize;
+   }
+   
+   /**
+    * Returns the largest number of records the page can
+    * hold without being full.
+    * @return the capacity of the page
+    */
+   public int capacity() {
+      return (blocksize - HEADER_SIZE - 1) / slotsize - 1;
+   }
+   
+   /**
+    * Splits the page at the specified position.
+    * A new page is created, and the records of the page
+    * starting at the split position are transferred to the new page.
+    * @param splitpos the split position
+    * @param flag the initial value of the flag field
+    * @return the reference to the new block
+    */
+   public Block split(int splitpos, int flag) {
+      Block newblk = appendNew(flag);
+      BTreePage newpage = new BTreePage(newblk, ti, tx);
+      transferRecs(splitpos, newpage);
+      newpage.setFlag(flag);
+      newpage.close();
+      return newblk;
+   }
+   
+   /**
+    * Returns the dataval of the record at the specified slot.
+    * @param slot the integer slot of an index record
+    * @return the dataval of the record at that slot
+    */
+   public Constant getDataVal(int slot) {
+      return IndexKey.read(ti.schema(), fldname -> getVal(slot, fldname));
+   }
+   
+   /**
+    * Returns the value of the page's flag field
+    * @return the value of the page's flag field
+    */
+   public int getFlag() {
+      return tx.getInt(currentblk, FLAG_POS);
+   }
+   
+   /**
+    * Sets the page's flag field to the specified value
+    * @param val the new value of the page flag
+    */
+   public void setFlag(int val) {
+      tx.setInt(currentblk, FLAG_POS, val);
+   }
+   
+   /**
+    * Returns the number of the next page at the same level,
+    * or -1 if this is the last page of its level.
+    * @return the number of the next block
+    */
+   public int getNext() {
+      return tx.getInt(currentblk, NEXT_POS);
+   }
+   
+   /**
+    * Sets the number of the next page at the same level.
+    * @param blknum the number of the next block, or -1
+    */
+   public void setNext(int blknum) {
+      tx.setInt(currentblk, NEXT_POS, blknum);
+   }
+   
+   /**
+    * Appends a new block to the end of the specified B-tree file,
+    * having the specified flag value.
+    * @param flag the initial value of the flag
+    * @return a reference to the newly-created block
+    */
+   public Block appendNew(int flag) {
+      return tx.append(ti.fileName(), new BTPageFormatter(ti, flag));
+   }
+   
+   // Methods called only by BTreeDir
+   
+   /**
+    * Returns the block number stored in the index record 
+    * at the specified slot.
+    * @param slot the slot of an index record
+    * @return the block number stored in that record
+    */
+   public int getChildNum(int slot) {
+      return getInt(slot, "block");
+   }
+   
+   /**
+    * Inserts a directory entry at the specified slot.
+    * @param slot the slot of an index record
+    * @param val the dataval to be stored
+    * @param blknum the block number to be stored
+    */
+   public void insertDir(int slot, Constant val, int blknum) {
+      insert(slot);
+      IndexKey.write(ti.schema(), val, (fldname, c) -> setVal(slot, fldname, c));
+      setInt(slot, "block", blknum);
+   }
+   
+   // Methods called only by BTreeLeaf
+   
+   /**
+    * Returns the dataRID value stored in the specified leaf index record.
+    * @param slot the slot of the desired index record
+    * @return the dataRID value store at that slot
+    */
+   public RID getDataRid(int slot) {
+      return new RID(getInt(slot, "block"), getInt(slot, "id"));
+   }
+   
+   /**
+    * Inserts a leaf index record at the specified slot.
+    * @param slot the slot of the desired index record
+    * @param val the new dataval
+    * @param rid the new dataRID
+    */
+   public void insertLeaf(int slot, Constant val, RID rid) {
+      insert(slot);
+      IndexKey.write(ti.schema(), val, (fldname, c) -> setVal(slot, fldname, c));
+      setInt(slot, "block", rid.blockNumber());
+      setInt(slot, "id", rid.id());
+   }
+   
+   /**
+    * Removes all records from the page.
+    */
+   void clear() {
+      setNumRecs(0);
+   }
+   
+   /**
+    * Deletes the index record at the specified slot.
+    * @param slot the slot of the deleted index record
+    */
+   public void delete(int slot) {
+      for (int i=slot+1; i<getNumRecs(); i++)
+         copyRecord(i, i-1);
+      setNumRecs(getNumRecs()-1);
+   }
+   
+   /**
+    * Returns the number of index records in this page.
+    * @return the number of index records in this page
+    */
+   public int getNumRecs() {
+      return tx.getInt(currentblk, NUMRECS_POS);
+   }
+   
+   // Private methods
+   
+   private int getInt(int slot, String fldname) {
+      int pos = fldpos(slot, fldname);
+      return tx.getInt(currentblk, pos);
+   }
+   
+   private String getString(int slot, String fldname) {
+      int pos = fldpos(slot, fldname);
+      return tx.getString(currentblk, pos);
+   }
+   
+   private Constant getVal(int slot, String fldname) {
+      int type = ti.schema().type(fldname);
+      if (type == INTEGER)
+         return new IntConstant(getInt(slot, fldname));
+      else
+         return new StringConstant(getString(slot, fldname));
+   }
+   
+   private void setInt(int slot, String fldname, int val) {
+      int pos = fldpos(slot, fldname);
+      tx.setInt(currentblk, pos, val);
+   }
+   
+   private void setString(int slot, String fldname, String val) {
+      int pos = fldpos(slot, fldname);
+      tx.setString(currentblk, pos, val);
+   }
+   
+   private void setVal(int slot, String fldname, Constant val) {
+      int type = ti.schema().type(fldname);
+      if (type == INTEGER)
+         setInt(slot, fldname, (Integer)val.asJavaVal());
+      else
+         setString(slot, fldname, (String)val.asJavaVal());
+   }
+   
+   private void setNumRecs(int n) {
+      tx.setInt(currentblk, NUMRECS_POS, n);
+   }
+   
+   private void insert(int slot) {
+      for (int i=getNumRecs(); i>slot; i--)
+         copyRecord(i-1, i);
+      setNumRecs(getNumRecs()+1);
+   }
+   
+   private void copyRecord(int from, int to) {
+      for (String fldname : ti.schema().fields())
+         setVal(to, fldname, getVal(from, fldname));
+   }
+   
+   private void transferRecs(int slot, BTreePage dest) {
+      int numrecs = getNumRecs();
+      int destslot = dest.getNumRecs();
+      for (int i=slot; i<numrecs; i++, destslot++)
+         for (String fldname : ti.schema().fields())
+            dest.setVal(destslot, fldname, getVal(i, fldname));
+      dest.setNumRecs(destslot);
+      setNumRecs(slot);
+   }
+   
+   private int fldpos(int slot, String fldname) {
+      int offset = ti.offset(fldname);
+      return slotpos(slot) + offset;
+   }
+   
+   private int slotpos(int slot) {
+      return HEADER_SIZE + (slot * slotsize);
+   }
+}
@@ -2,6 +2,7 @@ package rs.raf.simpledb.metadata;
 
 import rs.raf.simpledb.tx.Transaction;
 import rs.raf.simpledb.record.*;
+import java.util.List;
 import java.util.Map;
 
 public class CatalogMgr {
@@ -13,7 +14,7 @@ public class CatalogMgr {
    public CatalogMgr(boolean isnew, Transaction tx) {
       tblmgr  = new TableMgr(isnew, tx);
       viewmgr = new ViewMgr(isnew, tblmgr, tx);
-      statmgr = new StatMgr(tblmgr, tx);
+      statmgr = new StatMgr();
       idxmgr  = new IndexMgr(isnew, tblmgr, tx);
    }
    
@@ -33,15 +34,23 @@ public class CatalogMgr {
       return viewmgr.getViewDef(viewname, tx);
    }
    
-   public void createIndex(String idxname, String tblname, String fldname, Transaction tx) {
-      idxmgr.createIndex(idxname, tblname, fldname, tx);
+   public void createIndex(String idxname, String tblname, List<String> fldnames, String idxtype, Transaction tx) {
+      idxmgr.createIndex(idxname, tblname, fldnames, idxtype, tx);
    }
    
    public Map<String,IndexInfo> getIndexInfo(String tblname, Transaction tx) {
       return idxmgr.getIndexInfo(tblname, tx);
    }
    
+   public Map<String,FilterInfo> getFilterInfo(String tblname, Transaction tx) {
+      return idxmgr.getFilterInfo(tblname, tx);
+   }
+   
    public StatInfo getStatInfo(String tblname, TableInfo ti, Transaction tx) {
       return statmgr.getStatInfo(tblname, ti, tx);
    }
+   
+   public void invalidateStatInfo(String tblname) {
+      statmgr.invalidate(tblname);
+   }
 }
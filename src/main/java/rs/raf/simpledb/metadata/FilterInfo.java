@@ -0,0 +1,99 @@
+package rs.raf.simpledb.metadata;
+
+import java.util.*;
+
+import rs.raf.simpledb.SimpleDBEngine;
+import rs.raf.simpledb.index.BloomFilterFile;
+import rs.raf.simpledb.index.IndexKey;
+import rs.raf.simpledb.query.Constant;
+import rs.raf.simpledb.query.operators.Scan;
+import rs.raf.simpledb.tx.Transaction;
+
+/**
+ * The information about a Bloom filter of a table.
+ * The catalog records a filter as an index of type {@link #BLOOM},
+ * but a filter cannot find records, so it is kept apart from
+ * the indexes: the planner consults it in order to skip the
+ * searches of an index join that would find nothing, and the
+ * keys of new records are added to it.
+ * @author Edward Sciore
+ */
+public class FilterInfo {
+   /**
+    * The index type under which the catalog records a Bloom filter.
+    */
+   public static final String BLOOM = "bloom";
+   
+   private String filtername;
+   private List<String> fldnames;
+   private Transaction tx;
+   
+   /**
+    * Creates a FilterInfo object for the specified filter.
+    * @param filtername the name of the filter
+    * @param fldnames the names of the filtered fields, in key order
+    * @param tx the calling transaction
+    */
+   public FilterInfo(String filtername, List<String> fldnames, Transaction tx) {
+      this.filtername = filtername;
+      this.fldnames = new ArrayList<String>(fldnames);
+      this.tx = tx;
+   }
+   
+   /**
+    * Opens the filter described by this object.
+    * @return the filter
+    */
+   public BloomFilterFile open() {
+      return new BloomFilterFile(filtername, tx);
+   }
+   
+   /**
+    * Returns the name of the filter.
+    * @return the name of the filter
+    */
+   public String filterName() {
+      return filtername;
+   }
+   
+   /**
+    * Returns the names of the filtered fields,
+    * in the order of their values in the key.
+    * @return the filtered fields
+    */
+   public List<String> fieldNames() {
+      return fldnames;
+   }
+   
+   /**
+    * Creates a key from the values of the filtered fields.
+    * @param vals the values, in the order of the fields
+    * @return the key
+    */
+   public Constant searchKey(List<Constant> vals) {
+      return IndexKey.of(vals, fldnames.size());
+   }
+   
+   /**
+    * Returns the key of the current record of the
+    * specified scan of the filtered table.
+    * @param s a scan of the filtered table
+    * @return the key of the record
+    */
+   public Constant searchKey(Scan s) {
+      List<Constant> vals = new ArrayList<Constant>();
+      for (String fldname : fldnames)
+         vals.add(s.getVal(fldname));
+      return searchKey(vals);
+   }
+   
+   /**
+    * Returns the number of blocks read in order
+    * to load the filter into memory.
+    * @return the number of block accesses required to load the filter
+    */
+   public int blocksAccessed() {
+      int bits = open().numBits();
+      return 1 + bits / (SimpleDBEngine.fileMgr().blockSize() * Byte.SIZE);
+   }
+}
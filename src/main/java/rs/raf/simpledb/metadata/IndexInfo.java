@@ -1,14 +1,18 @@
 package rs.raf.simpledb.metadata;
 
-import static java.sql.Types.INTEGER;
-import static rs.raf.simpledb.utils.Page.BLOCK_SIZE;
+import java.util.*;
+
 import rs.raf.simpledb.SimpleDBEngine;
 import rs.raf.simpledb.index.Index;
+import rs.raf.simpledb.index.IndexKey;
+import rs.raf.simpledb.index.BitmapIndex;
+import rs.raf.simpledb.index.ExtHashIndex;
+import rs.raf.simpledb.index.HashIndex;
+import rs.raf.simpledb.index.btree.BTreeIndex;
+import rs.raf.simpledb.query.Constant;
+import rs.raf.simpledb.query.operators.Scan;
 import rs.raf.simpledb.tx.Transaction;
 import rs.raf.simpledb.record.*;
-//import rs.raf.simpledb.index.Index;
-//import rs.raf.simpledb.index.hash.HashIndex; 
-//import rs.raf.simpledb.index.btree.BTreeIndex; //in case we change to btree indexing
 
 
 /**
@@ -20,22 +24,62 @@ import rs.raf.simpledb.record.*;
  * @author Edward Sciore
  */
 public class IndexInfo {
-   private String idxname, fldname;
+   /**
+    * The type of a static hash index.
+    */
+   public static final String HASH = "hash";
+   
+   /**
+    * The type of an extendible hash index.
+    */
+   public static final String EXTHASH = "exthash";
+   
+   /**
+    * The type of a B-tree index.
+    */
+   public static final String BTREE = "btree";
+   
+   /**
+    * The type of a bitmap index.
+    */
+   public static final String BITMAP = "bitmap";
+   
+   private String idxname, idxtype;
+   private List<String> fldnames;
    private Transaction tx;
    private TableInfo ti;
    private StatInfo si;
+   private int keycount = -1;
    
    /**
-    * Creates an IndexInfo object for the specified index.
+    * Creates an IndexInfo object for the specified index
+    * on a single field.
     * @param idxname the name of the index
     * @param tblname the name of the table
     * @param fldname the name of the indexed field
+    * @param idxtype the type of the index
     * @param tx the calling transaction
     */
    public IndexInfo(String idxname, String tblname, String fldname,
-                    Transaction tx) {
+                    String idxtype, Transaction tx) {
+      this(idxname, tblname, Arrays.asList(fldname), idxtype, tx);
+   }
+   
+   /**
+    * Creates an IndexInfo object for the specified index.
+    * The search keys of an index on several fields
+    * are composite constants of their values.
+    * @param idxname the name of the index
+    * @param tblname the name of the table
+    * @param fldnames the names of the indexed fields, in key order
+    * @param idxtype the type of the index
+    * @param tx the calling transaction
+    */
+   public IndexInfo(String idxname, String tblname, List<String> fldnames,
+                    String idxtype, Transaction tx) {
       this.idxname = idxname;
-      this.fldname = fldname;
+      this.fldnames = new ArrayList<String>(fldnames);
+      this.idxtype = idxtype;
       this.tx = tx;
       ti = SimpleDBEngine.catalogMgr().getTableInfo(tblname, tx);
       si = SimpleDBEngine.catalogMgr().getStatInfo(tblname, ti, tx);
@@ -49,9 +93,85 @@ public class IndexInfo {
    
    public Index open() {
       Schema sch = schema();
-      // Create new HashIndex for hash indexing
-      return null;
-      //return new HashIndex(idxname, sch, tx);
+      if (idxtype.equals(BTREE))
+         return new BTreeIndex(idxname, sch, tx);
+      else if (idxtype.equals(EXTHASH))
+         return new ExtHashIndex(idxname, sch, tx);
+      else if (idxtype.equals(BITMAP))
+         return new BitmapIndex(idxname, sch, slots(), tx);
+      else
+         return new HashIndex(idxname, sch, tx);
+   }
+   
+   /**
+    * Returns the name of the index.
+    * @return the name of the index
+    */
+   public String indexName() {
+      return idxname;
+   }
+   
+   /**
+    * Returns the names of the indexed fields,
+    * in the order of their values in the search key.
+    * @return the indexed fields
+    */
+   public List<String> fieldNames() {
+      return fldnames;
+   }
+   
+   /**
+    * Returns the schema of the indexed fields,
+    * as they are defined in the table.
+    * @return the schema of the indexed fields
+    */
+   public Schema fieldSchema() {
+      Schema sch = new Schema();
+      for (String fldname : fldnames)
+         sch.add(fldname, ti.schema());
+      return sch;
+   }
+   
+   /**
+    * Creates a search key from the values of the first
+    * indexed fields.  If there are fewer values than
+    * indexed fields, the key is a prefix, which
+    * can only be used as a bound of a range scan.
+    * @param vals the values, in the order of the fields
+    * @return the search key
+    */
+   public Constant searchKey(List<Constant> vals) {
+      return IndexKey.of(vals, fldnames.size());
+   }
+   
+   /**
+    * Returns the search key of the current record of the
+    * specified scan of the indexed table.
+    * @param s a scan of the indexed table
+    * @return the search key of the record
+    */
+   public Constant searchKey(Scan s) {
+      List<Constant> vals = new ArrayList<Constant>();
+      for (String fldname : fldnames)
+         vals.add(s.getVal(fldname));
+      return searchKey(vals);
+   }
+   
+   /**
+    * Returns the type of the index.
+    * @return HASH, EXTHASH, BTREE or BITMAP
+    */
+   public String indexType() {
+      return idxtype;
+   }
+   
+   /**
+    * Returns true if the index keeps its records in key order,
+    * and so can be used to find the records in a range.
+    * @return true if the index supports range scans
+    */
+   public boolean supportsRange() {
+      return idxtype.equals(BTREE);
    }
    
    /**
@@ -66,14 +186,47 @@ public class IndexInfo {
     * @return the number of block accesses required to traverse the index
     */
    public int blocksAccessed() {
-      TableInfo idxti = new TableInfo("", schema());
-      int rpb = BLOCK_SIZE / idxti.recordLength();
+      int rpb = recordsPerBlock();
       int numblocks = si.recordsOutput() / rpb;
-      // Call HashIndex.searchCost for hash indexing
-      
-      // TO DO - IZBACITI return 0
-      //return HashIndex.searchCost(numblocks, rpb);
-      return 0;
+      if (idxtype.equals(BTREE))
+         return BTreeIndex.searchCost(numblocks, rpb);
+      else if (idxtype.equals(EXTHASH))
+         return ExtHashIndex.searchCost(recordsOutput(), rpb);
+      else if (idxtype.equals(BITMAP))
+         return BitmapIndex.searchCost(si.blocksAccessed(), slots());
+      else
+         return HashIndex.searchCost(numblocks, rpb);
+   }
+   
+   /**
+    * Estimates the number of block accesses required to
+    * find all index records whose search key lies between
+    * the specified bounds: the cost of finding the first leaf,
+    * plus the leaves holding the range.
+    * The leaves are counted in the index file, since they
+    * are usually not full.
+    * Only meaningful for indexes that support range scans.
+    * @param lo the lower bound, or null
+    * @param hi the upper bound, or null
+    * @return the number of block accesses required to scan the range
+    */
+   public int rangeBlocksAccessed(Constant lo, Constant hi) {
+      BTreeIndex idx = (BTreeIndex) open();
+      int numblocks = idx.leafBlocks();
+      idx.close();
+      return blocksAccessed() + (int) (numblocks * rangeFraction(lo, hi));
+   }
+   
+   /**
+    * Estimates the number of records whose search key
+    * lies between the specified bounds.
+    * Only meaningful for indexes that support range scans.
+    * @param lo the lower bound, or null
+    * @param hi the upper bound, or null
+    * @return the estimated number of records in the range
+    */
+   public int rangeRecordsOutput(Constant lo, Constant hi) {
+      return Math.max(1, (int) (si.recordsOutput() * rangeFraction(lo, hi)));
    }
    
    /**
@@ -81,30 +234,86 @@ public class IndexInfo {
     * search key.  This value is the same as doing a select
     * query; that is, it is the number of records in the table
     * divided by the number of distinct values of the indexed field.
+    * For an index on several fields, the number of distinct keys
+    * is estimated as the product of the distinct values of
+    * the fields, but at most the number of records.
+    * A bitmap index knows its number of keys, which is used instead.
     * @return the estimated number of records having a search key
     */
    public int recordsOutput() {
-      return si.recordsOutput() / si.distinctValues(fldname);
+      long keys = 1;
+      for (String fldname : fldnames)
+         keys = Math.min(keys * si.distinctValues(fldname), si.recordsOutput());
+      if (idxtype.equals(BITMAP))
+         keys = keyCount();
+      return Math.max(1, (int) (si.recordsOutput() / Math.max(1, keys)));
    }
    
    /** 
     * Returns the distinct values for a specified field 
-    * in the underlying table, or 1 for the indexed field.
+    * in the underlying table, or 1 for an indexed field.
     * @param fname the specified field
     */
    public int distinctValues(String fname) {
-      if (fldname.equals(fname))
+      if (fldnames.contains(fname))
          return 1;
       else 
-         return Math.min(si.distinctValues(fldname), recordsOutput());
+         return Math.min(si.distinctValues(fname), recordsOutput());
+   }
+   
+   /**
+    * Estimates the number of data blocks read per record
+    * when the records in the specified range are fetched
+    * in index order, from a sample of the index.
+    * Only meaningful for indexes that support range scans.
+    * @param lo the lower bound, or null
+    * @param hi the upper bound, or null
+    * @return the estimated number of block reads per record
+    */
+   public double rangeBlocksPerRecord(Constant lo, Constant hi) {
+      BTreeIndex idx = (BTreeIndex) open();
+      double ratio = idx.blocksPerRecord(lo, hi);
+      idx.close();
+      return ratio;
+   }
+   
+   private int recordsPerBlock() {
+      TableInfo idxti = new TableInfo("", schema());
+      return SimpleDBEngine.fileMgr().blockSize() / idxti.recordLength();
+   }
+   
+   private int keyCount() {
+      if (keycount < 0) {
+         BitmapIndex idx = (BitmapIndex) open();
+         keycount = idx.keyCount();
+         idx.close();
+      }
+      return keycount;
+   }
+   
+   /**
+    * Returns the number of records per block of the
+    * indexed table, which a bitmap index needs in order
+    * to number the records.
+    */
+   private int slots() {
+      return SimpleDBEngine.fileMgr().blockSize() / (ti.recordLength() + RecordPage.HEADER_SIZE);
+   }
+   
+   private double rangeFraction(Constant lo, Constant hi) {
+      BTreeIndex idx = (BTreeIndex) open();
+      double fraction = idx.rangeFraction(lo, hi);
+      idx.close();
+      return fraction;
    }
    
    /**
     * Returns the schema of the index records.
     * The schema consists of the dataRID (which is
     * represented as two integers, the block number and the
-    * record ID) and the dataval (which is the indexed field).
-    * Schema information about the indexed field is obtained
+    * record ID) and the dataval (which is the indexed field,
+    * or one field per indexed field; see {@link IndexKey}).
+    * Schema information about the indexed fields is obtained
     * via the table's metadata.
     * @return the schema of the index records
     */
@@ -112,12 +321,7 @@ public class IndexInfo {
       Schema sch = new Schema();
       sch.addIntField("block");
       sch.addIntField("id");
-      if (ti.schema().type(fldname) == INTEGER)
-         sch.addIntField("dataval");
-      else {
-         int fldlen = ti.schema().length(fldname);
-         sch.addStringField("dataval", fldlen);
-      }
+      IndexKey.addFields(sch, ti.schema(), fldnames);
       return sch;
    }
 }
@@ -8,6 +8,16 @@ import java.util.*;
 /**
  * The index manager.
  * The index manager has similar functionalty to the table manager.
+ * Each index in the <i>idxcat</i> table has a type,
+ * {@link IndexInfo#HASH}, {@link IndexInfo#EXTHASH}, {@link IndexInfo#BTREE},
+ * {@link IndexInfo#BITMAP}, or {@link FilterInfo#BLOOM} for a
+ * Bloom filter, which is not an index (see {@link FilterInfo});
+ * catalogs created before the type was recorded
+ * describe only hash indexes.
+ * An index on several fields has one row per field,
+ * whose <i>fieldpos</i> gives the position of the field
+ * in the search key; catalogs created before that column
+ * describe only indexes on a single field.
  * @author Edward Sciore
  */
 public class IndexMgr {
@@ -26,47 +36,105 @@ public class IndexMgr {
          sch.addStringField("indexname", MAX_NAME);
          sch.addStringField("tablename", MAX_NAME);
          sch.addStringField("fieldname", MAX_NAME);
+         sch.addStringField("indextype", MAX_NAME);
+         sch.addIntField("fieldpos");
          tblmgr.createTable("idxcat", sch, tx);
       }
       ti = tblmgr.getTableInfo("idxcat", tx);
    }
    
    /**
-    * Creates an index of the specified type for the specified field.
+    * Creates an index of the specified type for the specified fields.
     * A unique ID is assigned to this index, and its information
-    * is stored in the idxcat table.
+    * is stored in the idxcat table, one row per indexed field.
     * @param idxname the name of the index
     * @param tblname the name of the indexed table
-    * @param fldname the name of the indexed field
+    * @param fldnames the names of the indexed fields, in key order
+    * @param idxtype the type of the index
     * @param tx the calling transaction
     */
-   public void createIndex(String idxname, String tblname, String fldname, Transaction tx) {
+   public void createIndex(String idxname, String tblname, List<String> fldnames, String idxtype, Transaction tx) {
+      if (fldnames.size() > 1 && !ti.schema().hasField("fieldpos"))
+         throw new UnsupportedOperationException("the catalog does not support indexes on several fields");
       RecordFile rf = new RecordFile(ti, tx);
-      rf.insert();
-      rf.setString("indexname", idxname);
-      rf.setString("tablename", tblname);
-      rf.setString("fieldname", fldname);
+      for (int pos=0; pos<fldnames.size(); pos++) {
+         rf.insert();
+         rf.setString("indexname", idxname);
+         rf.setString("tablename", tblname);
+         rf.setString("fieldname", fldnames.get(pos));
+         if (ti.schema().hasField("indextype"))
+            rf.setString("indextype", idxtype);
+         if (ti.schema().hasField("fieldpos"))
+            rf.setInt("fieldpos", pos);
+      }
       rf.close();
    }
    
    /**
     * Returns a map containing the index info for all indexes
-    * on the specified table.
+    * on the specified table. Bloom filters are not included.
     * @param tblname the name of the table
     * @param tx the calling transaction
-    * @return a map of IndexInfo objects, keyed by their field names
+    * @return a map of IndexInfo objects, keyed by their index names
     */
    public Map<String,IndexInfo> getIndexInfo(String tblname, Transaction tx) {
+      Map<String,String> types = new HashMap<String,String>();
+      Map<String,List<String>> fields = readIndexes(tblname, types, tx);
       Map<String,IndexInfo> result = new HashMap<String,IndexInfo>();
+      for (String idxname : fields.keySet())
+         if (!types.get(idxname).equals(FilterInfo.BLOOM))
+         result.put(idxname, new IndexInfo(idxname, tblname, fields.get(idxname), types.get(idxname), tx));
+      return result;
+   }
+   
+   /**
+    * Returns a map containing the info for all Bloom filters
+    * on the specified table.
+    * @param tblname the name of the table
+    * @param tx the calling transaction
+    * @return a map of FilterInfo objects, keyed by their names
+    */
+   public Map<String,FilterInfo> getFilterInfo(String tblname, Transaction tx) {
+      Map<String,String> types = new HashMap<String,String>();
+      Map<String,List<String>> fields = readIndexes(tblname, types, tx);
+      Map<String,FilterInfo> result = new HashMap<String,FilterInfo>();
+      for (String idxname : fields.keySet())
+         if (types.get(idxname).equals(FilterInfo.BLOOM))
+         result.put(idxname, new FilterInfo(idxname, fields.get(idxname), tx));
+      return result;
+   }
+   
+   /**
+    * Reads the rows of idxcat that describe the indexes
+    * on the specified table.
+    * @param tblname the name of the table
+    * @param types receives the type of each index
+    * @param tx the calling transaction
+    * @return the indexed fields of each index, in key order
+    */
+   private Map<String,List<String>> readIndexes(String tblname, Map<String,String> types, Transaction tx) {
+      Map<String,String[]> fields = new HashMap<String,String[]>();
       RecordFile rf = new RecordFile(ti, tx);
       while (rf.next())
          if (rf.getString("tablename").equals(tblname)) {
          String idxname = rf.getString("indexname");
-         String fldname = rf.getString("fieldname");
-         IndexInfo ii = new IndexInfo(idxname, tblname, fldname, tx);
-         result.put(fldname, ii);
+         String idxtype = IndexInfo.HASH;
+         if (ti.schema().hasField("indextype"))
+            idxtype = rf.getString("indextype");
+         int pos = 0;
+         if (ti.schema().hasField("fieldpos"))
+            pos = rf.getInt("fieldpos");
+         String[] flds = fields.get(idxname);
+         if (flds == null || flds.length <= pos)
+            flds = Arrays.copyOf((flds == null) ? new String[0] : flds, pos+1);
+         flds[pos] = rf.getString("fieldname");
+         fields.put(idxname, flds);
+         types.put(idxname, idxtype);
       }
       rf.close();
+      Map<String,List<String>> result = new HashMap<String,List<String>>();
+      for (String idxname : fields.keySet())
+         result.put(idxname, Arrays.asList(fields.get(idxname)));
       return result;
    }
 }
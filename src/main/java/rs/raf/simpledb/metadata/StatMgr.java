@@ -8,24 +8,24 @@ import java.util.*;
  * The statistics manager, which is responsible for
  * keeping statistical information about each table.
  * The manager does not store this information in the database.
- * Instead, it calculates this information on system startup,
- * and periodically refreshes it.
+ * Instead, it calculates the information of a table when it is
+ * first requested, so that startup does not read the database,
+ * and periodically discards it, so that it is recalculated.
+ * The information is calculated by a read-only transaction,
+ * which reads the table without locks; the manager is thus
+ * never held by a transaction waiting for a lock.
  * @author Edward Sciore
  */
 class StatMgr {
-   private TableMgr tblMgr;
    private Map<String,StatInfo> tablestats;
    private int numcalls;
    
    /**
-    * Creates the statistics manager.
-    * The initial statistics are calculated by
-    * traversing the entire database.
-    * @param tx the startup transaction
+    * Creates the statistics manager, without
+    * any statistics yet.
     */
-   public StatMgr(TableMgr tblMgr, Transaction tx) {
-      this.tblMgr = tblMgr;
-      refreshStatistics(tx);
+   public StatMgr() {
+      refreshStatistics();
    }
    
    /**
@@ -38,31 +38,34 @@ class StatMgr {
    public synchronized StatInfo getStatInfo(String tblname, TableInfo ti, Transaction tx) {
       numcalls++;
       if (numcalls > 100)
-         refreshStatistics(tx);
+         refreshStatistics();
       StatInfo si = tablestats.get(tblname);
       if (si == null) {
-         si = calcTableStats(ti, tx);
+         si = calcTableStats(ti);
          tablestats.put(tblname, si);
       }
       return si;
    }
    
-   private synchronized void refreshStatistics(Transaction tx) {
+   /**
+    * Discards the statistics of the specified table,
+    * so that they are recalculated when next requested.
+    * This is called after a change that makes them stale,
+    * such as a bulk load.
+    * @param tblname the name of the table
+    */
+   public synchronized void invalidate(String tblname) {
+      tablestats.remove(tblname);
+   }
+   
+   private synchronized void refreshStatistics() {
       tablestats = new HashMap<String,StatInfo>();
       numcalls = 0;
-      TableInfo tcatmd = tblMgr.getTableInfo("tblcat", tx);
-      RecordFile tcatfile = new RecordFile(tcatmd, tx);
-      while(tcatfile.next()) {
-         String tblname = tcatfile.getString("tblname");
-         TableInfo md = tblMgr.getTableInfo(tblname, tx);
-         StatInfo si = calcTableStats(md, tx);
-         tablestats.put(tblname, si);
-      }
-      tcatfile.close();
    }
    
-   private synchronized StatInfo calcTableStats(TableInfo ti, Transaction tx) {
+   private synchronized StatInfo calcTableStats(TableInfo ti) {
       int numRecs = 0;
+      Transaction tx = new Transaction(true);
       RecordFile rf = new RecordFile(ti, tx);
       int numblocks = 0;
       while (rf.next()) {
@@ -70,6 +73,7 @@ class StatMgr {
          numblocks = rf.currentRid().blockNumber() + 1;
       }
       rf.close();
+      tx.commit();
       return new StatInfo(numblocks, numRecs);
    }
 }
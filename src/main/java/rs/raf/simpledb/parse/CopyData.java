@@ -0,0 +1,60 @@
+package rs.raf.simpledb.parse;
+
+import java.util.*;
+
+/**
+ * Data for the SQL <i>copy</i> statement,
+ * which bulk-loads a table from a CSV file.
+ * @author Edward Sciore
+ */
+public class CopyData {
+   private String tblname, filename;
+   private List<String> flds;
+   private boolean header;
+   
+   /**
+    * Saves the table name, the field list, the file name,
+    * and whether the first line of the file is a header.
+    * A null field list means that the field names
+    * are given by the header line.
+    */
+   public CopyData(String tblname, List<String> flds, String filename, boolean header) {
+      this.tblname = tblname;
+      this.flds = flds;
+      this.filename = filename;
+      this.header = header;
+   }
+   
+   /**
+    * Returns the name of the loaded table.
+    * @return the name of the loaded table
+    */
+   public String tableName() {
+      return tblname;
+   }
+   
+   /**
+    * Returns the fields in the order of the columns of the file,
+    * or null if they are given by the file's header line.
+    * @return a list of field names, or null
+    */
+   public List<String> fields() {
+      return flds;
+   }
+   
+   /**
+    * Returns the name of the CSV file.
+    * @return the name of the file
+    */
+   public String fileName() {
+      return filename;
+   }
+   
+   /**
+    * Returns true if the first line of the file is a header line.
+    * @return true if the file has a header line
+    */
+   public boolean hasHeader() {
+      return header;
+   }
+}
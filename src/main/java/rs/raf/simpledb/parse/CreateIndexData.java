@@ -1,18 +1,23 @@
 package rs.raf.simpledb.parse;
+
+import java.util.List;
+
 /**
  * The parser for the <i>create index</i> statement.
  * @author Edward Sciore
  */
 public class CreateIndexData {
-   private String idxname, tblname, fldname;
+   private String idxname, tblname, idxtype;
+   private List<String> fields;
    
    /**
-    * Saves the table and field names of the specified index.
+    * Saves the table and field names and the type of the specified index.
     */
-   public CreateIndexData(String idxname, String tblname, String fldname) {
+   public CreateIndexData(String idxname, String tblname, List<String> fields, String idxtype) {
       this.idxname = idxname;
       this.tblname = tblname;
-      this.fldname = fldname;
+      this.fields = fields;
+      this.idxtype = idxtype;
    }
    
    /**
@@ -32,11 +37,20 @@ public class CreateIndexData {
    }
    
    /**
-    * Returns the name of the indexed field.
-    * @return the name of the indexed field
+    * Returns the names of the indexed fields,
+    * in the order of their values in the search key.
+    * @return a list of the indexed fields
     */
-   public String fieldName() {
-      return fldname;
+   public List<String> fields() {
+      return fields;
+   }
+   
+   /**
+    * Returns the type of the index, "hash", "exthash", "btree",
+    * "bitmap" or "bloom".
+    * @return the type of the index
+    */
+   public String indexType() {
+      return idxtype;
    }
 }
-
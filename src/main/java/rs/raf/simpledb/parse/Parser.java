@@ -37,13 +37,47 @@ public class Parser {
    
    public Term term() {
       Expression lhs = expression();
-      lex.eatDelim('=');
+      String op = operator();
+      Expression rhs = expression();
+      return new Term(lhs, op, rhs);
+   }
+   
+   private String operator() {
+      if (lex.matchDelim('=')) {
+         lex.eatDelim('=');
+         return Term.EQ;
+      }
+      char c = lex.matchDelim('<') ? '<' : '>';
+      lex.eatDelim(c);
+      if (lex.matchDelim('=')) {
+         lex.eatDelim('=');
+         return (c == '<') ? Term.LE : Term.GE;
+      }
+      return (c == '<') ? Term.LT : Term.GT;
+   }
+   
+   /**
+    * Parses a comparison, where "F between a and b"
+    * is shorthand for "F &gt;= a and F &lt;= b".
+    */
+   private Predicate comparison() {
+      Expression lhs = expression();
+      if (lex.matchKeyword("between")) {
+         lex.eatKeyword("between");
+         Expression lo = expression();
+         lex.eatKeyword("and");
+         Expression hi = expression();
+         Predicate pred = new Predicate(new Term(lhs, Term.GE, lo));
+         pred.conjoinWith(new Predicate(new Term(lhs, Term.LE, hi)));
+         return pred;
+      }
+      String op = operator();
       Expression rhs = expression();
-      return new Term(lhs, rhs);
+      return new Predicate(new Term(lhs, op, rhs));
    }
    
    public Predicate predicate() {
-      Predicate pred = new Predicate(term());
+      Predicate pred = comparison();
       if (lex.matchKeyword("and")) {
          lex.eatKeyword("and");
          pred.conjoinWith(predicate());
@@ -96,6 +130,8 @@ public class Parser {
          return delete();
       else if (lex.matchKeyword("update"))
          return modify();
+      else if (lex.matchKeyword("copy"))
+         return copy();
       else
          return create();
    }
@@ -160,6 +196,28 @@ public class Parser {
       return L;
    }
    
+// Method for parsing copy commands
+   
+   public CopyData copy() {
+      lex.eatKeyword("copy");
+      String tblname = lex.eatId();
+      List<String> flds = null;
+      if (lex.matchDelim('(')) {
+         lex.eatDelim('(');
+         flds = fieldList();
+         lex.eatDelim(')');
+      }
+      lex.eatKeyword("from");
+      String filename = lex.eatStringConstant();
+      boolean header = false;
+      if (lex.matchKeyword("with")) {
+         lex.eatKeyword("with");
+         lex.eatKeyword("header");
+         header = true;
+      }
+      return new CopyData(tblname, flds, filename, header);
+   }
+   
 // Method for parsing modify commands
    
    public ModifyData modify() {
@@ -238,9 +296,18 @@ public class Parser {
       lex.eatKeyword("on");
       String tblname = lex.eatId();
       lex.eatDelim('(');
-      String fldname = field();
+      List<String> flds = fieldList();
       lex.eatDelim(')');
-      return new CreateIndexData(idxname, tblname, fldname);
+      String idxtype = "exthash";
+      if (lex.matchKeyword("using")) {
+         lex.eatKeyword("using");
+         idxtype = lex.eatId();
+         if (!idxtype.equals("hash") && !idxtype.equals("exthash")
+               && !idxtype.equals("btree") && !idxtype.equals("bitmap")
+               && !idxtype.equals("bloom"))
+            throw new BadSyntaxException();
+      }
+      return new CreateIndexData(idxname, tblname, flds, idxtype);
    }
 }
 
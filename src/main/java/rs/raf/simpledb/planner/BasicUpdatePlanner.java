@@ -3,6 +3,9 @@ package rs.raf.simpledb.planner;
 import java.util.Iterator;
 import rs.raf.simpledb.SimpleDBEngine;
 import rs.raf.simpledb.tx.Transaction;
+import rs.raf.simpledb.metadata.FilterInfo;
+import rs.raf.simpledb.metadata.IndexInfo;
+import rs.raf.simpledb.record.TableInfo;
 import rs.raf.simpledb.parse.*;
 import rs.raf.simpledb.query.*;
 import rs.raf.simpledb.query.operators.UpdateScan;
@@ -63,7 +66,20 @@ public class BasicUpdatePlanner implements UpdatePlanner {
       return 0;
    }
    public int executeCreateIndex(CreateIndexData data, Transaction tx) {
-      SimpleDBEngine.catalogMgr().createIndex(data.indexName(), data.tableName(), data.fieldName(), tx);
-      return 0;  
+      String tblname = data.tableName();
+      SimpleDBEngine.catalogMgr().createIndex(data.indexName(), tblname, data.fields(), data.indexType(), tx);
+      TableInfo ti = SimpleDBEngine.catalogMgr().getTableInfo(tblname, tx);
+      if (data.indexType().equals(FilterInfo.BLOOM)) {
+         FilterInfo fi = SimpleDBEngine.catalogMgr().getFilterInfo(tblname, tx).get(data.indexName());
+         return new FilterBuilder(ti, fi, tx).build(0);
+      }
+      IndexInfo ii = SimpleDBEngine.catalogMgr().getIndexInfo(tblname, tx).get(data.indexName());
+      return new IndexBuilder(ti, ii, tx).build(0);
+   }
+   
+   public int executeCopy(CopyData data, Transaction tx) {
+      BulkLoader loader = new BulkLoader(data.tableName(), tx);
+      loader.loadCsv(data.fileName(), data.fields(), data.hasHeader());
+      return loader.finish();
    }
 }
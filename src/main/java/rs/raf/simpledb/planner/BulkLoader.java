@@ -0,0 +1,155 @@
+package rs.raf.simpledb.planner;
+
+import static java.sql.Types.INTEGER;
+
+import java.io.*;
+import java.util.*;
+
+import rs.raf.simpledb.SimpleDBEngine;
+import rs.raf.simpledb.metadata.FilterInfo;
+import rs.raf.simpledb.metadata.IndexInfo;
+import rs.raf.simpledb.query.*;
+import rs.raf.simpledb.record.*;
+import rs.raf.simpledb.tx.Transaction;
+
+/**
+ * Loads many records into a table at once.
+ * Records are appended to the end of the table in pre-formatted
+ * blocks (see {@link RecordAppender}), bypassing the parser
+ * and the planner.
+ * The table's indexes are not maintained during the load;
+ * the new records are added to them by {@link #finish()},
+ * in one pass per index.
+ * <p>
+ * A typical use is:
+ * <pre>
+ * BulkLoader loader = new BulkLoader("polaganje", tx);
+ * loader.loadCsv("data/polaganja.csv", null, true);
+ * int n = loader.finish();
+ * </pre>
+ * @author Edward Sciore
+ */
+public class BulkLoader {
+   private String tblname;
+   private Transaction tx;
+   private TableInfo ti;
+   private RecordAppender appender;
+   private List<String> fields;
+   
+   /**
+    * Creates a loader for the specified table.
+    * @param tblname the name of the table
+    * @param tx the calling transaction
+    */
+   public BulkLoader(String tblname, Transaction tx) {
+      this.tblname = tblname;
+      this.tx = tx;
+      ti = SimpleDBEngine.catalogMgr().getTableInfo(tblname, tx);
+      if (ti.recordLength() <= 0)
+         throw new RuntimeException("table " + tblname + " does not exist");
+   }
+   
+   /**
+    * Sets the fields whose values are given by {@link #insert(Object[])}.
+    * The fields can be set only before the first record is inserted.
+    * @param fields the field names, in the order of the values
+    */
+   public void setFields(List<String> fields) {
+      if (appender != null)
+         throw new IllegalStateException("the fields are already set");
+      this.fields = fields;
+      appender = new RecordAppender(ti, fields, tx);
+   }
+   
+   /**
+    * Inserts a record having the specified values.
+    * @param vals Integer or String values, in the order of the fields
+    */
+   public void insert(Object[] vals) {
+      if (appender == null)
+         throw new IllegalStateException("the fields are not set");
+      appender.append(vals);
+   }
+   
+   /**
+    * Inserts the records of the specified CSV file.
+    * Values are separated by commas; quoting is not supported.
+    * If the field list is null, the field names are taken from the header line.
+    * @param filename the name of the CSV file
+    * @param fields the field names of the file's columns, or null
+    * @param header true if the first line of the file is a header line
+    * @return the number of records read from the file
+    */
+   public int loadCsv(String filename, List<String> fields, boolean header) {
+      try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(filename)))) {
+         String line = header ? reader.readLine() : null;
+         if (fields == null) {
+            if (line == null)
+               throw new RuntimeException("no field list for " + filename);
+            fields = new ArrayList<String>();
+            for (String name : line.split(","))
+               fields.add(name.trim().toLowerCase());
+         }
+         setFields(fields);
+         boolean[] isInt = new boolean[fields.size()];
+         for (int i=0; i<isInt.length; i++)
+            isInt[i] = ti.schema().type(fields.get(i)) == INTEGER;
+         
+         int count = 0, linenum = header ? 1 : 0;
+         while ((line = reader.readLine()) != null) {
+            linenum++;
+            if (line.isEmpty())
+               continue;
+            String[] cols = line.split(",", -1);
+            if (cols.length != isInt.length)
+               throw new RuntimeException(filename + ":" + linenum + ": expected " + isInt.length + " values");
+            Object[] vals = new Object[cols.length];
+            for (int i=0; i<cols.length; i++) {
+               try {
+                  vals[i] = isInt[i] ? (Object) Integer.valueOf(cols[i].trim()) : cols[i];
+               }
+               catch (NumberFormatException e) {
+                  throw new RuntimeException(filename + ":" + linenum + ": not an integer: " + cols[i]);
+               }
+            }
+            insert(vals);
+            count++;
+         }
+         return count;
+      }
+      catch (IOException e) {
+         throw new RuntimeException("cannot read " + filename);
+      }
+   }
+   
+   /**
+    * Writes the last block of records,
+    * and adds the new records to the table's indexes,
+    * using an {@link IndexBuilder} for each index.
+    * @return the number of records loaded
+    */
+   public int finish() {
+      if (appender == null)
+         return 0;
+      int count = appender.close();
+      SimpleDBEngine.catalogMgr().invalidateStatInfo(tblname);
+      int firstblk = appender.firstBlock();
+      if (firstblk >= 0)
+         buildIndexes(firstblk);
+      return count;
+   }
+   
+   /**
+    * Adds each new record, i.e. each record in a block
+    * from firstblk on, to each index and each Bloom filter
+    * of the table.
+    */
+   private void buildIndexes(int firstblk) {
+      Map<String,IndexInfo> indexes = SimpleDBEngine.catalogMgr().getIndexInfo(tblname, tx);
+      for (IndexInfo ii : indexes.values())
+         new IndexBuilder(ti, ii, tx).build(firstblk);
+      Map<String,FilterInfo> filters = SimpleDBEngine.catalogMgr().getFilterInfo(tblname, tx);
+      for (FilterInfo fi : filters.values())
+         new FilterBuilder(ti, fi, tx).build(firstblk);
+   }
+}
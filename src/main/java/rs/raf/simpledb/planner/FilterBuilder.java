@@ -0,0 +1,85 @@
+package rs.raf.simpledb.planner;
+
+import static java.sql.Types.INTEGER;
+
+import java.util.*;
+
+import rs.raf.simpledb.index.BloomFilter;
+import rs.raf.simpledb.index.BloomFilterFile;
+import rs.raf.simpledb.metadata.FilterInfo;
+import rs.raf.simpledb.query.*;
+import rs.raf.simpledb.record.*;
+import rs.raf.simpledb.tx.Transaction;
+
+/**
+ * Adds the keys of the records of a table to one of its
+ * Bloom filters with a single sequential scan of the table.
+ * The distinct keys are collected during the scan and added
+ * to the filter at once. A filter that would hold more than
+ * twice the keys it was sized for, as estimated from its bits,
+ * is recreated from all the records of the table.
+ * @author Edward Sciore
+ */
+public class FilterBuilder {
+   private TableInfo ti;
+   private FilterInfo fi;
+   private Transaction tx;
+   
+   /**
+    * Creates a builder for the specified filter.
+    * @param ti the metadata of the filtered table
+    * @param fi the metadata of the filter
+    * @param tx the calling transaction
+    */
+   public FilterBuilder(TableInfo ti, FilterInfo fi, Transaction tx) {
+      this.ti = ti;
+      this.fi = fi;
+      this.tx = tx;
+   }
+   
+   /**
+    * Adds to the filter the keys of the records of every
+    * block of the table from the specified one on.
+    * @param firstblk the first block whose records are added
+    * @return the number of records read
+    */
+   public int build(int firstblk) {
+      BloomFilterFile bff = fi.open();
+      Set<Constant> keys = new HashSet<Constant>();
+      int count = collectKeys(firstblk, keys);
+      if (bff.numBits() < BloomFilter.bitsFor(bff.keyCount() + keys.size()) / 2) {
+         if (firstblk > 0)
+            collectKeys(0, keys);
+         bff.reset(keys.size());
+      }
+      BloomFilter filter = new BloomFilter(bff.numBits());
+      for (Constant key : keys)
+         filter.add(key);
+      bff.load(filter);
+      return count;
+   }
+   
+   private int collectKeys(int firstblk, Set<Constant> keys) {
+      int count = 0;
+      RecordFile rf = new RecordFile(ti, tx);
+      // a new record file is already before its first record
+      if (firstblk > 0)
+         rf.moveToRid(new RID(firstblk, -1));
+      while (rf.next()) {
+         keys.add(key(rf));
+         count++;
+      }
+      rf.close();
+      return count;
+   }
+   
+   private Constant key(RecordFile rf) {
+      List<Constant> vals = new ArrayList<Constant>();
+      for (String fldname : fi.fieldNames())
+         if (ti.schema().type(fldname) == INTEGER)
+            vals.add(new IntConstant(rf.getInt(fldname)));
+         else
+            vals.add(new StringConstant(rf.getString(fldname)));
+      return fi.searchKey(vals);
+   }
+}
@@ -24,7 +24,7 @@ public class HeuristicQueryPlanner implements QueryPlanner {
       
       // Step 1:  Create a TablePlanner object for each mentioned table
       for (String tblname : data.tables()) {
-         TablePlanner tp = new TablePlanner(tblname, data.pred(), tx);
+         TablePlanner tp = new TablePlanner(tblname, data.fields(), data.pred(), tx);
          tableplanners.add(tp);
       }
       
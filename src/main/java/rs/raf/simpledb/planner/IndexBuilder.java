@@ -0,0 +1,326 @@
+package rs.raf.simpledb.planner;
+
+import static java.sql.Types.INTEGER;
+
+import java.util.*;
+
+import rs.raf.simpledb.SimpleDBEngine;
+import rs.raf.simpledb.index.BitmapIndex;
+import rs.raf.simpledb.index.BitmapLoader;
+import rs.raf.simpledb.index.ExtHashIndex;
+import rs.raf.simpledb.index.ExtHashLoader;
+import rs.raf.simpledb.index.HashIndex;
+import rs.raf.simpledb.index.Index;
+import rs.raf.simpledb.index.IndexKey;
+import rs.raf.simpledb.index.IndexLoader;
+import rs.raf.simpledb.index.HashLoader;
+import rs.raf.simpledb.index.btree.BTreeIndex;
+import rs.raf.simpledb.index.btree.BTreeLoader;
+import rs.raf.simpledb.metadata.IndexInfo;
+import rs.raf.simpledb.query.*;
+import rs.raf.simpledb.query.operators.TableScan;
+import rs.raf.simpledb.record.*;
+import rs.raf.simpledb.tx.Transaction;
+
+/**
+ * Adds the records of a table to one of its indexes
+ * with a single sequential scan of the table.
+ * <ul>
+ * <li>For a hash index, each index record is appended to its
+ * bucket during the scan (see {@link HashLoader}).
+ * <li>For a B-tree index, the index records are sorted:
+ * runs of {@link SimpleDBEngine#SORT_RUN_RECORDS} records are sorted
+ * in memory and written to temporary tables, which are then merged,
+ * as many at a time as there are available buffers.
+ * An empty B-tree is then built bottom-up (see {@link BTreeLoader});
+ * otherwise the sorted records are inserted one at a time.
+ * <li>For an extendible hash index, the index records are sorted
+ * the same way, but in the order of the directory entries
+ * (see {@link ExtHashLoader#order}); an empty index is then
+ * built bucket by bucket, and otherwise the records are inserted
+ * one at a time, each bucket receiving its records together.
+ * <li>For a bitmap index, the bits of the records are set during
+ * the scan, a chunk of each bitmap at a time (see {@link BitmapLoader}).
+ * </ul>
+ * Bloom filters are built by the {@link FilterBuilder}.
+ * @author Edward Sciore
+ */
+public class IndexBuilder {
+   private static final Comparator<Entry> KEY_ORDER = Comparator.naturalOrder();
+   private static final Comparator<Entry> HASH_ORDER =
+      Comparator.comparingLong((Entry e) -> ExtHashLoader.order(e.val)).thenComparing(KEY_ORDER);
+   private TableInfo ti;
+   private IndexInfo ii;
+   private Transaction tx;
+   private Schema runsch = new Schema();
+   private List<String> runfields = new ArrayList<String>();
+   
+   /**
+    * Creates a builder for the specified index.
+    * @param ti the metadata of the indexed table
+    * @param ii the metadata of the index
+    * @param tx the calling transaction
+    */
+   public IndexBuilder(TableInfo ti, IndexInfo ii, Transaction tx) {
+      this.ti = ti;
+      this.ii = ii;
+      this.tx = tx;
+      IndexKey.addFields(runsch, ti.schema(), ii.fieldNames());
+      runsch.addIntField("block");
+      runsch.addIntField("id");
+      for (int i=0; i<ii.fieldNames().size(); i++)
+         runfields.add(IndexKey.fieldName(i));
+      runfields.add("block");
+      runfields.add("id");
+   }
+   
+   /**
+    * Adds to the index the records of every block
+    * of the table from the specified one on.
+    * @param firstblk the first block whose records are indexed
+    * @return the number of index records added
+    */
+   public int build(int firstblk) {
+      if (ii.indexType().equals(IndexInfo.BTREE))
+         return buildBTree(firstblk);
+      else if (ii.indexType().equals(IndexInfo.EXTHASH))
+         return buildExtHash(firstblk);
+      else if (ii.indexType().equals(IndexInfo.BITMAP))
+         return buildBitmap(firstblk);
+      else
+         return buildHash(firstblk);
+   }
+   
+   private int buildHash(int firstblk) {
+      HashIndex idx = (HashIndex) ii.open();
+      HashLoader loader = idx.loader();
+      RecordFile rf = scanFrom(firstblk);
+      while (rf.next())
+         loader.add(key(rf), rf.currentRid());
+      rf.close();
+      idx.close();
+      return loader.finish();
+   }
+   
+   private int buildBitmap(int firstblk) {
+      BitmapIndex idx = (BitmapIndex) ii.open();
+      BitmapLoader loader = idx.loader();
+      RecordFile rf = scanFrom(firstblk);
+      while (rf.next())
+         loader.add(key(rf), rf.currentRid());
+      rf.close();
+      idx.close();
+      return loader.finish();
+   }
+   
+   private int buildBTree(int firstblk) {
+      BTreeIndex idx = (BTreeIndex) ii.open();
+      BTreeLoader loader = idx.isEmpty() ? idx.loader() : null;
+      int count = addSorted(firstblk, KEY_ORDER, idx, loader);
+      if (loader != null)
+         loader.finish();
+      idx.close();
+      return count;
+   }
+   
+   private int buildExtHash(int firstblk) {
+      ExtHashIndex idx = (ExtHashIndex) ii.open();
+      ExtHashLoader loader = idx.isEmpty() ? idx.loader() : null;
+      int count = addSorted(firstblk, HASH_ORDER, idx, loader);
+      if (loader != null)
+         loader.finish();
+      idx.close();
+      return count;
+   }
+   
+   /**
+    * Sorts the index records of the table in the specified
+    * order, and adds them to the index (or to the loader,
+    * if there is one).
+    */
+   private int addSorted(int firstblk, Comparator<Entry> order, Index idx, IndexLoader loader) {
+      List<TempTable> runs = new ArrayList<TempTable>();
+      List<Entry> sorted = sortRuns(firstblk, order, runs);
+      int count = 0;
+      if (runs.isEmpty()) {
+         for (Entry e : sorted) {
+            add(idx, loader, e);
+            count++;
+         }
+      }
+      else {
+         int fanin = Math.max(2, SimpleDBEngine.bufferMgr().available() - 4);
+         while (runs.size() > fanin)
+            runs = mergeIteration(runs, order, fanin);
+         List<TableScan> scans = new ArrayList<TableScan>();
+         for (TempTable run : runs)
+            scans.add(new TableScan(run.getTableInfo(), tx));
+         Merger merger = new Merger(scans, runsch, order);
+         for (Entry e = merger.next(); e != null; e = merger.next()) {
+            add(idx, loader, e);
+            count++;
+         }
+      }
+      return count;
+   }
+   
+   private void add(Index idx, IndexLoader loader, Entry e) {
+      if (loader != null)
+         loader.add(e.val, e.rid);
+      else
+         idx.insert(e.val, e.rid);
+   }
+   
+   /**
+    * Scans the table, sorting its index records in runs.
+    * Every full run is written to a temporary table,
+    * which is added to the specified list.
+    * If all the records fit into one run, they are returned
+    * sorted instead; otherwise the last run is written as well,
+    * and the returned list is empty.
+    */
+   private List<Entry> sortRuns(int firstblk, Comparator<Entry> order, List<TempTable> runs) {
+      int runsize = Math.max(1, SimpleDBEngine.SORT_RUN_RECORDS);
+      List<Entry> run = new ArrayList<Entry>();
+      RecordFile rf = scanFrom(firstblk);
+      while (rf.next()) {
+         run.add(new Entry(key(rf), rf.currentRid()));
+         if (run.size() >= runsize) {
+            runs.add(writeRun(run, order));
+            run.clear();
+         }
+      }
+      rf.close();
+      if (runs.isEmpty())
+         Collections.sort(run, order);
+      else if (!run.isEmpty()) {
+         runs.add(writeRun(run, order));
+         run.clear();
+      }
+      return run;
+   }
+   
+   private TempTable writeRun(List<Entry> run, Comparator<Entry> order) {
+      Collections.sort(run, order);
+      TempTable temp = new TempTable(runsch, tx);
+      RecordAppender appender = new RecordAppender(temp.getTableInfo(), runfields, tx);
+      for (Entry e : run)
+         appender.append(e.values());
+      appender.close();
+      return temp;
+   }
+   
+   /**
+    * Merges the runs, the specified number at a time.
+    */
+   private List<TempTable> mergeIteration(List<TempTable> runs, Comparator<Entry> order, int fanin) {
+      List<TempTable> result = new ArrayList<TempTable>();
+      for (int start=0; start<runs.size(); start+=fanin) {
+         List<TableScan> scans = new ArrayList<TableScan>();
+         for (TempTable run : runs.subList(start, Math.min(runs.size(), start+fanin)))
+            scans.add(new TableScan(run.getTableInfo(), tx));
+         Merger merger = new Merger(scans, runsch, order);
+         TempTable temp = new TempTable(runsch, tx);
+         RecordAppender appender = new RecordAppender(temp.getTableInfo(), runfields, tx);
+         for (Entry e = merger.next(); e != null; e = merger.next())
+            appender.append(e.values());
+         appender.close();
+         result.add(temp);
+      }
+      return result;
+   }
+   
+   private RecordFile scanFrom(int firstblk) {
+      RecordFile rf = new RecordFile(ti, tx);
+      // a new record file is already before its first record
+      if (firstblk > 0)
+         rf.moveToRid(new RID(firstblk, -1));
+      return rf;
+   }
+   
+   private Constant key(RecordFile rf) {
+      List<Constant> vals = new ArrayList<Constant>();
+      for (String fldname : ii.fieldNames())
+         if (ti.schema().type(fldname) == INTEGER)
+            vals.add(new IntConstant(rf.getInt(fldname)));
+         else
+            vals.add(new StringConstant(rf.getString(fldname)));
+      return ii.searchKey(vals);
+   }
+   
+   /**
+    * An index record: a dataval and the dataRID of its record,
+    * ordered by dataval and then by dataRID.
+    */
+   private static class Entry implements Comparable<Entry> {
+      Constant val;
+      RID rid;
+      
+      Entry(Constant val, RID rid) {
+         this.val = val;
+         this.rid = rid;
+      }
+      
+      Object[] values() {
+         List<Object> vals = new ArrayList<Object>();
+         for (Constant c : IndexKey.values(val))
+            vals.add(c.asJavaVal());
+         vals.add(rid.blockNumber());
+         vals.add(rid.id());
+         return vals.toArray();
+      }
+      
+      public int compareTo(Entry e) {
+         int cmp = val.compareTo(e.val);
+         if (cmp == 0)
+            cmp = Integer.compare(rid.blockNumber(), e.rid.blockNumber());
+         if (cmp == 0)
+            cmp = Integer.compare(rid.id(), e.rid.id());
+         return cmp;
+      }
+   }
+   
+   /**
+    * Merges sorted runs, returning their records in order
+    * and closing each run when it is exhausted.
+    */
+   private static class Merger {
+      private PriorityQueue<Head> heads;
+      private Schema runsch;
+      
+      Merger(List<TableScan> scans, Schema runsch, Comparator<Entry> order) {
+         this.runsch = runsch;
+         heads = new PriorityQueue<Head>((h1, h2) -> order.compare(h1.entry, h2.entry));
+         for (TableScan s : scans)
+            advance(s);
+      }
+      
+      Entry next() {
+         Head head = heads.poll();
+         if (head == null)
+            return null;
+         advance(head.scan);
+         return head.entry;
+      }
+      
+      private void advance(TableScan s) {
+         if (s.next())
+            heads.add(new Head(new Entry(IndexKey.read(runsch, s::getVal), new RID(s.getInt("block"), s.getInt("id"))), s));
+         else
+            s.close();
+      }
+   }
+   
+   /**
+    * The current record of a run, and the scan of that run.
+    */
+   private static class Head {
+      Entry entry;
+      TableScan scan;
+      
+      Head(Entry entry, TableScan scan) {
+         this.entry = entry;
+         this.scan = scan;
+      }
+   }
+}
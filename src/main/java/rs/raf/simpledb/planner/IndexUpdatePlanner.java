@@ -0,0 +1,173 @@
+package rs.raf.simpledb.planner;
+
+import java.util.*;
+import rs.raf.simpledb.SimpleDBEngine;
+import rs.raf.simpledb.tx.Transaction;
+import rs.raf.simpledb.index.BloomFilterFile;
+import rs.raf.simpledb.index.Index;
+import rs.raf.simpledb.metadata.FilterInfo;
+import rs.raf.simpledb.metadata.IndexInfo;
+import rs.raf.simpledb.record.*;
+import rs.raf.simpledb.parse.*;
+import rs.raf.simpledb.query.*;
+import rs.raf.simpledb.query.operators.TableScan;
+
+/**
+ * A modification of the basic update planner.
+ * It keeps the indexes of a table up to date when its
+ * records are inserted, deleted or modified, and adds the
+ * keys of inserted and modified records to its Bloom filters.
+ * If the predicate of a delete or modify statement
+ * equates the fields of an index with constants, the index
+ * is used to find the target records instead of
+ * scanning the whole table.
+ * @author Edward Sciore
+ */
+public class IndexUpdatePlanner extends BasicUpdatePlanner {
+
+   public int executeInsert(InsertData data, Transaction tx) {
+      String tblname = data.tableName();
+      TableScan ts = new TableScan(SimpleDBEngine.catalogMgr().getTableInfo(tblname, tx), tx);
+      ts.insert();
+      Iterator<Constant> iter = data.vals().iterator();
+      for (String fldname : data.fields())
+         ts.setVal(fldname, iter.next());
+
+      // fields missing from the statement are indexed with their default value
+      RID rid = ts.getRid();
+      Map<IndexInfo,Index> indexes = openIndexes(tblname, tx);
+      for (IndexInfo ii : indexes.keySet())
+         indexes.get(ii).insert(ii.searchKey(ts), rid);
+      close(indexes);
+      for (FilterInfo fi : SimpleDBEngine.catalogMgr().getFilterInfo(tblname, tx).values())
+         fi.open().add(fi.searchKey(ts));
+      ts.close();
+      return 1;
+   }
+
+   public int executeDelete(DeleteData data, Transaction tx) {
+      String tblname = data.tableName();
+      TableScan ts = new TableScan(SimpleDBEngine.catalogMgr().getTableInfo(tblname, tx), tx);
+      Map<IndexInfo,Index> indexes = openIndexes(tblname, tx);
+      int count = forEachTarget(ts, data.pred(), tblname, tx, () -> {
+         RID rid = ts.getRid();
+         for (IndexInfo ii : indexes.keySet())
+            indexes.get(ii).delete(ii.searchKey(ts), rid);
+         ts.delete();
+      });
+      close(indexes);
+      ts.close();
+      return count;
+   }
+
+   public int executeModify(ModifyData data, Transaction tx) {
+      String tblname = data.tableName();
+      String fldname = data.targetField();
+      TableScan ts = new TableScan(SimpleDBEngine.catalogMgr().getTableInfo(tblname, tx), tx);
+      // only the indexes on the target field are affected
+      Map<IndexInfo,Index> indexes = new HashMap<IndexInfo,Index>();
+      for (IndexInfo ii : SimpleDBEngine.catalogMgr().getIndexInfo(tblname, tx).values())
+         if (ii.fieldNames().contains(fldname))
+            indexes.put(ii, ii.open());
+      Map<FilterInfo,BloomFilterFile> filters = new HashMap<FilterInfo,BloomFilterFile>();
+      for (FilterInfo fi : SimpleDBEngine.catalogMgr().getFilterInfo(tblname, tx).values())
+         if (fi.fieldNames().contains(fldname))
+            filters.put(fi, fi.open());
+      int count = forEachTarget(ts, data.pred(), tblname, tx, () -> {
+         Constant newval = data.newValue().evaluate(ts);
+         Constant oldval = ts.getVal(fldname);
+         if (newval.equals(oldval))
+            return;
+         RID rid = ts.getRid();
+         for (IndexInfo ii : indexes.keySet())
+            indexes.get(ii).delete(ii.searchKey(ts), rid);
+         ts.setVal(fldname, newval);
+         for (IndexInfo ii : indexes.keySet())
+            indexes.get(ii).insert(ii.searchKey(ts), rid);
+         for (FilterInfo fi : filters.keySet())
+            filters.get(fi).add(fi.searchKey(ts));
+      });
+      close(indexes);
+      ts.close();
+      return count;
+   }
+
+   /**
+    * Performs the action on each record of the table that
+    * satisfies the predicate, with the table scan positioned
+    * at that record.
+    * If the predicate equates each field of an index with a constant,
+    * the rids of the matching records are read from that index
+    * first, so that the action may change the index (or the
+    * field) without disturbing the search; the remaining terms
+    * of the predicate are checked against each record.
+    * Otherwise the whole table is scanned.
+    * @param ts a scan of the table
+    * @param pred the selection predicate
+    * @param tblname the name of the table
+    * @param tx the calling transaction
+    * @param action the update of the current record
+    * @return the number of records updated
+    */
+   private int forEachTarget(TableScan ts, Predicate pred, String tblname,
+                             Transaction tx, Runnable action) {
+      int count = 0;
+      List<RID> rids = indexedTargets(pred, tblname, tx);
+      if (rids == null) {
+         while (ts.next())
+            if (pred.isSatisfied(ts)) {
+               action.run();
+               count++;
+            }
+         return count;
+      }
+      for (RID rid : rids) {
+         ts.moveToRid(rid);
+         if (pred.isSatisfied(ts)) {
+            action.run();
+            count++;
+         }
+      }
+      return count;
+   }
+
+   /**
+    * Returns the rids found by an index whose fields the
+    * predicate equates with constants, or null if there
+    * is no such index.
+    */
+   private List<RID> indexedTargets(Predicate pred, String tblname, Transaction tx) {
+      Map<String,IndexInfo> indexes = SimpleDBEngine.catalogMgr().getIndexInfo(tblname, tx);
+      for (IndexInfo ii : indexes.values()) {
+         List<Constant> vals = new ArrayList<Constant>();
+         for (String fldname : ii.fieldNames()) {
+            Constant val = pred.equatesWithConstant(fldname);
+            if (val == null)
+               break;
+            vals.add(val);
+         }
+         if (vals.size() == ii.fieldNames().size()) {
+            List<RID> rids = new ArrayList<RID>();
+            Index idx = ii.open();
+            idx.beforeFirst(ii.searchKey(vals));
+            while (idx.next())
+               rids.add(idx.getDataRid());
+            idx.close();
+            return rids;
+         }
+      }
+      return null;
+   }
+
+   private Map<IndexInfo,Index> openIndexes(String tblname, Transaction tx) {
+      Map<IndexInfo,Index> result = new HashMap<IndexInfo,Index>();
+      for (IndexInfo ii : SimpleDBEngine.catalogMgr().getIndexInfo(tblname, tx).values())
+         result.put(ii, ii.open());
+      return result;
+   }
+
+   private void close(Map<IndexInfo,Index> indexes) {
+      for (Index idx : indexes.values())
+         idx.close();
+   }
+}
@@ -76,6 +76,8 @@ public class Planner {
          return uplanner.executeCreateView((CreateViewData)obj, tx);
       else if (obj instanceof CreateIndexData)
          return uplanner.executeCreateIndex((CreateIndexData)obj, tx);
+      else if (obj instanceof CopyData)
+         return uplanner.executeCopy((CopyData)obj, tx);
       else
          return 0;
    }
@@ -3,9 +3,10 @@ package rs.raf.simpledb.planner;
 import rs.raf.simpledb.tx.Transaction;
 import rs.raf.simpledb.record.Schema;
 import rs.raf.simpledb.query.*;
+import rs.raf.simpledb.metadata.FilterInfo;
 import rs.raf.simpledb.metadata.IndexInfo;
 import rs.raf.simpledb.SimpleDBEngine;
-import java.util.Map;
+import java.util.*;
 
 /**
  * This class contains methods for planning a single table.
@@ -16,6 +17,8 @@ class TablePlanner {
    private Predicate mypred;
    private Schema myschema;
    private Map<String,IndexInfo> indexes;
+   private Map<String,FilterInfo> filters;
+   private Collection<String> myfields = new ArrayList<String>();
    private Transaction tx;
    
    /**
@@ -24,16 +27,31 @@ class TablePlanner {
     * The table planner is responsible for determining
     * which portion of the predicate is useful to the table,
     * and when indexes are useful.
+    * A read-only transaction uses neither the indexes nor the
+    * Bloom filters of the table, and always scans it: they are
+    * not versioned, and the entries of records that its snapshot
+    * still sees, deleted or with an older key, may be gone from them.
     * @param tblname the name of the table
+    * @param fields the output fields of the query
     * @param mypred the query predicate
     * @param tx the calling transaction
     */
-   public TablePlanner(String tblname, Predicate mypred, Transaction tx) {
+   public TablePlanner(String tblname, Collection<String> fields, Predicate mypred, Transaction tx) {
       this.mypred  = mypred;
       this.tx  = tx;
       myplan   = new TablePlan(tblname, tx);
       myschema = myplan.schema();
-      indexes  = SimpleDBEngine.catalogMgr().getIndexInfo(tblname, tx);
+      if (tx.snapshot() != null) {
+         indexes = new HashMap<String,IndexInfo>();
+         filters = new HashMap<String,FilterInfo>();
+      }
+      else {
+         indexes = SimpleDBEngine.catalogMgr().getIndexInfo(tblname, tx);
+         filters = SimpleDBEngine.catalogMgr().getFilterInfo(tblname, tx);
+      }
+      for (String fldname : myschema.fields())
+         if (fields.contains(fldname) || mypred.mentions(fldname))
+            myfields.add(fldname);
    }
    
    /**
@@ -79,23 +97,146 @@ class TablePlanner {
       return new MultiBufferProductPlan(current, p, tx);
    }
    
+   /**
+    * Constructs an index select for the table.
+    * An index whose fields the predicate all equates with
+    * constants is always used; if there are several such
+    * indexes, the cheapest one is used.
+    * Otherwise, a range select is used if it is cheaper than a
+    * table scan.  Either one is replaced by a bitmap select if
+    * that is cheaper (see {@link #makeBitmapSelect}).
+    * The method returns null if no index is useful.
+    */
    private Plan makeIndexSelect() {
-      for (String fldname : indexes.keySet()) {
-         Constant val = mypred.equatesWithConstant(fldname);
-         if (val != null) {
-            IndexInfo ii = indexes.get(fldname);
-            return new IndexSelectPlan(myplan, ii, val, tx);
+      List<IndexedPlan> eqplans = new ArrayList<IndexedPlan>();
+      List<IndexedPlan> rangeplans = new ArrayList<IndexedPlan>();
+      for (IndexInfo ii : indexes.values()) {
+         List<Constant> prefix = equalityPrefix(ii);
+         if (prefix.size() == ii.fieldNames().size())
+            eqplans.add(new IndexSelectPlan(myplan, ii, ii.searchKey(prefix), covers(ii), tx));
+         else if (ii.supportsRange()) {
+            IndexedPlan p = makeIndexRangeSelect(ii, prefix);
+            if (p != null)
+               rangeplans.add(p);
          }
       }
-      return null;
+      Plan best = cheapest(eqplans);
+      int bestcost = (best != null) ? best.blocksAccessed() : myplan.blocksAccessed();
+      if (best == null) {
+         Plan p = cheapest(rangeplans);
+         if (p != null && p.blocksAccessed() < bestcost) {
+            best = p;
+            bestcost = p.blocksAccessed();
+         }
+      }
+      List<IndexedPlan> candidates = new ArrayList<IndexedPlan>(eqplans);
+      candidates.addAll(rangeplans);
+      Plan bitmap = makeBitmapSelect(candidates);
+      if (bitmap != null && bitmap.blocksAccessed() < bestcost)
+         best = bitmap;
+      return best;
+   }
+   
+   /**
+    * Constructs a range select on an ordered index
+    * whose leading fields are restricted by the predicate:
+    * the fields that it equates with constants, possibly
+    * followed by one field that it bounds.
+    * An index that covers the query may also be scanned whole.
+    * The method returns null if the index is not useful.
+    */
+   private IndexedPlan makeIndexRangeSelect(IndexInfo ii, List<Constant> prefix) {
+      String fldname = ii.fieldNames().get(prefix.size());
+      Constant lo = mypred.lowerBound(fldname);
+      Constant hi = mypred.upperBound(fldname);
+      if (prefix.isEmpty() && lo == null && hi == null && !covers(ii))
+         return null;
+      return new IndexRangeSelectPlan(myplan, ii, bound(ii, prefix, lo),
+                                      bound(ii, prefix, hi), covers(ii), tx);
+   }
+   
+   /**
+    * Constructs a bitmap select, which collects the record
+    * identifiers found by one or more of the specified index
+    * plans, intersects them, and reads each data block once.
+    * Starting with the most selective plan, each plan is added
+    * if the intersection makes the estimated cost lower.
+    * The method returns null if there are no plans.
+    */
+   private Plan makeBitmapSelect(List<IndexedPlan> candidates) {
+      candidates.sort(Comparator.comparingInt(IndexedPlan::recordsOutput));
+      List<IndexedPlan> chosen = new ArrayList<IndexedPlan>();
+      Plan best = null;
+      for (IndexedPlan ip : candidates) {
+         chosen.add(ip);
+         Plan p = new BitmapSelectPlan(myplan, new ArrayList<IndexedPlan>(chosen), tx);
+         if (best == null || p.blocksAccessed() < best.blocksAccessed())
+            best = p;
+         else
+            chosen.remove(ip);
+      }
+      return best;
+   }
+   
+   private Plan cheapest(List<IndexedPlan> plans) {
+      Plan best = null;
+      for (Plan p : plans)
+         if (best == null || p.blocksAccessed() < best.blocksAccessed())
+            best = p;
+      return best;
+   }
+   
+   /**
+    * Returns true if the index has every field of the
+    * table that the query needs, so that the data records
+    * need not be read.
+    */
+   private boolean covers(IndexInfo ii) {
+      return ii.fieldNames().containsAll(myfields);
    }
    
+   /**
+    * Returns the constants that the predicate equates
+    * with the leading fields of the index, in key order.
+    */
+   private List<Constant> equalityPrefix(IndexInfo ii) {
+      List<Constant> vals = new ArrayList<Constant>();
+      for (String fldname : ii.fieldNames()) {
+         Constant val = mypred.equatesWithConstant(fldname);
+         if (val == null)
+            break;
+         vals.add(val);
+      }
+      return vals;
+   }
+   
+   /**
+    * Returns the search key made of the prefix and the bound,
+    * or of the prefix alone if there is no bound;
+    * a key prefix compares equal to all of its extensions.
+    */
+   private Constant bound(IndexInfo ii, List<Constant> prefix, Constant c) {
+      if (c == null)
+         return prefix.isEmpty() ? null : ii.searchKey(prefix);
+      List<Constant> vals = new ArrayList<Constant>(prefix);
+      vals.add(c);
+      return ii.searchKey(vals);
+   }
+   
+   /**
+    * Constructs an index join on an index of a single field
+    * that the predicate equates with a field of the current plan.
+    * A Bloom filter on the same field, if there is one, lets the
+    * join skip the outer records that have no match.
+    */
    private Plan makeIndexJoin(Plan current, Schema currsch) {
-      for (String fldname : indexes.keySet()) {
-         String outerfield = mypred.equatesWithField(fldname);
+      for (IndexInfo ii : indexes.values()) {
+         if (ii.fieldNames().size() > 1)
+            continue;
+         String outerfield = mypred.equatesWithField(ii.fieldNames().get(0));
          if (outerfield != null && currsch.hasField(outerfield)) {
-            IndexInfo ii = indexes.get(fldname);
-            Plan p = new IndexJoinPlan(current, myplan, ii, outerfield, tx);
+            FilterInfo filter = filterOn(ii.fieldNames());
+            Plan p = new IndexJoinPlan(current, myplan, ii, filter, outerfield, tx);
             p = addSelectPred(p);
             return addJoinPred(p, currsch);
          }
@@ -103,7 +244,28 @@ class TablePlanner {
       return null;
    }
    
+   private FilterInfo filterOn(List<String> fldnames) {
+      for (FilterInfo fi : filters.values())
+         if (fi.fieldNames().equals(fldnames))
+            return fi;
+      return null;
+   }
+   
+   /**
+    * Constructs a product join of the current plan and the table.
+    * If the predicate equates a field of the table with a field
+    * of the current plan, a block nested loop join is used,
+    * which skips the records of the current plan that have
+    * no match in a chunk of the table.
+    */
    private Plan makeProductJoin(Plan current, Schema currsch) {
+      for (String fldname : myschema.fields()) {
+         String outerfield = mypred.equatesWithField(fldname);
+         if (outerfield != null && currsch.hasField(outerfield)) {
+            Plan p = new BlockNestedLoopJoinPlan(current, addSelectPred(myplan), outerfield, fldname, tx);
+            return addJoinPred(p, currsch);
+         }
+      }
       Plan p = makeProductPlan(current);
       return addJoinPred(p, currsch);
    }
@@ -63,4 +63,13 @@ public interface UpdatePlanner {
     * @return the number of affected records
     */
    public int executeCreateIndex(CreateIndexData data, Transaction tx);
+   
+   /**
+    * Executes the specified copy statement, and
+    * returns the number of loaded records.
+    * @param data the parsed representation of the copy statement
+    * @param tx the calling transaction
+    * @return the number of loaded records
+    */
+   public int executeCopy(CopyData data, Transaction tx);
 }
@@ -0,0 +1,117 @@
+package rs.raf.simpledb.query;
+
+import java.util.*;
+
+import rs.raf.simpledb.tx.Transaction;
+import rs.raf.simpledb.record.RidSet;
+import rs.raf.simpledb.record.Schema;
+import rs.raf.simpledb.query.operators.RidSetScan;
+import rs.raf.simpledb.query.operators.Scan;
+import rs.raf.simpledb.query.operators.TableScan;
+
+/** The Plan class corresponding to the <i>indexselect</i>
+  * relational algebra operator, when the identifiers of the
+  * matching records are collected before the records are read.
+  * The identifiers found by each of the index plans are
+  * intersected, and the remaining records are then fetched
+  * in the order of their blocks, each block being read once.
+  * @author Edward Sciore
+  */
+public class BitmapSelectPlan implements Plan {
+   private Plan p;
+   private List<IndexedPlan> plans;
+
+   /**
+    * Creates a new node in the query tree that selects the
+    * records of the table found by all of the index plans.
+    * @param p the input table
+    * @param plans the index plans on the table
+    * @param tx the calling transaction
+    */
+   public BitmapSelectPlan(Plan p, List<IndexedPlan> plans, Transaction tx) {
+      this.p = p;
+      this.plans = plans;
+   }
+
+   /**
+    * Collects and intersects the record identifiers
+    * of the index plans, and opens a scan of their records.
+    * @see simpledb.query.Plan#open()
+    */
+   public Scan open() {
+      RidSet rids = plans.get(0).rids();
+      for (int i=1; i<plans.size() && rids.size() > 0; i++)
+         rids = rids.intersect(plans.get(i).rids());
+      // throws an exception if p is not a tableplan.
+      TableScan ts = (TableScan) p.open();
+      return new RidSetScan(ts, rids);
+   }
+
+   /**
+    * Estimates the number of block accesses, which is the
+    * cost of each index search, plus the number of distinct
+    * data blocks holding the records.
+    * @see simpledb.query.Plan#blocksAccessed()
+    */
+   public int blocksAccessed() {
+      int cost = 0;
+      for (IndexedPlan ip : plans)
+         cost += ip.indexBlocksAccessed();
+      return cost + fetchCost(recordsOutput(), p.blocksAccessed());
+   }
+
+   /**
+    * Estimates the number of output records, assuming
+    * that the selections of the index plans are independent.
+    * @see simpledb.query.Plan#recordsOutput()
+    */
+   public int recordsOutput() {
+      double records = p.recordsOutput();
+      for (IndexedPlan ip : plans)
+         records = records * ip.recordsOutput() / Math.max(1, p.recordsOutput());
+      return Math.max(1, (int) records);
+   }
+
+   /**
+    * Returns the distinct values of the field,
+    * which cannot exceed those of any index plan,
+    * or the number of output records.
+    * @see simpledb.query.Plan#distinctValues(java.lang.String)
+    */
+   public int distinctValues(String fldname) {
+      int result = recordsOutput();
+      for (IndexedPlan ip : plans)
+         result = Math.min(result, ip.distinctValues(fldname));
+      return result;
+   }
+
+   /**
+    * Returns the schema of the data table.
+    * @see simpledb.query.Plan#schema()
+    */
+   public Schema schema() {
+      return p.schema();
+   }
+
+   /**
+    * Estimates the number of distinct blocks that hold
+    * the specified number of records, chosen at random
+    * from a table of the specified number of blocks.
+    * @param records the number of records
+    * @param blocks the number of blocks of the table
+    * @return the estimated number of blocks to read
+    */
+   public static int fetchCost(int records, int blocks) {
+      if (blocks <= 1)
+         return Math.min(records, blocks);
+      double fraction = 1.0 - Math.pow(1.0 - 1.0 / blocks, records);
+      return (int) Math.ceil(blocks * fraction);
+   }
+
+	@Override
+	public void printPlan(int indentLevel) {
+		System.out.println("-".repeat(indentLevel)+"-> BITMAP SELECTION OF ->");
+		for (IndexedPlan ip : plans)
+			ip.printPlan(indentLevel+3);
+	}
+}
@@ -0,0 +1,83 @@
+package rs.raf.simpledb.query;
+
+import java.util.*;
+
+/**
+ * The class that combines the values of several fields
+ * into a single constant, such as the search key of an
+ * index on more than one field.
+ * Composite constants are ordered by their first value,
+ * then by their second value, and so on.
+ * <p>
+ * A constant having fewer values than another acts as
+ * a prefix of it: the two compare as equal if the shorter
+ * one is a prefix of the longer one, although they are not
+ * equal.  So a prefix, used as both bounds of a range,
+ * selects every key that begins with it.
+ * @author Edward Sciore
+ */
+public class CompositeConstant implements Constant {
+   private List<Constant> vals;
+
+   /**
+    * Create a constant by combining the specified values.
+    * @param vals the values, in the order of their fields
+    */
+   public CompositeConstant(List<Constant> vals) {
+      this.vals = new ArrayList<Constant>(vals);
+   }
+
+   /**
+    * Returns the number of values in the constant.
+    * @return the number of values
+    */
+   public int size() {
+      return vals.size();
+   }
+
+   /**
+    * Returns the value at the specified position.
+    * @param i the position of the value
+    * @return the value
+    */
+   public Constant get(int i) {
+      return vals.get(i);
+   }
+
+   /**
+    * Returns the Java values of the combined constants.
+    * @see simpledb.query.Constant#asJavaVal()
+    */
+   public List<Object> asJavaVal() {
+      List<Object> result = new ArrayList<Object>();
+      for (Constant c : vals)
+         result.add(c.asJavaVal());
+      return result;
+   }
+
+   public boolean equals(Object obj) {
+      if (!(obj instanceof CompositeConstant))
+         return false;
+      CompositeConstant cc = (CompositeConstant) obj;
+      return vals.equals(cc.vals);
+   }
+
+   public int compareTo(Constant c) {
+      CompositeConstant cc = (CompositeConstant) c;
+      int n = Math.min(vals.size(), cc.vals.size());
+      for (int i=0; i<n; i++) {
+         int cmp = vals.get(i).compareTo(cc.vals.get(i));
+         if (cmp != 0)
+            return cmp;
+      }
+      return 0;
+   }
+
+   public int hashCode() {
+      return vals.hashCode();
+   }
+
+   public String toString() {
+      return vals.toString();
+   }
+}
@@ -2,10 +2,13 @@ package rs.raf.simpledb.query;
 
 import rs.raf.simpledb.tx.Transaction;
 import rs.raf.simpledb.record.Schema;
+import rs.raf.simpledb.metadata.FilterInfo;
 import rs.raf.simpledb.metadata.IndexInfo;
 import rs.raf.simpledb.query.operators.IndexJoinScan;
 import rs.raf.simpledb.query.operators.Scan;
 import rs.raf.simpledb.query.operators.TableScan;
+import rs.raf.simpledb.index.BloomFilter;
+import rs.raf.simpledb.index.BloomFilterFile;
 import rs.raf.simpledb.index.Index;
 
 /** The Plan class corresponding to the <i>indexjoin</i>
@@ -15,6 +18,7 @@ import rs.raf.simpledb.index.Index;
 public class IndexJoinPlan implements Plan {
    private Plan p1, p2;
    private IndexInfo ii;
+   private FilterInfo filter;
    private String joinfield;
    private Schema sch = new Schema();
    
@@ -28,9 +32,27 @@ public class IndexJoinPlan implements Plan {
     * @param tx the calling transaction
     */
    public IndexJoinPlan(Plan p1, Plan p2, IndexInfo ii, String joinfield, Transaction tx) {
+      this(p1, p2, ii, null, joinfield, tx);
+   }
+   
+   /**
+    * Implements the join operator,
+    * using the specified LHS and RHS plans, and a Bloom filter
+    * of the RHS join field that tells which LHS records
+    * have no match, without searching the index.
+    * @param p1 the left-hand plan
+    * @param p2 the right-hand plan
+    * @param ii information about the right-hand index
+    * @param filter information about the Bloom filter, or null
+    * @param joinfield the left-hand field used for joining
+    * @param tx the calling transaction
+    */
+   public IndexJoinPlan(Plan p1, Plan p2, IndexInfo ii, FilterInfo filter,
+                        String joinfield, Transaction tx) {
       this.p1 = p1;
       this.p2 = p2;
       this.ii = ii;
+      this.filter = filter;
       this.joinfield = joinfield;
       sch.addAll(p1.schema());
       sch.addAll(p2.schema());
@@ -45,7 +67,12 @@ public class IndexJoinPlan implements Plan {
       // throws an exception if p2 is not a tableplan
       TableScan ts = (TableScan) p2.open();
       Index idx = ii.open();
-      return new IndexJoinScan(s, idx, joinfield, ts);
+      BloomFilter bf = null;
+      if (filter != null) {
+         BloomFilterFile bff = filter.open();
+         bf = bff.filter();
+      }
+      return new IndexJoinScan(s, idx, joinfield, ts, bf);
    }
    
    /**
@@ -93,7 +120,8 @@ public class IndexJoinPlan implements Plan {
 
 	@Override
 	public void printPlan(int indentLevel) {
-		System.out.println("-".repeat(indentLevel)+"-> INDEX JOIN OF ->");
+		String with = (filter != null) ? " (BLOOM FILTER)" : "";
+		System.out.println("-".repeat(indentLevel)+"-> INDEX JOIN"+with+" OF ->");
 		p1.printPlan(indentLevel+3);
 		p2.printPlan(indentLevel+3);
 		
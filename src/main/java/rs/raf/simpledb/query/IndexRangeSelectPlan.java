@@ -0,0 +1,152 @@
+package rs.raf.simpledb.query;
+
+import rs.raf.simpledb.tx.Transaction;
+import rs.raf.simpledb.record.RidSet;
+import rs.raf.simpledb.record.Schema;
+import rs.raf.simpledb.metadata.IndexInfo;
+import rs.raf.simpledb.query.operators.IndexOnlyScan;
+import rs.raf.simpledb.query.operators.IndexSelectScan;
+import rs.raf.simpledb.query.operators.Scan;
+import rs.raf.simpledb.query.operators.TableScan;
+import rs.raf.simpledb.index.Index;
+
+/** The Plan class corresponding to the <i>indexselect</i>
+  * relational algebra operator with a range of search keys,
+  * which requires an index that keeps its records in key order.
+  * The bounds are inclusive; strict comparisons are
+  * checked by a selection above this plan.
+  * @author Edward Sciore
+  */
+public class IndexRangeSelectPlan implements IndexedPlan {
+   private Plan p;
+   private IndexInfo ii;
+   private Constant lo, hi;
+   private boolean indexonly;
+   private int blocks, records, datablocks;
+   
+   /**
+    * Creates a new indexselect node in the query tree
+    * for the specified index and range.
+    * The cost of the range is estimated here, once,
+    * since it requires reading a few blocks of the index.
+    * @param p the input table
+    * @param ii information about the index
+    * @param lo the lower bound, or null
+    * @param hi the upper bound, or null
+    * @param tx the calling transaction 
+    */
+   public IndexRangeSelectPlan(Plan p, IndexInfo ii, Constant lo, Constant hi, Transaction tx) {
+      this(p, ii, lo, hi, false, tx);
+   }
+   
+   /**
+    * Creates a new indexselect node in the query tree
+    * for the specified index and range.
+    * If the query needs only the indexed fields of the table,
+    * the node can be index-only: their values are then taken
+    * from the index records, and the data records are not read.
+    * @param p the input table
+    * @param ii information about the index
+    * @param lo the lower bound, or null
+    * @param hi the upper bound, or null
+    * @param indexonly true if the data records are not needed
+    * @param tx the calling transaction 
+    */
+   public IndexRangeSelectPlan(Plan p, IndexInfo ii, Constant lo, Constant hi,
+                               boolean indexonly, Transaction tx) {
+      this.p = p;
+      this.ii = ii;
+      this.lo = lo;
+      this.hi = hi;
+      this.indexonly = indexonly;
+      blocks  = ii.rangeBlocksAccessed(lo, hi);
+      records = ii.rangeRecordsOutput(lo, hi);
+      if (!indexonly)
+         datablocks = (int) Math.ceil(records * ii.rangeBlocksPerRecord(lo, hi));
+   }
+   
+   /** 
+    * Creates a new indexselect scan over the range.
+    * @see simpledb.query.Plan#open()
+    */
+   public Scan open() {
+      Index idx = ii.open();
+      if (indexonly)
+         return new IndexOnlyScan(idx, ii.fieldNames(), lo, hi);
+      // throws an exception if p is not a tableplan.
+      TableScan ts = (TableScan) p.open();
+      return new IndexSelectScan(idx, lo, hi, ts);
+   }
+   
+   /**
+    * Returns the identifiers of the records
+    * whose search keys are in the range.
+    * @see simpledb.query.IndexedPlan#rids()
+    */
+   public RidSet rids() {
+      RidSet rids = new RidSet();
+      Index idx = ii.open();
+      idx.beforeRange(lo, hi);
+      while (idx.next())
+         rids.add(idx.getDataRid());
+      idx.close();
+      return rids;
+   }
+   
+   /**
+    * Estimates the cost of scanning the range of the index.
+    * @see simpledb.query.IndexedPlan#indexBlocksAccessed()
+    */
+   public int indexBlocksAccessed() {
+      return blocks;
+   }
+   
+   /**
+    * Estimates the number of block accesses to compute the 
+    * index selection, which is the cost of scanning the
+    * range of the index plus the cost of fetching the
+    * matching data records.
+    * The fetch cost is one block per record, unless a sample
+    * of the index shows that consecutive records in the range
+    * tend to be in the same data block; an index-only selection
+    * fetches no data records.
+    * @see simpledb.query.Plan#blocksAccessed()
+    */
+   public int blocksAccessed() {
+      return blocks + datablocks;
+   }
+   
+   /**
+    * Estimates the number of output records in the range.
+    * @see simpledb.query.Plan#recordsOutput()
+    */
+   public int recordsOutput() {
+      return records;
+   }
+   
+   /** 
+    * Returns the distinct values of the underlying table,
+    * which cannot exceed the number of output records.
+    * @see simpledb.query.Plan#distinctValues(java.lang.String)
+    */
+   public int distinctValues(String fldname) {
+      return Math.min(p.distinctValues(fldname), recordsOutput());
+   }
+   
+   /**
+    * Returns the schema of the data table,
+    * or of its indexed fields for an index-only selection.
+    * @see simpledb.query.Plan#schema()
+    */
+   public Schema schema() {
+      if (indexonly)
+         return ii.fieldSchema();
+      return p.schema(); 
+   }
+
+	@Override
+	public void printPlan(int indentLevel) {
+		System.out.println("-".repeat(indentLevel)+"-> INDEX RANGE SELECTION "+(indexonly ? "(INDEX ONLY) " : "")+"OF ->");
+		p.printPlan(indentLevel+3);
+	}
+}
@@ -1,8 +1,10 @@
 package rs.raf.simpledb.query;
 
 import rs.raf.simpledb.tx.Transaction;
+import rs.raf.simpledb.record.RidSet;
 import rs.raf.simpledb.record.Schema;
 import rs.raf.simpledb.metadata.IndexInfo;
+import rs.raf.simpledb.query.operators.IndexOnlyScan;
 import rs.raf.simpledb.query.operators.IndexSelectScan;
 import rs.raf.simpledb.query.operators.Scan;
 import rs.raf.simpledb.query.operators.TableScan;
@@ -12,10 +14,11 @@ import rs.raf.simpledb.index.Index;
   * relational algebra operator.
   * @author Edward Sciore
   */
-public class IndexSelectPlan implements Plan {
+public class IndexSelectPlan implements IndexedPlan {
    private Plan p;
    private IndexInfo ii;
    private Constant val;
+   private boolean indexonly;
    
    /**
     * Creates a new indexselect node in the query tree
@@ -26,9 +29,26 @@ public class IndexSelectPlan implements Plan {
     * @param tx the calling transaction 
     */
    public IndexSelectPlan(Plan p, IndexInfo ii, Constant val, Transaction tx) {
+      this(p, ii, val, false, tx);
+   }
+   
+   /**
+    * Creates a new indexselect node in the query tree
+    * for the specified index and selection constant.
+    * If the query needs only the indexed fields of the table,
+    * the node can be index-only: their values are then taken
+    * from the index records, and the data records are not read.
+    * @param p the input table
+    * @param ii information about the index
+    * @param val the selection constant
+    * @param indexonly true if the data records are not needed
+    * @param tx the calling transaction 
+    */
+   public IndexSelectPlan(Plan p, IndexInfo ii, Constant val, boolean indexonly, Transaction tx) {
       this.p = p;
       this.ii = ii;
       this.val = val;
+      this.indexonly = indexonly;
    }
    
    /** 
@@ -36,19 +56,47 @@ public class IndexSelectPlan implements Plan {
     * @see simpledb.query.Plan#open()
     */
    public Scan open() {
+      Index idx = ii.open();
+      if (indexonly)
+         return new IndexOnlyScan(idx, ii.fieldNames(), val);
       // throws an exception if p is not a tableplan.
       TableScan ts = (TableScan) p.open();
-      Index idx = ii.open();
       return new IndexSelectScan(idx, val, ts);
    }
    
+   /**
+    * Returns the identifiers of the records
+    * having the selection constant.
+    * @see simpledb.query.IndexedPlan#rids()
+    */
+   public RidSet rids() {
+      RidSet rids = new RidSet();
+      Index idx = ii.open();
+      idx.beforeFirst(val);
+      while (idx.next())
+         rids.add(idx.getDataRid());
+      idx.close();
+      return rids;
+   }
+   
+   /**
+    * Estimates the cost of the index traversal.
+    * @see simpledb.query.IndexedPlan#indexBlocksAccessed()
+    */
+   public int indexBlocksAccessed() {
+      return ii.blocksAccessed();
+   }
+   
    /**
     * Estimates the number of block accesses to compute the 
     * index selection, which is the same as the 
-    * index traversal cost plus the number of matching data records.
+    * index traversal cost plus the number of matching data records,
+    * which an index-only selection does not read.
     * @see simpledb.query.Plan#blocksAccessed()
     */
    public int blocksAccessed() {
+      if (indexonly)
+         return ii.blocksAccessed();
       return ii.blocksAccessed() + recordsOutput();
    }
    
@@ -71,16 +119,19 @@ public class IndexSelectPlan implements Plan {
    }
    
    /**
-    * Returns the schema of the data table.
+    * Returns the schema of the data table,
+    * or of its indexed fields for an index-only selection.
     * @see simpledb.query.Plan#schema()
     */
    public Schema schema() {
+      if (indexonly)
+         return ii.fieldSchema();
       return p.schema(); 
    }
 
 	@Override
 	public void printPlan(int indentLevel) {
-		System.out.println("-".repeat(indentLevel)+"-> INDEX SELECTION OF ->");
+		System.out.println("-".repeat(indentLevel)+"-> INDEX SELECTION "+(indexonly ? "(INDEX ONLY) " : "")+"OF ->");
 		p.printPlan(indentLevel+3);
 		
 	}
@@ -0,0 +1,28 @@
+package rs.raf.simpledb.query;
+
+import rs.raf.simpledb.record.RidSet;
+
+/**
+ * The interface implemented by the plans that find
+ * their records with an index.
+ * Such a plan can also return the identifiers of its
+ * records without reading them, so that the records
+ * of several plans can be combined first
+ * (see {@link BitmapSelectPlan}).
+ * @author Edward Sciore
+ */
+public interface IndexedPlan extends Plan {
+   /**
+    * Returns the identifiers of the records found
+    * with the index, reading only the index.
+    * @return the set of record identifiers
+    */
+   public RidSet rids();
+
+   /**
+    * Estimates the number of index blocks read
+    * in order to find the records.
+    * @return the estimated number of index block accesses
+    */
+   public int indexBlocksAccessed();
+}
@@ -24,8 +24,10 @@ public class IntConstant implements Constant {
    }
    
    public boolean equals(Object obj) {
+      if (!(obj instanceof IntConstant))
+         return false;
       IntConstant ic = (IntConstant) obj;
-      return ic != null && val.equals(ic.val);
+      return val.equals(ic.val);
    }
    
    public int compareTo(Constant c) {
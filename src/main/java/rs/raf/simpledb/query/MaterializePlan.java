@@ -2,7 +2,7 @@ package rs.raf.simpledb.query;
 
 import rs.raf.simpledb.record.Schema;
 import rs.raf.simpledb.record.TableInfo;
-import rs.raf.simpledb.utils.Page;
+import rs.raf.simpledb.SimpleDBEngine;
 import rs.raf.simpledb.tx.Transaction;
 import rs.raf.simpledb.query.operators.Scan;
 import rs.raf.simpledb.query.operators.UpdateScan;
@@ -58,7 +58,7 @@ public class MaterializePlan implements Plan {
    public int blocksAccessed() {
       // create a dummy TableInfo object to calculate record length
       TableInfo ti = new TableInfo("", srcplan.schema());
-      double rpb = (double) (Page.BLOCK_SIZE / ti.recordLength());
+      double rpb = (double) (SimpleDBEngine.fileMgr().blockSize() / ti.recordLength());
       return (int) Math.ceil(srcplan.recordsOutput() / rpb);
    }
    
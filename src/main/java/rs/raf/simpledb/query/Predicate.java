@@ -124,6 +124,19 @@ public class Predicate {
       return null;
    }
    
+   /**
+    * Returns true if a term of the predicate
+    * refers to the specified field.
+    * @param fldname the name of the field
+    * @return true if the predicate refers to the field
+    */
+   public boolean mentions(String fldname) {
+      for (Term t : terms)
+         if (t.mentions(fldname))
+            return true;
+      return false;
+   }
+   
    /**
     * Determines if there is a term of the form "F1=F2"
     * where F1 is the specified field and F2 is another field.
@@ -141,6 +154,40 @@ public class Predicate {
       return null;
    }
    
+   /**
+    * Returns the greatest constant c such that a term
+    * requires the specified field to be at least c,
+    * or null if there is no such term.
+    * @param fldname the name of the field
+    * @return the inclusive lower bound of the field, or null
+    */
+   public Constant lowerBound(String fldname) {
+      Constant result = null;
+      for (Term t : terms) {
+         Constant c = t.lowerBound(fldname);
+         if (c != null && (result == null || c.compareTo(result) > 0))
+            result = c;
+      }
+      return result;
+   }
+   
+   /**
+    * Returns the least constant c such that a term
+    * requires the specified field to be at most c,
+    * or null if there is no such term.
+    * @param fldname the name of the field
+    * @return the inclusive upper bound of the field, or null
+    */
+   public Constant upperBound(String fldname) {
+      Constant result = null;
+      for (Term t : terms) {
+         Constant c = t.upperBound(fldname);
+         if (c != null && (result == null || c.compareTo(result) < 0))
+            result = c;
+      }
+      return result;
+   }
+   
    public String toString() {
       Iterator<Term> iter = terms.iterator();
       if (!iter.hasNext()) 
@@ -24,8 +24,10 @@ public class StringConstant implements Constant {
    }
    
    public boolean equals(Object obj) {
+      if (!(obj instanceof StringConstant))
+         return false;
       StringConstant sc = (StringConstant) obj;
-      return sc != null && val.equals(sc.val);
+      return val.equals(sc.val);
    }
    
    public int compareTo(Constant c) {
@@ -5,12 +5,26 @@ import rs.raf.simpledb.record.Schema;
 
 /**
  * A term is a comparison between two expressions.
+ * The comparison is one of =, &lt;, &lt;=, &gt; and &gt;=.
  * @author Edward Sciore
  *
  */
 
 public class Term {
+   public static final String EQ = "=";
+   public static final String LT = "<";
+   public static final String LE = "<=";
+   public static final String GT = ">";
+   public static final String GE = ">=";
+   
+   /**
+    * The reduction factor assumed for a range comparison,
+    * for which the statistics give no better estimate.
+    */
+   private static final int RANGE_REDUCTION = 3;
+   
    private Expression lhs, rhs;
+   private String op;
 	   
    /**
     * Creates a new term that compares two expressions
@@ -19,7 +33,19 @@ public class Term {
     * @param rhs  the RHS expression
     */
    public Term(Expression lhs, Expression rhs) {
+      this(lhs, EQ, rhs);
+   }
+   
+   /**
+    * Creates a new term that compares two expressions
+    * using the specified operator.
+    * @param lhs  the LHS expression
+    * @param op   the comparison operator
+    * @param rhs  the RHS expression
+    */
+   public Term(Expression lhs, String op, Expression rhs) {
       this.lhs = lhs;
+      this.op = op;
       this.rhs = rhs;
    }
    
@@ -33,6 +59,8 @@ public class Term {
     */
    public int reductionFactor(Plan p) {
       String lhsName, rhsName;
+      if (!op.equals(EQ))
+         return RANGE_REDUCTION;
       if (lhs.isFieldName() && rhs.isFieldName()) {
          lhsName = lhs.asFieldName();
          rhsName = rhs.asFieldName();
@@ -63,6 +91,8 @@ public class Term {
     * @return either the constant or null
     */
    public Constant equatesWithConstant(String fldname) {
+      if (!op.equals(EQ))
+         return null;
       if (lhs.isFieldName() &&
           lhs.asFieldName().equals(fldname) &&
           rhs.isConstant())
@@ -84,6 +114,8 @@ public class Term {
     * @return either the name of the other field, or null
     */
    public String equatesWithField(String fldname) {
+      if (!op.equals(EQ))
+         return null;
       if (lhs.isFieldName() &&
           lhs.asFieldName().equals(fldname) &&
           rhs.isFieldName())
@@ -96,6 +128,78 @@ public class Term {
          return null;
    }
    
+   /**
+    * Determines if this term bounds the specified field
+    * from below by a constant, that is, if it has the form
+    * "F&gt;=c", "F&gt;c" or "F=c" (or the mirrored form).
+    * If so, the method returns that constant.
+    * If not, the method returns null.
+    * Strict comparisons return the constant as well,
+    * so the bound is inclusive.
+    * @param fldname the name of the field
+    * @return either the constant or null
+    */
+   public Constant lowerBound(String fldname) {
+      return bound(fldname, GE, GT);
+   }
+   
+   /**
+    * Determines if this term bounds the specified field
+    * from above by a constant, that is, if it has the form
+    * "F&lt;=c", "F&lt;c" or "F=c" (or the mirrored form).
+    * If so, the method returns that constant.
+    * If not, the method returns null.
+    * @param fldname the name of the field
+    * @return either the constant or null
+    */
+   public Constant upperBound(String fldname) {
+      return bound(fldname, LE, LT);
+   }
+   
+   private Constant bound(String fldname, String inclusive, String strict) {
+      String fieldop;
+      Constant c;
+      if (lhs.isFieldName() && lhs.asFieldName().equals(fldname) && rhs.isConstant()) {
+         fieldop = op;
+         c = rhs.asConstant();
+      }
+      else if (rhs.isFieldName() && rhs.asFieldName().equals(fldname) && lhs.isConstant()) {
+         fieldop = mirror(op);
+         c = lhs.asConstant();
+      }
+      else
+         return null;
+      if (fieldop.equals(EQ) || fieldop.equals(inclusive) || fieldop.equals(strict))
+         return c;
+      else
+         return null;
+   }
+   
+   /**
+    * Returns the operator that compares the same way
+    * when its operands are swapped.
+    */
+   private static String mirror(String op) {
+      switch (op) {
+         case LT: return GT;
+         case LE: return GE;
+         case GT: return LT;
+         case GE: return LE;
+         default: return op;
+      }
+   }
+   
+   /**
+    * Returns true if either of the term's expressions
+    * is the specified field.
+    * @param fldname the name of the field
+    * @return true if the term refers to the field
+    */
+   public boolean mentions(String fldname) {
+      return (lhs.isFieldName() && lhs.asFieldName().equals(fldname))
+          || (rhs.isFieldName() && rhs.asFieldName().equals(fldname));
+   }
+   
    /**
     * Returns true if both of the term's expressions
     * apply to the specified schema.
@@ -107,19 +211,26 @@ public class Term {
    }
    
    /**
-    * Returns true if both of the term's expressions
-    * evaluate to the same constant,
-    * with respect to the specified scan.
+    * Returns true if the values of the term's expressions
+    * satisfy the comparison, with respect to the specified scan.
     * @param s the scan
-    * @return true if both expressions have the same value in the scan
+    * @return true if the comparison holds in the scan
     */
    public boolean isSatisfied(Scan s) {
       Constant lhsval = lhs.evaluate(s);
       Constant rhsval = rhs.evaluate(s);
-      return rhsval.equals(lhsval);
+      if (op.equals(EQ))
+         return rhsval.equals(lhsval);
+      int cmp = lhsval.compareTo(rhsval);
+      switch (op) {
+         case LT: return cmp < 0;
+         case LE: return cmp <= 0;
+         case GT: return cmp > 0;
+         default: return cmp >= 0;
+      }
    }
    
    public String toString() {
-      return lhs.toString() + "=" + rhs.toString();
+      return lhs.toString() + op + rhs.toString();
    }
 }
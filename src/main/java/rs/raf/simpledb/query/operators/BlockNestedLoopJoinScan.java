@@ -1,5 +1,7 @@
 package rs.raf.simpledb.query.operators;
 
+import rs.raf.simpledb.SimpleDBEngine;
+import rs.raf.simpledb.index.BloomFilter;
 import rs.raf.simpledb.query.Constant;
 import rs.raf.simpledb.tx.Transaction;
 import rs.raf.simpledb.utils.BufferNeeds;
@@ -17,10 +19,16 @@ import rs.raf.simpledb.operators.ChunkScan;
   3. Kada se iscrpi chunk, ucitaj sledeci chunk i ponovi od koraka 2
   4. Kada se iscrpe svi chunk-ovi, zavrsi
 
+  Pri ucitavanju chunk-a pravi se Bloom filter njegovih join vrednosti;
+  spoljasnje torke cija vrednost nije u filteru se preskacu bez
+  poredjenja sa torkama chunk-a (broj preskocenih se vidi u
+  BloomFilter.skippedProbes()).
+
  */
 public class BlockNestedLoopJoinScan implements Scan {
     private Scan outerScan;         //Spoljasnja relacija
     private Scan innerChunkScan;    //Trenutni chunk unutrasnje relacije
+    private BloomFilter chunkFilter; //Join vrednosti trenutnog chunk-a
     private TableInfo innerTi;      //Metapodaci unutrasnje relacije
     private String joinField1;      //Join polje iz spoljasnje relacije
     private String joinField2;      //Join polje iz unutrasnje relacije
@@ -57,10 +65,7 @@ public class BlockNestedLoopJoinScan implements Scan {
     @Override
     public void beforeFirst() {
         nextBlockNum = 0;
-        hasMoreOuter = true;
-        outerScan.beforeFirst();
-        hasMoreOuter = outerScan.next();
-        useNextChunk();
+        hasMoreOuter = startChunk();
     }
     
     /*
@@ -70,28 +75,46 @@ public class BlockNestedLoopJoinScan implements Scan {
     public boolean next() {
         while (hasMoreOuter) {
             //Pokusaj da nadjes match u trenutnom chunk-u
-            while (innerChunkScan != null && innerChunkScan.next()) {
+            while (innerChunkScan.next()) {
                 if (matchesJoinCondition()) {
                     return true;
                 }
             }
             
             //Nema vise u chunk-u, predji na sledecu spoljasnju torku
-            hasMoreOuter = outerScan.next();
-            
-            if (hasMoreOuter) {
+            if (nextOuter()) {
                 //Resetuj chunk za novu spoljasnju torku
-                if (innerChunkScan != null) {
-                    innerChunkScan.beforeFirst();
-                }
+                innerChunkScan.beforeFirst();
             } else {
                 //Nema vise spoljasnih torki, pokusaj sa sledecim chunk-om
-                if (useNextChunk()) {
-                    outerScan.beforeFirst();
-                    hasMoreOuter = outerScan.next();
-                } else {
-                    return false; //Nema vise chunk-ova
-                }
+                hasMoreOuter = startChunk();
+            }
+        }
+        return false;
+    }
+    
+    /*
+      Prelazi na sledecu spoljasnju torku cija join vrednost
+      moze biti u trenutnom chunk-u.
+     */
+    private boolean nextOuter() {
+        while (outerScan.next()) {
+            if (chunkFilter.mightContain(outerScan.getVal(joinField1))) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /*
+      Ucitava chunk-ove dok se ne nadje spoljasnja torka
+      koja moze imati par u chunk-u.
+     */
+    private boolean startChunk() {
+        while (useNextChunk()) {
+            outerScan.beforeFirst();
+            if (nextOuter()) {
+                return true;
             }
         }
         return false;
@@ -112,6 +135,7 @@ public class BlockNestedLoopJoinScan implements Scan {
     private boolean useNextChunk() {
         if (innerChunkScan != null) {
             innerChunkScan.close();
+            innerChunkScan = null;
         }
         
         if (nextBlockNum >= fileSize) {
@@ -124,6 +148,15 @@ public class BlockNestedLoopJoinScan implements Scan {
         }
         
         innerChunkScan = new ChunkScan(innerTi, nextBlockNum, endBlock, tx);
+        
+        //Bloom filter join vrednosti chunk-a
+        int slots = SimpleDBEngine.fileMgr().blockSize() / (innerTi.recordLength() + RecordPage.HEADER_SIZE);
+        chunkFilter = new BloomFilter(BloomFilter.bitsFor((endBlock - nextBlockNum + 1) * slots));
+        while (innerChunkScan.next()) {
+            chunkFilter.add(innerChunkScan.getVal(joinField2));
+        }
+        innerChunkScan.beforeFirst();
+        
         nextBlockNum = endBlock + 1;
         return true;
     }
@@ -1,7 +1,9 @@
 package rs.raf.simpledb.query.operators;
 
+import rs.raf.simpledb.index.BloomFilter;
 import rs.raf.simpledb.index.Index;
 import rs.raf.simpledb.query.Constant;
+import rs.raf.simpledb.record.RidSet;
 
 /**
  * The scan class corresponding to the indexjoin relational
@@ -9,6 +11,13 @@ import rs.raf.simpledb.query.Constant;
  * The code is very similar to that of ProductScan, 
  * which makes sense because an index join is essentially
  * the product of each LHS record with the matching RHS index records.
+ * The identifiers of the matching RHS records are collected
+ * and sorted first, so that the records are read in the order
+ * of their blocks; consecutive LHS records having the same join
+ * value reuse them.
+ * If a Bloom filter of the RHS join field is given, the LHS
+ * records whose join value it does not contain are skipped
+ * without searching the index.
  * @author Edward Sciore
  */
 public class IndexJoinScan implements Scan {
@@ -16,6 +25,11 @@ public class IndexJoinScan implements Scan {
    private TableScan ts;  // the data table
    private Index idx;
    private String joinfield;
+   private Constant searchkey = null;
+   private RidSet rids;
+   private BloomFilter filter;
+   private int current;
+   private boolean hasmore;
    
    /**
     * Creates an index join scan for the specified LHS scan and 
@@ -25,10 +39,24 @@ public class IndexJoinScan implements Scan {
     * @param joinfield the LHS field used for joining
     */
    public IndexJoinScan(Scan s, Index idx, String joinfield, TableScan ts) {
+      this(s, idx, joinfield, ts, null);
+   }
+   
+   /**
+    * Creates an index join scan for the specified LHS scan and 
+    * RHS index, which skips the LHS records that have no
+    * key in the specified filter.
+    * @param s the LHS scan
+    * @param idx the RHS index
+    * @param joinfield the LHS field used for joining
+    * @param filter a filter of the RHS join values, or null
+    */
+   public IndexJoinScan(Scan s, Index idx, String joinfield, TableScan ts, BloomFilter filter) {
       this.s = s;
       this.idx  = idx;
       this.joinfield = joinfield;
       this.ts = ts;
+      this.filter = filter;
       beforeFirst();
    }
    
@@ -37,29 +65,36 @@ public class IndexJoinScan implements Scan {
     * That is, the LHS scan will be positioned at its
     * first record, and the index will be positioned
     * before the first record for the join value.
+    * If the LHS scan has no records, the scan has none either.
     * @see simpledb.query.Scan#beforeFirst()
     */
    public void beforeFirst() {
+      searchkey = null;
       s.beforeFirst();
-      s.next();
-      resetIndex();
+      hasmore = s.next();
+      if (hasmore)
+         resetIndex();
    }
    
    /**
     * Moves the scan to the next record.
-    * The method moves to the next index record, if possible.
+    * The method moves to the next matching RHS record, if possible.
     * Otherwise, it moves to the next LHS record and the
-    * first index record.
+    * first of its matching records.
     * If there are no more LHS records, the method returns false.
     * @see simpledb.query.Scan#next()
     */
    public boolean next() {
+      if (!hasmore)
+         return false;
       while (true) {
-         if (idx.next()) {
-            ts.moveToRid(idx.getDataRid());
+         current++;
+         if (current < rids.size()) {
+            ts.moveToRid(rids.get(current));
             return true;
          }
-         if (!s.next())
+         hasmore = s.next();
+         if (!hasmore)
             return false;
          resetIndex();
       }
@@ -116,7 +151,16 @@ public class IndexJoinScan implements Scan {
    }
    
    private void resetIndex() {
-      Constant searchkey = s.getVal(joinfield);
+      Constant key = s.getVal(joinfield);
+      current = -1;
+      if (key.equals(searchkey))
+         return;
+      searchkey = key;
+      rids = new RidSet();
+      if (filter != null && !filter.mightContain(searchkey))
+         return;
       idx.beforeFirst(searchkey);
+      while (idx.next())
+         rids.add(idx.getDataRid());
    }
 }
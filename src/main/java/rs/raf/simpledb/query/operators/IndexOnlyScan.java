@@ -0,0 +1,121 @@
+package rs.raf.simpledb.query.operators;
+
+import java.util.List;
+
+import rs.raf.simpledb.index.Index;
+import rs.raf.simpledb.index.IndexKey;
+import rs.raf.simpledb.query.Constant;
+
+/**
+ * The scan class corresponding to the select relational
+ * algebra operator, for a query whose fields of the table
+ * are all indexed fields.
+ * The values of the fields are taken from the datavals
+ * of the index records, so the data records are never read.
+ * @author Edward Sciore
+ */
+public class IndexOnlyScan implements Scan {
+   private Index idx;
+   private List<String> fldnames;
+   private Constant val, lo, hi;
+   private boolean range = false;
+   private List<Constant> current = null;
+
+   /**
+    * Creates an index-only scan for the specified
+    * index and selection constant.
+    * @param idx the index
+    * @param fldnames the indexed fields, in key order
+    * @param val the selection constant
+    */
+   public IndexOnlyScan(Index idx, List<String> fldnames, Constant val) {
+      this.idx = idx;
+      this.fldnames = fldnames;
+      this.val = val;
+      beforeFirst();
+   }
+
+   /**
+    * Creates an index-only scan for the specified
+    * index and range of search keys.
+    * @param idx the index
+    * @param fldnames the indexed fields, in key order
+    * @param lo the inclusive lower bound, or null
+    * @param hi the inclusive upper bound, or null
+    */
+   public IndexOnlyScan(Index idx, List<String> fldnames, Constant lo, Constant hi) {
+      this.idx = idx;
+      this.fldnames = fldnames;
+      this.lo = lo;
+      this.hi = hi;
+      range = true;
+      beforeFirst();
+   }
+
+   /**
+    * Positions the index before the first instance of the
+    * selection constant, or of the first search key in the range.
+    * @see simpledb.query.Scan#beforeFirst()
+    */
+   public void beforeFirst() {
+      current = null;
+      if (range)
+         idx.beforeRange(lo, hi);
+      else
+         idx.beforeFirst(val);
+   }
+
+   /**
+    * Moves the index to its next matching record.
+    * @see simpledb.query.Scan#next()
+    */
+   public boolean next() {
+      current = null;
+      return idx.next();
+   }
+
+   /**
+    * Closes the scan by closing the index.
+    * @see simpledb.query.Scan#close()
+    */
+   public void close() {
+      idx.close();
+   }
+
+   /**
+    * Returns the value of the field in the dataval
+    * of the current index record.
+    * @see simpledb.query.Scan#getVal(java.lang.String)
+    */
+   public Constant getVal(String fldname) {
+      if (current == null)
+         current = IndexKey.values(idx.getDataVal());
+      return current.get(fldnames.indexOf(fldname));
+   }
+
+   /**
+    * Returns the value of the field in the dataval
+    * of the current index record.
+    * @see simpledb.query.Scan#getInt(java.lang.String)
+    */
+   public int getInt(String fldname) {
+      return (Integer) getVal(fldname).asJavaVal();
+   }
+
+   /**
+    * Returns the value of the field in the dataval
+    * of the current index record.
+    * @see simpledb.query.Scan#getString(java.lang.String)
+    */
+   public String getString(String fldname) {
+      return (String) getVal(fldname).asJavaVal();
+   }
+
+   /**
+    * Returns whether the field is one of the indexed fields.
+    * @see simpledb.query.Scan#hasField(java.lang.String)
+    */
+   public boolean hasField(String fldname) {
+      return fldnames.contains(fldname);
+   }
+}
@@ -11,7 +11,8 @@ import rs.raf.simpledb.query.Constant;
  */
 public class IndexSelectScan implements Scan {
    private Index idx;
-   private Constant val;
+   private Constant val, lo, hi;
+   private boolean range = false;
    private TableScan ts;
    
    /**
@@ -27,14 +28,34 @@ public class IndexSelectScan implements Scan {
       beforeFirst();
    }
    
+   /**
+    * Creates an index select scan for the specified
+    * index and range of search keys.
+    * @param idx the index
+    * @param lo the inclusive lower bound, or null
+    * @param hi the inclusive upper bound, or null
+    */
+   public IndexSelectScan(Index idx, Constant lo, Constant hi, TableScan ts) {
+      this.idx = idx;
+      this.lo  = lo;
+      this.hi  = hi;
+      this.ts  = ts;
+      range = true;
+      beforeFirst();
+   }
+   
    /**
     * Positions the scan before the first record,
     * which in this case means positioning the index
-    * before the first instance of the selection constant.
+    * before the first instance of the selection constant,
+    * or of the first search key in the range.
     * @see simpledb.query.Scan#beforeFirst()
     */
    public void beforeFirst() {
-      idx.beforeFirst(val);
+      if (range)
+         idx.beforeRange(lo, hi);
+      else
+         idx.beforeFirst(val);
    }
    
    /**
@@ -0,0 +1,89 @@
+package rs.raf.simpledb.query.operators;
+
+import rs.raf.simpledb.query.Constant;
+import rs.raf.simpledb.record.RidSet;
+
+/**
+ * The scan class that fetches the records of a set of
+ * record identifiers, found beforehand with one or more indexes.
+ * The records are read in the order of their blocks,
+ * so that each block of the table is read only once.
+ * @author Edward Sciore
+ */
+public class RidSetScan implements Scan {
+   private TableScan ts;
+   private RidSet rids;
+   private int current;
+
+   /**
+    * Creates a scan of the records in the specified set.
+    * @param ts a scan of the data table
+    * @param rids the identifiers of the records
+    */
+   public RidSetScan(TableScan ts, RidSet rids) {
+      this.ts = ts;
+      this.rids = rids;
+      beforeFirst();
+   }
+
+   /**
+    * Positions the scan before the first record of the set.
+    * @see simpledb.query.Scan#beforeFirst()
+    */
+   public void beforeFirst() {
+      current = -1;
+   }
+
+   /**
+    * Moves the table scan to the next record of the set,
+    * returning false if there are no more records.
+    * @see simpledb.query.Scan#next()
+    */
+   public boolean next() {
+      current++;
+      if (current >= rids.size())
+         return false;
+      ts.moveToRid(rids.get(current));
+      return true;
+   }
+
+   /**
+    * Closes the scan by closing the table scan.
+    * @see simpledb.query.Scan#close()
+    */
+   public void close() {
+      ts.close();
+   }
+
+   /**
+    * Returns the value of the field of the current data record.
+    * @see simpledb.query.Scan#getVal(java.lang.String)
+    */
+   public Constant getVal(String fldname) {
+      return ts.getVal(fldname);
+   }
+
+   /**
+    * Returns the value of the field of the current data record.
+    * @see simpledb.query.Scan#getInt(java.lang.String)
+    */
+   public int getInt(String fldname) {
+      return ts.getInt(fldname);
+   }
+
+   /**
+    * Returns the value of the field of the current data record.
+    * @see simpledb.query.Scan#getString(java.lang.String)
+    */
+   public String getString(String fldname) {
+      return ts.getString(fldname);
+   }
+
+   /**
+    * Returns whether the data record has the specified field.
+    * @see simpledb.query.Scan#hasField(java.lang.String)
+    */
+   public boolean hasField(String fldname) {
+      return ts.hasField(fldname);
+   }
+}
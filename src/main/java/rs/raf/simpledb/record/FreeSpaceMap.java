@@ -0,0 +1,208 @@
+package rs.raf.simpledb.record;
+
+import rs.raf.simpledb.SimpleDBEngine;
+import rs.raf.simpledb.utils.Block;
+import rs.raf.simpledb.utils.Buffer;
+import rs.raf.simpledb.utils.BufferMgr;
+import rs.raf.simpledb.utils.FileMgr;
+import rs.raf.simpledb.utils.Page;
+import rs.raf.simpledb.tx.Transaction;
+
+/**
+ * The free-space map of a table, which records the blocks
+ * of the table that may have an empty slot.
+ * The map is stored in its own file, whose name is the
+ * table's name with the extension ".fsm".
+ * Block 0 of the file holds the number of the first block
+ * that may have an empty slot (all earlier blocks are full),
+ * followed by a counter of the blocks marked free;
+ * the remaining blocks hold a bitmap having one bit per block of the table.
+ * <p>
+ * A set bit means only that the block <i>may</i> have an empty slot:
+ * the bit is set when a block is appended or a record is deleted,
+ * and cleared when an insertion finds the block full; a block whose
+ * deleted records some transaction may still see keeps its bit.
+ * Thus a stale map costs at most a wasted probe of a block
+ * (or a block whose free space is not reused), never a lost record.
+ * <p>
+ * Since the map is only a hint, it is not protected by the locks
+ * of the transactions, and its changes are not logged, so that
+ * the writers of a table do not wait for each other to commit.
+ * Each block of the map is read and modified while its buffer
+ * is pinned and synchronized on, for the duration of one access.
+ * The changes of a transaction that rolls back are kept, and the
+ * changes not yet written to disk are lost in a crash; both only
+ * make the map stale.
+ * The hint is moved forward only if no block was marked free
+ * while the map was searched, as counted in block 0.
+ * <p>
+ * A table created before free-space maps existed gets a map
+ * in which every block may have an empty slot.
+ * @author Edward Sciore
+ */
+class FreeSpaceMap {
+   private static final int HINT_POS = 0;
+   private static final int FREED_POS = Page.INT_SIZE;
+   
+   private Transaction tx;
+   private String tblfile, fsmfile;
+   private int bitsPerBlock;
+   
+   /**
+    * Creates the free-space map of the specified table file,
+    * creating the map's file if it does not exist.
+    * @param tblfile the name of the table file
+    * @param tx the calling transaction
+    */
+   FreeSpaceMap(String tblfile, Transaction tx) {
+      this.tblfile = tblfile;
+      this.tx = tx;
+      int dot = tblfile.lastIndexOf('.');
+      fsmfile = (dot < 0 ? tblfile : tblfile.substring(0, dot)) + ".fsm";
+      bitsPerBlock = SimpleDBEngine.fileMgr().blockSize() * 8;
+      if (fileMgr().size(fsmfile) == 0) {
+         synchronized (FreeSpaceMap.class) {
+            if (fileMgr().size(fsmfile) > 0)
+               return;
+            bufferMgr().unpin(bufferMgr().pinNew(fsmfile, new ZeroFormatter()));
+            int numblocks = fileMgr().size(tblfile);
+            for (int b=0; b<numblocks; b++)
+               setBit(b, true);
+         }
+      }
+   }
+   
+   /**
+    * Returns the number of the first block of the table,
+    * starting with the specified one, that may have an empty slot,
+    * or -1 if no block has one.
+    * The hint is moved only if no earlier block is passed over.
+    * @param from the number of the first block to consider
+    * @return the block number, or -1
+    */
+   int nextFreeBlock(int from) {
+      Buffer hintbuff = bufferMgr().pin(new Block(fsmfile, 0));
+      try {
+         int hint, freed;
+         synchronized (hintbuff) {
+            hint = hintbuff.getInt(HINT_POS);
+            freed = hintbuff.getInt(FREED_POS);
+         }
+         int numblocks = fileMgr().size(tblfile);
+         int b = findFree(Math.max(hint, from), numblocks);
+         if (from <= hint) {
+            int newhint = (b < 0) ? numblocks : b;
+            synchronized (hintbuff) {
+               if (newhint != hint && hintbuff.getInt(FREED_POS) == freed)
+                  hintbuff.setInt(HINT_POS, newhint, tx.txNumber(), -1);
+            }
+         }
+         return b;
+      }
+      finally {
+         bufferMgr().unpin(hintbuff);
+      }
+   }
+   
+   /**
+    * Records that the specified block may have an empty slot.
+    * @param blknum the block number
+    */
+   void setFree(int blknum) {
+      setBit(blknum, true);
+      Buffer hintbuff = bufferMgr().pin(new Block(fsmfile, 0));
+      synchronized (hintbuff) {
+         int txnum = tx.txNumber();
+         hintbuff.setInt(FREED_POS, hintbuff.getInt(FREED_POS) + 1, txnum, -1);
+         if (blknum < hintbuff.getInt(HINT_POS))
+            hintbuff.setInt(HINT_POS, blknum, txnum, -1);
+      }
+      bufferMgr().unpin(hintbuff);
+   }
+   
+   /**
+    * Records that the specified block is full.
+    * @param blknum the block number
+    */
+   void setFull(int blknum) {
+      if (fileMgr().size(fsmfile) > bitmapBlock(blknum).number())
+         setBit(blknum, false);
+   }
+   
+   private int findFree(int b, int numblocks) {
+      while (b < numblocks) {
+         Block blk = bitmapBlock(b);
+         if (fileMgr().size(fsmfile) <= blk.number())
+            break;
+         Buffer buff = bufferMgr().pin(blk);
+         int last = Math.min(numblocks, blk.number() * bitsPerBlock);
+         try {
+            while (b < last) {
+               int word;
+               synchronized (buff) {
+                  word = buff.getInt(wordOffset(b));
+               }
+               if (word == 0) {
+                  // skip the rest of the word
+                  b = (b / Integer.SIZE + 1) * Integer.SIZE;
+                  continue;
+               }
+               if ((word & (1 << (b % Integer.SIZE))) != 0)
+                  return b;
+               b++;
+            }
+         }
+         finally {
+            bufferMgr().unpin(buff);
+         }
+      }
+      return -1;
+   }
+   
+   private void setBit(int blknum, boolean free) {
+      Block blk = bitmapBlock(blknum);
+      if (fileMgr().size(fsmfile) <= blk.number()) {
+         synchronized (FreeSpaceMap.class) {
+            while (fileMgr().size(fsmfile) <= blk.number())
+               bufferMgr().unpin(bufferMgr().pinNew(fsmfile, new ZeroFormatter()));
+         }
+      }
+      Buffer buff = bufferMgr().pin(blk);
+      synchronized (buff) {
+         int offset = wordOffset(blknum);
+         int word = buff.getInt(offset);
+         int mask = 1 << (blknum % Integer.SIZE);
+         int newword = free ? (word | mask) : (word & ~mask);
+         if (newword != word)
+            buff.setInt(offset, newword, tx.txNumber(), -1);
+      }
+      bufferMgr().unpin(buff);
+   }
+   
+   private Block bitmapBlock(int blknum) {
+      return new Block(fsmfile, 1 + blknum / bitsPerBlock);
+   }
+   
+   private int wordOffset(int blknum) {
+      return (blknum % bitsPerBlock) / Integer.SIZE * Page.INT_SIZE;
+   }
+   
+   private static FileMgr fileMgr() {
+      return SimpleDBEngine.fileMgr();
+   }
+   
+   private static BufferMgr bufferMgr() {
+      return SimpleDBEngine.bufferMgr();
+   }
+   
+   /**
+    * Formats a new block of the map with zeros.
+    */
+   private static class ZeroFormatter implements Page.PageFormatter {
+      public void format(Page p) {
+         int blocksize = SimpleDBEngine.fileMgr().blockSize();
+         for (int pos=0; pos+Page.INT_SIZE<=blocksize; pos += Page.INT_SIZE)
+            p.setInt(pos, 0);
+      }
+   }
+}
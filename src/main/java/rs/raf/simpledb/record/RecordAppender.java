@@ -0,0 +1,181 @@
+package rs.raf.simpledb.record;
+
+import static java.sql.Types.INTEGER;
+import static rs.raf.simpledb.record.RecordPage.EMPTY;
+import static rs.raf.simpledb.record.RecordPage.HEADER_SIZE;
+import static rs.raf.simpledb.record.RecordPage.INUSE;
+
+import java.util.*;
+
+import rs.raf.simpledb.SimpleDBEngine;
+import rs.raf.simpledb.utils.Block;
+import rs.raf.simpledb.utils.Page;
+import rs.raf.simpledb.tx.Transaction;
+
+/**
+ * Appends records to the end of a table file, a block at a time.
+ * Records are collected in memory until they fill a block;
+ * the block is then appended to the file already formatted
+ * with those records, so that each block is written once
+ * and no record is set field by field.
+ * Existing blocks of the file are not used, even if they have
+ * empty slots.
+ * <p>
+ * The records are not logged: the transaction keeps the end of
+ * the file locked, and its appended blocks are forced to disk when
+ * it commits, and cleared if it rolls back or a crash interrupts it
+ * (see {@link Transaction#appendFilled}). The free-space map lists
+ * only the last appended block, so the space of the other cleared
+ * blocks is not reused.
+ * @author Edward Sciore
+ */
+public class RecordAppender {
+   private TableInfo ti;
+   private Transaction tx;
+   private String filename;
+   private List<String> fields;
+   private int slotsPerBlock;
+   private Deque<Object[]> pending = new ArrayDeque<Object[]>();
+   private int firstblk = -1, count = 0;
+   
+   /**
+    * Creates an appender for the specified table,
+    * whose records will be given as values of the specified fields.
+    * The other fields of each record get the value 0 or "".
+    * @param ti the table's metadata
+    * @param fields the fields whose values are given, in order
+    * @param tx the calling transaction
+    */
+   public RecordAppender(TableInfo ti, List<String> fields, Transaction tx) {
+      this.ti = ti;
+      this.tx = tx;
+      this.fields = new ArrayList<String>(fields);
+      filename = ti.fileName();
+      for (String fldname : fields)
+         if (!ti.schema().hasField(fldname))
+         throw new RuntimeException("field " + fldname + " is not in table " + filename);
+      slotsPerBlock = SimpleDBEngine.fileMgr().blockSize() / (ti.recordLength() + HEADER_SIZE);
+      if (slotsPerBlock == 0)
+         throw new RuntimeException("a record of " + filename + " does not fit into a block");
+   }
+   
+   /**
+    * Appends a record having the specified values.
+    * Each value is an Integer or a String, according to the type of its field.
+    * @param vals the values of the record, in the order of the fields
+    */
+   public void append(Object[] vals) {
+      if (vals.length != fields.size())
+         throw new RuntimeException("expected " + fields.size() + " values, got " + vals.length);
+      for (int i=0; i<vals.length; i++)
+         checkValue(fields.get(i), vals[i]);
+      pending.add(vals);
+      count++;
+      if (pending.size() >= slotsPerBlock)
+         writeBlock();
+   }
+   
+   /**
+    * Writes the records of the last, partially filled block,
+    * and records that block in the table's free-space map.
+    * @return the number of records appended
+    */
+   public int close() {
+      int blknum = -1;
+      while (!pending.isEmpty())
+         blknum = writeBlock();
+      if (blknum >= 0)
+         new FreeSpaceMap(filename, tx).setFree(blknum);
+      return count;
+   }
+   
+   /**
+    * Returns the number of the first block appended,
+    * or -1 if no block has been appended.
+    * @return the first appended block
+    */
+   public int firstBlock() {
+      return firstblk;
+   }
+   
+   /**
+    * Appends a block filled with as many pending records as fit.
+    * @return the number of the appended block
+    */
+   private int writeBlock() {
+      Block blk = tx.appendFilled(filename, new FilledRecordFormatter(ti, fields, pending, tx.txNumber()));
+      if (firstblk < 0)
+         firstblk = blk.number();
+      return blk.number();
+   }
+   
+   private void checkValue(String fldname, Object val) {
+      if (ti.schema().type(fldname) == INTEGER) {
+         if (!(val instanceof Integer))
+            throw new RuntimeException("field " + fldname + " needs an integer, got " + val);
+      }
+      else {
+         if (!(val instanceof String))
+            throw new RuntimeException("field " + fldname + " needs a string, got " + val);
+      }
+   }
+   
+   /**
+    * Formats a new block, and moves as many of the specified
+    * records into its slots as fit.
+    * Each record goes into the next slot whose flag is still EMPTY,
+    * tagged with the appending transaction,
+    * as with {@link RecordPage#insert()}: a string longer than its
+    * field spills into the following bytes, and a slot whose flag
+    * was overwritten this way is skipped.
+    * A record whose strings would spill past the end of the
+    * block is left for the next block.
+    */
+   private static class FilledRecordFormatter extends RecordFormatter {
+      private TableInfo ti;
+      private List<String> fields;
+      private Deque<Object[]> records;
+      private int txnum;
+      
+      FilledRecordFormatter(TableInfo ti, List<String> fields, Deque<Object[]> records, int txnum) {
+         super(ti);
+         this.ti = ti;
+         this.fields = fields;
+         this.records = records;
+         this.txnum = txnum;
+      }
+      
+      public void format(Page page) {
+         super.format(page);
+         int slotsize = ti.recordLength() + HEADER_SIZE;
+         int blocksize = SimpleDBEngine.fileMgr().blockSize();
+         for (int pos=0; pos+slotsize<=blocksize && !records.isEmpty(); pos += slotsize) {
+            if (page.getInt(pos) != EMPTY)
+               continue;
+            if (pos > 0 && !fits(records.peek(), pos, blocksize))
+               break;
+            page.setInt(pos, INUSE);
+            page.setInt(pos + Page.INT_SIZE, txnum);
+            Object[] vals = records.poll();
+            for (int i=0; i<vals.length; i++) {
+               int fldpos = pos + HEADER_SIZE + ti.offset(fields.get(i));
+               if (vals[i] instanceof Integer)
+                  page.setInt(fldpos, (Integer) vals[i]);
+               else
+                  page.setString(fldpos, (String) vals[i]);
+            }
+         }
+      }
+      
+      private boolean fits(Object[] vals, int pos, int blocksize) {
+         for (int i=0; i<vals.length; i++)
+            if (vals[i] instanceof String) {
+               int end = pos + HEADER_SIZE + ti.offset(fields.get(i))
+                     + Page.INT_SIZE + ((String) vals[i]).getBytes().length;
+               if (end > blocksize)
+                  return false;
+            }
+         return true;
+      }
+   }
+}
@@ -1,12 +1,16 @@
 package rs.raf.simpledb.record;
 
+import rs.raf.simpledb.SimpleDBEngine;
 import rs.raf.simpledb.utils.Block;
 import rs.raf.simpledb.tx.Transaction;
+import rs.raf.simpledb.tx.concurrency.SnapshotMgr;
 
 /**
  * Manages a file of records.
  * There are methods for iterating through the records
  * and accessing their contents.
+ * Insertions use the table's {@link FreeSpaceMap}
+ * to go directly to a block that may have an empty slot.
  * @author Edward Sciore
  */
 public class RecordFile {
@@ -14,11 +18,19 @@ public class RecordFile {
    private Transaction tx;
    private String filename;
    private RecordPage rp;
+   private FreeSpaceMap fsm;
    private int currentblknum;
+   private boolean empty = false;
    
    /**
     * Constructs an object to manage a file of records.
-    * If the file does not exist, it is created.
+    * A file having no blocks is not extended: its first block
+    * is appended by the first insertion, which records it
+    * in the free-space map.
+    * Whether the file is empty is checked without locking its end:
+    * an inserter would otherwise keep that lock until it commits,
+    * and the other inserters could not append blocks meanwhile;
+    * a scan of the empty file locks it (see {@link #next()}).
     * @param ti the table metadata
     * @param tx the transaction
     */
@@ -26,8 +38,12 @@ public class RecordFile {
       this.ti = ti;
       this.tx = tx;
       filename = ti.fileName();
-      if (tx.size(filename) == 0)
-         appendBlock();
+      SnapshotMgr.addVersioned(filename);
+      if (SimpleDBEngine.fileMgr().size(filename) == 0) {
+         empty = true;
+         currentblknum = -1;
+         return;
+      }
       moveTo(0);
    }
    
@@ -35,7 +51,9 @@ public class RecordFile {
     * Closes the record file.
     */
    public void close() {
-      rp.close();
+      if (rp != null)
+         rp.close();
+      rp = null;
    }
    
    /**
@@ -43,7 +61,8 @@ public class RecordFile {
     * will wind up at the first record. 
     */
    public void beforeFirst() {
-      moveTo(0);
+      if (!empty)
+         moveTo(0);
    }
    
    /**
@@ -52,6 +71,12 @@ public class RecordFile {
     * @return false if there is no next record.
     */
    public boolean next() {
+      if (empty) {
+         // blocks may have been appended since the file was opened
+         if (tx.size(filename) == 0)
+            return false;
+         moveTo(0);
+      }
       while (true) {
          if (rp.next())
             return true;
@@ -110,29 +135,48 @@ public class RecordFile {
     */
    public void delete() {
       rp.delete();
+      freeSpaceMap().setFree(currentblknum);
    }
    
    /**
-    * Inserts a new, blank record somewhere in the file
-    * beginning at the current record.
+    * Inserts a new, blank record into the first block
+    * that has an empty slot, according to the free-space map.
+    * A block locked by another transaction is passed over,
+    * so that inserters do not wait for each other; it keeps
+    * its place in the map, as does a block whose only free slots
+    * hold deleted records that some transaction may still see.
     * If the new record does not fit into an existing block,
     * then a new block is appended to the file.
     */
    public void insert() {
-      while (!rp.insert()) {
-         if (atLastBlock())
+      FreeSpaceMap fsm = freeSpaceMap();
+      int from = 0;
+      while (true) {
+         int b = fsm.nextFreeBlock(from);
+         if (b < 0) {
             appendBlock();
-         moveTo(currentblknum + 1);
+            continue;
+         }
+         if (b != currentblknum)
+            moveTo(b);
+         if (rp.insert())
+            return;
+         if (rp.isFull())
+            fsm.setFull(b);
+         from = b + 1;
       }
    }
    
    /**
     * Positions the current record as indicated by the
     * specified RID. 
+    * The block is pinned again only if the record is
+    * not in the current block.
     * @param rid a record identifier
     */
    public void moveToRid(RID rid) {
-      moveTo(rid.blockNumber());
+      if (rp == null || rid.blockNumber() != currentblknum)
+         moveTo(rid.blockNumber());
       rp.moveToId(rid.id());
    }
    
@@ -149,6 +193,7 @@ public class RecordFile {
       if (rp != null)
          rp.close();
       currentblknum = b;
+      empty = false;
       Block blk = new Block(filename, currentblknum);
       rp = new RecordPage(blk, ti, tx);
    }
@@ -159,6 +204,17 @@ public class RecordFile {
    
    private void appendBlock() {
       RecordFormatter fmtr = new RecordFormatter(ti);
-      tx.append(filename, fmtr);
+      Block blk = tx.append(filename, fmtr);
+      freeSpaceMap().setFree(blk.number());
+   }
+   
+   /**
+    * Returns the table's free-space map, opening it on first use,
+    * so that scans that do not modify the table never touch it.
+    */
+   private FreeSpaceMap freeSpaceMap() {
+      if (fsm == null)
+         fsm = new FreeSpaceMap(filename, tx);
+      return fsm;
    }
 }
\ No newline at end of file
@@ -3,9 +3,11 @@ package rs.raf.simpledb.record;
 import static java.sql.Types.INTEGER;
 import static rs.raf.simpledb.utils.Page.*;
 
+import rs.raf.simpledb.SimpleDBEngine;
 import rs.raf.simpledb.utils.Page;
 
 import static rs.raf.simpledb.record.RecordPage.EMPTY;
+import static rs.raf.simpledb.record.RecordPage.HEADER_SIZE;
 
 /**
  * An object that can format a page to look like a block of 
@@ -26,15 +28,18 @@ class RecordFormatter implements Page.PageFormatter {
    /** 
     * Formats the page by allocating as many record slots
     * as possible, given the record length.
-    * Each record slot is assigned a flag of EMPTY.
+    * Each record slot is assigned a flag of EMPTY
+    * and no transaction.
     * Each integer field is given a value of 0, and
     * each string field is given a value of "".
     * @see simpledb.buffer.PageFormatter#format(simpledb.file.Page)
     */
    public void format(Page page) {
-      int recsize = ti.recordLength() + INT_SIZE;
-      for (int pos=0; pos+recsize<=BLOCK_SIZE; pos += recsize) {
+      int recsize = ti.recordLength() + HEADER_SIZE;
+      int blocksize = SimpleDBEngine.fileMgr().blockSize();
+      for (int pos=0; pos+recsize<=blocksize; pos += recsize) {
          page.setInt(pos, EMPTY);
+         page.setInt(pos + INT_SIZE, 0);
          makeDefaultRecord(page, pos);
       }
    }
@@ -43,9 +48,9 @@ class RecordFormatter implements Page.PageFormatter {
       for (String fldname : ti.schema().fields()) {
          int offset = ti.offset(fldname);
          if (ti.schema().type(fldname) == INTEGER)
-            page.setInt(pos + INT_SIZE + offset, 0);
+            page.setInt(pos + HEADER_SIZE + offset, 0);
          else
-            page.setString(pos + INT_SIZE + offset, "");
+            page.setString(pos + HEADER_SIZE + offset, "");
       }
    }
 }
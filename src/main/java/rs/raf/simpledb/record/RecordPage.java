@@ -1,21 +1,49 @@
 package rs.raf.simpledb.record;
 
+import static java.sql.Types.INTEGER;
+
+import java.util.*;
+
+import rs.raf.simpledb.SimpleDBEngine;
 import rs.raf.simpledb.utils.Block;
 import rs.raf.simpledb.utils.Page;
 import rs.raf.simpledb.tx.Transaction;
+import rs.raf.simpledb.tx.concurrency.Snapshot;
+import rs.raf.simpledb.tx.concurrency.SnapshotMgr;
 
 /**
  * Manages the placement and access of records in a block.
+ * Each record slot begins with a header holding its flag
+ * (EMPTY, INUSE or DELETED) and a transaction number:
+ * of the transaction that inserted or last updated the record
+ * if it is in use, and of the transaction that deleted it if
+ * it is deleted.
+ * A deleted record keeps its slot until no transaction can see it any more.
+ * <p>
+ * A read-write transaction sees the records in use,
+ * protected by its locks.
+ * A read-only transaction reads the block without locks, and sees
+ * the version of each record that its {@link Snapshot} sees:
+ * the one in the block, or an older one kept by the {@link VersionStore},
+ * to which a writer saves the record before its first change.
+ * It reads a copy of the block, made when the manager is created,
+ * so that the flag, the transaction number and the fields it reads
+ * all belong to the same moment, without further synchronization.
  * @author Edward Sciore
  */
 public class RecordPage {
-   public static final int EMPTY = 0, INUSE = 1;
+   public static final int EMPTY = 0, INUSE = 1, DELETED = 2;
+   public static final int HEADER_SIZE = 2 * Page.INT_SIZE;
    
    private Block blk;
    private TableInfo ti;
    private Transaction tx;
-   private int slotsize;
+   private Snapshot snap;
+   private Page page;
+   private int slotsize, blocksize;
    private int currentslot = -1;
+   private boolean full = false;
+   private Map<String,Object> version;
    
    /** Creates the record manager for the specified block.
      * The current record is set to be prior to the first one.
@@ -27,8 +55,13 @@ public class RecordPage {
       this.blk = blk;
       this.ti = ti;
       this.tx = tx;
-      slotsize = ti.recordLength() + Page.INT_SIZE;
+      snap = tx.snapshot();
+      slotsize = ti.recordLength() + HEADER_SIZE;
+      blocksize = SimpleDBEngine.fileMgr().blockSize();
+      SnapshotMgr.addVersioned(blk.fileName());
       tx.pin(blk);
+      if (snap != null && !blk.fileName().startsWith("temp"))
+         page = tx.copyOf(blk);
   }
    
    /**
@@ -42,11 +75,18 @@ public class RecordPage {
    }
    
    /**
-    * Moves to the next record in the block.
+    * Moves to the next record in the block
+    * that is visible to the transaction.
     * @return false if there is no next record.
     */
    public boolean next() {
-      return searchFor(INUSE);
+      currentslot++;
+      while (isValidSlot()) {
+         if (resolve())
+            return true;
+         currentslot++;
+      }
+      return false;
    }
    
    /**
@@ -56,8 +96,11 @@ public class RecordPage {
     * @return the integer stored in that field
     */
    public int getInt(String fldname) {
-      int position = fieldpos(fldname);
-      return tx.getInt(blk, position);
+      if (version != null)
+         return (Integer) version.get(fldname);
+      if (page != null)
+         return page.getInt(fieldpos(fldname));
+      return tx.getInt(blk, fieldpos(fldname));
    }
    
    /**
@@ -67,8 +110,11 @@ public class RecordPage {
     * @return the string stored in that field
     */
    public String getString(String fldname) {
-      int position = fieldpos(fldname);
-      return tx.getString(blk, position);
+      if (version != null)
+         return (String) version.get(fldname);
+      if (page != null)
+         return page.getString(fieldpos(fldname));
+      return tx.getString(blk, fieldpos(fldname));
    }
    
    /**
@@ -78,45 +124,88 @@ public class RecordPage {
     * @param val the integer value stored in that field
     */
    public void setInt(String fldname, int val) {
-      int position = fieldpos(fldname);
-      tx.setInt(blk, position, val);
+      keepOldVersion();
+      tx.setInt(blk, fieldpos(fldname), val);
    }
    
    /**
     * Stores a string at the specified field
     * of the current record.
+    * A string longer than its field spills into the following
+    * bytes, but not past the end of the block.
     * @param fldname the name of the field
     * @param val the string value stored in that field
     */
    public void setString(String fldname, String val) {
-      int position = fieldpos(fldname);
-      tx.setString(blk, position, val);
+      int end = fieldpos(fldname) + Page.INT_SIZE + val.getBytes().length;
+      if (end > blocksize)
+         throw new RuntimeException("string \"" + val + "\" is too long for field "
+               + fldname + " of " + blk.fileName());
+      keepOldVersion();
+      tx.setString(blk, fieldpos(fldname), val);
    }
    
    /**
     * Deletes the current record.
     * Deletion is performed by just marking the record
-    * as "deleted"; the current record does not change. 
+    * as deleted by the transaction; the current record does not change. 
     * To get to the next record, call next().
     */
    public void delete() {
-      int position = currentpos();
-      tx.setInt(blk, position, EMPTY);
+      keepOldVersion();
+      tx.setInt(blk, currentpos(), DELETED);
    }
    
    /**
     * Inserts a new, blank record somewhere in the page.
-    * Return false if there were no available slots.
+    * The record goes into an empty slot, or into the slot of
+    * a record deleted by a transaction older than the
+    * {@link SnapshotMgr#horizon() horizon}, which no transaction sees.
+    * Return false if there were no available slots,
+    * or if another transaction has a lock on the block:
+    * the block is locked exclusively before its slots are read,
+    * and an inserter does not wait for another one to commit.
     * @return false if the insertion was not possible
     */
    public boolean insert() {
-      currentslot = -1;
-      boolean found = searchFor(EMPTY);
-      if (found) {
+      full = false;
+      if (!tx.tryXLock(blk))
+         return false;
+      boolean deletedSlots = false;
+      int horizon = -1;
+      for (currentslot = 0; isValidSlot(); currentslot++) {
          int position = currentpos();
+         int flag = tx.getInt(blk, position);
+         if (flag == DELETED) {
+            if (horizon < 0)
+               horizon = SnapshotMgr.horizon();
+            if (tx.getInt(blk, position + Page.INT_SIZE) >= horizon) {
+               deletedSlots = true;
+               continue;
+            }
+            VersionStore.drop(blk, currentslot);
+         }
+         else if (flag != EMPTY)
+            continue;
+         tx.setInt(blk, position + Page.INT_SIZE, tx.txNumber());
          tx.setInt(blk, position, INUSE);
+         return true;
       }
-      return found;
+      full = !deletedSlots;
+      return false;
+   }
+   
+   /**
+    * Returns true if the last call to insert() found
+    * every slot of the block in use.
+    * A block locked by another transaction is not known to be
+    * full, and neither is one having the slot of a deleted record
+    * that some transaction may still see, which becomes available
+    * once the horizon passes it.
+    * @return true if the block is full
+    */
+   public boolean isFull() {
+      return full;
    }
    
    /**
@@ -126,6 +215,8 @@ public class RecordPage {
     */
    public void moveToId(int id) {
       currentslot = id;
+      if (page != null)
+         resolve();
    }
    
    /**
@@ -141,22 +232,51 @@ public class RecordPage {
    }
    
    private int fieldpos(String fldname) {
-      int offset = Page.INT_SIZE + ti.offset(fldname);
+      int offset = HEADER_SIZE + ti.offset(fldname);
       return currentpos() + offset;
    }
    
    private boolean isValidSlot() {
-      return currentpos() + slotsize <= Page.BLOCK_SIZE;
+      return currentpos() + slotsize <= blocksize;
    }
    
-   private boolean searchFor(int flag) {
-      currentslot++;
-      while (isValidSlot()) {
-         int position = currentpos();
-         if (tx.getInt(blk, position) == flag)
-            return true;
-         currentslot++;
+   /**
+    * Determines whether the transaction sees the record
+    * in the current slot and, for a snapshot, which version of it.
+    * @return true if the current record is visible
+    */
+   private boolean resolve() {
+      int position = currentpos();
+      version = null;
+      if (page == null)
+         return tx.getInt(blk, position) == INUSE;
+      int flag = page.getInt(position);
+      if (flag != INUSE && flag != DELETED)
+         return false;
+      if (snap.isVisible(page.getInt(position + Page.INT_SIZE)))
+         return flag == INUSE;
+      version = VersionStore.find(blk, currentslot, snap);
+      return version != null;
+   }
+   
+   /**
+    * Before the first change of the current record by the
+    * transaction, saves the record's values as an older version
+    * and tags the record with the transaction.
+    */
+   private void keepOldVersion() {
+      int position = currentpos() + Page.INT_SIZE;
+      int tag = tx.getInt(blk, position);
+      if (tag == tx.txNumber())
+         return;
+      Map<String,Object> vals = new HashMap<String,Object>();
+      for (String fldname : ti.schema().fields()) {
+         if (ti.schema().type(fldname) == INTEGER)
+            vals.put(fldname, tx.getInt(blk, fieldpos(fldname)));
+         else
+            vals.put(fldname, tx.getString(blk, fieldpos(fldname)));
       }
-      return false;
+      VersionStore.add(blk, currentslot, tag, tx.txNumber(), vals);
+      tx.setInt(blk, position, tx.txNumber());
    }
 }
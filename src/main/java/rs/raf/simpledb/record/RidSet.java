@@ -0,0 +1,98 @@
+package rs.raf.simpledb.record;
+
+import java.util.Arrays;
+
+/**
+ * A set of record identifiers, kept compactly as an array
+ * of longs (the block number in the high half, the record ID
+ * in the low half).
+ * Once sorted, the identifiers are in the order of their
+ * blocks, so that the records can be fetched reading
+ * each block only once, and two sets can be intersected
+ * by merging them.
+ * @author Edward Sciore
+ */
+public class RidSet {
+   private long[] rids = new long[16];
+   private int size = 0;
+   private boolean sorted = true;
+
+   /**
+    * Adds a record identifier to the set.
+    * @param rid the record identifier
+    */
+   public void add(RID rid) {
+      if (size == rids.length)
+         rids = Arrays.copyOf(rids, 2 * size);
+      long r = encode(rid);
+      if (size > 0 && r <= rids[size-1])
+         sorted = false;
+      rids[size++] = r;
+   }
+
+   /**
+    * Returns the number of record identifiers in the set.
+    * @return the size of the set
+    */
+   public int size() {
+      sort();
+      return size;
+   }
+
+   /**
+    * Returns the record identifier at the specified
+    * position of the sorted set.
+    * @param i the position
+    * @return the record identifier
+    */
+   public RID get(int i) {
+      sort();
+      long r = rids[i];
+      return new RID((int) (r >>> 32), (int) r);
+   }
+
+   /**
+    * Returns the record identifiers that are in both sets.
+    * @param other the other set
+    * @return a new set with the common record identifiers
+    */
+   public RidSet intersect(RidSet other) {
+      sort();
+      other.sort();
+      RidSet result = new RidSet();
+      result.rids = new long[Math.max(1, Math.min(size, other.size))];
+      int i = 0, j = 0;
+      while (i < size && j < other.size) {
+         if (rids[i] < other.rids[j])
+            i++;
+         else if (rids[i] > other.rids[j])
+            j++;
+         else {
+            result.rids[result.size++] = rids[i];
+            i++;
+            j++;
+         }
+      }
+      return result;
+   }
+
+   /**
+    * Sorts the record identifiers by block and ID,
+    * removing duplicates.
+    */
+   private void sort() {
+      if (sorted)
+         return;
+      Arrays.sort(rids, 0, size);
+      int n = 0;
+      for (int i=0; i<size; i++)
+         if (n == 0 || rids[i] != rids[n-1])
+            rids[n++] = rids[i];
+      size = n;
+      sorted = true;
+   }
+
+   private static long encode(RID rid) {
+      return ((long) rid.blockNumber() << 32) | (rid.id() & 0xffffffffL);
+   }
+}
@@ -0,0 +1,122 @@
+package rs.raf.simpledb.record;
+
+import java.util.*;
+
+import rs.raf.simpledb.utils.Block;
+import rs.raf.simpledb.tx.concurrency.Snapshot;
+import rs.raf.simpledb.tx.concurrency.SnapshotMgr;
+
+/**
+ * Keeps in memory the older versions of updated records,
+ * for the read-only transactions whose snapshots do not see
+ * the latest version, which is the one in the block.
+ * The versions of a record form a chain, from the newest to the oldest.
+ * Each version is tagged with the transaction that created it
+ * and with the transaction that replaced it by a newer version.
+ * <p>
+ * A version replaced by a transaction older than the
+ * {@link SnapshotMgr#horizon() horizon} is seen by no snapshot;
+ * such versions are purged, in the order they were added,
+ * whenever a new version is added.
+ * @author Edward Sciore
+ */
+class VersionStore {
+   private static Map<Block,Map<Integer,Version>> chains = new HashMap<Block,Map<Integer,Version>>();
+   private static Deque<Version> purgeQueue = new ArrayDeque<Version>();
+
+   /**
+    * Adds a version of the specified record,
+    * which is being replaced by a newer one.
+    * @param blk the block of the record
+    * @param slot the slot of the record within the block
+    * @param xmin the transaction that created the version
+    * @param superseder the transaction replacing the version
+    * @param vals the values of the fields of the version
+    */
+   static synchronized void add(Block blk, int slot, int xmin, int superseder, Map<String,Object> vals) {
+      purge();
+      Map<Integer,Version> slots = chains.get(blk);
+      if (slots == null) {
+         slots = new HashMap<Integer,Version>();
+         chains.put(blk, slots);
+      }
+      Version v = new Version(blk, slot, xmin, superseder, vals);
+      v.older = slots.put(slot, v);
+      purgeQueue.add(v);
+   }
+
+   /**
+    * Returns the values of the newest version of the specified record
+    * that the specified snapshot sees, or null if there is none.
+    * @param blk the block of the record
+    * @param slot the slot of the record within the block
+    * @param snap the snapshot of the reading transaction
+    * @return the values of the version, or null
+    */
+   static synchronized Map<String,Object> find(Block blk, int slot, Snapshot snap) {
+      Map<Integer,Version> slots = chains.get(blk);
+      Version v = (slots == null) ? null : slots.get(slot);
+      for ( ; v != null; v = v.older)
+         if (snap.isVisible(v.xmin) && !snap.isVisible(v.superseder))
+            return v.vals;
+      return null;
+   }
+
+   /**
+    * Removes all the versions of the specified record,
+    * whose slot is being reused.
+    * @param blk the block of the record
+    * @param slot the slot of the record within the block
+    */
+   static synchronized void drop(Block blk, int slot) {
+      Map<Integer,Version> slots = chains.get(blk);
+      if (slots != null && slots.remove(slot) != null && slots.isEmpty())
+         chains.remove(blk);
+   }
+
+   /**
+    * Removes the versions that no snapshot sees.
+    * Since transactions replace the versions of a record
+    * in the order they commit, the versions older than
+    * a removed one are not seen either, and are cut
+    * from the chain with it.
+    */
+   private static void purge() {
+      if (purgeQueue.isEmpty())
+         return;
+      int horizon = SnapshotMgr.horizon();
+      while (!purgeQueue.isEmpty() && purgeQueue.peek().superseder < horizon) {
+         Version v = purgeQueue.poll();
+         Map<Integer,Version> slots = chains.get(v.blk);
+         if (slots == null)
+            continue;
+         Version head = slots.get(v.slot);
+         if (head == v) {
+            slots.remove(v.slot);
+            if (slots.isEmpty())
+               chains.remove(v.blk);
+            continue;
+         }
+         for (Version w = head; w != null; w = w.older)
+            if (w.older == v) {
+               w.older = null;
+               break;
+            }
+      }
+   }
+
+   private static class Version {
+      Block blk;
+      int slot, xmin, superseder;
+      Map<String,Object> vals;
+      Version older;
+
+      Version(Block blk, int slot, int xmin, int superseder, Map<String,Object> vals) {
+         this.blk = blk;
+         this.slot = slot;
+         this.xmin = xmin;
+         this.superseder = superseder;
+         this.vals = vals;
+      }
+   }
+}
@@ -3,10 +3,13 @@ package rs.raf.simpledb.tx;
 import rs.raf.simpledb.utils.Block;
 import rs.raf.simpledb.utils.Buffer;
 import rs.raf.simpledb.utils.BufferList;
+import rs.raf.simpledb.utils.Page;
 import rs.raf.simpledb.utils.Page.PageFormatter;
 import rs.raf.simpledb.SimpleDBEngine;
-//import simpledb.tx.recovery.RecoveryMgr;
-//import simpledb.tx.concurrency.ConcurrencyMgr;
+import rs.raf.simpledb.tx.recovery.RecoveryMgr;
+import rs.raf.simpledb.tx.concurrency.ConcurrencyMgr;
+import rs.raf.simpledb.tx.concurrency.Snapshot;
+import rs.raf.simpledb.tx.concurrency.SnapshotMgr;
 
 /**
  * Provides transaction management for clients,
@@ -16,11 +19,11 @@ import rs.raf.simpledb.SimpleDBEngine;
  */
 
 public class Transaction {
-   private static int nextTxNum = 0;
    private static final int END_OF_FILE = -1;
-   //private RecoveryMgr    recoveryMgr;
-   //private ConcurrencyMgr concurMgr;
+   private RecoveryMgr    recoveryMgr;
+   private ConcurrencyMgr concurMgr;
    private int txnum;
+   private Snapshot snapshot;
    private BufferList myBuffers = new BufferList();
    
    /**
@@ -36,20 +39,67 @@ public class Transaction {
     * is called first.
     */
    public Transaction() {
-      txnum       = nextTxNumber();
-      //recoveryMgr = new RecoveryMgr(txnum);
-      //concurMgr   = new ConcurrencyMgr();
+      this(false);
+   }
+   
+   /**
+    * Creates a new transaction, which is read-only if so specified.
+    * A read-only transaction reads the records of tables
+    * without locks, as of its snapshot: it sees the changes
+    * of the transactions that committed before it started,
+    * and never waits for, nor blocks, the writers.
+    * Its queries scan the tables instead of using their indexes,
+    * which are not versioned.
+    * It may modify only temporary files, which are neither
+    * locked nor logged, so it writes nothing to the log,
+    * not even when it commits, and prints nothing.
+    * @param readonly true if the transaction does not modify the database
+    */
+   public Transaction(boolean readonly) {
+      if (readonly) {
+         snapshot = SnapshotMgr.beginSnapshot();
+         txnum    = snapshot.txNumber();
+      }
+      else {
+         txnum    = SnapshotMgr.begin();
+         System.out.println("new transaction: " + txnum);
+      }
+      recoveryMgr = new RecoveryMgr(txnum);
+      concurMgr   = new ConcurrencyMgr(txnum);
+   }
+   
+   /**
+    * Returns the number of the transaction.
+    * @return the transaction number
+    */
+   public int txNumber() {
+      return txnum;
+   }
+   
+   /**
+    * Returns the snapshot of a read-only transaction,
+    * or null if the transaction is read-write.
+    * @return the snapshot, or null
+    */
+   public Snapshot snapshot() {
+      return snapshot;
    }
    
    /**
     * Commits the current transaction.
-    * Flushes all modified buffers (and their log records),
-    * writes and flushes a commit record to the log,
+    * Writes and flushes a commit record to the log,
+    * leaving the modified buffers to be written later,
+    * makes its changes visible to new snapshots,
     * releases all locks, and unpins any pinned buffers.
     */
    public void commit() {
-      //recoveryMgr.commit();
-      //concurMgr.release();
+      if (snapshot != null) {
+         endReadOnly();
+         return;
+      }
+      recoveryMgr.commit();
+      SnapshotMgr.end(txnum);
+      concurMgr.release();
       myBuffers.unpinAll();
       System.out.println("transaction " + txnum + " committed");
    }
@@ -57,13 +107,17 @@ public class Transaction {
    /**
     * Rolls back the current transaction.
     * Undoes any modified values,
-    * flushes those buffers,
-    * writes and flushes a rollback record to the log,
+    * writes a rollback record to the log,
     * releases all locks, and unpins any pinned buffers.
     */
    public void rollback() {
-      //recoveryMgr.rollback();
-      //concurMgr.release();
+      if (snapshot != null) {
+         endReadOnly();
+         return;
+      }
+      recoveryMgr.rollback();
+      SnapshotMgr.end(txnum);
+      concurMgr.release();
       myBuffers.unpinAll();
       System.out.println("transaction " + txnum + " rolled back");
    }
@@ -71,14 +125,15 @@ public class Transaction {
    /**
     * Flushes all modified buffers.
     * Then goes through the log, rolling back all
-    * uncommitted transactions.  Finally, 
+    * uncommitted transactions and redoing the
+    * committed ones.  Finally, 
     * writes a quiescent checkpoint record to the log.
     * This method is called only during system startup,
     * before user transactions begin.
     */
    public void recover() {
       SimpleDBEngine.bufferMgr().flushAll(txnum);
-      //recoveryMgr.recover();
+      recoveryMgr.recover();
    }
    
    /**
@@ -105,12 +160,14 @@ public class Transaction {
     * specified offset of the specified block.
     * The method first obtains an SLock on the block,
     * then it calls the buffer to retrieve the value.
+    * A read-only transaction reads the records of
+    * tables without the lock.
     * @param blk a reference to a disk block
     * @param offset the byte offset within the block
     * @return the integer stored at that offset
     */
    public int getInt(Block blk, int offset) {
-      //concurMgr.sLock(blk);
+      sLock(blk);
       Buffer buff = myBuffers.getBuffer(blk);
       return buff.getInt(offset);
    }
@@ -125,11 +182,52 @@ public class Transaction {
     * @return the string stored at that offset
     */
    public String getString(Block blk, int offset) {
-      //concurMgr.sLock(blk);
+      sLock(blk);
       Buffer buff = myBuffers.getBuffer(blk);
       return buff.getString(offset);
    }
    
+   /**
+    * Returns a copy of the contents of the specified block,
+    * as they are at this moment.
+    * The method first obtains an SLock on the block,
+    * which a read-only transaction does not need for
+    * the records of tables.
+    * @param blk a reference to a pinned disk block
+    * @return a copy of the block's page
+    */
+   public Page copyOf(Block blk) {
+      sLock(blk);
+      Buffer buff = myBuffers.getBuffer(blk);
+      return buff.copyContents();
+   }
+   
+   /**
+    * Obtains an XLock on the specified block,
+    * for a client that reads the block in order to modify it.
+    * Reading the block under an SLock and then modifying it
+    * would upgrade the lock, and two clients doing so
+    * at the same time would deadlock.
+    * @param blk a reference to the disk block
+    */
+   public void xLock(Block blk) {
+      checkWritable(blk.fileName());
+      concurMgr.xLock(blk);
+   }
+   
+   /**
+    * Obtains an XLock on the specified block, like
+    * {@link #xLock(Block) xLock}, unless another transaction
+    * has a lock on it; the method then returns false
+    * instead of waiting.
+    * @param blk a reference to the disk block
+    * @return true if the transaction has the XLock
+    */
+   public boolean tryXLock(Block blk) {
+      checkWritable(blk.fileName());
+      return concurMgr.tryXLock(blk);
+   }
+   
    /**
     * Stores an integer at the specified offset 
     * of the specified block.
@@ -139,15 +237,20 @@ public class Transaction {
     * writes that record to the log.
     * Finally, it calls the buffer to store the value,
     * passing in the LSN of the log record and the transaction's id. 
+    * The buffer is locked meanwhile, so that a checkpoint
+    * sees either both the record and the value or neither.
     * @param blk a reference to the disk block
     * @param offset a byte offset within that block
     * @param val the value to be stored
     */
    public void setInt(Block blk, int offset, int val) {
-      //concurMgr.xLock(blk);
+      checkWritable(blk.fileName());
+      concurMgr.xLock(blk);
       Buffer buff = myBuffers.getBuffer(blk);
-      int lsn = 1; // int lsn = recoveryMgr.setInt(buff, offset, val);
-      buff.setInt(offset, val, txnum, lsn);
+      synchronized (buff) {
+         int lsn = recoveryMgr.setInt(buff, offset, val);
+         buff.setInt(offset, val, txnum, lsn);
+      }
    }
    
    /**
@@ -159,15 +262,20 @@ public class Transaction {
     * writes that record to the log.
     * Finally, it calls the buffer to store the value,
     * passing in the LSN of the log record and the transaction's id. 
+    * The buffer is locked meanwhile, so that a checkpoint
+    * sees either both the record and the value or neither.
     * @param blk a reference to the disk block
     * @param offset a byte offset within that block
     * @param val the value to be stored
     */
    public void setString(Block blk, int offset, String val) {
-      //concurMgr.xLock(blk);
+      checkWritable(blk.fileName());
+      concurMgr.xLock(blk);
       Buffer buff = myBuffers.getBuffer(blk);
-      int lsn = 2; // int lsn = recoveryMgr.setString(buff, offset, val);
-      buff.setString(offset, val, txnum, lsn);
+      synchronized (buff) {
+         int lsn = recoveryMgr.setString(buff, offset, val);
+         buff.setString(offset, val, txnum, lsn);
+      }
    }
    
    /**
@@ -175,12 +283,14 @@ public class Transaction {
     * This method first obtains an SLock on the 
     * "end of the file", before asking the file manager
     * to return the file size.
+    * A read-only transaction does not lock a table file,
+    * whose new blocks hold no records visible to it.
     * @param filename the name of the file
     * @return the number of blocks in the file
     */
    public int size(String filename) {
       Block dummyblk = new Block(filename, END_OF_FILE);
-     //concurMgr.sLock(dummyblk);
+      sLock(dummyblk);
       return SimpleDBEngine.fileMgr().size(filename);
    }
    
@@ -188,22 +298,71 @@ public class Transaction {
     * Appends a new block to the end of the specified file
     * and returns a reference to it.
     * This method first obtains an XLock on the
-    * "end of the file", before performing the append.
+    * "end of the file", before performing the append,
+    * and then an XLock on the new block.
+    * The lock on the end of the file is released after the append,
+    * unless the transaction had locked it before: once the new
+    * block is locked, no other transaction can see what is
+    * written into it, and the appends of the other transactions
+    * need not wait until this one ends.
     * @param filename the name of the file
     * @param fmtr the formatter used to initialize the new page
     * @return a reference to the newly-created disk block
     */
    public Block append(String filename, PageFormatter fmtr) {
+      checkWritable(filename);
       Block dummyblk = new Block(filename, END_OF_FILE);
-      //concurMgr.xLock(dummyblk);
+      boolean locked = concurMgr.hasLock(dummyblk);
+      concurMgr.xLock(dummyblk);
+      Block blk = myBuffers.pinNew(filename, fmtr);
+      concurMgr.xLock(blk);
+      unpin(blk);
+      if (!locked)
+         concurMgr.unlock(dummyblk);
+      return blk;
+   }
+   
+   /**
+    * Appends a new block to the end of the specified file, like
+    * {@link #append(String, PageFormatter) append}, for a client
+    * whose formatter fills the block with records, which are
+    * not logged one by one.
+    * The end of the file stays locked until the transaction ends,
+    * and the first block appended this way is logged, so that
+    * the blocks are cleared if the transaction rolls back or has
+    * not committed at a crash; they are forced to disk before
+    * the transaction commits (see {@link RecoveryMgr#bulkAppend(Block)}).
+    * @param filename the name of the file
+    * @param fmtr the formatter that fills the new page
+    * @return a reference to the newly-created disk block
+    */
+   public Block appendFilled(String filename, PageFormatter fmtr) {
+      checkWritable(filename);
+      concurMgr.xLock(new Block(filename, END_OF_FILE));
+      recoveryMgr.bulkAppend(new Block(filename, SimpleDBEngine.fileMgr().size(filename)));
       Block blk = myBuffers.pinNew(filename, fmtr);
+      concurMgr.xLock(blk);
       unpin(blk);
       return blk;
    }
    
-   private static synchronized int nextTxNumber() {
-      nextTxNum++;
-      System.out.println("new transaction: " + nextTxNum);
-      return nextTxNum;
+   private void sLock(Block blk) {
+      if (snapshot == null || !SnapshotMgr.isVersioned(blk.fileName()))
+         concurMgr.sLock(blk);
+   }
+   
+   private void checkWritable(String filename) {
+      if (snapshot != null && !filename.startsWith("temp"))
+         throw new RuntimeException("read-only transaction " + txnum + " cannot modify " + filename);
+   }
+   
+   /**
+    * Ends a read-only transaction, which has nothing
+    * to log, write or undo.
+    */
+   private void endReadOnly() {
+      SnapshotMgr.end(snapshot);
+      concurMgr.release();
+      myBuffers.unpinAll();
    }
 }
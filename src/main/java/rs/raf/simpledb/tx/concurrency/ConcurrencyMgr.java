@@ -0,0 +1,138 @@
+package rs.raf.simpledb.tx.concurrency;
+
+import java.util.*;
+
+import rs.raf.simpledb.utils.Block;
+
+/**
+ * The concurrency manager for the transaction.
+ * Each transaction has its own concurrency manager. 
+ * The concurrency manager keeps track of which locks the 
+ * transaction currently has, and interacts with the
+ * global lock table as needed; a lock the transaction
+ * already has is granted without touching the lock table.
+ * Blocks of temporary files are private to their transaction,
+ * and are not locked.
+ * @author Edward Sciore
+ */
+public class ConcurrencyMgr {
+   
+   /**
+    * The global lock table.  This variable is static because all transactions
+    * share the same table.
+    */
+   private static LockTable locktbl = new LockTable();
+   private int txnum;
+   private Map<Block,String> locks  = new HashMap<Block,String>();
+   
+   /**
+    * Creates the concurrency manager of the specified transaction.
+    * @param txnum the id of the transaction
+    */
+   public ConcurrencyMgr(int txnum) {
+      this.txnum = txnum;
+   }
+   
+   /**
+    * Obtains an SLock on the block, if necessary.
+    * The method will ask the lock table for an SLock
+    * if the transaction currently has no locks on that block.
+    * @param blk a reference to the disk block
+    */
+   public void sLock(Block blk) {
+      if (locks.get(blk) == null && !isTempBlock(blk)) {
+         locktbl.sLock(blk, txnum);
+         locks.put(blk, "S");
+      }
+   }
+   
+   /**
+    * Obtains an XLock on the block, if necessary.
+    * If the transaction does not have an XLock on that block,
+    * the method asks the lock table for one; an SLock the
+    * transaction has is upgraded. A block the transaction has
+    * not read is locked directly, without an SLock first, so
+    * that concurrent writers of the block wait for each other
+    * instead of deadlocking while upgrading their SLocks.
+    * @param blk a reference to the disk block
+    */
+   public void xLock(Block blk) {
+      if (!hasXLock(blk) && !isTempBlock(blk)) {
+         locktbl.xLock(blk, txnum);
+         locks.put(blk, "X");
+      }
+   }
+   
+   /**
+    * Obtains an XLock on the block if no other transaction
+    * has a lock on it, without waiting.
+    * @param blk a reference to the disk block
+    * @return true if the transaction has the XLock
+    */
+   public boolean tryXLock(Block blk) {
+      if (hasXLock(blk) || isTempBlock(blk))
+         return true;
+      if (!locktbl.tryXLock(blk, txnum))
+         return false;
+      locks.put(blk, "X");
+      return true;
+   }
+   
+   /**
+    * Returns true if the transaction has a lock on the block.
+    * @param blk a reference to the disk block
+    * @return true if the block is locked by the transaction
+    */
+   public boolean hasLock(Block blk) {
+      return locks.containsKey(blk);
+   }
+   
+   /**
+    * Releases the lock of the transaction on the block
+    * before the transaction ends.
+    * This is done only for the end of a file during an append,
+    * which conflicts with nothing once the new block is locked
+    * (see {@link rs.raf.simpledb.tx.Transaction#append}).
+    * @param blk a reference to the disk block
+    */
+   public void unlock(Block blk) {
+      if (locks.remove(blk) != null)
+         locktbl.unlock(blk, txnum);
+   }
+   
+   /**
+    * Releases all locks by asking the lock table to
+    * unlock each one.
+    */
+   public void release() {
+      for (Block blk : locks.keySet()) 
+         locktbl.unlock(blk, txnum);
+      locks.clear();
+   }
+   
+   /**
+    * Returns the number of times a transaction had to wait for a lock.
+    * @return the number of waits
+    */
+   public static long lockWaits() {
+      return locktbl.waits();
+   }
+   
+   /**
+    * Returns the number of lock requests aborted because
+    * they would have deadlocked.
+    * @return the number of deadlocks
+    */
+   public static long deadlocks() {
+      return locktbl.deadlocks();
+   }
+   
+   private boolean hasXLock(Block blk) {
+      String locktype = locks.get(blk);
+      return locktype != null && locktype.equals("X");
+   }
+   
+   private boolean isTempBlock(Block blk) {
+      return blk.fileName().startsWith("temp");
+   }
+}
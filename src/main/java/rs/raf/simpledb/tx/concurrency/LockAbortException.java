@@ -0,0 +1,10 @@
+package rs.raf.simpledb.tx.concurrency;
+
+/**
+ * A runtime exception indicating that the transaction
+ * needs to abort because a lock could not be obtained
+ * without a deadlock.
+ * @author Edward Sciore
+ */
+@SuppressWarnings("serial")
+public class LockAbortException extends RuntimeException {}
@@ -0,0 +1,241 @@
+package rs.raf.simpledb.tx.concurrency;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+import rs.raf.simpledb.utils.Block;
+
+/**
+ * The lock table, which provides methods to lock and unlock blocks.
+ * If a transaction requests a lock that causes a conflict with an
+ * existing lock, then that transaction is placed on a wait list.
+ * <p>
+ * The table is divided into stripes by the hash of the block,
+ * each with its own monitor, so that requests for blocks in
+ * different stripes never contend; a released lock wakes
+ * only the transactions waiting in its stripe.
+ * <p>
+ * A transaction that has to wait records the transactions it waits
+ * for in a wait-for graph. If the graph then has a cycle through
+ * the waiting transaction, waiting would deadlock, and the request
+ * is aborted instead; transactions never abort for waiting too long.
+ * The edges of a waiting transaction only describe the current
+ * holders of the lock it waits for: a transaction releasing that
+ * lock is removed from them at once, and they are dropped when
+ * the waiting transaction wakes up, and rebuilt if it waits again.
+ * @author Edward Sciore
+ */
+class LockTable {
+   private static final int STRIPES = 64;
+   
+   private Stripe[] stripes = new Stripe[STRIPES];
+   private Map<Integer,Set<Integer>> waitsFor = new HashMap<Integer,Set<Integer>>();
+   private Map<Integer,Block> waitingOn = new HashMap<Integer,Block>();
+   private LongAdder waits = new LongAdder(), deadlocks = new LongAdder();
+   
+   LockTable() {
+      for (int i=0; i<STRIPES; i++)
+         stripes[i] = new Stripe();
+   }
+   
+   /**
+    * Grants an SLock on the specified block.
+    * If an XLock exists when the method is called,
+    * then the calling thread will be placed on a wait list
+    * until the lock is released.
+    * @param blk a reference to the disk block
+    * @param txnum the id of the requesting transaction
+    * @throws LockAbortException if waiting would deadlock
+    */
+   void sLock(Block blk, int txnum) {
+      Stripe st = stripeOf(blk);
+      synchronized (st) {
+         while (true) {
+            Lock lk = st.locks.computeIfAbsent(blk, b -> new Lock());
+            if (lk.xholder < 0 || lk.xholder == txnum) {
+               lk.sholders.add(txnum);
+               break;
+            }
+            waitFor(st, blk, txnum, Collections.singleton(lk.xholder));
+         }
+      }
+   }
+   
+   /**
+    * Grants an XLock on the specified block.
+    * If a lock of any type held by another transaction exists
+    * when the method is called, then the calling thread will be
+    * placed on a wait list until the locks are released.
+    * @param blk a reference to the disk block
+    * @param txnum the id of the requesting transaction
+    * @throws LockAbortException if waiting would deadlock
+    */
+   void xLock(Block blk, int txnum) {
+      Stripe st = stripeOf(blk);
+      synchronized (st) {
+         while (true) {
+            Lock lk = st.locks.computeIfAbsent(blk, b -> new Lock());
+            Set<Integer> blockers = new HashSet<Integer>(lk.sholders);
+            if (lk.xholder >= 0)
+               blockers.add(lk.xholder);
+            blockers.remove(txnum);
+            if (blockers.isEmpty()) {
+               lk.xholder = txnum;
+               break;
+            }
+            waitFor(st, blk, txnum, blockers);
+         }
+      }
+   }
+   
+   /**
+    * Grants an XLock on the specified block if no other
+    * transaction holds a lock on it; otherwise the method
+    * returns false at once, without waiting.
+    * @param blk a reference to the disk block
+    * @param txnum the id of the requesting transaction
+    * @return true if the lock was granted
+    */
+   boolean tryXLock(Block blk, int txnum) {
+      Stripe st = stripeOf(blk);
+      synchronized (st) {
+         Lock lk = st.locks.computeIfAbsent(blk, b -> new Lock());
+         if (lk.xholder >= 0 && lk.xholder != txnum)
+            return false;
+         for (int tx : lk.sholders)
+            if (tx != txnum)
+            return false;
+         lk.xholder = txnum;
+         return true;
+      }
+   }
+   
+   /**
+    * Releases the locks of the transaction on the specified block.
+    * The transactions waiting in the block's stripe are notified.
+    * @param blk a reference to the disk block
+    * @param txnum the id of the transaction
+    */
+   void unlock(Block blk, int txnum) {
+      Stripe st = stripeOf(blk);
+      synchronized (st) {
+         Lock lk = st.locks.get(blk);
+         if (lk == null)
+            return;
+         lk.sholders.remove(txnum);
+         if (lk.xholder == txnum)
+            lk.xholder = -1;
+         if (lk.sholders.isEmpty() && lk.xholder < 0)
+            st.locks.remove(blk);
+         if (st.waiters > 0) {
+            released(blk, txnum);
+            st.notifyAll();
+         }
+      }
+   }
+   
+   /**
+    * Returns the number of times a transaction had to wait for a lock.
+    * @return the number of waits
+    */
+   long waits() {
+      return waits.sum();
+   }
+   
+   /**
+    * Returns the number of requests aborted because of a deadlock.
+    * @return the number of deadlocks
+    */
+   long deadlocks() {
+      return deadlocks.sum();
+   }
+   
+   /**
+    * Records that the transaction waits for the specified
+    * transactions to release the block, and waits on the stripe,
+    * unless that closes a cycle in the wait-for graph.
+    * The edges are dropped when the transaction wakes up.
+    * The caller holds the stripe's monitor.
+    */
+   private void waitFor(Stripe st, Block blk, int txnum, Set<Integer> blockers) {
+      synchronized (waitsFor) {
+         if (reaches(blockers, txnum)) {
+            deadlocks.increment();
+            throw new LockAbortException();
+         }
+         waitsFor.put(txnum, new HashSet<Integer>(blockers));
+         waitingOn.put(txnum, blk);
+      }
+      waits.increment();
+      st.waiters++;
+      try {
+         st.wait();
+      }
+      catch (InterruptedException e) {
+         throw new LockAbortException();
+      }
+      finally {
+         st.waiters--;
+         stopWaiting(txnum);
+      }
+   }
+   
+   private void stopWaiting(int txnum) {
+      synchronized (waitsFor) {
+         waitsFor.remove(txnum);
+         waitingOn.remove(txnum);
+      }
+   }
+   
+   /**
+    * Removes the edges to the specified transaction
+    * from the transactions waiting for the block,
+    * since it no longer holds a lock on it.
+    */
+   private void released(Block blk, int txnum) {
+      synchronized (waitsFor) {
+         for (Map.Entry<Integer,Block> e : waitingOn.entrySet())
+            if (e.getValue().equals(blk))
+            waitsFor.get(e.getKey()).remove(txnum);
+      }
+   }
+   
+   /**
+    * Returns true if the target transaction can be reached
+    * from the specified ones in the wait-for graph.
+    */
+   private boolean reaches(Set<Integer> from, int target) {
+      Deque<Integer> todo = new ArrayDeque<Integer>(from);
+      Set<Integer> seen = new HashSet<Integer>(from);
+      while (!todo.isEmpty()) {
+         int tx = todo.pop();
+         if (tx == target)
+            return true;
+         for (int next : waitsFor.getOrDefault(tx, Collections.emptySet()))
+            if (seen.add(next))
+            todo.push(next);
+      }
+      return false;
+   }
+   
+   private Stripe stripeOf(Block blk) {
+      return stripes[Math.floorMod(blk.hashCode(), STRIPES)];
+   }
+   
+   /**
+    * The locks of the blocks in one stripe of the table.
+    */
+   private static class Stripe {
+      Map<Block,Lock> locks = new HashMap<Block,Lock>();
+      int waiters = 0;
+   }
+   
+   /**
+    * The transactions holding locks on one block:
+    * any number of SLocks, and at most one XLock.
+    */
+   private static class Lock {
+      Set<Integer> sholders = new HashSet<Integer>(2);
+      int xholder = -1;
+   }
+}
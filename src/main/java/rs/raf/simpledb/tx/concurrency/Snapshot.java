@@ -0,0 +1,59 @@
+package rs.raf.simpledb.tx.concurrency;
+
+import java.util.*;
+
+/**
+ * The snapshot of a read-only transaction: the set of
+ * transactions whose changes it sees.
+ * A snapshot sees the changes of every read-write transaction
+ * that committed before it was taken, and of no other:
+ * these are the transactions started by then, numbered up to
+ * the largest such number, that were not active at that time.
+ * @author Edward Sciore
+ */
+public class Snapshot {
+   private int txnum, maxtx, horizon;
+   private Set<Integer> active;
+
+   /**
+    * Creates the snapshot of the specified transaction.
+    * @param txnum the number of the read-only transaction
+    * @param maxtx the largest number of a read-write transaction started
+    * @param active the read-write transactions active when it started
+    * @param horizon the oldest transaction whose changes it may not see
+    */
+   Snapshot(int txnum, int maxtx, Set<Integer> active, int horizon) {
+      this.txnum = txnum;
+      this.maxtx = maxtx;
+      this.active = active;
+      this.horizon = horizon;
+   }
+
+   /**
+    * Returns the number of the transaction owning the snapshot.
+    * @return the transaction number
+    */
+   public int txNumber() {
+      return txnum;
+   }
+
+   /**
+    * Returns true if the snapshot sees the changes
+    * of the specified transaction.
+    * @param xid the number of a transaction
+    * @return true if the transaction committed before the snapshot
+    * was taken, or is the snapshot's own transaction
+    */
+   public boolean isVisible(int xid) {
+      return xid == txnum || (xid <= maxtx && !active.contains(xid));
+   }
+
+   /**
+    * Returns the smallest transaction number whose changes
+    * the snapshot may not see.
+    * @return the oldest transaction the snapshot does not see
+    */
+   int horizon() {
+      return horizon;
+   }
+}
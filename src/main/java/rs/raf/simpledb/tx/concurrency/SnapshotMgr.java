@@ -0,0 +1,165 @@
+package rs.raf.simpledb.tx.concurrency;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Assigns transaction numbers, and keeps track of the active
+ * read-write transactions and of the snapshots of the active
+ * read-only transactions.
+ * <p>
+ * Each version of a record is tagged with the number of the
+ * transaction that created it or deleted it.
+ * A read-write transaction reads the latest versions, under locks;
+ * a read-only transaction reads, without locks, the versions
+ * that its {@link Snapshot} sees.
+ * A version replaced by a transaction older than the
+ * {@link #horizon() horizon} is seen by no snapshot, present or
+ * future, and its space can be reused.
+ * <p>
+ * Read-write transactions start and end one at a time, each
+ * publishing a new, immutable set of active transactions.
+ * A read-only transaction never tags a version, so it takes
+ * its number and its snapshot without waiting for them:
+ * it reads the current set, registers the horizon of that set,
+ * and tries again if a read-write transaction started or ended
+ * meanwhile.
+ * <p>
+ * Transaction numbers are not reused when the system restarts:
+ * recovery continues the numbering after the last number found
+ * in the log (see {@link #startAfter(int)}), so that the versions
+ * on disk remain older than every new transaction.
+ * @author Edward Sciore
+ */
+public class SnapshotMgr {
+   private static AtomicInteger lastTxNum = new AtomicInteger();
+   private static volatile Writers writers = new Writers(0, Collections.<Integer>emptySet());
+   private static ConcurrentSkipListMap<Integer,Integer> snapshots = new ConcurrentSkipListMap<Integer,Integer>();
+   private static Set<String> versioned = ConcurrentHashMap.newKeySet();
+
+   /**
+    * Starts a read-write transaction.
+    * @return the number of the transaction
+    */
+   public static synchronized int begin() {
+      int txnum = lastTxNum.incrementAndGet();
+      Set<Integer> active = new HashSet<Integer>(writers.active);
+      active.add(txnum);
+      writers = new Writers(txnum, active);
+      return txnum;
+   }
+
+   /**
+    * Starts a read-only transaction, taking its snapshot.
+    * @return the snapshot of the transaction
+    */
+   public static Snapshot beginSnapshot() {
+      int txnum = lastTxNum.incrementAndGet();
+      while (true) {
+         Writers w = writers;
+         snapshots.merge(w.horizon, 1, Integer::sum);
+         if (w == writers)
+            return new Snapshot(txnum, w.maxtx, w.active, w.horizon);
+         release(w.horizon);
+      }
+   }
+
+   /**
+    * Ends the specified read-write transaction,
+    * after it has committed or rolled back.
+    * @param txnum the number of the transaction
+    */
+   public static synchronized void end(int txnum) {
+      Set<Integer> active = new HashSet<Integer>(writers.active);
+      active.remove(txnum);
+      writers = new Writers(writers.maxtx, active);
+   }
+
+   /**
+    * Ends the read-only transaction having the specified snapshot.
+    * @param s the snapshot of the transaction
+    */
+   public static void end(Snapshot s) {
+      release(s.horizon());
+   }
+
+   /**
+    * Returns the smallest transaction number whose changes some
+    * transaction, active now or started later, may not see:
+    * the changes of the transactions numbered below it are seen by all.
+    * The active transactions are read before the snapshots, so that a
+    * snapshot being taken meanwhile has a horizon no smaller than this one.
+    * @return the horizon
+    */
+   public static int horizon() {
+      int horizon = writers.horizon;
+      Map.Entry<Integer,Integer> oldest = snapshots.firstEntry();
+      if (oldest != null)
+         horizon = Math.min(horizon, oldest.getKey());
+      return horizon;
+   }
+
+   /**
+    * Returns the number of the last transaction started.
+    * @return the last transaction number
+    */
+   public static int lastTxNumber() {
+      return lastTxNum.get();
+   }
+
+   /**
+    * Makes the numbers of the transactions started from now on
+    * larger than the specified one, and the changes of the
+    * transactions numbered up to it visible. Called by recovery.
+    * @param txnum the largest transaction number used before
+    */
+   public static synchronized void startAfter(int txnum) {
+      lastTxNum.accumulateAndGet(txnum, Math::max);
+      writers = new Writers(Math.max(writers.maxtx, txnum), writers.active);
+   }
+
+   /**
+    * Records that the specified file holds versioned records,
+    * which read-only transactions read without locks.
+    * @param filename the name of the file
+    */
+   public static void addVersioned(String filename) {
+      if (!versioned.contains(filename))
+         versioned.add(filename);
+   }
+
+   /**
+    * Returns true if the specified file holds versioned records.
+    * @param filename the name of the file
+    * @return true if the file is versioned
+    */
+   public static boolean isVersioned(String filename) {
+      return versioned.contains(filename);
+   }
+
+   private static void release(int horizon) {
+      snapshots.computeIfPresent(horizon, (h, n) -> (n == 1) ? null : n - 1);
+   }
+
+   /**
+    * The read-write transactions active at some moment,
+    * with the largest number started up to then.
+    * Since transactions start in the order of their numbers,
+    * the horizon of these sets never decreases.
+    */
+   private static class Writers {
+      final int maxtx, horizon;
+      final Set<Integer> active;
+
+      Writers(int maxtx, Set<Integer> active) {
+         this.maxtx = maxtx;
+         this.active = active;
+         int h = maxtx + 1;
+         for (int xid : active)
+            h = Math.min(h, xid);
+         horizon = h;
+      }
+   }
+}
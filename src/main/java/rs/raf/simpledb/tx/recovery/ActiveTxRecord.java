@@ -0,0 +1,70 @@
+package rs.raf.simpledb.tx.recovery;
+
+import rs.raf.simpledb.SimpleDBEngine;
+import rs.raf.simpledb.utils.BasicLogRecord;
+
+/**
+ * The ACTIVETX log record, which a fuzzy checkpoint
+ * writes for each transaction active when it began.
+ * @author Edward Sciore
+ */
+class ActiveTxRecord implements LogRecord {
+   private int txnum;
+   private int lsn = -1;
+   
+   /**
+    * Creates a new activetx log record for the specified transaction.
+    * @param txnum the ID of the specified transaction
+    */
+   public ActiveTxRecord(int txnum) {
+      this.txnum = txnum;
+   }
+   
+   /**
+    * Creates a log record by reading one other value from the log.
+    * @param rec the basic log record
+    */
+   public ActiveTxRecord(BasicLogRecord rec) {
+      lsn = rec.lsn();
+      txnum = rec.nextInt();
+   }
+   
+   /** 
+    * Writes an activetx record to the log.
+    * This log record contains the ACTIVETX operator,
+    * followed by the transaction id.
+    * @return the LSN of the log record
+    */
+   public int writeToLog() {
+      lsn = SimpleDBEngine.logMgr().append(ACTIVETX, txnum);
+      return lsn;
+   }
+   
+   public int lsn() {
+      return lsn;
+   }
+   
+   public int op() {
+      return ACTIVETX;
+   }
+   
+   public int txNumber() {
+      return txnum;
+   }
+   
+   /**
+    * Does nothing, because a checkpoint record
+    * contains no undo information.
+    */
+   public void undo(int txnum) {}
+   
+   /**
+    * Does nothing, because a checkpoint record
+    * contains no redo information.
+    */
+   public void redo(int txnum) {}
+   
+   public String toString() {
+      return "<ACTIVETX " + txnum + ">";
+   }
+}
@@ -0,0 +1,120 @@
+package rs.raf.simpledb.tx.recovery;
+
+import rs.raf.simpledb.SimpleDBEngine;
+import rs.raf.simpledb.utils.BasicLogRecord;
+import rs.raf.simpledb.utils.Block;
+import rs.raf.simpledb.utils.Buffer;
+import rs.raf.simpledb.utils.BufferMgr;
+import rs.raf.simpledb.utils.Page;
+
+/**
+ * The BULKAPPEND log record, which marks the first of the blocks
+ * that a transaction appends to a file with their contents,
+ * such as the blocks of records loaded by COPY,
+ * whose modifications are not logged one by one.
+ * The transaction keeps the end of the file locked until it ends,
+ * so every block of the file from the marked one on is its own.
+ * <p>
+ * The blocks are forced to disk before the transaction commits,
+ * so they need no redo. Undoing the record clears every block of
+ * the file from the marked one on, which is then an empty block
+ * of records; the cleared blocks are written to disk before the
+ * rollback is recorded as done.
+ * @author Edward Sciore
+ */
+class BulkAppendRecord implements UpdateRecord {
+   private int txnum;
+   private Block blk;
+   private int lsn = -1;
+   
+   /**
+    * Creates a new bulkappend log record.
+    * @param txnum the ID of the specified transaction
+    * @param blk the first block appended by the transaction
+    */
+   public BulkAppendRecord(int txnum, Block blk) {
+      this.txnum = txnum;
+      this.blk = blk;
+   }
+   
+   /**
+    * Creates a log record by reading three other values from the log.
+    * @param rec the basic log record
+    */
+   public BulkAppendRecord(BasicLogRecord rec) {
+      lsn = rec.lsn();
+      txnum = rec.nextInt();
+      String filename = rec.nextString();
+      int blknum = rec.nextInt();
+      blk = new Block(filename, blknum);
+   }
+   
+   /**
+    * Writes a bulkappend record to the log.
+    * This log record contains the BULKAPPEND operator,
+    * followed by the transaction id and the filename
+    * and number of the first appended block.
+    * @return the LSN of the log record
+    */
+   public int writeToLog() {
+      lsn = SimpleDBEngine.logMgr().append(BULKAPPEND, txnum, blk.fileName(), blk.number());
+      return lsn;
+   }
+   
+   public int lsn() {
+      return lsn;
+   }
+   
+   public int op() {
+      return BULKAPPEND;
+   }
+   
+   public int txNumber() {
+      return txnum;
+   }
+   
+   public Block block() {
+      return blk;
+   }
+   
+   public int undoneLSN() {
+      return -1;
+   }
+   
+   public String toString() {
+      return "<BULKAPPEND " + txnum + " " + blk + ">";
+   }
+   
+   /**
+    * Clears every block of the file from the first appended one on,
+    * without logging: clearing a block again is harmless, so an
+    * interrupted undo is simply repeated.
+    * The cleared buffers are marked as modified by the
+    * specified transaction, which writes them to disk.
+    * @see rs.raf.simpledb.tx.recovery.LogRecord#undo(int)
+    */
+   public void undo(int txnum) {
+      BufferMgr buffMgr = SimpleDBEngine.bufferMgr();
+      int size = SimpleDBEngine.fileMgr().size(blk.fileName());
+      int blocksize = SimpleDBEngine.fileMgr().blockSize();
+      for (int b=blk.number(); b<size; b++) {
+         Buffer buff = buffMgr.pin(new Block(blk.fileName(), b));
+         synchronized (buff) {
+            for (int pos=0; pos<blocksize; pos+=Page.INT_SIZE) {
+               // the last integer may overlap the one before it
+               int p = Math.min(pos, blocksize - Page.INT_SIZE);
+               if (buff.getInt(p) != 0)
+                  buff.setInt(p, 0, txnum, -1);
+            }
+         }
+         buffMgr.unpin(buff);
+      }
+   }
+   
+   /**
+    * Does nothing, because the appended blocks
+    * were forced to disk before the transaction committed.
+    * @see rs.raf.simpledb.tx.recovery.LogRecord#redo(int)
+    */
+   public void redo(int txnum) {}
+}
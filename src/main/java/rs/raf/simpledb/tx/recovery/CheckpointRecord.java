@@ -0,0 +1,82 @@
+package rs.raf.simpledb.tx.recovery;
+
+import rs.raf.simpledb.SimpleDBEngine;
+import rs.raf.simpledb.utils.BasicLogRecord;
+
+/**
+ * The CHECKPOINT log record.
+ * @author Edward Sciore
+ */
+class CheckpointRecord implements LogRecord {
+   private int lasttx;
+   private int lsn = -1;
+   
+   /**
+    * Creates a quiescent checkpoint record.
+    * @param lasttx the number of the last transaction started
+    */
+   public CheckpointRecord(int lasttx) {
+      this.lasttx = lasttx;
+   }
+   
+   /**
+    * Creates a log record by reading one other value from the log.
+    * @param rec the basic log record
+    */
+   public CheckpointRecord(BasicLogRecord rec) {
+      lsn = rec.lsn();
+      lasttx = rec.nextInt();
+   }
+   
+   /** 
+    * Writes a checkpoint record to the log.
+    * This log record contains the CHECKPOINT operator,
+    * followed by the number of the last transaction started.
+    * @return the LSN of the log record
+    */
+   public int writeToLog() {
+      lsn = SimpleDBEngine.logMgr().append(CHECKPOINT, lasttx);
+      return lsn;
+   }
+   
+   public int lsn() {
+      return lsn;
+   }
+   
+   public int op() {
+      return CHECKPOINT;
+   }
+   
+   /**
+    * Checkpoint records have no associated transaction,
+    * and so the method returns a "dummy", negative txid.
+    */
+   public int txNumber() {
+      return -1; // dummy value
+   }
+   
+   /**
+    * Returns the number of the last transaction started
+    * before the checkpoint.
+    * @return the transaction number
+    */
+   public int lastTxNumber() {
+      return lasttx;
+   }
+   
+   /**
+    * Does nothing, because a checkpoint record
+    * contains no undo information.
+    */
+   public void undo(int txnum) {}
+   
+   /**
+    * Does nothing, because a checkpoint record
+    * contains no redo information.
+    */
+   public void redo(int txnum) {}
+   
+   public String toString() {
+      return "<CHECKPOINT " + lasttx + ">";
+   }
+}
@@ -0,0 +1,69 @@
+package rs.raf.simpledb.tx.recovery;
+
+import rs.raf.simpledb.SimpleDBEngine;
+import rs.raf.simpledb.utils.BasicLogRecord;
+
+/**
+ * The COMMIT log record.
+ * @author Edward Sciore
+ */
+class CommitRecord implements LogRecord {
+   private int txnum;
+   private int lsn = -1;
+   
+   /**
+    * Creates a new commit log record for the specified transaction.
+    * @param txnum the ID of the specified transaction
+    */
+   public CommitRecord(int txnum) {
+      this.txnum = txnum;
+   }
+   
+   /**
+    * Creates a log record by reading one other value from the log.
+    * @param rec the basic log record
+    */
+   public CommitRecord(BasicLogRecord rec) {
+      lsn = rec.lsn();
+      txnum = rec.nextInt();
+   }
+   
+   /** 
+    * Writes a commit record to the log and waits until it is on disk.
+    * This log record contains the COMMIT operator,
+    * followed by the transaction id.
+    * @return the LSN of the log record
+    */
+   public int writeToLog() {
+      lsn = SimpleDBEngine.logMgr().commit(COMMIT, txnum);
+      return lsn;
+   }
+   
+   public int lsn() {
+      return lsn;
+   }
+   
+   public int op() {
+      return COMMIT;
+   }
+   
+   public int txNumber() {
+      return txnum;
+   }
+   
+   /**
+    * Does nothing, because a commit record
+    * contains no undo information.
+    */
+   public void undo(int txnum) {}
+   
+   /**
+    * Does nothing, because a commit record
+    * contains no redo information.
+    */
+   public void redo(int txnum) {}
+   
+   public String toString() {
+      return "<COMMIT " + txnum + ">";
+   }
+}
@@ -0,0 +1,102 @@
+package rs.raf.simpledb.tx.recovery;
+
+import rs.raf.simpledb.SimpleDBEngine;
+import rs.raf.simpledb.utils.BasicLogRecord;
+import rs.raf.simpledb.utils.Block;
+
+/**
+ * The DIRTYPAGE log record, which a fuzzy checkpoint
+ * writes for each block that was modified in a buffer
+ * but not yet written to disk when the checkpoint began.
+ * The record holds the LSN of the first modification
+ * since the block was last written (its recovery LSN);
+ * no earlier log record of the block needs to be redone.
+ * @author Edward Sciore
+ */
+class DirtyPageRecord implements LogRecord {
+   private Block blk;
+   private int reclsn;
+   private int lsn = -1;
+   
+   /**
+    * Creates a new dirtypage log record for the specified block.
+    * @param blk the block
+    * @param reclsn the recovery LSN of the block
+    */
+   public DirtyPageRecord(Block blk, int reclsn) {
+      this.blk = blk;
+      this.reclsn = reclsn;
+   }
+   
+   /**
+    * Creates a log record by reading three other values from the log.
+    * @param rec the basic log record
+    */
+   public DirtyPageRecord(BasicLogRecord rec) {
+      lsn = rec.lsn();
+      String filename = rec.nextString();
+      int blknum = rec.nextInt();
+      blk = new Block(filename, blknum);
+      reclsn = rec.nextInt();
+   }
+   
+   /** 
+    * Writes a dirtypage record to the log.
+    * This log record contains the DIRTYPAGE operator,
+    * followed by the filename and number of the block
+    * and its recovery LSN.
+    * @return the LSN of the log record
+    */
+   public int writeToLog() {
+      lsn = SimpleDBEngine.logMgr().append(DIRTYPAGE, blk.fileName(), blk.number(), reclsn);
+      return lsn;
+   }
+   
+   public int lsn() {
+      return lsn;
+   }
+   
+   public int op() {
+      return DIRTYPAGE;
+   }
+   
+   /**
+    * Checkpoint records have no associated transaction,
+    * and so the method returns a "dummy", negative txid.
+    */
+   public int txNumber() {
+      return -1; // dummy value
+   }
+   
+   /**
+    * Returns the block that was dirty.
+    * @return the block
+    */
+   public Block block() {
+      return blk;
+   }
+   
+   /**
+    * Returns the recovery LSN of the block.
+    * @return the LSN of the first unwritten modification of the block
+    */
+   public int recoveryLSN() {
+      return reclsn;
+   }
+   
+   /**
+    * Does nothing, because a checkpoint record
+    * contains no undo information.
+    */
+   public void undo(int txnum) {}
+   
+   /**
+    * Does nothing, because a checkpoint record
+    * contains no redo information.
+    */
+   public void redo(int txnum) {}
+   
+   public String toString() {
+      return "<DIRTYPAGE " + blk + " " + reclsn + ">";
+   }
+}
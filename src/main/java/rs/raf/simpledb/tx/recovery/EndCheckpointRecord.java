@@ -0,0 +1,101 @@
+package rs.raf.simpledb.tx.recovery;
+
+import rs.raf.simpledb.SimpleDBEngine;
+import rs.raf.simpledb.utils.BasicLogRecord;
+
+/**
+ * The ENDCHECKPOINT log record, which completes a
+ * fuzzy checkpoint. It holds the LSN of the last record
+ * written before the checkpoint began; the ACTIVETX and
+ * DIRTYPAGE records after that LSN belong to the checkpoint.
+ * It also holds the number of the last transaction started
+ * before the checkpoint began.
+ * A checkpoint without this record is ignored by recovery.
+ * @author Edward Sciore
+ */
+class EndCheckpointRecord implements LogRecord {
+   private int beginlsn, lasttx;
+   private int lsn = -1;
+   
+   /**
+    * Creates a new endcheckpoint log record.
+    * @param beginlsn the LSN of the last record before the checkpoint
+    * @param lasttx the number of the last transaction started before the checkpoint
+    */
+   public EndCheckpointRecord(int beginlsn, int lasttx) {
+      this.beginlsn = beginlsn;
+      this.lasttx = lasttx;
+   }
+   
+   /**
+    * Creates a log record by reading two other values from the log.
+    * @param rec the basic log record
+    */
+   public EndCheckpointRecord(BasicLogRecord rec) {
+      lsn = rec.lsn();
+      beginlsn = rec.nextInt();
+      lasttx = rec.nextInt();
+   }
+   
+   /** 
+    * Writes an endcheckpoint record to the log.
+    * This log record contains the ENDCHECKPOINT operator,
+    * followed by the LSN at which the checkpoint began
+    * and the number of the last transaction started before it.
+    * @return the LSN of the log record
+    */
+   public int writeToLog() {
+      lsn = SimpleDBEngine.logMgr().append(ENDCHECKPOINT, beginlsn, lasttx);
+      return lsn;
+   }
+   
+   public int lsn() {
+      return lsn;
+   }
+   
+   public int op() {
+      return ENDCHECKPOINT;
+   }
+   
+   /**
+    * Checkpoint records have no associated transaction,
+    * and so the method returns a "dummy", negative txid.
+    */
+   public int txNumber() {
+      return -1; // dummy value
+   }
+   
+   /**
+    * Returns the LSN of the last record written
+    * before the checkpoint began.
+    * @return the LSN
+    */
+   public int beginLSN() {
+      return beginlsn;
+   }
+   
+   /**
+    * Returns the number of the last transaction started
+    * before the checkpoint began.
+    * @return the transaction number
+    */
+   public int lastTxNumber() {
+      return lasttx;
+   }
+   
+   /**
+    * Does nothing, because a checkpoint record
+    * contains no undo information.
+    */
+   public void undo(int txnum) {}
+   
+   /**
+    * Does nothing, because a checkpoint record
+    * contains no redo information.
+    */
+   public void redo(int txnum) {}
+   
+   public String toString() {
+      return "<ENDCHECKPOINT " + beginlsn + " " + lasttx + ">";
+   }
+}
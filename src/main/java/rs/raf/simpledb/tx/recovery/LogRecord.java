@@ -0,0 +1,58 @@
+package rs.raf.simpledb.tx.recovery;
+
+/**
+ * The interface implemented by each type of log record.
+ * @author Edward Sciore
+ */
+public interface LogRecord {
+   /**
+    * The ten different types of log record
+    */
+   static final int CHECKPOINT = 0, START = 1,
+      COMMIT = 2, ROLLBACK  = 3,
+      SETINT = 4, SETSTRING = 5,
+      ACTIVETX = 6, DIRTYPAGE = 7, ENDCHECKPOINT = 8,
+      BULKAPPEND = 9;
+   
+   /**
+    * Writes the record to the log and returns its LSN.
+    * @return the LSN of the record in the log
+    */
+   int writeToLog();
+   
+   /**
+    * Returns the LSN of a record read from the log,
+    * or of a record after it is written to the log.
+    * @return the LSN of the record, or -1 if it is not in the log yet
+    */
+   int lsn();
+   
+   /**
+    * Returns the log record's type. 
+    * @return the log record's type
+    */
+   int op();
+   
+   /**
+    * Returns the transaction id stored with
+    * the log record.
+    * @return the log record's transaction id
+    */
+   int txNumber();
+   
+   /**
+    * Undoes the operation encoded by this log record.
+    * The only log record types for which this method
+    * does anything interesting are SETINT, SETSTRING and BULKAPPEND.
+    * @param txnum the id of the transaction that is performing the undo.
+    */
+   void undo(int txnum);
+   
+   /**
+    * Redoes the operation encoded by this log record.
+    * The only log record types for which this method
+    * does anything interesting are SETINT and SETSTRING.
+    * @param txnum the id of the transaction that is performing the redo.
+    */
+   void redo(int txnum);
+}
@@ -0,0 +1,70 @@
+package rs.raf.simpledb.tx.recovery;
+
+import static rs.raf.simpledb.tx.recovery.LogRecord.*;
+
+import java.util.Iterator;
+
+import rs.raf.simpledb.SimpleDBEngine;
+import rs.raf.simpledb.utils.BasicLogRecord;
+
+/**
+ * A class that provides the ability to read records
+ * from the log in reverse order.
+ * Unlike the similar class 
+ * log iterator of {@link rs.raf.simpledb.utils.LogMgr#iterator()},
+ * this class understands the meaning of the log records.
+ * @author Edward Sciore
+ */
+class LogRecordIterator implements Iterator<LogRecord> {
+   private Iterator<BasicLogRecord> iter = SimpleDBEngine.logMgr().iterator();
+   
+   public boolean hasNext() {
+      return iter.hasNext();
+   }
+   
+   /**
+    * Constructs a log record from the values in the 
+    * current basic log record.
+    * The method first reads an integer, which denotes
+    * the type of the log record.  Based on that type,
+    * the method calls the appropriate LogRecord constructor
+    * to read the remaining values.
+    * A record of unknown type means that the log is damaged,
+    * and reading it any further would misinterpret it.
+    * @return the next log record
+    * @throws RuntimeException if the type of the record is unknown
+    */
+   public LogRecord next() {
+      BasicLogRecord rec = iter.next();
+      int op = rec.nextInt();
+      switch (op) {
+         case CHECKPOINT:
+            return new CheckpointRecord(rec);
+         case START:
+            return new StartRecord(rec);
+         case COMMIT:
+            return new CommitRecord(rec);
+         case ROLLBACK:
+            return new RollbackRecord(rec);
+         case SETINT:
+            return new SetIntRecord(rec);
+         case SETSTRING:
+            return new SetStringRecord(rec);
+         case ACTIVETX:
+            return new ActiveTxRecord(rec);
+         case DIRTYPAGE:
+            return new DirtyPageRecord(rec);
+         case ENDCHECKPOINT:
+            return new EndCheckpointRecord(rec);
+         case BULKAPPEND:
+            return new BulkAppendRecord(rec);
+         default:
+            throw new RuntimeException("log record " + rec.lsn()
+                                       + " has unknown type " + op + ": the log is damaged");
+      }
+   }
+   
+   public void remove() {
+      throw new UnsupportedOperationException();
+   }
+}
@@ -0,0 +1,398 @@
+package rs.raf.simpledb.tx.recovery;
+
+import static rs.raf.simpledb.tx.recovery.LogRecord.*;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import rs.raf.simpledb.SimpleDBEngine;
+import rs.raf.simpledb.utils.Block;
+import rs.raf.simpledb.utils.Buffer;
+import rs.raf.simpledb.utils.LogMgr;
+import rs.raf.simpledb.tx.concurrency.SnapshotMgr;
+
+/**
+ * The recovery manager.  Each transaction has its own recovery manager.
+ * <p>
+ * Every modification is logged with both its old and its new value,
+ * so that modified buffers need not be written when a transaction
+ * commits: a commit only forces the log up to its commit record
+ * (a buffer is written later, once its log records are on disk;
+ * see {@link Buffer}). Undoing a modification, during a rollback
+ * or during recovery, is itself logged as a compensation record.
+ * <p>
+ * The blocks that a transaction appends with their contents,
+ * such as the blocks of records loaded by COPY, are not logged:
+ * a {@link BulkAppendRecord} marks the first of them, and they
+ * are forced to disk before the transaction commits.
+ * <p>
+ * The start record of a transaction is written with its first
+ * modification, so that a transaction that modifies nothing
+ * writes nothing to the log and does not wait for it at commit.
+ * <p>
+ * A fuzzy {@link #checkpoint() checkpoint} records the active
+ * transactions and the dirty blocks, with the LSN of the first
+ * unwritten modification of each, without stopping the running
+ * transactions. Recovery follows ARIES: it reads the log backwards
+ * from its end, past the last complete checkpoint, only as far as
+ * the oldest record it needs (analysis); it then repeats history by
+ * redoing, in log order, every modification that may not have reached
+ * the disk (redo); finally it undoes the modifications of the
+ * transactions that neither committed nor rolled back (undo).
+ * The time to restart is thus bounded by the work done since the
+ * last checkpoint, and not by the size of the database or of the log.
+ * @author Edward Sciore
+ */
+public class RecoveryMgr {
+   private static Set<Integer> activeTxs = ConcurrentHashMap.newKeySet();
+   private static volatile int recordsRead = 0;
+   private static Analysis analysis = null;
+   private int txnum;
+   private boolean started = false;
+   private Set<String> bulkFiles = new HashSet<String>();
+   
+   /**
+    * Creates a recovery manager for the specified transaction.
+    * @param txnum the ID of the specified transaction
+    */
+   public RecoveryMgr(int txnum) {
+      this.txnum = txnum;
+   }
+   
+   /**
+    * Writes a commit record to the log, and flushes it to disk,
+    * if the transaction modified anything.
+    * The files to which the transaction appended blocks
+    * with their contents are forced to disk first.
+    */
+   public void commit() {
+      if (started) {
+         for (String filename : bulkFiles)
+            SimpleDBEngine.fileMgr().force(filename);
+         new CommitRecord(txnum).writeToLog();
+         activeTxs.remove(txnum);
+      }
+   }
+   
+   /**
+    * Rolls back the transaction, if it modified anything,
+    * and writes a rollback record to the log.
+    * The rollback record is not flushed: if it is lost,
+    * recovery finishes the rollback.
+    * The blocks that the transaction appended with their contents
+    * are cleared without logging, so they are written and forced
+    * to disk before the rollback record.
+    */
+   public void rollback() {
+      if (started) {
+         doRollback();
+         if (!bulkFiles.isEmpty()) {
+            SimpleDBEngine.bufferMgr().flushAll(txnum);
+            for (String filename : bulkFiles)
+               SimpleDBEngine.fileMgr().force(filename);
+         }
+         new RollbackRecord(txnum).writeToLog();
+         activeTxs.remove(txnum);
+      }
+   }
+   
+   /**
+    * Recovers the database from the log,
+    * writes the buffers and the data files to disk,
+    * and then writes a quiescent checkpoint record to the log
+    * and flushes it.
+    * This method is called only during system startup,
+    * before user transactions begin; it uses the result of
+    * {@link #analyze()}, which it calls if that has not been done.
+    */
+   public void recover() {
+      if (analysis == null)
+         analyze();
+      Analysis a = analysis;
+      analysis = null;
+      doRecover(a);
+      SimpleDBEngine.bufferMgr().flushAll(txnum);
+      SimpleDBEngine.fileMgr().forceAll();
+      int lsn = new CheckpointRecord(SnapshotMgr.lastTxNumber()).writeToLog();
+      SimpleDBEngine.logMgr().flush(lsn);
+   }
+   
+   /**
+    * Writes a fuzzy checkpoint to the log: the active transactions,
+    * the dirty blocks with their recovery LSNs, and a record
+    * completing the checkpoint, which is flushed.
+    * Transactions keep running during the checkpoint.
+    * <p>
+    * The active transactions and the dirty blocks are taken first,
+    * and the data files are then forced to disk before the records
+    * are written: a block that is not in the checkpoint was written
+    * before it was taken, and recovery does not redo it, so that
+    * write must reach the disk before the checkpoint does.
+    */
+   public static void checkpoint() {
+      LogMgr logMgr = SimpleDBEngine.logMgr();
+      int lasttx = SnapshotMgr.lastTxNumber();
+      int beginlsn = logMgr.lastLSN();
+      List<Integer> txs = new ArrayList<Integer>(activeTxs);
+      Map<Block,Integer> dirty = SimpleDBEngine.bufferMgr().dirtyBlocks();
+      SimpleDBEngine.fileMgr().forceAll();
+      for (int tx : txs)
+         new ActiveTxRecord(tx).writeToLog();
+      for (Map.Entry<Block,Integer> e : dirty.entrySet())
+         new DirtyPageRecord(e.getKey(), e.getValue()).writeToLog();
+      int lsn = new EndCheckpointRecord(beginlsn, lasttx).writeToLog();
+      logMgr.flush(lsn);
+   }
+   
+   /**
+    * Returns the number of log records read by the last recovery.
+    * @return the number of records
+    */
+   public static int recordsRead() {
+      return recordsRead;
+   }
+   
+   /**
+    * Writes a setint record to the log, and returns its lsn.
+    * Updates to temporary files are not logged; instead, a
+    * "dummy" negative lsn is returned.
+    * @param buff the buffer containing the page
+    * @param offset the offset of the value in the page
+    * @param newval the value to be written
+    * @return the LSN of the log record, or -1 if none was written
+    */
+   public int setInt(Buffer buff, int offset, int newval) {
+      int oldval = buff.getInt(offset);
+      Block blk = buff.block();
+      if (isTempBlock(blk))
+         return -1;
+      start();
+      return new SetIntRecord(txnum, blk, offset, oldval, newval, -1).writeToLog();
+   }
+   
+   /**
+    * Writes a setstring record to the log, and returns its lsn.
+    * Updates to temporary files are not logged; instead, a
+    * "dummy" negative lsn is returned.
+    * @param buff the buffer containing the page
+    * @param offset the offset of the value in the page
+    * @param newval the value to be written
+    * @return the LSN of the log record, or -1 if none was written
+    */
+   public int setString(Buffer buff, int offset, String newval) {
+      String oldval = buff.getString(offset);
+      Block blk = buff.block();
+      if (isTempBlock(blk))
+         return -1;
+      start();
+      return new SetStringRecord(txnum, blk, offset, oldval, newval, -1).writeToLog();
+   }
+   
+   /**
+    * Records that the transaction appends blocks with their contents
+    * to the file, from the specified block on, unless it did already.
+    * The bulkappend record is flushed, so that it is on disk
+    * before any of the blocks is; the caller keeps the end of the
+    * file locked, so that every later block of the file is its own.
+    * Appends to temporary files are not logged.
+    * @param blk the first block the transaction appends
+    */
+   public void bulkAppend(Block blk) {
+      if (isTempBlock(blk) || bulkFiles.contains(blk.fileName()))
+         return;
+      start();
+      int lsn = new BulkAppendRecord(txnum, blk).writeToLog();
+      SimpleDBEngine.logMgr().flush(lsn);
+      bulkFiles.add(blk.fileName());
+   }
+   
+   /**
+    * Writes the start record of the transaction
+    * before its first modification.
+    */
+   private void start() {
+      if (!started) {
+         activeTxs.add(txnum);
+         new StartRecord(txnum).writeToLog();
+         started = true;
+      }
+   }
+   
+   /**
+    * Rolls back the transaction.
+    * The method iterates through the log records,
+    * calling undo() for each modification it finds
+    * for the transaction,
+    * until it finds the transaction's START record.
+    */
+   private void doRollback() {
+      Iterator<LogRecord> iter = new LogRecordIterator();
+      while (iter.hasNext()) {
+         LogRecord rec = iter.next();
+         if (rec.txNumber() == txnum) {
+            if (rec.op() == START)
+               return;
+            if (rec instanceof UpdateRecord && ((UpdateRecord) rec).undoneLSN() < 0)
+               rec.undo(txnum);
+         }
+      }
+   }
+   
+   /**
+    * Reads the log back as far as recovery needs it,
+    * and numbers new transactions after every transaction
+    * found there (see {@link #recover()}).
+    * This method is called during system startup before the
+    * recovery transaction is created, so that the number of
+    * that transaction is not one the log records and the
+    * records on disk are already tagged with.
+    */
+   public static void analyze() {
+      analysis = doAnalyze();
+      SnapshotMgr.startAfter(analysis.maxtx);
+   }
+   
+   /**
+    * The result of the analysis phase of recovery.
+    */
+   private static class Analysis {
+      List<LogRecord> recs = new ArrayList<LogRecord>();
+      Set<Integer> candidates = new HashSet<Integer>();
+      Map<Block,Integer> dirty = new HashMap<Block,Integer>();
+      int maxtx = 0;
+   }
+   
+   /**
+    * The analysis phase of recovery.
+    * The method iterates backwards through the log
+    * records, keeping them, until it reaches a quiescent checkpoint
+    * or the beginning of the log, or until it is past the last
+    * complete fuzzy checkpoint, past the recovery LSN of every
+    * dirty block, and past the START record of every transaction
+    * that has to be undone. A block is dirty if the checkpoint
+    * lists it or if a later record modifies it; a transaction has
+    * to be undone if the checkpoint lists it or if a later record
+    * belongs to it, and the log has no commit or rollback record
+    * for it.
+    * <p>
+    * New transactions are numbered after every transaction
+    * in the records read and in the checkpoint, since the
+    * records on disk are tagged with these numbers.
+    */
+   private static Analysis doAnalyze() {
+      Analysis a = new Analysis();
+      List<LogRecord> recs = a.recs;
+      Set<Integer> finished = new HashSet<Integer>();
+      Set<Integer> candidates = a.candidates;
+      Set<Integer> startsSeen = new HashSet<Integer>();
+      Map<Block,Integer> dirty = a.dirty;
+      int beginlsn = -1, redolsn = -1;
+      boolean checkpointed = false;
+      Iterator<LogRecord> iter = new LogRecordIterator();
+      int maxtx = 0;
+      while (iter.hasNext()) {
+         LogRecord rec = iter.next();
+         maxtx = Math.max(maxtx, rec.txNumber());
+         if (rec.op() == CHECKPOINT) {
+            maxtx = Math.max(maxtx, ((CheckpointRecord) rec).lastTxNumber());
+            break;
+         }
+         boolean afterBegin = !checkpointed || rec.lsn() > beginlsn;
+         if (!afterBegin) {
+            if (redolsn < 0)
+               redolsn = minValue(dirty);
+            if (rec.lsn() < redolsn && startsSeen.containsAll(candidates))
+               break;
+         }
+         switch (rec.op()) {
+            case ENDCHECKPOINT:
+               if (!checkpointed) {
+                  checkpointed = true;
+                  beginlsn = ((EndCheckpointRecord) rec).beginLSN();
+                  maxtx = Math.max(maxtx, ((EndCheckpointRecord) rec).lastTxNumber());
+               }
+               break;
+            case ACTIVETX:
+               if (checkpointed && afterBegin && !finished.contains(rec.txNumber()))
+                  candidates.add(rec.txNumber());
+               break;
+            case DIRTYPAGE:
+               if (checkpointed && afterBegin) {
+                  DirtyPageRecord dp = (DirtyPageRecord) rec;
+                  dirty.merge(dp.block(), dp.recoveryLSN(), Math::min);
+               }
+               break;
+            case COMMIT:
+            case ROLLBACK:
+               finished.add(rec.txNumber());
+               break;
+            case START:
+               startsSeen.add(rec.txNumber());
+               break;
+            default:
+               if (!finished.contains(rec.txNumber()))
+                  candidates.add(rec.txNumber());
+               if (afterBegin)
+                  dirty.merge(((UpdateRecord) rec).block(), rec.lsn(), Math::min);
+         }
+         recs.add(rec);
+      }
+      recordsRead = recs.size();
+      candidates.removeAll(finished);
+      a.maxtx = maxtx;
+      return a;
+   }
+   
+   /**
+    * Does a complete database recovery from the result of the
+    * analysis phase.
+    * <p>
+    * Redo: going forward, every modification of a dirty block
+    * from its recovery LSN on is redone, whichever transaction
+    * made it, including compensation records.
+    * <p>
+    * Undo: going backwards, every modification of a transaction
+    * to be undone is undone, except for those that a compensation
+    * record shows were undone already; a rollback record is then
+    * written for each of these transactions.
+    */
+   private void doRecover(Analysis a) {
+      List<LogRecord> recs = a.recs;
+      Set<Integer> candidates = a.candidates;
+      Map<Block,Integer> dirty = a.dirty;
+      for (int i=recs.size()-1; i>=0; i--) {
+         LogRecord rec = recs.get(i);
+         if (rec instanceof UpdateRecord) {
+            Integer reclsn = dirty.get(((UpdateRecord) rec).block());
+            if (reclsn != null && rec.lsn() >= reclsn)
+               rec.redo(txnum);
+         }
+      }
+      
+      Set<Integer> undone = new HashSet<Integer>();
+      for (LogRecord rec : recs)
+         if (candidates.contains(rec.txNumber()) && rec instanceof UpdateRecord) {
+            int undonelsn = ((UpdateRecord) rec).undoneLSN();
+            if (undonelsn >= 0)
+               undone.add(undonelsn);
+            else if (!undone.contains(rec.lsn()))
+               rec.undo(txnum);
+         }
+      for (int tx : candidates)
+         new RollbackRecord(tx).writeToLog();
+   }
+   
+   private static int minValue(Map<Block,Integer> dirty) {
+      int min = Integer.MAX_VALUE;
+      for (int lsn : dirty.values())
+         min = Math.min(min, lsn);
+      return min;
+   }
+   
+   /**
+    * Determines whether a block comes from a temporary file or not.
+    */
+   private boolean isTempBlock(Block blk) {
+      return blk.fileName().startsWith("temp");
+   }
+}
@@ -0,0 +1,69 @@
+package rs.raf.simpledb.tx.recovery;
+
+import rs.raf.simpledb.SimpleDBEngine;
+import rs.raf.simpledb.utils.BasicLogRecord;
+
+/**
+ * The ROLLBACK log record.
+ * @author Edward Sciore
+ */
+class RollbackRecord implements LogRecord {
+   private int txnum;
+   private int lsn = -1;
+   
+   /**
+    * Creates a new rollback log record for the specified transaction.
+    * @param txnum the ID of the specified transaction
+    */
+   public RollbackRecord(int txnum) {
+      this.txnum = txnum;
+   }
+   
+   /**
+    * Creates a log record by reading one other value from the log.
+    * @param rec the basic log record
+    */
+   public RollbackRecord(BasicLogRecord rec) {
+      lsn = rec.lsn();
+      txnum = rec.nextInt();
+   }
+   
+   /** 
+    * Writes a rollback record to the log.
+    * This log record contains the ROLLBACK operator,
+    * followed by the transaction id.
+    * @return the LSN of the log record
+    */
+   public int writeToLog() {
+      lsn = SimpleDBEngine.logMgr().append(ROLLBACK, txnum);
+      return lsn;
+   }
+   
+   public int lsn() {
+      return lsn;
+   }
+   
+   public int op() {
+      return ROLLBACK;
+   }
+   
+   public int txNumber() {
+      return txnum;
+   }
+   
+   /**
+    * Does nothing, because a rollback record
+    * contains no undo information.
+    */
+   public void undo(int txnum) {}
+   
+   /**
+    * Does nothing, because a rollback record
+    * contains no redo information.
+    */
+   public void redo(int txnum) {}
+   
+   public String toString() {
+      return "<ROLLBACK " + txnum + ">";
+   }
+}
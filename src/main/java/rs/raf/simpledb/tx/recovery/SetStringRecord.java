@@ -0,0 +1,127 @@
+package rs.raf.simpledb.tx.recovery;
+
+import rs.raf.simpledb.SimpleDBEngine;
+import rs.raf.simpledb.utils.BasicLogRecord;
+import rs.raf.simpledb.utils.Block;
+import rs.raf.simpledb.utils.Buffer;
+import rs.raf.simpledb.utils.BufferMgr;
+
+/**
+ * The SETSTRING log record, which holds both the old and
+ * the new value, so that the update can be undone
+ * as well as redone.
+ * @author Edward Sciore
+ */
+class SetStringRecord implements UpdateRecord {
+   private int txnum, offset;
+   private String oldval, newval;
+   private Block blk;
+   private int undonelsn;
+   private int lsn = -1;
+   
+   /**
+    * Creates a new setstring log record.
+    * @param txnum the ID of the specified transaction
+    * @param blk the block containing the value
+    * @param offset the offset of the value in the block
+    * @param oldval the value before the update
+    * @param newval the value after the update
+    * @param undonelsn the LSN of the record undone by this
+    * compensation record, or -1
+    */
+   public SetStringRecord(int txnum, Block blk, int offset, String oldval, String newval, int undonelsn) {
+      this.txnum = txnum;
+      this.blk = blk;
+      this.offset = offset;
+      this.oldval = oldval;
+      this.newval = newval;
+      this.undonelsn = undonelsn;
+   }
+   
+   /**
+    * Creates a log record by reading seven other values from the log.
+    * @param rec the basic log record
+    */
+   public SetStringRecord(BasicLogRecord rec) {
+      lsn = rec.lsn();
+      txnum = rec.nextInt();
+      String filename = rec.nextString();
+      int blknum = rec.nextInt();
+      blk = new Block(filename, blknum);
+      offset = rec.nextInt();
+      oldval = rec.nextString();
+      newval = rec.nextString();
+      undonelsn = rec.nextInt();
+   }
+   
+   /** 
+    * Writes a setString record to the log.
+    * This log record contains the SETSTRING operator,
+    * followed by the transaction id, the filename, number,
+    * and offset of the modified block, the previous and
+    * new string values at that offset, and the LSN of
+    * the undone record.
+    * @return the LSN of the log record
+    */
+   public int writeToLog() {
+      lsn = SimpleDBEngine.logMgr().append(SETSTRING, txnum, blk.fileName(),
+                                           blk.number(), offset, oldval, newval, undonelsn);
+      return lsn;
+   }
+   
+   public int lsn() {
+      return lsn;
+   }
+   
+   public int op() {
+      return SETSTRING;
+   }
+   
+   public int txNumber() {
+      return txnum;
+   }
+   
+   public Block block() {
+      return blk;
+   }
+   
+   public int undoneLSN() {
+      return undonelsn;
+   }
+   
+   public String toString() {
+      return "<SETSTRING " + txnum + " " + blk + " " + offset + " " + oldval + " " + newval
+            + (undonelsn >= 0 ? " undoes " + undonelsn : "") + ">";
+   }
+   
+   /**
+    * Replaces the specified data value with the value saved in the log record.
+    * The method pins a buffer to the specified block,
+    * writes a compensation record that stores the saved value,
+    * restores the value, and unpins the buffer.
+    * The compensation record belongs to the transaction
+    * that made the modification.
+    * @see rs.raf.simpledb.tx.recovery.LogRecord#undo(int)
+    */
+   public void undo(int txnum) {
+      BufferMgr buffMgr = SimpleDBEngine.bufferMgr();
+      Buffer buff = buffMgr.pin(blk);
+      synchronized (buff) {
+         int clr = new SetStringRecord(this.txnum, blk, offset, newval, oldval, lsn).writeToLog();
+         buff.setString(offset, oldval, txnum, clr);
+      }
+      buffMgr.unpin(buff);
+   }
+   
+   /**
+    * Stores the new value of the log record into the block,
+    * using a dummy LSN, since the record is already on disk.
+    * @see rs.raf.simpledb.tx.recovery.LogRecord#redo(int)
+    */
+   public void redo(int txnum) {
+      BufferMgr buffMgr = SimpleDBEngine.bufferMgr();
+      Buffer buff = buffMgr.pin(blk);
+      buff.setString(offset, newval, txnum, -1);
+      buffMgr.unpin(buff);
+   }
+}
@@ -0,0 +1,28 @@
+package rs.raf.simpledb.tx.recovery;
+
+import rs.raf.simpledb.utils.Block;
+
+/**
+ * A log record of a modification of a block,
+ * which recovery may redo and undo.
+ * A compensation record is written when a modification
+ * is undone: it is redone like any other modification
+ * but never undone, and it names the modification it undid,
+ * so that an interrupted rollback is not undone twice.
+ * @author Edward Sciore
+ */
+interface UpdateRecord extends LogRecord {
+   /**
+    * Returns the modified block.
+    * @return the block
+    */
+   Block block();
+   
+   /**
+    * Returns the LSN of the modification that this
+    * compensation record undid.
+    * @return the LSN of the undone record, or -1 if this
+    * is not a compensation record
+    */
+   int undoneLSN();
+}
@@ -0,0 +1,186 @@
+package rs.raf.simpledb.utils;
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+import rs.raf.simpledb.tx.recovery.RecoveryMgr;
+
+/**
+ * A daemon thread that writes dirty buffers to disk
+ * before they are chosen for replacement, so that the
+ * thread pinning a new block rarely has to write the old one.
+ * <p>
+ * Every interval, the writer collects the dirty unpinned buffers,
+ * sorts them by file and block number (so that the disk sees
+ * mostly sequential writes), and writes at most as many of them
+ * as the configured write rate allows.
+ * Every checkpoint interval, it writes all dirty buffers,
+ * including pinned ones, forces the data files to disk,
+ * and writes a fuzzy checkpoint to the log
+ * (see {@link RecoveryMgr#checkpoint()}), so that recovery
+ * starts from there.
+ * <p>
+ * The writer keeps statistics about the number of pages written,
+ * and about the write lag, i.e. the time a page stayed dirty
+ * before the writer wrote it.
+ */
+public class BackgroundWriter implements Runnable {
+   private BasicBufferMgr bufferMgr;
+   private int pagesPerSecond;
+   private long intervalMillis, checkpointMillis;
+   private volatile boolean running = true;
+   private Thread thread;
+   
+   private AtomicLong pagesWritten = new AtomicLong();
+   private AtomicLong checkpoints = new AtomicLong();
+   private AtomicLong totalLag = new AtomicLong();
+   private AtomicLong maxLag = new AtomicLong();
+   
+   private static final Comparator<Buffer> BLOCK_ORDER = new Comparator<Buffer>() {
+      public int compare(Buffer b1, Buffer b2) {
+         Block blk1 = b1.block(), blk2 = b2.block();
+         int cmp = blk1.fileName().compareTo(blk2.fileName());
+         return (cmp != 0) ? cmp : Integer.compare(blk1.number(), blk2.number());
+      }
+   };
+   
+   /**
+    * Creates a background writer for the specified buffer manager.
+    * The writer does not run until {@link #start()} is called.
+    * @param bufferMgr the buffer manager whose buffers are written
+    * @param pagesPerSecond the maximum number of pages written per second
+    * @param intervalMillis the time between two rounds of writing
+    * @param checkpointMillis the time between two checkpoints, or 0 for none
+    */
+   public BackgroundWriter(BufferMgr bufferMgr, int pagesPerSecond,
+                           long intervalMillis, long checkpointMillis) {
+      this.bufferMgr = bufferMgr.basicBufferMgr();
+      this.pagesPerSecond = pagesPerSecond;
+      this.intervalMillis = intervalMillis;
+      this.checkpointMillis = checkpointMillis;
+   }
+   
+   /**
+    * Starts the writer thread.
+    */
+   public synchronized void start() {
+      thread = new Thread(this, "simpledb-background-writer");
+      thread.setDaemon(true);
+      thread.start();
+   }
+   
+   /**
+    * Stops the writer thread and waits for it to finish.
+    */
+   public synchronized void stop() {
+      running = false;
+      if (thread != null) {
+         thread.interrupt();
+         try {
+            thread.join();
+         }
+         catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+         }
+      }
+   }
+   
+   public void run() {
+      long nextCheckpoint = System.currentTimeMillis() + checkpointMillis;
+      while (running) {
+         try {
+            Thread.sleep(intervalMillis);
+         }
+         catch (InterruptedException e) {
+            break;
+         }
+         try {
+            if (checkpointMillis > 0 && System.currentTimeMillis() >= nextCheckpoint) {
+               checkpoint();
+               nextCheckpoint = System.currentTimeMillis() + checkpointMillis;
+            }
+            else
+               writeDirtyBuffers();
+         }
+         catch (RuntimeException e) {
+            // an I/O error will surface again in the foreground; keep running
+         }
+      }
+   }
+   
+   /**
+    * Writes the dirty unpinned buffers in block order,
+    * up to the number allowed by the write rate.
+    */
+   void writeDirtyBuffers() {
+      int budget = (int) Math.max(1, pagesPerSecond * intervalMillis / 1000);
+      List<Buffer> dirty = bufferMgr.dirtyUnpinnedBuffers();
+      writeInBlockOrder(dirty, budget);
+   }
+   
+   /**
+    * Writes every dirty buffer in block order,
+    * and writes a fuzzy checkpoint to the log,
+    * which forces the written files to disk.
+    */
+   void checkpoint() {
+      writeInBlockOrder(bufferMgr.dirtyBuffers(), Integer.MAX_VALUE);
+      RecoveryMgr.checkpoint();
+      checkpoints.incrementAndGet();
+   }
+   
+   private void writeInBlockOrder(List<Buffer> buffs, int budget) {
+      List<Buffer> sorted = new ArrayList<Buffer>();
+      for (Buffer buff : buffs)
+         if (buff.block() != null)
+         sorted.add(buff);
+      sorted.sort(BLOCK_ORDER);
+      int written = 0;
+      for (Buffer buff : sorted) {
+         if (written >= budget)
+            break;
+         long lag = buff.writeBack();
+         if (lag >= 0) {
+            written++;
+            pagesWritten.incrementAndGet();
+            totalLag.addAndGet(lag);
+            maxLag.accumulateAndGet(lag, Math::max);
+         }
+      }
+   }
+   
+   /**
+    * Returns the number of pages written by the background writer.
+    * @return the number of pages written
+    */
+   public long pagesWritten() {
+      return pagesWritten.get();
+   }
+   
+   /**
+    * Returns the number of checkpoints taken.
+    * @return the number of checkpoints
+    */
+   public long checkpoints() {
+      return checkpoints.get();
+   }
+   
+   /**
+    * Returns the average time, in milliseconds, that a page
+    * written by the background writer had been dirty.
+    * @return the average write lag
+    */
+   public double averageWriteLag() {
+      long n = pagesWritten.get();
+      return (n == 0) ? 0 : (double) totalLag.get() / n;
+   }
+   
+   /**
+    * Returns the longest time, in milliseconds, that a page
+    * written by the background writer had been dirty.
+    * @return the maximum write lag
+    */
+   public long maxWriteLag() {
+      return maxLag.get();
+   }
+}
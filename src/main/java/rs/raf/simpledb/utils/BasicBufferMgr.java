@@ -1,118 +1,401 @@
 package rs.raf.simpledb.utils;
 
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+
 /**
  * Manages the pinning and unpinning of buffers to blocks.
+ * The manager keeps a page table that maps each block
+ * to the buffer holding it, and a list of free (never assigned)
+ * buffers. When no buffer is free, the manager's
+ * {@link ReplacementPolicy} chooses the buffer to be replaced.
+ * <p>
+ * The manager is designed for concurrent use without a global lock:
+ * <ul>
+ * <li>A pin of a block that is already in the pool (a hit) only
+ * reads the concurrent page table and atomically increments the
+ * buffer's pin count.</li>
+ * <li>A miss locks one of several load locks, chosen by the block's
+ * hash code, so that two threads never read the same block into
+ * two buffers. Misses on unrelated blocks proceed in parallel.</li>
+ * <li>A buffer chosen for replacement is claimed by atomically setting
+ * its pin count from 0 to -1, so that no thread can pin it while
+ * its old contents are flushed and its new block is read.</li>
+ * <li>The replacement policy is not thread-safe. Loads, hits and unpins
+ * are queued as events and applied to the policy by whichever
+ * thread holds the policy lock, so that hits never wait for it.
+ * A load is queued before the buffer enters the page table, so that
+ * the policy learns of a buffer before any hit on it. Each event
+ * records its block, and an event whose buffer has since been
+ * assigned to another block is dropped.</li>
+ * </ul>
  * @author Edward Sciore
  *
  */
 
 public class BasicBufferMgr {
+   private static final int LOAD_LOCKS = 64;
+   private static final int LOADED = 0, ACCESSED = 1, UNPINNED = 2;
+
    private Buffer[] bufferpool;
-   private int numAvailable;
-   
+   private ConcurrentHashMap<Block,Buffer> pageTable;
+   private ConcurrentLinkedQueue<Buffer> freeBuffers;
+   private ReplacementPolicy policy;
+   private ReentrantLock policyLock = new ReentrantLock();
+   private ConcurrentLinkedQueue<PolicyEvent> policyEvents = new ConcurrentLinkedQueue<PolicyEvent>();
+   private ReentrantLock[] loadLocks = new ReentrantLock[LOAD_LOCKS];
+   private AtomicInteger numAvailable;
+   private LongAdder hits = new LongAdder(), misses = new LongAdder();
+   private LongAdder foregroundFlushes = new LongAdder(), flushesAvoided = new LongAdder();
+
    /**
-    * Creates a buffer manager having the specified number 
+    * Creates a buffer manager having the specified number
     * of buffer slots.
     * This constructor depends on both the {@link FileMgr} and
-    * {@link simpledb.log.LogMgr LogMgr} objects 
+    * {@link simpledb.log.LogMgr LogMgr} objects
     * that it gets from the class
     * {@link simpledb.server.SimpleDB}.
     * Those objects are created during system initialization.
-    * Thus this constructor cannot be called until 
+    * Thus this constructor cannot be called until
     * {@link simpledb.server.SimpleDB#initFileAndLogMgr(String)} or
     * is called first.
     * @param numbuffs the number of buffer slots to allocate
+    * @param policy the policy that chooses buffers for replacement
+    * @param arena the arena holding the pages, or null to allocate each page separately
     */
-   BasicBufferMgr(int numbuffs) {
+   BasicBufferMgr(int numbuffs, ReplacementPolicy policy, PageArena arena) {
       bufferpool = new Buffer[numbuffs];
-      numAvailable = numbuffs;
-      for (int i=0; i<numbuffs; i++)
-         bufferpool[i] = new Buffer();
+      pageTable = new ConcurrentHashMap<Block,Buffer>(2 * numbuffs);
+      freeBuffers = new ConcurrentLinkedQueue<Buffer>();
+      this.policy = policy;
+      numAvailable = new AtomicInteger(numbuffs);
+      for (int i=0; i<numbuffs; i++) {
+         bufferpool[i] = (arena == null) ? new Buffer() : new Buffer(arena.newPage());
+         freeBuffers.add(bufferpool[i]);
+      }
+      for (int i=0; i<LOAD_LOCKS; i++)
+         loadLocks[i] = new ReentrantLock();
    }
-   
+
    /**
     * Flushes the dirty buffers modified by the specified transaction.
     * @param txnum the transaction's id number
     */
-   synchronized void flushAll(int txnum) {
+   void flushAll(int txnum) {
       for (Buffer buff : bufferpool)
          if (buff.isModifiedBy(txnum))
          buff.flush();
    }
-   
+
+   /**
+    * Returns the buffers that are dirty but not pinned,
+    * which are the candidates for background writing.
+    * @return the dirty unpinned buffers
+    */
+   List<Buffer> dirtyUnpinnedBuffers() {
+      List<Buffer> result = new ArrayList<Buffer>();
+      for (Buffer buff : bufferpool)
+         if (!buff.isPinned() && buff.isDirty())
+         result.add(buff);
+      return result;
+   }
+
+   /**
+    * Returns all dirty buffers, pinned or not.
+    * @return the dirty buffers
+    */
+   List<Buffer> dirtyBuffers() {
+      List<Buffer> result = new ArrayList<Buffer>();
+      for (Buffer buff : bufferpool)
+         if (buff.isDirty())
+         result.add(buff);
+      return result;
+   }
+
+   /**
+    * Returns the blocks of the dirty buffers that have
+    * logged modifications, each with its recovery LSN.
+    * @return the map from each dirty block to its recovery LSN
+    */
+   Map<Block,Integer> dirtyBlocks() {
+      Map<Block,Integer> result = new HashMap<Block,Integer>();
+      for (Buffer buff : bufferpool) {
+         Block blk = buff.block();
+         int lsn = buff.recoveryLSN();
+         if (blk != null && lsn >= 0)
+            result.merge(blk, lsn, Math::min);
+      }
+      return result;
+   }
+
    /**
-    * Pins a buffer to the specified block. 
+    * Pins a buffer to the specified block.
     * If there is already a buffer assigned to that block
-    * then that buffer is used;  
+    * then that buffer is used;
     * otherwise, an unpinned buffer from the pool is chosen.
     * Returns a null value if there are no available buffers.
     * @param blk a reference to a disk block
     * @return the pinned buffer
     */
-   synchronized Buffer pin(Block blk) {
-      Buffer buff = findExistingBuffer(blk);
-      if (buff == null) {
-         buff = chooseUnpinnedBuffer();
-         if (buff == null)
-            return null;
-         buff.assignToBlock(blk);
+   Buffer pin(Block blk) {
+      while (true) {
+         Buffer buff = pageTable.get(blk);
+         if (buff != null) {
+            int pins = buff.pin();
+            if (pins < 0) {
+               // the buffer is being replaced; wait until it leaves the page table
+               Thread.yield();
+               continue;
+            }
+            if (pins == 1)
+               numAvailable.decrementAndGet();
+            if (blk.equals(buff.block())) {
+               hits.increment();
+               record(ACCESSED, buff);
+               return buff;
+            }
+            // the buffer was reassigned between the lookup and the pin
+            unpin(buff);
+            continue;
+         }
+
+         ReentrantLock lock = loadLocks[(blk.hashCode() & 0x7fffffff) % LOAD_LOCKS];
+         lock.lock();
+         try {
+            if (pageTable.containsKey(blk))
+               continue;
+            buff = chooseUnpinnedBuffer();
+            if (buff == null)
+               return null;
+            try {
+               buff.assignToBlock(blk);
+            }
+            catch (RuntimeException e) {
+               release(buff);
+               throw e;
+            }
+            buff.setPinned();
+            policyEvents.add(new PolicyEvent(LOADED, buff, blk));
+            pageTable.put(blk, buff);
+         }
+         finally {
+            lock.unlock();
+         }
+         misses.increment();
+         applyPolicyEventsIfFree();
+         return buff;
       }
-      if (!buff.isPinned())
-         numAvailable--;
-      buff.pin();
-      return buff;
    }
-   
+
    /**
     * Allocates a new block in the specified file, and
-    * pins a buffer to it. 
-    * Returns null (without allocating the block) if 
+    * pins a buffer to it.
+    * Returns null (without allocating the block) if
     * there are no available buffers.
     * @param filename the name of the file
     * @param fmtr a pageformatter object, used to format the new block
     * @return the pinned buffer
     */
-   synchronized Buffer pinNew(String filename, Page.PageFormatter fmtr) {
+   Buffer pinNew(String filename, Page.PageFormatter fmtr) {
       Buffer buff = chooseUnpinnedBuffer();
       if (buff == null)
          return null;
-      buff.assignToNew(filename, fmtr);
-      numAvailable--;
-      buff.pin();
+      try {
+         buff.assignToNew(filename, fmtr);
+      }
+      catch (RuntimeException e) {
+         release(buff);
+         throw e;
+      }
+      buff.setPinned();
+      // a read-only transaction may pin the new block without locking
+      // the end of the file; it then either finds this buffer or
+      // loads a copy that the page table does not keep
+      Block blk = buff.block();
+      ReentrantLock lock = loadLocks[(blk.hashCode() & 0x7fffffff) % LOAD_LOCKS];
+      lock.lock();
+      try {
+         policyEvents.add(new PolicyEvent(LOADED, buff, blk));
+         pageTable.put(blk, buff);
+      }
+      finally {
+         lock.unlock();
+      }
+      applyPolicyEventsIfFree();
       return buff;
    }
-   
+
    /**
     * Unpins the specified buffer.
     * @param buff the buffer to be unpinned
     */
-   synchronized void unpin(Buffer buff) {
-      buff.unpin();
-      if (!buff.isPinned())
-         numAvailable++;
+   void unpin(Buffer buff) {
+      if (buff.unpin() == 0) {
+         numAvailable.incrementAndGet();
+         record(UNPINNED, buff);
+      }
    }
-   
+
    /**
     * Returns the number of available (i.e. unpinned) buffers.
     * @return the number of available buffers
     */
    int available() {
-      return numAvailable;
+      return numAvailable.get();
    }
-   
-   private Buffer findExistingBuffer(Block blk) {
-      for (Buffer buff : bufferpool) {
-         Block b = buff.block();
-         if (b != null && b.equals(blk))
-            return buff;
-      }
-      return null;
+
+   /**
+    * Returns the number of pin requests that found
+    * their block already in the buffer pool.
+    * @return the number of buffer hits
+    */
+   long hits() {
+      return hits.sum();
+   }
+
+   /**
+    * Returns the number of pin requests that had to
+    * read their block from disk.
+    * @return the number of buffer misses
+    */
+   long misses() {
+      return misses.sum();
+   }
+
+   /**
+    * Returns the number of replaced buffers that were dirty,
+    * so that the pinning thread had to write them itself.
+    * @return the number of foreground flushes
+    */
+   long foregroundFlushes() {
+      return foregroundFlushes.sum();
+   }
+
+   /**
+    * Returns the number of replaced buffers that would have been
+    * dirty, had the background writer not written them already.
+    * @return the number of foreground flushes avoided
+    */
+   long flushesAvoided() {
+      return flushesAvoided.sum();
    }
-   
+
+   /**
+    * Chooses a buffer for a new block and claims it.
+    * Free buffers are used first; otherwise the
+    * replacement policy chooses one of the unpinned buffers.
+    * If the policy's choice has been pinned in the meantime,
+    * or the policy has no candidate although some buffer is
+    * unpinned (its events may not have been applied yet),
+    * the pool is searched directly.
+    * The old contents of the chosen buffer are flushed before
+    * its block is removed from the page table, so that a thread
+    * that misses on the old block reads the current version.
+    * @return a claimed buffer, or null if all buffers are pinned
+    */
    private Buffer chooseUnpinnedBuffer() {
+      Buffer buff = freeBuffers.poll();
+      if (buff == null) {
+         buff = claimVictim();
+         if (buff == null)
+            return null;
+      }
+      else if (!buff.claim())
+         throw new IllegalStateException("free buffer is pinned");
+      numAvailable.decrementAndGet();
+      Block oldblk = buff.block();
+      if (buff.isDirty())
+         foregroundFlushes.increment();
+      else if (buff.isWrittenInBackground())
+         flushesAvoided.increment();
+      buff.flush();
+      if (oldblk != null)
+         pageTable.remove(oldblk, buff);
+      return buff;
+   }
+
+   private Buffer claimVictim() {
+      policyLock.lock();
+      try {
+         applyPolicyEvents();
+         for (int i=0; i<bufferpool.length; i++) {
+            Buffer buff = policy.chooseVictim();
+            if (buff == null)
+               break;
+            if (buff.claim())
+               return buff;
+         }
+      }
+      finally {
+         policyLock.unlock();
+      }
       for (Buffer buff : bufferpool)
-         if (!buff.isPinned())
+         if (buff.claim())
          return buff;
       return null;
    }
+
+   /**
+    * Returns a claimed buffer whose block could not be read
+    * to the list of free buffers.
+    */
+   private void release(Buffer buff) {
+      buff.clear();
+      numAvailable.incrementAndGet();
+      freeBuffers.add(buff);
+   }
+
+   /**
+    * Queues an event for the replacement policy,
+    * and applies the queued events if the policy lock is free.
+    */
+   private void record(int type, Buffer buff) {
+      Block blk = buff.block();
+      if (blk == null)
+         return;
+      policyEvents.add(new PolicyEvent(type, buff, blk));
+      applyPolicyEventsIfFree();
+   }
+
+   /**
+    * Applies the queued events if the policy lock is free.
+    */
+   private void applyPolicyEventsIfFree() {
+      if (policyLock.tryLock()) {
+         try {
+            applyPolicyEvents();
+         }
+         finally {
+            policyLock.unlock();
+         }
+      }
+   }
+
+   private void applyPolicyEvents() {
+      PolicyEvent e;
+      while ((e = policyEvents.poll()) != null) {
+         if (!e.blk.equals(e.buff.block()))
+            continue;
+         if (e.type == LOADED)
+            policy.loaded(e.buff);
+         else if (e.type == ACCESSED)
+            policy.accessed(e.buff);
+         else
+            policy.unpinned(e.buff);
+      }
+   }
+
+   private static class PolicyEvent {
+      int type;
+      Buffer buff;
+      Block blk;
+
+      PolicyEvent(int type, Buffer buff, Block blk) {
+         this.type = type;
+         this.buff = buff;
+         this.blk = blk;
+      }
+   }
 }
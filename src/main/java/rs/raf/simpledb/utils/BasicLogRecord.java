@@ -0,0 +1,63 @@
+package rs.raf.simpledb.utils;
+
+/**
+ * A class that provides the ability to read the values of
+ * a log record.
+ * The class has no idea what values are there.
+ * Instead, the methods {@link #nextInt() nextInt}
+ * and {@link #nextString() nextString} read the values 
+ * sequentially.
+ * Thus the client is responsible for knowing how many values
+ * are in the log record, and what their types are.
+ * The LSN of the record, which the log manager stores
+ * before its values, is read when the record is created.
+ * @author Edward Sciore
+ */
+public class BasicLogRecord {
+   private Page pg;
+   private int pos;
+   private int lsn;
+   
+   /**
+    * A log record located at the specified position of the specified page.
+    * This constructor is called exclusively by
+    * {@link LogIterator#next()}.
+    * @param pg the page containing the log record
+    * @param pos the position of the log record 
+    */
+   public BasicLogRecord(Page pg, int pos) {
+      this.pg = pg;
+      lsn = pg.getInt(pos);
+      this.pos = pos + Page.INT_SIZE;
+   }
+   
+   /**
+    * Returns the LSN of the log record.
+    * @return the LSN
+    */
+   public int lsn() {
+      return lsn;
+   }
+   
+   /**
+    * Returns the next value of the current log record, 
+    * assuming it is an integer.
+    * @return the next value of the current log record
+    */
+   public int nextInt() {
+      int result = pg.getInt(pos);
+      pos += Page.INT_SIZE;
+      return result;
+   }
+   
+   /**
+    * Returns the next value of the current log record, 
+    * assuming it is a string.
+    * @return the next value of the current log record
+    */
+   public String nextString() {
+      String result = pg.getString(pos);
+      pos += Page.INT_SIZE + result.getBytes().length;
+      return result;
+   }
+}
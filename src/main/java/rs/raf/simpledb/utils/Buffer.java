@@ -1,5 +1,7 @@
 package rs.raf.simpledb.utils;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import rs.raf.simpledb.SimpleDBEngine;
 
 /**
@@ -10,15 +12,22 @@ import rs.raf.simpledb.SimpleDBEngine;
  * whether the contents of the page have been modified,
  * and if so, the id of the modifying transaction and
  * the LSN of the corresponding log record.
+ * The pin count is atomic, so that the buffer manager
+ * can pin a buffer without holding a lock.
+ * A pin count of -1 means that the buffer manager has
+ * claimed the buffer for replacement.
  * @author Edward Sciore
  */
 
 public class Buffer {
-   private Page contents = new Page();
-   private Block blk = null;
-   private int pins = 0;
+   private Page contents;
+   private volatile Block blk = null;
+   private AtomicInteger pins = new AtomicInteger(0);
    private int modifiedBy = -1;  // negative means not modified
    private int logSequenceNumber = -1; // negative means no corresponding log record
+   private int recoveryLSN = -1; // LSN of the first modification since the last write, negative if none
+   private long dirtySince = 0;  // time of the first modification since the last write
+   private boolean writtenInBackground = false;
 
    /**
 * Creates a new buffer, wrapping a new 
@@ -34,7 +43,17 @@ public class Buffer {
 * {@link simpledb.server.SimpleDB#initFileAndLogMgr(String)} or
 * is called first.
 */
-   public Buffer() {}
+   public Buffer() {
+      this(new Page());
+   }
+   
+   /**
+    * Creates a new buffer that wraps the specified page.
+    * @param contents the buffer's page
+    */
+   Buffer(Page contents) {
+      this.contents = contents;
+   }
    
    /**
 * Returns the integer value at the specified offset of the
@@ -60,13 +79,23 @@ public class Buffer {
       return contents.getString(offset);
    }
 
+   /**
+* Returns a copy of the buffer's page, which
+* later modifications of the buffer do not change.
+* @return a copy of the page
+*/
+   public Page copyContents() {
+      return contents.copy();
+   }
+
    /**
 * Writes an integer to the specified offset of the
 * buffer's page.
 * This method assumes that the transaction has already
 * written an appropriate log record.
 * The buffer saves the id of the transaction
-* and the LSN of the log record.
+* and the LSN of the log record, unless a later
+* record is already saved.
 * A negative lsn value indicates that a log record
 * was not necessary.
 * @param offset the byte offset within the page
@@ -74,10 +103,15 @@ public class Buffer {
 * @param txnum the id of the transaction performing the modification
 * @param lsn the LSN of the corresponding log record
 */
-   public void setInt(int offset, int val, int txnum, int lsn) {
+   public synchronized void setInt(int offset, int val, int txnum, int lsn) {
+      if (modifiedBy < 0)
+         dirtySince = System.currentTimeMillis();
+      writtenInBackground = false;
       modifiedBy = txnum;
-      if (lsn >= 0)
+      if (lsn > logSequenceNumber)
 	      logSequenceNumber = lsn;
+      if (lsn >= 0 && recoveryLSN < 0)
+         recoveryLSN = lsn;
       contents.setInt(offset, val);
    }
 
@@ -89,16 +123,22 @@ public class Buffer {
 * A negative lsn value indicates that a log record
 * was not necessary.
 * The buffer saves the id of the transaction
-* and the LSN of the log record.
+* and the LSN of the log record, unless a later
+* record is already saved.
 * @param offset the byte offset within the page
 * @param val the new string value to be written
 * @param txnum the id of the transaction performing the modification
 * @param lsn the LSN of the corresponding log record
 */
-   public void setString(int offset, String val, int txnum, int lsn) {
+   public synchronized void setString(int offset, String val, int txnum, int lsn) {
+      if (modifiedBy < 0)
+         dirtySince = System.currentTimeMillis();
+      writtenInBackground = false;
       modifiedBy = txnum;
-      if (lsn >= 0)
+      if (lsn > logSequenceNumber)
 	      logSequenceNumber = lsn;
+      if (lsn >= 0 && recoveryLSN < 0)
+         recoveryLSN = lsn;
       contents.setString(offset, val);
    }
 
@@ -118,35 +158,116 @@ public class Buffer {
 * record has been written to disk prior to writing
 * the page to disk.
 */
-   void flush() {
+   synchronized void flush() {
       if (modifiedBy >= 0) {
          SimpleDBEngine.logMgr().flush(logSequenceNumber);
          contents.write(blk);
          modifiedBy = -1;
+         recoveryLSN = -1;
       }
    }
+   
+   /**
+* Returns the LSN of the first logged modification of the
+* page since it was last written to disk, which is where
+* recovery has to start redoing the modifications of the block.
+* @return the recovery LSN, or -1 if the page has no
+* unwritten logged modification
+*/
+   synchronized int recoveryLSN() {
+      return recoveryLSN;
+   }
+
+   /**
+* Writes the page to disk on behalf of the
+* {@link BackgroundWriter}, if the page is dirty.
+* @return the number of milliseconds the page had been dirty,
+* or -1 if the page was clean
+*/
+   synchronized long writeBack() {
+      if (modifiedBy < 0)
+         return -1;
+      long lag = System.currentTimeMillis() - dirtySince;
+      flush();
+      writtenInBackground = true;
+      return lag;
+   }
 
    /**
-* Increases the buffer's pin count.
+* Returns true if the page has been modified
+* since it was last written to disk.
+* @return true if the buffer is dirty
 */
-   void pin() {
-      pins++;
+   synchronized boolean isDirty() {
+      return modifiedBy >= 0;
+   }
+
+   /**
+* Returns true if the page was last written by the
+* {@link BackgroundWriter} and has not changed since.
+* @return true if the background writer cleaned the buffer
+*/
+   synchronized boolean isWrittenInBackground() {
+      return writtenInBackground;
+   }
+
+   /**
+* Increases the buffer's pin count, unless the buffer
+* has been claimed for replacement.
+* @return the new pin count, or -1 if the buffer is claimed
+*/
+   int pin() {
+      while (true) {
+         int n = pins.get();
+         if (n < 0)
+            return -1;
+         if (pins.compareAndSet(n, n+1))
+            return n+1;
+      }
    }
 
    /**
 * Decreases the buffer's pin count.
+* @return the new pin count
 */
-   void unpin() {
-      pins--;
+   int unpin() {
+      return pins.decrementAndGet();
    }
 
    /**
 * Returns true if the buffer is currently pinned
-* (that is, if it has a nonzero pin count).
+* (that is, if it has a nonzero pin count)
+* or claimed for replacement.
 * @return true if the buffer is pinned
 */
    boolean isPinned() {
-      return pins > 0;
+      return pins.get() != 0;
+   }
+
+   /**
+* Claims an unpinned buffer for replacement.
+* @return false if the buffer is pinned or already claimed
+*/
+   boolean claim() {
+      return pins.compareAndSet(0, -1);
+   }
+
+   /**
+* Pins a claimed buffer once its new block is in place.
+*/
+   void setPinned() {
+      pins.set(1);
+   }
+
+   /**
+* Detaches a claimed buffer from its block,
+* returning it to the unpinned state.
+*/
+   void clear() {
+      blk = null;
+      modifiedBy = -1;
+      recoveryLSN = -1;
+      pins.set(0);
    }
 
    /**
@@ -155,7 +276,7 @@ public class Buffer {
 * @param txnum the id of the transaction
 * @return true if the transaction modified the buffer
 */
-   boolean isModifiedBy(int txnum) {
+   synchronized boolean isModifiedBy(int txnum) {
       return txnum == modifiedBy;
    }
 
@@ -164,13 +285,14 @@ public class Buffer {
 * the buffer's page.
 * If the buffer was dirty, then the contents
 * of the previous page are first written to disk.
+* The buffer must have been claimed by the buffer manager.
 * @param b a reference to the data block
 */
-   void assignToBlock(Block b) {
+   synchronized void assignToBlock(Block b) {
       flush();
+      writtenInBackground = false;
       blk = b;
       contents.read(blk);
-      pins = 0;
    }
 
    /**
@@ -178,14 +300,15 @@ public class Buffer {
 * and appends the page to the specified file.
 * If the buffer was dirty, then the contents
 * of the previous page are first written to disk.
+* The buffer must have been claimed by the buffer manager.
 * @param filename the name of the file
 * @param fmtr a page formatter, used to initialize the page
 */
    
-   void assignToNew(String filename, Page.PageFormatter fmtr) {
+   synchronized void assignToNew(String filename, Page.PageFormatter fmtr) {
       flush();
+      writtenInBackground = false;
       fmtr.format(contents);
       blk = contents.append(filename);
-      pins = 0;
    }
 }
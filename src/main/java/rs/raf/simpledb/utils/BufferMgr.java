@@ -1,8 +1,31 @@
 package rs.raf.simpledb.utils;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The publicly-accessible buffer manager.
+ * A buffer manager wraps a basic buffer manager, and
+ * provides the same methods. The difference is that
+ * the methods {@link #pin(Block) pin} and
+ * {@link #pinNew(String, Page.PageFormatter) pinNew}
+ * will never return null.
+ * If no buffers are currently available, then the
+ * calling thread will be placed on a FIFO waiting list.
+ * The waiting threads are removed from the list when
+ * a buffer becomes available.
+ * If a thread has been waiting for a buffer for an
+ * excessive amount of time (currently, 10 seconds)
+ * then a {@link BufferAbortException} is thrown.
+ * None of the methods holds a global lock.
+ * @author Edward Sciore
+ */
 public class BufferMgr {
    private static final long MAX_TIME = 10000; // 10 seconds
    private BasicBufferMgr bufferMgr;
+   private ConcurrentLinkedQueue<Thread> waiters = new ConcurrentLinkedQueue<Thread>();
    
    /**
     * Creates a new buffer manager having the specified 
@@ -18,7 +41,28 @@ public class BufferMgr {
     * @param numbuffers the number of buffer slots to allocate
     */
    public BufferMgr(int numbuffers) {
-      bufferMgr = new BasicBufferMgr(numbuffers);
+      this(numbuffers, new LRUPolicy());
+   }
+   
+   /**
+    * Creates a new buffer manager having the specified
+    * number of buffers and replacement policy.
+    * @param numbuffers the number of buffer slots to allocate
+    * @param policy the policy that chooses buffers for replacement
+    */
+   public BufferMgr(int numbuffers, ReplacementPolicy policy) {
+      this(numbuffers, policy, null);
+   }
+   
+   /**
+    * Creates a new buffer manager whose pages are
+    * frames of the specified arena.
+    * @param numbuffers the number of buffer slots to allocate
+    * @param policy the policy that chooses buffers for replacement
+    * @param arena the arena holding the pages, or null to allocate each page separately
+    */
+   public BufferMgr(int numbuffers, ReplacementPolicy policy, PageArena arena) {
+      bufferMgr = new BasicBufferMgr(numbuffers, policy, arena);
    }
    
    /**
@@ -29,21 +73,11 @@ public class BufferMgr {
     * @param blk a reference to a disk block
     * @return the buffer pinned to that block
     */
-   public synchronized Buffer pin(Block blk) {
-      try {
-         long timestamp = System.currentTimeMillis();
-         Buffer buff = bufferMgr.pin(blk);
-         while (buff == null && !waitingTooLong(timestamp)) {
-            wait(MAX_TIME);
-            buff = bufferMgr.pin(blk);
-         }
-         if (buff == null)
-            throw new BufferAbortException();
-         return buff;
-      }
-      catch(InterruptedException e) {
-         throw new BufferAbortException();
-      }
+   public Buffer pin(Block blk) {
+      Buffer buff = bufferMgr.pin(blk);
+      if (buff == null)
+         buff = waitForBuffer(blk, null, null);
+      return buff;
    }
    
    /**
@@ -55,33 +89,23 @@ public class BufferMgr {
     * @param fmtr the formatter used to initialize the page
     * @return the buffer pinned to that block
     */
-   public synchronized Buffer pinNew(String filename, Page.PageFormatter fmtr) {
-      try {
-         long timestamp = System.currentTimeMillis();
-         Buffer buff = bufferMgr.pinNew(filename, fmtr);
-         while (buff == null && !waitingTooLong(timestamp)) {
-            wait(MAX_TIME);
-            buff = bufferMgr.pinNew(filename, fmtr);
-         }
-         if (buff == null)
-            throw new BufferAbortException();
-         return buff;
-      }
-      catch(InterruptedException e) {
-         throw new BufferAbortException();
-      }
+   public Buffer pinNew(String filename, Page.PageFormatter fmtr) {
+      Buffer buff = bufferMgr.pinNew(filename, fmtr);
+      if (buff == null)
+         buff = waitForBuffer(null, filename, fmtr);
+      return buff;
    }
    
    /**
     * Unpins the specified buffer. 
     * If the buffer's pin count becomes 0,
-    * then the threads on the wait list are notified.
+    * then the first thread on the wait list is notified.
     * @param buff the buffer to be unpinned
     */
-   public synchronized void unpin(Buffer buff) {
+   public void unpin(Buffer buff) {
       bufferMgr.unpin(buff);
       if (!buff.isPinned())
-         notifyAll();
+         wakeFirstWaiter();
    }
    
    /**
@@ -92,6 +116,16 @@ public class BufferMgr {
       bufferMgr.flushAll(txnum);
    }
    
+   /**
+    * Returns the dirty page table: the blocks modified in
+    * the buffers and not yet written to disk, each with the
+    * LSN of its first unwritten logged modification.
+    * @return the map from each dirty block to its recovery LSN
+    */
+   public Map<Block,Integer> dirtyBlocks() {
+      return bufferMgr.dirtyBlocks();
+   }
+   
    /**
     * Returns the number of available (ie unpinned) buffers.
     * @return the number of available buffers
@@ -100,7 +134,92 @@ public class BufferMgr {
       return bufferMgr.available();
    }
    
-   private boolean waitingTooLong(long starttime) {
-      return System.currentTimeMillis() - starttime > MAX_TIME;
+   /**
+    * Returns the number of pin requests that were
+    * satisfied without reading from disk.
+    * @return the number of buffer hits
+    */
+   public long hits() {
+      return bufferMgr.hits();
+   }
+   
+   /**
+    * Returns the number of pin requests that had to
+    * read their block from disk.
+    * @return the number of buffer misses
+    */
+   public long misses() {
+      return bufferMgr.misses();
+   }
+   
+   /**
+    * Returns the number of replaced buffers that were dirty,
+    * so that the pinning thread had to write them itself.
+    * @return the number of foreground flushes
+    */
+   public long foregroundFlushes() {
+      return bufferMgr.foregroundFlushes();
+   }
+   
+   /**
+    * Returns the number of replaced buffers that had already
+    * been written by the background writer.
+    * @return the number of foreground flushes avoided
+    */
+   public long flushesAvoided() {
+      return bufferMgr.flushesAvoided();
+   }
+   
+   /**
+    * Returns the basic buffer manager wrapped by this object.
+    * Used by the {@link BackgroundWriter}.
+    * @return the basic buffer manager
+    */
+   BasicBufferMgr basicBufferMgr() {
+      return bufferMgr;
+   }
+   
+   /**
+    * Waits in the FIFO queue of waiting threads until a buffer
+    * can be pinned, or until the waiting time runs out.
+    * Only the thread at the head of the queue retries the pin,
+    * and an unpin wakes only that thread, so threads are
+    * served in arrival order and are not woken all at once.
+    * @param blk the block to pin, or null to pin a new block
+    * @param filename the file of the new block
+    * @param fmtr the formatter used to initialize the new block
+    * @return the pinned buffer
+    */
+   private Buffer waitForBuffer(Block blk, String filename, Page.PageFormatter fmtr) {
+      Thread me = Thread.currentThread();
+      long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(MAX_TIME);
+      waiters.add(me);
+      try {
+         while (true) {
+            if (waiters.peek() == me) {
+               Buffer buff = (blk != null) ? bufferMgr.pin(blk)
+                                           : bufferMgr.pinNew(filename, fmtr);
+               if (buff != null)
+                  return buff;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0)
+               throw new BufferAbortException();
+            LockSupport.parkNanos(this, remaining);
+            if (Thread.interrupted())
+               throw new BufferAbortException();
+         }
+      }
+      finally {
+         waiters.remove(me);
+         if (bufferMgr.available() > 0)
+            wakeFirstWaiter();
+      }
+   }
+   
+   private void wakeFirstWaiter() {
+      Thread t = waiters.peek();
+      if (t != null)
+         LockSupport.unpark(t);
    }
 }
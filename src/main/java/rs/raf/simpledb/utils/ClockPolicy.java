@@ -0,0 +1,58 @@
+package rs.raf.simpledb.utils;
+
+import java.util.*;
+
+/**
+ * The clock (second chance) replacement policy.
+ * Buffers are arranged in a circle, each with a reference bit
+ * that is set whenever the buffer is pinned.
+ * To find a victim, the clock hand sweeps the circle,
+ * clearing reference bits, until it reaches an unpinned
+ * buffer whose bit is already clear.
+ */
+public class ClockPolicy implements ReplacementPolicy {
+   private List<Buffer> ring = new ArrayList<Buffer>();
+   private Map<Buffer,Integer> positions = new HashMap<Buffer,Integer>();
+   private BitSet referenced = new BitSet();
+   private int hand = 0;
+   
+   public void loaded(Buffer buff) {
+      Integer pos = positions.get(buff);
+      if (pos == null) {
+         pos = ring.size();
+         ring.add(buff);
+         positions.put(buff, pos);
+      }
+      referenced.set(pos);
+   }
+   
+   public void accessed(Buffer buff) {
+      referenced.set(positions.get(buff));
+   }
+   
+   public void unpinned(Buffer buff) {
+      // the reference bit was already set when the buffer was pinned
+   }
+   
+   /**
+    * Sweeps the clock at most twice around the circle:
+    * the first round may only clear reference bits,
+    * so the second round is guaranteed to find a victim
+    * if any buffer is unpinned.
+    */
+   public Buffer chooseVictim() {
+      int n = ring.size();
+      for (int i=0; i<2*n; i++) {
+         int pos = hand;
+         hand = (hand + 1) % n;
+         Buffer buff = ring.get(pos);
+         if (buff.isPinned())
+            continue;
+         if (referenced.get(pos))
+            referenced.clear(pos);
+         else
+            return buff;
+      }
+      return null;
+   }
+}
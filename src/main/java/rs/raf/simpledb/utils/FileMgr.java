@@ -2,8 +2,11 @@ package rs.raf.simpledb.utils;
 
 import java.io.*;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 /**
@@ -19,13 +22,61 @@ import java.util.*;
  * Method {@link #isNew() isNew} is called during system initialization by {@link simpledb.server.SimpleDB#init}.
  * Method {@link #size(String) size} is called by the log manager and transaction manager to
  * determine the end of the file.
+ * <p>
+ * The block size of a database is chosen when the database is created,
+ * and is stored in the database's header file, so that
+ * every later run uses the same block size.
+ * The header also holds the version of the on-disk format,
+ * and a database of another version is refused
+ * before any of its files is read or written.
+ * <p>
+ * Files are opened without synchronous writes, and durability
+ * is decided per class of file:
+ * temporary tables (files beginning with "temp") are never synced;
+ * the log is synced by the log manager with {@link #force(String)}
+ * when a transaction needs its log records on disk;
+ * all other files are synced by {@link #forceAll()} at a checkpoint.
+ * A force covers every write that completed before it started,
+ * so concurrent callers that wait for a force in progress
+ * usually find their writes already synced (a group force).
+ * <p>
+ * In memory-mapped mode, the blocks of table files (files ending in ".tbl",
+ * except temporary tables) are read from read-only mappings of the file,
+ * without a system call and without the file manager's lock.
+ * A file is mapped in chunks of a fixed number of blocks, and a chunk is
+ * mapped only once the file fully contains it; blocks in the last,
+ * partial chunk are read through the file channel.
+ * Writes and appends always go through the file channel,
+ * whose changes the operating system makes visible in the mappings.
  * @author Edward Sciore
  */
 
 public class FileMgr {
+   /**
+    * The name of the file that holds the database header.
+    */
+   public static final String HEADER_FILE = "simpledb.header";
+
+   /**
+    * The version of the on-disk format of the database.
+    * It is incremented by every change that makes the files of
+    * existing databases unreadable, such as a change of the
+    * layout of a record slot. Databases created before the
+    * header existed have version 0, and headers written before
+    * the version was stored denote version 1.
+    */
+   public static final int FORMAT_VERSION = 2;
+   private static final int HEADER_MAGIC = 0x53444248;
+
    private File dbDirectory;
+   private int blocksize;
    private boolean isNew;
    private Map<String,FileChannel> openFiles = new HashMap<String,FileChannel>();
+   private boolean mapped;
+   private int chunkBlocks;
+   private Map<String,MappedByteBuffer[]> mappings = new ConcurrentHashMap<String,MappedByteBuffer[]>();
+   private Map<String,SyncState> syncStates = new ConcurrentHashMap<String,SyncState>();
+   private AtomicLong forces = new AtomicLong();
 
    /**
     * Creates a file manager for the specified database.
@@ -37,14 +88,33 @@ public class FileMgr {
     * @param dbname the name of the directory that holds the database
     */
    public FileMgr(String dbname) {
+      this(dbname, Page.DEFAULT_BLOCK_SIZE, false, 0);
+   }
+
+   /**
+    * Creates a file manager for the specified database,
+    * which optionally reads table files through memory mappings.
+    * If the database is new, its block size is the specified one;
+    * otherwise it is the block size stored in the database header.
+    * @param dbname the name of the directory that holds the database
+    * @param blocksize the block size of a new database
+    * @param mapped whether table files are read through memory mappings
+    * @param chunkBlocks the number of blocks in each mapped chunk
+    */
+   public FileMgr(String dbname, int blocksize, boolean mapped, int chunkBlocks) {
+      this.mapped = mapped;
+      this.chunkBlocks = chunkBlocks;
       String homedir = System.getProperty("user.home");
       dbDirectory = new File(homedir, dbname);
-      isNew = !dbDirectory.exists();
+      // a directory left empty by a failed creation holds a new database
+      isNew = !dbDirectory.exists() || dbDirectory.list().length == 0;
 
       // create the directory if the database is new
-      if (isNew && !dbDirectory.mkdir())
+      if (isNew && !dbDirectory.exists() && !dbDirectory.mkdir())
          throw new RuntimeException("cannot create " + dbname);
 
+      this.blocksize = readHeader(blocksize);
+
       // remove any leftover temporary tables
       for (String filename : dbDirectory.list())
          if (filename.startsWith("temp"))
@@ -56,11 +126,26 @@ public class FileMgr {
     * @param blk a reference to a disk block
     * @param bb  the bytebuffer
     */
-   synchronized void read(Block blk, ByteBuffer bb) {
+   void read(Block blk, ByteBuffer bb) {
+      if (mapped && isMappable(blk.fileName())) {
+         MappedByteBuffer chunk = mappedChunk(blk);
+         if (chunk != null) {
+            bb.clear();
+            bb.put(0, chunk, (blk.number() % chunkBlocks) * blocksize, blocksize);
+            return;
+         }
+      }
+      channelRead(blk, bb);
+   }
+
+   private synchronized void channelRead(Block blk, ByteBuffer bb) {
       try {
          bb.clear();
          FileChannel fc = getFile(blk.fileName());
-         fc.read(bb, blk.number() * Page.BLOCK_SIZE);
+         fc.read(bb, (long) blk.number() * blocksize);
+         // a block past the end of the file reads as zeros
+         while (bb.hasRemaining())
+            bb.put((byte) 0);
       }
       catch (IOException e) {
          throw new RuntimeException("cannot read block " + blk);
@@ -76,7 +161,9 @@ public class FileMgr {
       try {
          bb.rewind();
          FileChannel fc = getFile(blk.fileName());
-         fc.write(bb, blk.number() * Page.BLOCK_SIZE);
+         fc.write(bb, (long) blk.number() * blocksize);
+         if (!isTemp(blk.fileName()))
+            syncStates.computeIfAbsent(blk.fileName(), k -> new SyncState()).written++;
       }
       catch (IOException e) {
          throw new RuntimeException("cannot write block" + blk);
@@ -97,6 +184,54 @@ public class FileMgr {
       return blk;
    }
 
+   /**
+    * Forces the writes to the specified file to disk.
+    * If a force of the file is in progress, the method waits for it,
+    * and returns without forcing again if that force
+    * covered all writes completed before this call.
+    * @param filename the name of the file
+    */
+   public void force(String filename) {
+      SyncState state = syncStates.get(filename);
+      if (state == null)
+         return;
+      long target = state.written;
+      synchronized (state) {
+         if (state.forced >= target)
+            return;
+         long covered = state.written;
+         try {
+            FileChannel fc;
+            synchronized (this) {
+               fc = getFile(filename);
+            }
+            fc.force(false);
+         }
+         catch (IOException e) {
+            throw new RuntimeException("cannot force " + filename);
+         }
+         state.forced = covered;
+         forces.incrementAndGet();
+      }
+   }
+
+   /**
+    * Forces the writes to every non-temporary file to disk.
+    * This method is called at a checkpoint.
+    */
+   public void forceAll() {
+      for (String filename : syncStates.keySet())
+         force(filename);
+   }
+
+   /**
+    * Returns the number of times a file was forced to disk.
+    * @return the number of forces
+    */
+   public long forces() {
+      return forces.get();
+   }
+
    /**
     * Returns the number of blocks in the specified file.
     * @param filename the name of the file
@@ -105,16 +240,34 @@ public class FileMgr {
    public synchronized int size(String filename) {
       try {
          FileChannel fc = getFile(filename);
-         return (int)(fc.size() / Page.BLOCK_SIZE);
+         return (int)(fc.size() / blocksize);
       }
       catch (IOException e) {
          throw new RuntimeException("cannot access " + filename);
       }
    }
 
+   /**
+    * Returns the number of bytes in a block of this database.
+    * @return the block size
+    */
+   public int blockSize() {
+      return blocksize;
+   }
+
+   /**
+    * Returns true if the file manager reads the blocks
+    * of table files through memory mappings.
+    * @return true if the file manager is in memory-mapped mode
+    */
+   public boolean isMapped() {
+      return mapped;
+   }
+
    /**
     * Returns a boolean indicating whether the file manager
-    * had to create a new database directory.
+    * had to create a new database directory
+    * (or found the directory empty).
     * @return true if the database is new
     */
    public boolean isNew() {
@@ -134,10 +287,110 @@ public class FileMgr {
       FileChannel fc = openFiles.get(filename);
       if (fc == null) {
          File dbTable = new File(dbDirectory, filename);
-         RandomAccessFile f = new RandomAccessFile(dbTable, "rws");
+         RandomAccessFile f = new RandomAccessFile(dbTable, "rw");
          fc = f.getChannel();
          openFiles.put(filename, fc);
       }
       return fc;
    }
+
+   private boolean isTemp(String filename) {
+      return filename.startsWith("temp");
+   }
+
+   private boolean isMappable(String filename) {
+      return filename.endsWith(".tbl") && !filename.startsWith("temp");
+   }
+
+   /**
+    * Returns the mapped chunk that contains the specified block,
+    * mapping it if the file fully contains the chunk.
+    * @param blk a reference to a disk block
+    * @return the chunk, or null if the chunk is not yet complete
+    */
+   private MappedByteBuffer mappedChunk(Block blk) {
+      int chunknum = blk.number() / chunkBlocks;
+      MappedByteBuffer[] chunks = mappings.get(blk.fileName());
+      if (chunks != null && chunknum < chunks.length && chunks[chunknum] != null)
+         return chunks[chunknum];
+      return mapChunk(blk.fileName(), chunknum);
+   }
+
+   private synchronized MappedByteBuffer mapChunk(String filename, int chunknum) {
+      try {
+         MappedByteBuffer[] chunks = mappings.get(filename);
+         if (chunks != null && chunknum < chunks.length && chunks[chunknum] != null)
+            return chunks[chunknum];
+         FileChannel fc = getFile(filename);
+         long chunksize = (long) chunkBlocks * blocksize;
+         long start = chunknum * chunksize;
+         if (start + chunksize > fc.size())
+            return null;
+         MappedByteBuffer chunk = fc.map(FileChannel.MapMode.READ_ONLY, start, chunksize);
+         // publish a new array, so that readers never see a partially updated one
+         MappedByteBuffer[] newchunks = (chunks == null)
+               ? new MappedByteBuffer[chunknum + 1]
+               : Arrays.copyOf(chunks, Math.max(chunks.length, chunknum + 1));
+         newchunks[chunknum] = chunk;
+         mappings.put(filename, newchunks);
+         return chunk;
+      }
+      catch (IOException e) {
+         throw new RuntimeException("cannot map " + filename);
+      }
+   }
+
+   /**
+    * Reads the block size from the database header,
+    * after checking the version of the database's format.
+    * A new database gets a header with the specified block size.
+    * An existing database without a header was created before
+    * the header existed, and is refused like any database
+    * whose format version is not the current one.
+    * @param newBlockSize the block size of a new database
+    * @return the block size of the database
+    */
+   private int readHeader(int newBlockSize) {
+      File header = new File(dbDirectory, HEADER_FILE);
+      try {
+         if (header.exists()) {
+            try (DataInputStream in = new DataInputStream(new FileInputStream(header))) {
+               if (in.readInt() != HEADER_MAGIC)
+                  throw new RuntimeException("invalid database header " + header);
+               int size = in.readInt();
+               int version = (in.available() >= Page.INT_SIZE) ? in.readInt() : 1;
+               checkVersion(version);
+               return size;
+            }
+         }
+         if (!isNew)
+            checkVersion(0);
+         try (DataOutputStream out = new DataOutputStream(new FileOutputStream(header))) {
+            out.writeInt(HEADER_MAGIC);
+            out.writeInt(newBlockSize);
+            out.writeInt(FORMAT_VERSION);
+         }
+         return newBlockSize;
+      }
+      catch (IOException e) {
+         throw new RuntimeException("cannot access " + header);
+      }
+   }
+
+   private void checkVersion(int version) {
+      if (version != FORMAT_VERSION)
+         throw new RuntimeException("database " + dbDirectory.getName()
+               + " has on-disk format version " + version
+               + ", but this version of SimpleDB reads only version "
+               + FORMAT_VERSION + "; recreate the database to use it");
+   }
+
+   /**
+    * The number of writes issued to a file,
+    * and the number of them known to be on disk.
+    */
+   private static class SyncState {
+      volatile long written = 0;
+      long forced = 0;
+   }
 }
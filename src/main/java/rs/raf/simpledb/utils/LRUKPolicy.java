@@ -0,0 +1,105 @@
+package rs.raf.simpledb.utils;
+
+import java.util.*;
+
+/**
+ * The LRU-K replacement policy (O'Neil, O'Neil and Weikum).
+ * The policy remembers the times of the last K references
+ * to each block, and replaces the unpinned buffer whose
+ * K-th most recent reference lies furthest in the past.
+ * Blocks referenced fewer than K times are replaced first,
+ * in LRU order, so a single scan cannot push out blocks
+ * (such as catalog blocks) that are referenced repeatedly.
+ * The reference history of a block is retained for a while
+ * after the block is replaced.
+ */
+public class LRUKPolicy implements ReplacementPolicy {
+   private int k;
+   private int maxHistory;
+   private long clock = 0;
+   private long seq = 0;
+   private Map<Block,long[]> history;
+   private Map<Buffer,Candidate> candidates = new HashMap<Buffer,Candidate>();
+   private TreeSet<Candidate> unpinned = new TreeSet<Candidate>();
+   
+   /**
+    * Creates an LRU-K policy.
+    * @param k the number of references remembered per block
+    * @param numbuffs the number of buffers in the pool;
+    * history is kept for at most twice as many blocks
+    */
+   public LRUKPolicy(int k, int numbuffs) {
+      this.k = k;
+      this.maxHistory = 2 * numbuffs;
+      history = new LinkedHashMap<Block,long[]>(16, 0.75f, true) {
+         protected boolean removeEldestEntry(Map.Entry<Block,long[]> eldest) {
+            return size() > maxHistory;
+         }
+      };
+   }
+   
+   public void loaded(Buffer buff) {
+      reference(buff);
+   }
+   
+   public void accessed(Buffer buff) {
+      reference(buff);
+   }
+   
+   public void unpinned(Buffer buff) {
+      long[] times = history.get(buff.block());
+      // times[0] is the most recent reference, times[k-1] the K-th most recent
+      long kth  = (times == null) ? 0 : times[k-1];
+      long last = (times == null) ? 0 : times[0];
+      Candidate c = new Candidate(buff, kth, last, seq++);
+      candidates.put(buff, c);
+      unpinned.add(c);
+   }
+   
+   public Buffer chooseVictim() {
+      Candidate c = unpinned.pollFirst();
+      if (c == null)
+         return null;
+      candidates.remove(c.buff);
+      return c.buff;
+   }
+   
+   private void reference(Buffer buff) {
+      Candidate c = candidates.remove(buff);
+      if (c != null)
+         unpinned.remove(c);
+      clock++;
+      long[] times = history.get(buff.block());
+      if (times == null) {
+         times = new long[k];
+         history.put(buff.block(), times);
+      }
+      System.arraycopy(times, 0, times, 1, k-1);
+      times[0] = clock;
+   }
+   
+   /**
+    * An unpinned buffer, together with its reference times
+    * at the moment it was unpinned.
+    * Those times cannot change while the buffer stays unpinned.
+    */
+   private static class Candidate implements Comparable<Candidate> {
+      Buffer buff;
+      long kth, last, seq;
+      
+      Candidate(Buffer buff, long kth, long last, long seq) {
+         this.buff = buff;
+         this.kth  = kth;
+         this.last = last;
+         this.seq  = seq;
+      }
+      
+      public int compareTo(Candidate c) {
+         if (kth != c.kth)
+            return Long.compare(kth, c.kth);
+         if (last != c.last)
+            return Long.compare(last, c.last);
+         return Long.compare(seq, c.seq);
+      }
+   }
+}
@@ -0,0 +1,34 @@
+package rs.raf.simpledb.utils;
+
+import java.util.*;
+
+/**
+ * The least-recently-used replacement policy.
+ * Unpinned buffers are kept in the order in which they
+ * were unpinned, and the buffer unpinned the longest ago
+ * is replaced first.
+ */
+public class LRUPolicy implements ReplacementPolicy {
+   private LinkedHashSet<Buffer> unpinned = new LinkedHashSet<Buffer>();
+   
+   public void loaded(Buffer buff) {
+      unpinned.remove(buff);
+   }
+   
+   public void accessed(Buffer buff) {
+      unpinned.remove(buff);
+   }
+   
+   public void unpinned(Buffer buff) {
+      unpinned.add(buff);
+   }
+   
+   public Buffer chooseVictim() {
+      Iterator<Buffer> iter = unpinned.iterator();
+      if (!iter.hasNext())
+         return null;
+      Buffer buff = iter.next();
+      iter.remove();
+      return buff;
+   }
+}
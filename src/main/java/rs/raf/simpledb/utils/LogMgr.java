@@ -1,89 +1,287 @@
 package rs.raf.simpledb.utils;
 
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+
 import rs.raf.simpledb.SimpleDBEngine;
 
+/**
+ * The SimpleDB log manager.
+ * The log is a sequence of records appended to the log file.
+ * Each record is identified by its log sequence number (LSN):
+ * the LSNs of successive records are consecutive integers,
+ * and continue from the last record of the log when the
+ * system restarts.
+ * <p>
+ * A log block starts with the position of the end of its last
+ * record. Each record holds its LSN and its values, followed by
+ * the position of the end of the previous record in the block,
+ * so that the records of a block can be read backwards.
+ * <p>
+ * The most recent log blocks are kept in a ring of pages.
+ * Records are appended to the pages without any disk access;
+ * the pages are written to the log file when the ring is full
+ * or when a caller needs its records on disk
+ * (see {@link #flush(int)}).
+ * A transaction that commits waits for one force of the log;
+ * since a force writes every record appended before it,
+ * the commits of concurrent transactions that arrive while
+ * a force is in progress all share the next one (group commit).
+ * @author Edward Sciore
+ */
 public class LogMgr {
-	/**
-	    * The location where the pointer to the last integer in the page is.
-	    * A value of 0 means that the pointer is the first value in the page.
-	    */
-	   public static final int LAST_POS = 0;
-
-	   private String logfile;
-	   private Page mypage = new Page();
-	   private Block currentblk;
-	   private int currentpos;
-
-	   /**
-	    * Creates the manager for the specified log file.
-	    * If the log file does not yet exist, it is created
-	    * with an empty first block.
-	    * This constructor depends on a {@link FileMgr} object
-	    * that it gets from the method
-	    * {@link simpledb.server.SimpleDB#fileMgr()}.
-	    * That object is created during system initialization.
-	    * Thus this constructor cannot be called until
-	    * {@link simpledb.server.SimpleDB#initFileMgr(String)}
-	    * is called first.
-	    * @param logfile the name of the log file
-	    */
-	   
-	   public LogMgr(String logfile) {
-	      this.logfile = logfile;
-	      int logsize = SimpleDBEngine.fileMgr().size(logfile);
-	      if (logsize == 0)
-	         appendNewBlock();
-	      else {
-	         currentblk = new Block(logfile, logsize-1);
-	         mypage.read(currentblk);
-	         currentpos = getLastRecordPosition() + Page.INT_SIZE;
-	      }
-	   }
-	   
-	   /**
-	    * Returns the LSN of the most recent log record.
-	    * As implemented, the LSN is the block number where the record is stored.
-	    * Thus every log record in a block has the same LSN.
-	    * @return the LSN of the most recent log record
-	    */
-	   private int currentLSN() {
-	      return currentblk.number();
-	   }
-
-	   /**
-	    * Ensures that the log records corresponding to the
-	    * specified LSN has been written to disk.
-	    * All earlier log records will also be written to disk.
-	    * @param lsn the LSN of a log record
-	    */
-	   public void flush(int lsn) {
-	      if (lsn >= currentLSN())
-	         flush();
-	   }
-
-	   
-	   /**
-	    * Writes the current page to the log file.
-	    */
-	   private void flush() {
-	      mypage.write(currentblk);
-	   }
-
-	   /**
-	    * Clear the current page, and append it to the log file.
-	    */
-	   private void appendNewBlock() {
-	      setLastRecordPosition(0);
-	      currentpos = Page.INT_SIZE;
-	      currentblk = mypage.append(logfile);
-	   }
-	   
-	   private int getLastRecordPosition() {
-	      return mypage.getInt(LAST_POS);
-	   }
-
-	   private void setLastRecordPosition(int pos) {
-	      mypage.setInt(LAST_POS, pos);
-	   }
-		   
+   /**
+    * The location where the pointer to the last integer in the page is.
+    * A value of 0 means that the pointer is the first value in the page.
+    */
+   public static final int LAST_POS = 0;
+
+   private String logfile;
+   private Page[] pages;
+   private int[] blknums;
+   private int first, current;
+   private int currentpos;
+   private int lastLSN;
+   private volatile int flushedLSN;
+   private Object forceLock = new Object();
+   private AtomicLong forces = new AtomicLong(), commits = new AtomicLong();
+
+   /**
+    * Creates the manager for the specified log file,
+    * with a single page of log records.
+    * If the log file does not yet exist, it is created
+    * with an empty first block.
+    * This constructor depends on a {@link FileMgr} object
+    * that it gets from the method
+    * {@link SimpleDBEngine#fileMgr()}.
+    * That object is created during system initialization.
+    * Thus this constructor cannot be called until
+    * {@link SimpleDBEngine#initFileMgr(String)}
+    * is called first.
+    * @param logfile the name of the log file
+    */
+   public LogMgr(String logfile) {
+      this(logfile, new Page[] {new Page()});
+   }
+
+   /**
+    * Creates the manager for the specified log file,
+    * using the specified pages to hold the most recent log blocks.
+    * @param logfile the name of the log file
+    * @param pages the pages holding the most recent log blocks
+    */
+   public LogMgr(String logfile, Page[] pages) {
+      this.logfile = logfile;
+      this.pages = pages;
+      blknums = new int[pages.length];
+      int logsize = SimpleDBEngine.fileMgr().size(logfile);
+      if (logsize == 0) {
+         pages[0].setInt(LAST_POS, 0);
+         blknums[0] = 0;
+         currentpos = Page.INT_SIZE;
+         writeOut();
+      }
+      else {
+         blknums[0] = logsize - 1;
+         pages[0].read(new Block(logfile, logsize - 1));
+         currentpos = getLastRecordPosition() + Page.INT_SIZE;
+      }
+      lastLSN = readLastLSN();
+      flushedLSN = lastLSN;
+   }
+
+   /**
+    * Appends a log record to the log, and returns its LSN.
+    * A record consists of an arbitrary array of strings and integers.
+    * The record is written to the log file later, when its page
+    * is written.
+    * @param rec the list of values
+    * @return the LSN of the record
+    */
+   public synchronized int append(Object... rec) {
+      int recsize = 2 * Page.INT_SIZE;  // the LSN and the pointer to the previous record
+      for (Object obj : rec)
+         recsize += size(obj);
+      int blocksize = SimpleDBEngine.fileMgr().blockSize();
+      if (Page.INT_SIZE + recsize > blocksize)
+         throw new IllegalArgumentException("log record of " + recsize + " bytes does not fit in a block");
+      if (currentpos + recsize > blocksize)
+         moveToNewPage();
+      lastLSN++;
+      appendVal(lastLSN);
+      for (Object obj : rec)
+         appendVal(obj);
+      finalizeRecord();
+      return lastLSN;
+   }
+
+   /**
+    * Ensures that the log record having the specified LSN
+    * has been written and forced to disk.
+    * All earlier log records will also be written to disk.
+    * If another thread is forcing the log, the method waits
+    * for it, and returns without forcing again if the record
+    * was covered by that force.
+    * @param lsn the LSN of a log record
+    */
+   public void flush(int lsn) {
+      if (lsn <= flushedLSN)
+         return;
+      synchronized (forceLock) {
+         if (lsn <= flushedLSN)
+            return;
+         int target;
+         synchronized (this) {
+            target = lastLSN;
+            writeOut();
+         }
+         SimpleDBEngine.fileMgr().force(logfile);
+         flushedLSN = target;
+         forces.incrementAndGet();
+      }
+   }
+
+   /**
+    * Appends the specified commit record to the log
+    * and waits until it is on disk.
+    * @param rec the values of the commit record
+    * @return the LSN of the commit record
+    */
+   public int commit(Object... rec) {
+      int lsn = append(rec);
+      commits.incrementAndGet();
+      flush(lsn);
+      return lsn;
+   }
+
+   /**
+    * Returns an iterator over the records of the log,
+    * starting with the most recent one and moving backwards.
+    * The log pages are written to the log file first,
+    * without forcing it.
+    * @return an iterator over the log records
+    */
+   public synchronized Iterator<BasicLogRecord> iterator() {
+      writeOut();
+      return new LogIterator(new Block(logfile, blknums[current]));
+   }
+
+   /**
+    * Returns the LSN of the most recent log record.
+    * @return the LSN of the last record, or 0 if the log is empty
+    */
+   public synchronized int lastLSN() {
+      return lastLSN;
+   }
+
+   /**
+    * Returns the LSN of the most recent log record
+    * known to be on disk.
+    * @return the LSN of the last forced record
+    */
+   public int flushedLSN() {
+      return flushedLSN;
+   }
+
+   /**
+    * Returns the number of times the log was forced to disk.
+    * @return the number of forces
+    */
+   public long forces() {
+      return forces.get();
+   }
+
+   /**
+    * Returns the number of commit records appended through
+    * {@link #commit(Object...)}; compared with {@link #forces()},
+    * it shows how many commits shared a force.
+    * @return the number of commits
+    */
+   public long commits() {
+      return commits.get();
+   }
+
+   /**
+    * Writes the pages holding records not yet written to
+    * the log file. The current page stays in the ring,
+    * since later records may still be appended to it.
+    */
+   private void writeOut() {
+      for (int i=first; ; i=(i+1)%pages.length) {
+         pages[i].write(new Block(logfile, blknums[i]));
+         if (i == current)
+            break;
+      }
+      first = current;
+   }
+
+   /**
+    * Moves to the next page of the ring, which becomes the page
+    * of the next log block. If the ring is full, its pages are
+    * written to the log file first.
+    */
+   private void moveToNewPage() {
+      int next = (current + 1) % pages.length;
+      if (next == first) {
+         writeOut();
+         first = next;
+      }
+      blknums[next] = blknums[current] + 1;
+      current = next;
+      setLastRecordPosition(0);
+      currentpos = Page.INT_SIZE;
+   }
+
+   /**
+    * Adds an integer or a string to the current page.
+    */
+   private void appendVal(Object val) {
+      Page page = pages[current];
+      if (val instanceof String)
+         page.setString(currentpos, (String) val);
+      else
+         page.setInt(currentpos, (Integer) val);
+      currentpos += size(val);
+   }
+
+   /**
+    * Returns the number of bytes required to store
+    * an integer or a string in the log.
+    */
+   private int size(Object val) {
+      if (val instanceof String)
+         return Page.INT_SIZE + ((String) val).getBytes().length;
+      else
+         return Page.INT_SIZE;
+   }
+
+   /**
+    * Sets up a circular chain of pointers to the records in the page.
+    * There is an integer added to the end of each log record
+    * whose value is the offset of the previous log record.
+    * The first four bytes of the page contain an integer whose value
+    * is the offset of the integer for the last log record in the page.
+    */
+   private void finalizeRecord() {
+      pages[current].setInt(currentpos, getLastRecordPosition());
+      setLastRecordPosition(currentpos);
+      currentpos += Page.INT_SIZE;
+   }
+
+   /**
+    * Reads the LSN of the last record of the log,
+    * which is the first value of the record.
+    */
+   private int readLastLSN() {
+      Iterator<BasicLogRecord> iter = new LogIterator(new Block(logfile, blknums[current]));
+      return iter.hasNext() ? iter.next().lsn() : 0;
+   }
+
+   private int getLastRecordPosition() {
+      return pages[current].getInt(LAST_POS);
+   }
+
+   private void setLastRecordPosition(int pos) {
+      pages[current].setInt(LAST_POS, pos);
+   }
 }
@@ -7,7 +7,8 @@ import rs.raf.simpledb.SimpleDBEngine;
 
 /**
  * The contents of a disk block in memory.
- * A page is treated as an array of BLOCK_SIZE bytes.
+ * A page is treated as an array of bytes, whose size is the
+ * block size of the database (see {@link FileMgr#blockSize()}).
  * There are methods to get/set values into this array,
  * and to read/write the contents of this array to a disk block.
  * 
@@ -57,12 +58,14 @@ public class Page {
 	   public void format(Page p);
 	}
 	/**
-    * The number of bytes in a block.
+    * The number of bytes in a block of a database created
+    * without specifying a block size, and of databases created
+    * before the block size was stored in the database header.
     * This value is set unreasonably low, so that it is easier
     * to create and test databases having a lot of blocks.
     * A more realistic value would be 4K.
     */
-   public static final int BLOCK_SIZE = 400;
+   public static final int DEFAULT_BLOCK_SIZE = 400;
    
    /**
     * The size of an integer in bytes.
@@ -86,7 +89,7 @@ public class Page {
       return INT_SIZE + (n * (int)bytesPerChar);
    }
    
-   private ByteBuffer contents = ByteBuffer.allocateDirect(BLOCK_SIZE);
+   private ByteBuffer contents;
    private FileMgr filemgr = SimpleDBEngine.fileMgr();
    
    /**
@@ -101,7 +104,19 @@ public class Page {
     * {@link simpledb.server.SimpleDB#initFileLogAndBufferMgr(String)}
     * is called first.
     */
-   public Page() {}
+   public Page() {
+      this(ByteBuffer.allocateDirect(SimpleDBEngine.fileMgr().blockSize()));
+   }
+   
+   /**
+    * Creates a page whose contents are the specified frame,
+    * which must hold exactly one block.
+    * This constructor is called by {@link PageArena}.
+    * @param frame the memory holding the page's contents
+    */
+   Page(ByteBuffer frame) {
+      contents = frame;
+   }
    
    /**
     * Populates the page with the contents of the specified disk block. 
@@ -128,6 +143,20 @@ public class Page {
       return filemgr.append(filename, contents);
    }
    
+   /**
+    * Returns a copy of the page, made while no other
+    * thread reads or writes it.
+    * The copy is not backed by a frame of the buffer pool.
+    * @return a new page with the same contents
+    */
+   public synchronized Page copy() {
+      ByteBuffer src = contents.duplicate();
+      src.clear();
+      ByteBuffer frame = ByteBuffer.allocate(src.capacity());
+      frame.put(src);
+      return new Page(frame);
+   }
+   
    /**
     * Returns the integer value at a specified offset of the page.
     * If an integer was not stored at that location, 
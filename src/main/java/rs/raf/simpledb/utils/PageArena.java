@@ -0,0 +1,108 @@
+package rs.raf.simpledb.utils;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A single off-heap slab of memory that holds the contents
+ * of all pages of the buffer pool and the log manager.
+ * The slab is allocated once, aligned to {@link #ALIGNMENT} bytes,
+ * and carved into frames, each of which starts on a
+ * {@link #FRAME_ALIGNMENT}-byte boundary.
+ * Each frame is exposed as a {@link ByteBuffer} slice
+ * of exactly one block.
+ * <p>
+ * Frames are handed out in order by {@link #newPage()};
+ * they are never returned, since the pages that own them
+ * live as long as the arena.
+ */
+public class PageArena {
+   /**
+    * The alignment of the start of the slab,
+    * which is the page size of the operating system.
+    */
+   public static final int ALIGNMENT = 4096;
+   
+   /**
+    * The alignment of each frame, which is the size of a cache line,
+    * so that two frames never share a cache line.
+    */
+   public static final int FRAME_ALIGNMENT = 64;
+   
+   private ByteBuffer slab;
+   private int blocksize, framesize;
+   private int numframes;
+   private int nextframe = 0;
+   
+   /**
+    * Allocates an arena having the specified number of frames.
+    * @param numframes the number of frames
+    * @param blocksize the number of bytes in a block
+    */
+   public PageArena(int numframes, int blocksize) {
+      this.numframes = numframes;
+      this.blocksize = blocksize;
+      framesize = frameSize(blocksize);
+      long bytes = (long) numframes * framesize;
+      bytes = (bytes + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+      if (bytes + ALIGNMENT > Integer.MAX_VALUE)
+         throw new IllegalArgumentException("arena of " + numframes + " frames is too large");
+      slab = ByteBuffer.allocateDirect((int) (bytes + ALIGNMENT)).alignedSlice(ALIGNMENT);
+   }
+   
+   /**
+    * Returns the number of bytes between the starts of
+    * two consecutive frames holding blocks of the specified size.
+    * @param blocksize the number of bytes in a block
+    * @return the frame size
+    */
+   public static int frameSize(int blocksize) {
+      return (blocksize + FRAME_ALIGNMENT - 1) / FRAME_ALIGNMENT * FRAME_ALIGNMENT;
+   }
+   
+   /**
+    * Returns the number of frames holding blocks of the
+    * specified size that fit into the specified number of bytes.
+    * @param bytes the memory budget in bytes
+    * @param blocksize the number of bytes in a block
+    * @return the number of frames
+    */
+   public static int framesFor(long bytes, int blocksize) {
+      return (int) Math.min(Integer.MAX_VALUE, bytes / frameSize(blocksize));
+   }
+   
+   /**
+    * Creates a page whose contents are the next unused frame of the arena.
+    * @return the new page
+    */
+   public synchronized Page newPage() {
+      if (nextframe >= numframes)
+         throw new IllegalStateException("page arena is exhausted");
+      ByteBuffer frame = slab.slice(nextframe * framesize, blocksize);
+      nextframe++;
+      return new Page(frame);
+   }
+   
+   /**
+    * Returns the number of frames in the arena.
+    * @return the number of frames
+    */
+   public int frames() {
+      return numframes;
+   }
+   
+   /**
+    * Returns the number of frames not yet handed out.
+    * @return the number of unused frames
+    */
+   public synchronized int unusedFrames() {
+      return numframes - nextframe;
+   }
+   
+   /**
+    * Returns the number of bytes of the slab.
+    * @return the size of the arena in bytes
+    */
+   public long capacity() {
+      return slab.capacity();
+   }
+}
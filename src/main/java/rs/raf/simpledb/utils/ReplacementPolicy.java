@@ -0,0 +1,56 @@
+package rs.raf.simpledb.utils;
+
+/**
+ * The strategy used by the buffer manager to decide
+ * which unpinned buffer gets replaced when a block
+ * that is not in the buffer pool needs to be pinned.
+ * The buffer manager tells the policy about every
+ * load, access and unpin of a buffer; the policy
+ * uses that history to choose a victim.
+ * All methods are called while the buffer manager holds its
+ * policy lock, so implementations need not be thread-safe.
+ * The loads, hits and unpins are reported after they happen,
+ * in the order they happened, and only while the buffer still
+ * holds the block they concern; a buffer is always reported as
+ * loaded before it is reported as accessed or unpinned.
+ * @see LRUPolicy
+ * @see ClockPolicy
+ * @see LRUKPolicy
+ * @see TwoQueuePolicy
+ */
+public interface ReplacementPolicy {
+   
+   /**
+    * Called after a buffer has been assigned to a new block
+    * (that is, after a buffer miss) and is about to be pinned.
+    * The buffer need not have been chosen by {@link #chooseVictim()}:
+    * the buffer manager may claim an unpinned buffer directly,
+    * so the policy must forget any bookkeeping of the buffer's
+    * old block.
+    * @param buff the buffer holding the new block
+    */
+   public void    loaded(Buffer buff);
+   
+   /**
+    * Called when a buffer that already holds the requested
+    * block is pinned (that is, on a buffer hit).
+    * @param buff the buffer that was hit
+    */
+   public void    accessed(Buffer buff);
+   
+   /**
+    * Called when the pin count of a buffer drops to zero,
+    * which makes the buffer a candidate for replacement.
+    * @param buff the unpinned buffer
+    */
+   public void    unpinned(Buffer buff);
+   
+   /**
+    * Chooses an unpinned buffer to be replaced and
+    * removes it from the policy's bookkeeping.
+    * The chosen buffer will be reported again through
+    * {@link #loaded(Buffer)} once it holds its new block.
+    * @return the buffer to be replaced, or null if every buffer is pinned
+    */
+   public Buffer  chooseVictim();
+}
@@ -0,0 +1,79 @@
+package rs.raf.simpledb.utils;
+
+import java.util.*;
+
+/**
+ * The 2Q replacement policy (Johnson and Shasha).
+ * A block that is loaded for the first time goes into the
+ * FIFO queue A1in. When a block is replaced from A1in,
+ * its id is remembered in the ghost queue A1out.
+ * A block that is loaded again while it is remembered in A1out
+ * has proven to be hot, and goes into the LRU queue Am.
+ * Blocks read once by a scan therefore pass through A1in
+ * without disturbing the blocks in Am.
+ */
+public class TwoQueuePolicy implements ReplacementPolicy {
+   private int maxIn, maxOut;
+   private LinkedHashSet<Buffer> a1in = new LinkedHashSet<Buffer>();
+   private LinkedHashSet<Buffer> am   = new LinkedHashSet<Buffer>();
+   private LinkedHashSet<Block>  a1out = new LinkedHashSet<Block>();
+   
+   /**
+    * Creates a 2Q policy using the sizes recommended
+    * by the authors: A1in holds a quarter of the pool,
+    * and A1out remembers half as many blocks as the pool holds.
+    * @param numbuffs the number of buffers in the pool
+    */
+   public TwoQueuePolicy(int numbuffs) {
+      maxIn  = Math.max(1, numbuffs / 4);
+      maxOut = Math.max(1, numbuffs / 2);
+   }
+   
+   public void loaded(Buffer buff) {
+      // a buffer claimed without being chosen is still queued for its old block
+      a1in.remove(buff);
+      am.remove(buff);
+      if (a1out.remove(buff.block()))
+         am.add(buff);
+      else
+         a1in.add(buff);
+   }
+   
+   public void accessed(Buffer buff) {
+      // a victim pinned again before it was claimed is in neither queue
+      if (am.remove(buff) || !a1in.contains(buff))
+         am.add(buff);
+   }
+   
+   public void unpinned(Buffer buff) {
+      // pinned buffers are skipped when choosing a victim
+   }
+   
+   public Buffer chooseVictim() {
+      Buffer buff = null;
+      if (a1in.size() > maxIn || am.isEmpty())
+         buff = removeUnpinned(a1in);
+      if (buff != null) {
+         a1out.add(buff.block());
+         if (a1out.size() > maxOut)
+            a1out.remove(a1out.iterator().next());
+         return buff;
+      }
+      buff = removeUnpinned(am);
+      if (buff == null)
+         buff = removeUnpinned(a1in);
+      return buff;
+   }
+   
+   private Buffer removeUnpinned(LinkedHashSet<Buffer> queue) {
+      Iterator<Buffer> iter = queue.iterator();
+      while (iter.hasNext()) {
+         Buffer buff = iter.next();
+         if (!buff.isPinned()) {
+            iter.remove();
+            return buff;
+         }
+      }
+      return null;
+   }
+}
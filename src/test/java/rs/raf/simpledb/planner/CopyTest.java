@@ -0,0 +1,112 @@
+package rs.raf.simpledb.planner;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import rs.raf.simpledb.SimpleDBEngine;
+import rs.raf.simpledb.query.operators.Scan;
+import rs.raf.simpledb.tx.Transaction;
+
+/*
+  Ponistavanje komande COPY.
+
+  COPY upisuje unapred popunjene blokove bez zapisa u logu za svaki slog.
+  Kada se transakcija ponisti, ti blokovi se brisu, pa slogove ne vidi
+  ni transakcija koja cita i pise, ni transakcija samo za citanje, ni
+  pretraga preko indeksa; tabela posle toga normalno prima nove slogove.
+ */
+@Timeout(30)
+public class CopyTest {
+    private static final String DB_NAME = "simpledb_copytest";
+    private static final int ROWS = 50;
+    private File csv;
+
+    @BeforeEach
+    public void createTable() throws IOException {
+        deleteDB();
+        SimpleDBEngine.init(DB_NAME);
+        Transaction tx = new Transaction();
+        SimpleDBEngine.planner().executeUpdate("create table t(k int, s varchar(10))", tx);
+        SimpleDBEngine.planner().executeUpdate("create index tk on t(k)", tx);
+        tx.commit();
+        csv = File.createTempFile("copytest", ".csv");
+        try (PrintWriter out = new PrintWriter(csv)) {
+            for (int i = 0; i < ROWS; i++)
+                out.println(i + ",row" + i);
+        }
+    }
+
+    @AfterEach
+    public void dropDB() {
+        csv.delete();
+        deleteDB();
+    }
+
+    @Test
+    public void rolledBackCopyLeavesNoRows() {
+        Transaction tx = new Transaction();
+        assertEquals(ROWS, copy(tx));
+        tx.rollback();
+        assertEquals(0, count("select k from t", false));
+        assertEquals(0, count("select k from t", true));
+        assertEquals(0, count("select k from t where k = 7", false));
+    }
+
+    @Test
+    public void committedCopyIsSeen() {
+        Transaction tx = new Transaction();
+        copy(tx);
+        tx.commit();
+        assertEquals(ROWS, count("select k from t", false));
+        assertEquals(ROWS, count("select k from t", true));
+        assertEquals(1, count("select k from t where k = 7", false));
+    }
+
+    @Test
+    public void tableIsUsableAfterRollback() {
+        Transaction tx = new Transaction();
+        copy(tx);
+        tx.rollback();
+        tx = new Transaction();
+        SimpleDBEngine.planner().executeUpdate("insert into t(k, s) values (7, 'x')", tx);
+        tx.commit();
+        tx = new Transaction();
+        copy(tx);
+        tx.commit();
+        assertEquals(ROWS + 1, count("select k from t", false));
+        assertEquals(2, count("select k from t where k = 7", false));
+    }
+
+    private int copy(Transaction tx) {
+        return SimpleDBEngine.planner().executeUpdate("copy t (k, s) from '" + csv.getPath() + "'", tx);
+    }
+
+    private int count(String query, boolean readonly) {
+        Transaction tx = new Transaction(readonly);
+        Scan s = SimpleDBEngine.planner().createQueryPlan(query, tx).open();
+        int n = 0;
+        while (s.next())
+            n++;
+        s.close();
+        tx.commit();
+        return n;
+    }
+
+    private static void deleteDB() {
+        File dbDir = new File(System.getProperty("user.home"), DB_NAME);
+        String[] files = dbDir.list();
+        if (files == null)
+            return;
+        for (String name : files)
+            new File(dbDir, name).delete();
+        dbDir.delete();
+    }
+}
@@ -0,0 +1,47 @@
+package rs.raf.simpledb.query;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+/*
+  Poredjenje konstanti razlicitih tipova.
+
+  Kljuc indeksa na vise polja je CompositeConstant, pa se on
+  moze porediti sa IntConstant ili StringConstant; equals tada
+  mora da vrati false umesto da baci ClassCastException.
+ */
+public class ConstantTest {
+
+    @Test
+    public void compositeEqualsComposite() {
+        Constant a = new CompositeConstant(Arrays.asList(new IntConstant(1), new StringConstant("x")));
+        Constant b = new CompositeConstant(Arrays.asList(new IntConstant(1), new StringConstant("x")));
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+    }
+
+    @Test
+    public void differentTypesAreNotEqual() {
+        Constant c = new CompositeConstant(Arrays.asList(new IntConstant(1)));
+        Constant i = new IntConstant(1);
+        Constant s = new StringConstant("1");
+        assertNotEquals(c, i);
+        assertNotEquals(i, c);
+        assertNotEquals(c, s);
+        assertNotEquals(s, c);
+        assertNotEquals(i, s);
+        assertNotEquals(s, i);
+    }
+
+    @Test
+    public void nullIsNotEqual() {
+        assertFalse(new IntConstant(1).equals(null));
+        assertFalse(new StringConstant("x").equals(null));
+        assertFalse(new CompositeConstant(Arrays.asList(new IntConstant(1))).equals(null));
+    }
+}
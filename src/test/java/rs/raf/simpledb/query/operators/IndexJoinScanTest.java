@@ -0,0 +1,91 @@
+package rs.raf.simpledb.query.operators;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import rs.raf.simpledb.SimpleDBEngine;
+import rs.raf.simpledb.query.Plan;
+import rs.raf.simpledb.tx.Transaction;
+
+/*
+  Spajanje preko indeksa kada leva strana nema nijedan zapis.
+
+  Tabela t ima indeks po polju k, pa planer spaja u i t preko indeksa,
+  sa tabelom u na levoj strani. Ranije je prazna leva strana izazivala
+  izuzetak, a leva strana bez zapisa za b = 5 citanje nevazeceg slota.
+ */
+@Timeout(30)
+public class IndexJoinScanTest {
+    private static final String DB_NAME = "simpledb_indexjointest";
+    private static final String QUERY = "select a, b, c, k, v from u, t where a = k and b = 5";
+
+    @BeforeEach
+    public void createTables() {
+        deleteDB();
+        SimpleDBEngine.init(DB_NAME);
+        Transaction tx = new Transaction();
+        SimpleDBEngine.planner().executeUpdate("create table u(a int, b int, c varchar(5))", tx);
+        SimpleDBEngine.planner().executeUpdate("create table t(k int, v int)", tx);
+        SimpleDBEngine.planner().executeUpdate("create index tk on t(k)", tx);
+        for (int i = 0; i < 20; i++)
+            SimpleDBEngine.planner().executeUpdate("insert into t(k, v) values (" + i + ", " + (10 * i) + ")", tx);
+        tx.commit();
+    }
+
+    @AfterEach
+    public void dropDB() {
+        deleteDB();
+    }
+
+    @Test
+    public void emptyOuterSide() {
+        assertEquals(0, count(QUERY));
+    }
+
+    @Test
+    public void noMatchingOuterRecords() {
+        insertIntoU(3, 1);
+        assertEquals(0, count(QUERY));
+    }
+
+    @Test
+    public void matchingOuterRecords() {
+        insertIntoU(3, 5);
+        assertEquals(3, count(QUERY));
+    }
+
+    private void insertIntoU(int rows, int b) {
+        Transaction tx = new Transaction();
+        for (int i = 0; i < rows; i++)
+            SimpleDBEngine.planner().executeUpdate("insert into u(a, b, c) values (" + i + ", " + b + ", 'x')", tx);
+        tx.commit();
+    }
+
+    private int count(String query) {
+        Transaction tx = new Transaction();
+        Plan p = SimpleDBEngine.planner().createQueryPlan(query, tx);
+        Scan s = p.open();
+        int n = 0;
+        while (s.next())
+            n++;
+        s.close();
+        tx.commit();
+        return n;
+    }
+
+    private static void deleteDB() {
+        File dbDir = new File(System.getProperty("user.home"), DB_NAME);
+        String[] files = dbDir.list();
+        if (files == null)
+            return;
+        for (String name : files)
+            new File(dbDir, name).delete();
+        dbDir.delete();
+    }
+}
@@ -0,0 +1,161 @@
+package rs.raf.simpledb.query.operators;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import rs.raf.simpledb.SimpleDBEngine;
+import rs.raf.simpledb.query.Plan;
+import rs.raf.simpledb.tx.Transaction;
+
+/*
+  Citanje iz snimka (snapshot) transakcije samo za citanje.
+
+  Transakcija samo za citanje vidi zapise kakvi su bili kada je pocela:
+  ne vidi kasnije upise, i dalje vidi obrisane zapise i stare vrednosti
+  izmenjenih zapisa, i ne ceka na transakcije koje menjaju tabelu.
+  Prostor obrisanog zapisa se ponovo koristi tek kada ga nijedan
+  snimak ne vidi, tj. kada je brisanje ispod horizonta.
+ */
+@Timeout(30)
+public class SnapshotScanTest {
+    private static final String DB_NAME = "simpledb_snapshottest";
+    private static final String QUERY = "select k, v from t";
+
+    @BeforeEach
+    public void createTable() {
+        deleteDB();
+        SimpleDBEngine.init(DB_NAME);
+        Transaction tx = new Transaction();
+        SimpleDBEngine.planner().executeUpdate("create table t(k int, v int)", tx);
+        for (int i = 0; i < 10; i++)
+            SimpleDBEngine.planner().executeUpdate("insert into t(k, v) values (" + i + ", " + (10 * i) + ")", tx);
+        tx.commit();
+    }
+
+    @AfterEach
+    public void dropDB() {
+        deleteDB();
+    }
+
+    @Test
+    public void laterInsertIsNotSeen() {
+        Transaction snap = new Transaction(true);
+        update("insert into t(k, v) values (10, 100)");
+        assertEquals(10, rows(snap).size());
+        snap.commit();
+        assertEquals(11, currentRows().size());
+    }
+
+    @Test
+    public void deletedRecordIsStillSeen() {
+        Transaction snap = new Transaction(true);
+        update("delete from t where k = 3");
+        assertTrue(rows(snap).contains("3:30"));
+        snap.commit();
+        assertEquals(9, currentRows().size());
+    }
+
+    @Test
+    public void oldValueIsSeenAfterUpdate() {
+        Transaction snap = new Transaction(true);
+        update("update t set v = 99 where k = 4");
+        update("update t set v = 98 where k = 4");
+        List<String> seen = rows(snap);
+        assertTrue(seen.contains("4:40"));
+        assertEquals(10, seen.size());
+        snap.commit();
+        assertTrue(currentRows().contains("4:98"));
+    }
+
+    @Test
+    public void uncommittedChangesAreNotSeen() {
+        Transaction writer = new Transaction();
+        SimpleDBEngine.planner().executeUpdate("update t set v = 99 where k = 5", writer);
+        SimpleDBEngine.planner().executeUpdate("delete from t where k = 6", writer);
+        SimpleDBEngine.planner().executeUpdate("insert into t(k, v) values (10, 100)", writer);
+        List<String> seen = currentRows();
+        writer.rollback();
+        assertEquals(10, seen.size());
+        assertTrue(seen.containsAll(Arrays.asList("5:50", "6:60")));
+    }
+
+    @Test
+    public void deletedSpaceIsReusedBelowTheHorizon() {
+        for (int i = 10; i < 100; i++)
+            update("insert into t(k, v) values (" + i + ", " + i + ")");
+        int blocks = blocks();
+
+        // a snapshot that sees the deleted records keeps their slots
+        Transaction snap = new Transaction(true);
+        update("delete from t");
+        for (int i = 0; i < 100; i++)
+            update("insert into t(k, v) values (" + i + ", 1)");
+        assertTrue(blocks() > blocks);
+        assertEquals(100, rows(snap).size());
+        snap.commit();
+
+        // no snapshot sees the records deleted now, once the deletion commits
+        blocks = blocks();
+        update("delete from t");
+        for (int i = 0; i < 100; i++)
+            update("insert into t(k, v) values (" + i + ", 2)");
+        assertEquals(blocks, blocks());
+        assertEquals(100, currentRows().size());
+    }
+
+    private void update(String cmd) {
+        Transaction tx = new Transaction();
+        SimpleDBEngine.planner().executeUpdate(cmd, tx);
+        tx.commit();
+    }
+
+    private int blocks() {
+        Transaction tx = new Transaction();
+        int n = tx.size("t.tbl");
+        tx.commit();
+        return n;
+    }
+
+    private List<String> currentRows() {
+        Transaction tx = new Transaction(true);
+        List<String> rows = rows(tx);
+        tx.commit();
+        return rows;
+    }
+
+    /*
+      Zapisi koje transakcija vidi, kao "k:v", sortirani;
+      transakcija ostaje otvorena.
+     */
+    private List<String> rows(Transaction tx) {
+        Plan p = SimpleDBEngine.planner().createQueryPlan(QUERY, tx);
+        Scan s = p.open();
+        List<String> rows = new ArrayList<String>();
+        while (s.next())
+            rows.add(s.getInt("k") + ":" + s.getInt("v"));
+        s.close();
+        Collections.sort(rows);
+        return rows;
+    }
+
+    private static void deleteDB() {
+        File dbDir = new File(System.getProperty("user.home"), DB_NAME);
+        String[] files = dbDir.list();
+        if (files == null)
+            return;
+        for (String name : files)
+            new File(dbDir, name).delete();
+        dbDir.delete();
+    }
+}
@@ -0,0 +1,138 @@
+package rs.raf.simpledb.record;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import rs.raf.simpledb.SimpleDBEngine;
+import rs.raf.simpledb.query.operators.Scan;
+import rs.raf.simpledb.tx.Transaction;
+import rs.raf.simpledb.tx.concurrency.LockAbortException;
+
+/*
+  Istovremeni upisi u istu tabelu.
+
+  Mapa slobodnog prostora se menja bez zakljucavanja transakcija,
+  a upis preskace blok koji je zakljucala druga transakcija, pa
+  upisi u istu tabelu ne cekaju jedan drugog niti se prekidaju.
+ */
+@Timeout(60)
+public class ConcurrentInsertTest {
+    private static final String DB_NAME = "simpledb_insertconcurrencytest";
+
+    @BeforeEach
+    public void createTable() {
+        deleteDB();
+        SimpleDBEngine.init(DB_NAME);
+        Transaction tx = new Transaction();
+        SimpleDBEngine.planner().executeUpdate("create table t(a int, b int)", tx);
+        tx.commit();
+    }
+
+    @AfterEach
+    public void dropDB() {
+        deleteDB();
+    }
+
+    @Test
+    public void openInsertDoesNotBlockAnotherInserter() throws InterruptedException {
+        Transaction tx1 = new Transaction();
+        insert(tx1, 1);
+        CountDownLatch done = new CountDownLatch(1);
+        Thread other = new Thread(() -> {
+            Transaction tx2 = new Transaction();
+            insert(tx2, 2);
+            tx2.commit();
+            done.countDown();
+        });
+        other.start();
+        boolean finished = done.await(10, TimeUnit.SECONDS);
+        tx1.commit();
+        other.join();
+        assertTrue(finished, "the second insert waited for the first transaction");
+        assertEquals(2, count());
+    }
+
+    @Test
+    public void concurrentInsertersDoNotAbort() throws InterruptedException {
+        int threads = 4, txs = 25, rows = 5;
+        AtomicInteger aborts = new AtomicInteger();
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            final int id = i;
+            workers[i] = new Thread(() -> {
+                for (int k = 0; k < txs; k++) {
+                    Transaction tx = new Transaction();
+                    try {
+                        for (int j = 0; j < rows; j++)
+                            insert(tx, id);
+                        tx.commit();
+                    }
+                    catch (LockAbortException e) {
+                        tx.rollback();
+                        aborts.incrementAndGet();
+                    }
+                }
+            });
+            workers[i].start();
+        }
+        for (Thread t : workers)
+            t.join();
+        assertEquals(0, aborts.get());
+        assertEquals(threads * txs * rows, count());
+    }
+
+    @Test
+    public void deletedSpaceIsReused() {
+        Transaction tx = new Transaction();
+        for (int i = 0; i < 300; i++)
+            insert(tx, 0);
+        tx.commit();
+        int blocks = SimpleDBEngine.fileMgr().size("t.tbl");
+
+        tx = new Transaction();
+        SimpleDBEngine.planner().executeUpdate("delete from t where b = 0", tx);
+        tx.commit();
+        tx = new Transaction();
+        for (int i = 0; i < 300; i++)
+            insert(tx, 1);
+        tx.commit();
+
+        assertEquals(blocks, SimpleDBEngine.fileMgr().size("t.tbl"));
+        assertEquals(300, count());
+    }
+
+    private static void insert(Transaction tx, int b) {
+        SimpleDBEngine.planner().executeUpdate("insert into t(a, b) values (1, " + b + ")", tx);
+    }
+
+    private static int count() {
+        Transaction tx = new Transaction();
+        Scan s = SimpleDBEngine.planner().createQueryPlan("select a from t", tx).open();
+        int n = 0;
+        while (s.next())
+            n++;
+        s.close();
+        tx.commit();
+        return n;
+    }
+
+    private static void deleteDB() {
+        File dbDir = new File(System.getProperty("user.home"), DB_NAME);
+        String[] files = dbDir.list();
+        if (files == null)
+            return;
+        for (String name : files)
+            new File(dbDir, name).delete();
+        dbDir.delete();
+    }
+}
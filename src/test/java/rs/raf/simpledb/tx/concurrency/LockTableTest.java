@@ -0,0 +1,69 @@
+package rs.raf.simpledb.tx.concurrency;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import rs.raf.simpledb.utils.Block;
+
+/*
+  Graf cekanja u tabeli zakljucavanja.
+
+  Transakcija koja ceka ima grane samo ka trenutnim vlasnicima
+  bloka koji ceka; kada vlasnik oslobodi blok, grana se brise, pa
+  se transakcija koja kasnije zatrazi blok onoga koji ceka ne
+  prekida zbog zastarele grane. Pravi ciklus se i dalje otkriva.
+ */
+@Timeout(30)
+public class LockTableTest {
+    private final Block a = new Block("locktabletest", 0);
+    private final Block b = new Block("locktabletest", 1);
+
+    @Test
+    public void releasedHolderIsNotWaitedFor() throws Exception {
+        LockTable lt = new LockTable();
+        lt.xLock(a, 2);
+        lt.xLock(b, 1);
+        CountDownLatch granted = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            // tx 1 waits for a, then finishes and releases both blocks
+            lt.xLock(a, 1);
+            granted.countDown();
+            lt.unlock(a, 1);
+            lt.unlock(b, 1);
+        });
+        waiter.start();
+        while (lt.waits() == 0)
+            Thread.sleep(1);
+
+        // tx 2 releases a early and then waits for tx 1, which waits for nobody
+        lt.unlock(a, 2);
+        lt.xLock(b, 2);
+        assertTrue(granted.await(10, TimeUnit.SECONDS));
+        waiter.join();
+        lt.unlock(b, 2);
+        assertEquals(0, lt.deadlocks());
+    }
+
+    @Test
+    public void deadlockIsDetected() throws Exception {
+        LockTable lt = new LockTable();
+        lt.xLock(a, 1);
+        lt.xLock(b, 2);
+        Thread waiter = new Thread(() -> lt.xLock(b, 1));
+        waiter.start();
+        while (lt.waits() == 0)
+            Thread.sleep(1);
+
+        assertThrows(LockAbortException.class, () -> lt.xLock(a, 2));
+        lt.unlock(b, 2);
+        waiter.join();
+        assertEquals(1, lt.deadlocks());
+    }
+}
@@ -0,0 +1,72 @@
+package rs.raf.simpledb.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/*
+  Verzija formata baze u zaglavlju.
+
+  Baza napravljena pre zaglavlja (bez datoteke simpledb.header), kao i
+  baza cije zaglavlje nema verziju, ima drugaciji raspored slogova, pa
+  se odbija sa jasnom porukom, pre nego sto se ista u njoj procita
+  ili upise. Nova baza dobija zaglavlje sa tekucom verzijom.
+ */
+public class FileMgrTest {
+    private static final String DB_NAME = "simpledb_headertest";
+
+    @BeforeEach
+    @AfterEach
+    public void deleteDB() {
+        File dbDir = dbDir();
+        String[] files = dbDir.list();
+        if (files == null)
+            return;
+        for (String name : files)
+            new File(dbDir, name).delete();
+        dbDir.delete();
+    }
+
+    @Test
+    public void newDatabaseIsReopened() {
+        new FileMgr(DB_NAME, 800, false, 0);
+        FileMgr fm = new FileMgr(DB_NAME, Page.DEFAULT_BLOCK_SIZE, false, 0);
+        assertFalse(fm.isNew());
+        assertEquals(800, fm.blockSize());
+    }
+
+    @Test
+    public void databaseWithoutHeaderIsRefused() throws IOException {
+        dbDir().mkdir();
+        new FileOutputStream(new File(dbDir(), "tblcat.tbl")).close();
+        RuntimeException e = assertThrows(RuntimeException.class, () -> new FileMgr(DB_NAME));
+        assertTrue(e.getMessage().contains("version 0"));
+        assertFalse(new File(dbDir(), FileMgr.HEADER_FILE).exists());
+    }
+
+    @Test
+    public void headerWithoutVersionIsRefused() throws IOException {
+        dbDir().mkdir();
+        try (DataOutputStream out = new DataOutputStream(
+                new FileOutputStream(new File(dbDir(), FileMgr.HEADER_FILE)))) {
+            out.writeInt(0x53444248);
+            out.writeInt(Page.DEFAULT_BLOCK_SIZE);
+        }
+        RuntimeException e = assertThrows(RuntimeException.class, () -> new FileMgr(DB_NAME));
+        assertTrue(e.getMessage().contains("version 1"));
+    }
+
+    private static File dbDir() {
+        return new File(System.getProperty("user.home"), DB_NAME);
+    }
+}